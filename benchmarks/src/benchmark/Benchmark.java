@@ -0,0 +1,48 @@
+package benchmark;
+
+/**
+ * One operation measured by the Runner for some sizes of the problem, like a
+ * JMH benchmark with a size parameter: setup is the trial level setup,
+ * prepare the invocation level setup and operate the benchmark method.
+ */
+public abstract class Benchmark {
+
+	/**
+	 *
+	 * @return The name shown in the results, usually the method measured
+	 */
+	public abstract String getName();
+
+	/**
+	 *
+	 * @return The sizes measured if none is given to the Runner
+	 */
+	public abstract int[] getSizes();
+
+	/**
+	 * Makes the problem of one size, it is not measured
+	 *
+	 * @param size
+	 * @throws Exception
+	 */
+	public abstract void setup(int size) throws Exception;
+
+	/**
+	 * Restores what the last operation changed, before every operation. It
+	 * is not measured
+	 *
+	 * @throws Exception
+	 */
+	public void prepare() throws Exception {
+	}
+
+	/**
+	 * The operation measured
+	 *
+	 * @return A value of the result, so the operation is not removed by the
+	 *         compiler
+	 * @throws Exception
+	 */
+	public abstract double operate() throws Exception;
+
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+/**
+ * The Broyden tridiagonal function (More, Garbow and Hillstrom, problem 30),
+ * a fixed test problem of any size:
+ *
+ * f(i) = (3-2*x(i))*x(i) - x(i-1) - 2*x(i+1) + 1, with x(0) = x(n+1) = 0
+ *
+ * Its Jacobian has (3-4*x(i)) in the diagonal, -1 below it and -2 above it.
+ * The standard start is x = -1.
+ */
+public class BroydenTridiagonal {
+
+	public static final double Start = -1.0;
+
+	/**
+	 * Evaluates the functions
+	 *
+	 * @param n
+	 * @param x
+	 *            The point, x(1) in the position first
+	 * @param f
+	 *            The functions, f(1) in the position first
+	 * @param first
+	 *            0 or 1
+	 */
+	public static void F(int n, double[] x, double[] f, int first) {
+		for (int i = 0; i < n; i++) {
+			double xi = x[first + i];
+			double aux = (3 - 2 * xi) * xi + 1;
+			if (i > 0)
+				aux -= x[first + i - 1];
+			if (i < n - 1)
+				aux -= 2 * x[first + i + 1];
+			f[first + i] = aux;
+		}
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param x
+	 *            The point, x(1) in the position first
+	 * @param first
+	 *            0 or 1
+	 * @param i
+	 *            The function, from 0
+	 * @param j
+	 *            The variable, from 0
+	 * @return df(i)/dx(j)
+	 */
+	public static double J(int n, double[] x, int first, int i, int j) {
+		if (j == i)
+			return 3 - 4 * x[first + i];
+		if (j == i - 1)
+			return -1;
+		if (j == i + 1)
+			return -2;
+		return 0;
+	}
+
+}
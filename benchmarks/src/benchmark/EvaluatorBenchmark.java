@@ -0,0 +1,65 @@
+package benchmark;
+
+import evaluation.DiffAndEvaluator;
+
+/**
+ * Evaluates or differentiates with matheclipse an expression of size terms,
+ * every one with x1 and other variable. The derivatives are not taken from
+ * the cache, it is cleared before every one
+ */
+public class EvaluatorBenchmark extends Benchmark {
+
+	private final boolean diff;
+	private String expression;
+
+	/**
+	 *
+	 * @param diff
+	 *            true to measure DiffAndEvaluator.diff by x1, false for
+	 *            DiffAndEvaluator.Evaluate
+	 */
+	public EvaluatorBenchmark(boolean diff) {
+		this.diff = diff;
+	}
+
+	@Override
+	public String getName() {
+		return diff ? "DiffAndEvaluator.diff" : "DiffAndEvaluator.Evaluate";
+	}
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 5, 20, 100 };
+	}
+
+	@Override
+	public void setup(int size) {
+		StringBuilder aux = new StringBuilder();
+		for (int k = 1; k <= size; k++) {
+			if (k > 1)
+				aux.append('+');
+			aux.append("x" + k + "*Sin[x1*x" + k + "]+Exp[-x1/(1+x" + k
+					+ "^2)]");
+		}
+		expression = aux.toString();
+		DiffAndEvaluator.PurgeVar();
+		// The derivatives are symbolic, as the solver makes them
+		if (!diff)
+			for (int k = 1; k <= size; k++)
+				DiffAndEvaluator.IntroduceValue("x" + k, 1.0 + 0.1 * k);
+	}
+
+	@Override
+	public void prepare() {
+		if (diff)
+			DiffAndEvaluator.Derivatives.clear();
+	}
+
+	@Override
+	public double operate() {
+		if (diff)
+			return DiffAndEvaluator.diff(expression, "x1").length();
+		return DiffAndEvaluator.Evaluate(expression);
+	}
+
+}
@@ -0,0 +1,42 @@
+package benchmark;
+
+import String2ME.CheckString;
+
+/**
+ * Checks and stores size equations with CheckString.GramCheck, as they are
+ * read from a file
+ */
+public class GramCheckBenchmark extends Benchmark {
+
+	private final CheckString CS = new CheckString();
+	private String[] equations;
+
+	@Override
+	public String getName() {
+		return "CheckString.GramCheck";
+	}
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 10, 100, 1000 };
+	}
+
+	@Override
+	public void setup(int size) {
+		equations = Models.Loops(size, 5);
+	}
+
+	@Override
+	public void prepare() {
+		CheckString.PurgeAll();
+	}
+
+	@Override
+	public double operate() {
+		int errors = 0;
+		for (String s : equations)
+			errors += CS.GramCheck(s).GetTypeError();
+		return CheckString.Functions.size() + errors;
+	}
+
+}
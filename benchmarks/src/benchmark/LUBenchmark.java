@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.util.Random;
+
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.RealMatrix;
+
+import evaluation.LU;
+
+/**
+ * Solves J*X = F with LU.Operate, for a random dense matrix of size*size
+ * with a dominant diagonal
+ */
+public class LUBenchmark extends Benchmark {
+
+	private final boolean flat;
+	private int n;
+	private double[] J, F0, F, work;
+	private int[] pivot;
+	private RealMatrix M;
+
+	/**
+	 *
+	 * @param flat
+	 *            true for the matrix stored by rows in an array, false for
+	 *            a RealMatrix
+	 */
+	public LUBenchmark(boolean flat) {
+		this.flat = flat;
+	}
+
+	@Override
+	public String getName() {
+		return flat ? "LU.Operate(double[])" : "LU.Operate(RealMatrix)";
+	}
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 10, 50, 200, 500 };
+	}
+
+	@Override
+	public void setup(int size) {
+		n = size;
+		Random R = new Random(size);
+		J = new double[n * n];
+		F0 = new double[n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++)
+				J[i * n + j] = R.nextDouble() - 0.5;
+			J[i * n + i] += n;
+			F0[i] = R.nextDouble();
+		}
+		F = new double[n];
+		work = new double[n * n];
+		pivot = new int[n];
+	}
+
+	@Override
+	public void prepare() {
+		System.arraycopy(F0, 0, F, 0, n);
+		if (flat)
+			return;
+		// Operate can jitter the matrix, it is made every time
+		M = new Array2DRowRealMatrix(n, n);
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				M.setEntry(i, j, J[i * n + j]);
+	}
+
+	@Override
+	public double operate() {
+		if (flat) {
+			LU.Operate(J, n, F, work, pivot);
+			return F[0];
+		}
+		return LU.Operate(M, new ArrayRealVector(F)).getEntry(0);
+	}
+
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+import java.util.Arrays;
+
+import doglegMethod.Lmder_fcn;
+import doglegMethod.Minpack_f77;
+import doglegMethod.Minpack_j;
+
+/**
+ * Solves the Broyden tridiagonal function of size variables with the
+ * Levenberg-Marquardt method of Minpack, with the FORTRAN style indexing of
+ * Minpack_f77 or the zero based storage by columns of Minpack_j
+ */
+public class MinpackBenchmark extends Benchmark {
+
+	private final boolean j;
+	private int n;
+	private Problem P;
+	private double[] x, fvec, flat;
+	private double[][] fjac;
+	private int[] info, ipvt;
+
+	/**
+	 *
+	 * @param j
+	 *            true for Minpack_j, false for Minpack_f77
+	 */
+	public MinpackBenchmark(boolean j) {
+		this.j = j;
+	}
+
+	@Override
+	public String getName() {
+		return j ? "Minpack_j.lmder1_j" : "Minpack_f77.lmder1_f77";
+	}
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 10, 50, 200 };
+	}
+
+	@Override
+	public void setup(int size) {
+		n = size;
+		P = new Problem();
+		if (j) {
+			x = new double[n];
+			fvec = new double[n];
+			flat = new double[n * n];
+			info = new int[1];
+			ipvt = new int[n];
+		} else {
+			x = new double[n + 1];
+			fvec = new double[n + 1];
+			fjac = new double[n + 1][n + 1];
+			info = new int[2];
+			ipvt = new int[n + 1];
+		}
+	}
+
+	@Override
+	public void prepare() {
+		Arrays.fill(x, BroydenTridiagonal.Start);
+	}
+
+	@Override
+	public double operate() {
+		if (j) {
+			Minpack_j.lmder1_j(P, n, n, x, fvec, flat, n, 1e-10, info, ipvt);
+			return x[0] + info[0];
+		}
+		Minpack_f77.lmder1_f77(P, n, n, x, fvec, fjac, 1e-10, info, ipvt);
+		return x[1] + info[1];
+	}
+
+	/**
+	 * The functions and the Jacobian for lmder
+	 */
+	private static class Problem extends Lmder_fcn {
+
+		@Override
+		public void fcn(int m, int n, double x[], double fvec[],
+				double fjac[][], int iflag[]) {
+			if (iflag[1] == 1)
+				BroydenTridiagonal.F(n, x, fvec, 1);
+			if (iflag[1] == 2)
+				for (int i = 0; i < m; i++)
+					for (int j = 0; j < n; j++)
+						fjac[i + 1][j + 1] = BroydenTridiagonal.J(n, x, 1, i,
+								j);
+		}
+
+		@Override
+		public void fcn_j(int m, int n, double x[], double fvec[],
+				double fjac[], int ldfjac, int iflag[]) {
+			if (iflag[0] == 1)
+				BroydenTridiagonal.F(n, x, fvec, 0);
+			if (iflag[0] == 2)
+				for (int j = 0; j < n; j++)
+					for (int i = 0; i < m; i++)
+						fjac[i + j * ldfjac] = BroydenTridiagonal.J(n, x, 0,
+								i, j);
+		}
+
+	}
+
+}
@@ -0,0 +1,36 @@
+package benchmark;
+
+/**
+ * Synthetic models for the benchmarks, written as the user writes them
+ */
+public class Models {
+
+	/**
+	 * A graph of n variables in algebraic loops of a size, every loop
+	 * depends on the one before it, so the block triangular form has n/loop
+	 * blocks in a chain:
+	 *
+	 * x(k) = 0.5*cos(x(next in the loop)) + 0.1*x(same in the loop before) +
+	 * 1
+	 *
+	 * @param n
+	 *            Number of equations and variables
+	 * @param loop
+	 *            Size of the loops
+	 * @return The equations, without spaces
+	 */
+	public static String[] Loops(int n, int loop) {
+		String[] equations = new String[n];
+		for (int k = 0; k < n; k++) {
+			int first = k - k % loop;
+			int size = Math.min(loop, n - first);
+			int next = first + (k - first + 1) % size;
+			String aux = "x" + (k + 1) + "=0.5*cos(x" + (next + 1) + ")";
+			if (first > 0)
+				aux += "+0.1*x" + (k + 1 - loop);
+			equations[k] = aux + "+1";
+		}
+		return equations;
+	}
+
+}
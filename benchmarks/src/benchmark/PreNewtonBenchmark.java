@@ -0,0 +1,57 @@
+package benchmark;
+
+import gui.Config;
+
+import String2ME.CheckString;
+
+import tarjan.PrepareMatrix;
+
+import evaluation.DiffAndEvaluator;
+
+/**
+ * Splits in blocks and solves a model of size variables in loops of 5 (see
+ * Models.Loops) with PrepareMatrix.PreNewton, as the command line runner
+ * does. The equations are read and PreTarjan is run before every operation,
+ * and the derivatives are not taken from the cache
+ */
+public class PreNewtonBenchmark extends Benchmark {
+
+	private final CheckString CS = new CheckString();
+	private String[] equations;
+	private String last;
+
+	@Override
+	public String getName() {
+		return "PrepareMatrix.PreNewton";
+	}
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 10, 50, 200 };
+	}
+
+	@Override
+	public void setup(int size) {
+		equations = Models.Loops(size, 5);
+		last = "x" + size;
+	}
+
+	@Override
+	public void prepare() {
+		CheckString.PurgeAll();
+		for (String s : equations)
+			CS.GramCheck(s);
+		DiffAndEvaluator.Derivatives.clear();
+		Config.ErrorFound = false;
+		PrepareMatrix.PreTarjan();
+	}
+
+	@Override
+	public double operate() {
+		new PrepareMatrix().PreNewton();
+		if (Config.ErrorFound)
+			throw new RuntimeException("The model was not solved");
+		return DiffAndEvaluator.getValue(last);
+	}
+
+}
@@ -0,0 +1,273 @@
+package benchmark;
+
+import gui.Config;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import evaluation.DiffAndEvaluator;
+
+/**
+ * Runs the benchmarks and compares them with a baseline. Every benchmark is
+ * measured for every size like JMH does in the average time mode: some
+ * warmup iterations that are not used, so the JIT compiles the code, and
+ * then the measurement iterations. Every iteration runs the operation as
+ * many times as it can in its time, and its score is the mean time of one
+ * operation. The result is the mean of the scores and their standard
+ * deviation.
+ *
+ * It is run from the directory of config.txt, i.e: java -cp
+ * "bin:Dependencies/*:benchmarks/bin" benchmark.Runner [options]
+ * [benchmarks], where the options are:
+ *
+ * -s 10,50,100 The sizes, if not every benchmark uses its own
+ *
+ * -wi 3 Warmup iterations
+ *
+ * -i 5 Measurement iterations
+ *
+ * -t 1000 Time of every iteration, in milliseconds
+ *
+ * -o file Writes the results in the file, to be used as a baseline
+ *
+ * -b file Compares the results with the ones of the file
+ *
+ * The benchmarks are given by a part of their names, i.e: LU Minpack. With
+ * none, all are run.
+ */
+public class Runner {
+
+	private static int Warmup = 3;
+	private static int Iterations = 5;
+	private static long Time = 1000;
+	private static int[] Sizes = null;
+	private static String Output = null;
+	private static String Baseline = null;
+
+	/**
+	 * The results of the operations are added here, so they are never dead
+	 * code
+	 */
+	private static volatile double Sink;
+
+	/**
+	 * The solvers write in System.out, it is hidden while measuring
+	 */
+	private static final PrintStream Out = System.out;
+	private static final PrintStream Hidden = new PrintStream(
+			new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			});
+
+	/**
+	 *
+	 * @return Every benchmark, in the order they are run
+	 */
+	private static List<Benchmark> Benchmarks() {
+		List<Benchmark> list = new ArrayList<Benchmark>();
+		list.add(new EvaluatorBenchmark(false));
+		list.add(new EvaluatorBenchmark(true));
+		list.add(new GramCheckBenchmark());
+		list.add(new PreNewtonBenchmark());
+		list.add(new LUBenchmark(false));
+		list.add(new LUBenchmark(true));
+		list.add(new UncminBenchmark());
+		list.add(new MinpackBenchmark(false));
+		list.add(new MinpackBenchmark(true));
+		return list;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Locale.setDefault(Locale.US);
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-s") & i + 1 < args.length) {
+				String[] aux = args[++i].split(",");
+				Sizes = new int[aux.length];
+				for (int j = 0; j < aux.length; j++)
+					Sizes[j] = Integer.parseInt(aux[j].trim());
+			} else if (args[i].equals("-wi") & i + 1 < args.length)
+				Warmup = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i") & i + 1 < args.length)
+				Iterations = Math.max(1, Integer.parseInt(args[++i]));
+			else if (args[i].equals("-t") & i + 1 < args.length)
+				Time = Long.parseLong(args[++i]);
+			else if (args[i].equals("-o") & i + 1 < args.length)
+				Output = args[++i];
+			else if (args[i].equals("-b") & i + 1 < args.length)
+				Baseline = args[++i];
+			else if (args[i].startsWith("-")) {
+				Out.println("Unknown option " + args[i]);
+				System.exit(1);
+			} else
+				names.add(args[i]);
+		}
+
+		Initialize();
+		HashMap<String, double[]> base = Baseline == null ? null
+				: ReadResults(Baseline);
+
+		Out.println(String.format("%-30s %6s %5s %12s %12s %9s",
+				"Benchmark", "(size)", "Cnt", "Score", "StdDev",
+				base == null ? "Units" : "Speedup"));
+		List<String> results = new ArrayList<String>();
+		for (Benchmark B : Benchmarks()) {
+			if (!Selected(B, names))
+				continue;
+			for (int size : Sizes == null ? B.getSizes() : Sizes) {
+				double[] score = Measure(B, size);
+				String key = B.getName() + "\t" + size;
+				String last;
+				if (base == null)
+					last = "us/op";
+				else if (base.containsKey(key))
+					last = String.format("%8.2fx", base.get(key)[0]
+							/ score[0]);
+				else
+					last = "-";
+				Out.println(String.format("%-30s %6d %5d %12.3f %12.3f %9s",
+						B.getName(), size, Iterations, score[0], score[1],
+						last));
+				results.add(key + "\t" + score[0] + "\t" + score[1]);
+			}
+		}
+
+		if (Output != null)
+			WriteResults(Output, results);
+		System.exit(0);
+	}
+
+	/**
+	 * The same initialization as the command line runner, with the
+	 * config.txt of the current directory
+	 */
+	private static void Initialize() {
+		Config.AbsolutePath = "";
+		Config config = new Config();
+		config.ReadConfig();
+		Config.makeEpsilon();
+		DiffAndEvaluator.PrepareME();
+	}
+
+	private static boolean Selected(Benchmark B, List<String> names) {
+		if (names.isEmpty())
+			return true;
+		for (String s : names)
+			if (B.getName().toLowerCase().contains(s.toLowerCase()))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Measures a benchmark for one size
+	 *
+	 * @return The mean time of one operation in microseconds and its
+	 *         standard deviation between iterations
+	 * @throws Exception
+	 */
+	private static double[] Measure(Benchmark B, int size) throws Exception {
+		System.setOut(Hidden);
+		try {
+			B.setup(size);
+			for (int i = 0; i < Warmup; i++)
+				Iteration(B);
+			double[] scores = new double[Iterations];
+			for (int i = 0; i < Iterations; i++)
+				scores[i] = Iteration(B);
+			double mean = 0;
+			for (double d : scores)
+				mean += d;
+			mean /= Iterations;
+			double var = 0;
+			for (double d : scores)
+				var += (d - mean) * (d - mean);
+			double sd = Iterations > 1 ? Math.sqrt(var / (Iterations - 1))
+					: 0;
+			return new double[] { mean, sd };
+		} finally {
+			System.setOut(Out);
+		}
+	}
+
+	/**
+	 * Runs the operation during Time, at least once
+	 *
+	 * @return The mean time of one operation in microseconds
+	 * @throws Exception
+	 */
+	private static double Iteration(Benchmark B) throws Exception {
+		long measured = 0;
+		int operations = 0;
+		long end = System.nanoTime() + Time * 1000000L;
+		do {
+			B.prepare();
+			long start = System.nanoTime();
+			double d = B.operate();
+			measured += System.nanoTime() - start;
+			Sink += d;
+			operations++;
+		} while (System.nanoTime() < end);
+		return measured / 1e3 / operations;
+	}
+
+	/**
+	 * Reads a file written with -o
+	 *
+	 * @return The score and the deviation of every benchmark and size
+	 * @throws IOException
+	 */
+	private static HashMap<String, double[]> ReadResults(String file)
+			throws IOException {
+		HashMap<String, double[]> results = new HashMap<String, double[]>();
+		BufferedReader r = new BufferedReader(new FileReader(file));
+		try {
+			String s;
+			while ((s = r.readLine()) != null) {
+				if (s.startsWith("#") | s.trim().isEmpty())
+					continue;
+				String[] aux = s.split("\t");
+				results.put(aux[0] + "\t" + aux[1], new double[] {
+						Double.parseDouble(aux[2]),
+						Double.parseDouble(aux[3]) });
+			}
+		} finally {
+			r.close();
+		}
+		return results;
+	}
+
+	private static void WriteResults(String file, List<String> results)
+			throws IOException {
+		PrintWriter w = new PrintWriter(new FileWriter(file));
+		try {
+			w.println("# benchmark\tsize\tus/op\tstddev");
+			w.println("# " + System.getProperty("java.vm.name") + " "
+					+ System.getProperty("java.version") + ", "
+					+ System.getProperty("os.name") + " "
+					+ System.getProperty("os.arch") + ", "
+					+ Runtime.getRuntime().availableProcessors()
+					+ " processors, -wi " + Warmup + " -i " + Iterations
+					+ " -t " + Time);
+			for (String s : results)
+				w.println(s);
+		} finally {
+			w.close();
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the startup of the command line: the time from launching a new
+ * JVM with cli.CommandLineRunner until it writes the results of a model, and
+ * until it exits. The JVM is new every run, so nothing is warm except the
+ * disk: the first runs are not used.
+ *
+ * It is run from the directory of config.txt, with the same classpath as the
+ * application, i.e: java -cp "bin:Dependencies/*:benchmarks/bin"
+ * benchmark.Startup [options] [model], where the options are:
+ *
+ * -wi 2 Runs that are not used
+ *
+ * -i 10 Measured runs
+ *
+ * -l 300 Limit in milliseconds of the median time to the first result, if it
+ * is higher the exit code is 1
+ *
+ * The model is benchmarks/startup.ris by default, two explicit equations
+ * without calls to the property database. With JacobianMethod: 2 in
+ * config.txt they are solved without the symbolic engine, with the analytic
+ * Jacobian their derivatives start it.
+ */
+public class Startup {
+
+	private static int Warmup = 2;
+	private static int Iterations = 10;
+	private static long Limit = 0;
+	private static String Model = "benchmarks" + File.separator
+			+ "startup.ris";
+
+	/**
+	 * The line that the command line writes before the values of the
+	 * variables
+	 */
+	private static final String RESULTS = "--- Results ---";
+
+	public static void main(String[] args) throws Exception {
+		Locale.setDefault(Locale.US);
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-wi") & i + 1 < args.length)
+				Warmup = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i") & i + 1 < args.length)
+				Iterations = Math.max(1, Integer.parseInt(args[++i]));
+			else if (args[i].equals("-l") & i + 1 < args.length)
+				Limit = Long.parseLong(args[++i]);
+			else if (args[i].startsWith("-")) {
+				System.out.println("Unknown option " + args[i]);
+				System.exit(1);
+			} else
+				Model = args[i];
+		}
+
+		for (int i = 0; i < Warmup; i++)
+			Run();
+		double[] first = new double[Iterations];
+		double[] exit = new double[Iterations];
+		for (int i = 0; i < Iterations; i++) {
+			double[] times = Run();
+			first[i] = times[0];
+			exit[i] = times[1];
+		}
+
+		System.out.println(String.format("%-30s %5s %10s %10s %10s",
+				"Startup " + new File(Model).getName(), "Cnt", "Min",
+				"Median", "Max"));
+		Print("First result (ms)", first);
+		Print("Exit (ms)", exit);
+		if (Limit > 0 && Median(first) > Limit) {
+			System.out.println("The median time to the first result is over "
+					+ Limit + " ms");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Solves the model in a new JVM
+	 *
+	 * @return The milliseconds until the results are written and until the
+	 *         JVM exits
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private static double[] Run() throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		command.add("-Djava.awt.headless=true");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("cli.CommandLineRunner");
+		command.add(Model);
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+
+		long start = System.nanoTime();
+		Process P = builder.start();
+		long first = -1;
+		BufferedReader r = new BufferedReader(new InputStreamReader(P
+				.getInputStream()));
+		try {
+			String s;
+			while ((s = r.readLine()) != null)
+				if (first < 0 && s.startsWith(RESULTS))
+					first = System.nanoTime();
+		} finally {
+			r.close();
+		}
+		int code = P.waitFor();
+		long end = System.nanoTime();
+		if (first < 0 | code != 0)
+			throw new IllegalStateException(Model + " was not solved, exit code "
+					+ code);
+		return new double[] { (first - start) / 1e6, (end - start) / 1e6 };
+	}
+
+	private static void Print(String name, double[] times) {
+		double[] sorted = times.clone();
+		Arrays.sort(sorted);
+		System.out.println(String.format("%-30s %5d %10.1f %10.1f %10.1f",
+				name, times.length, sorted[0], Median(times),
+				sorted[sorted.length - 1]));
+	}
+
+	private static double Median(double[] times) {
+		double[] sorted = times.clone();
+		Arrays.sort(sorted);
+		int n = sorted.length;
+		return n % 2 == 1 ? sorted[n / 2]
+				: (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+	}
+
+}
@@ -0,0 +1,116 @@
+package benchmark;
+
+import doglegMethod.Uncmin_f77;
+import doglegMethod.Uncmin_methods;
+
+/**
+ * Minimizes 1/2*Sum(f(i)^2) of the Broyden tridiagonal function of size
+ * variables with Uncmin_f77.optif9_f77, with the line search, the analytic
+ * gradient and the analytic Hessian. The parameters are the ones the solver
+ * uses with the default config.txt
+ */
+public class UncminBenchmark extends Benchmark {
+
+	private int n;
+	private Problem P;
+	private double[] x, typsiz, xpls, fpls, gpls, udiag;
+	private double[][] a;
+
+	@Override
+	public String getName() {
+		return "Uncmin_f77.optif9_f77";
+	}
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 10, 50, 100 };
+	}
+
+	@Override
+	public void setup(int size) {
+		n = size;
+		P = new Problem(n);
+		x = new double[n + 1];
+		typsiz = new double[n + 1];
+		for (int i = 1; i <= n; i++)
+			typsiz[i] = 1.0;
+		xpls = new double[n + 1];
+		fpls = new double[2];
+		gpls = new double[n + 1];
+		udiag = new double[n + 1];
+		a = new double[n + 1][n + 1];
+	}
+
+	@Override
+	public void prepare() {
+		for (int i = 1; i <= n; i++)
+			x[i] = BroydenTridiagonal.Start;
+	}
+
+	@Override
+	public double operate() {
+		int[] itrmcd = new int[2];
+		Uncmin_f77.optif9_f77(n, x, P, typsiz, new double[] { 0, 1.0 },
+				new int[] { 0, 1 }, new int[] { 0, 0 }, new int[] { 0, 80 },
+				new int[] { 0, -1 }, new int[] { 0, 200 },
+				new int[] { 0, 1 }, new int[] { 0, 1 },
+				new double[] { 0, -1.0 },
+				new double[] { 0, 4.641588833612782E-6 },
+				new double[] { 0, 0.0 }, new double[] { 0, 1.0E-8 }, xpls,
+				fpls, gpls, itrmcd, a, udiag);
+		return fpls[1] + itrmcd[1];
+	}
+
+	/**
+	 * The function, its gradient J'*F and its Hessian J'*J + Sum(f(i)*
+	 * Hessian(f(i))), where the Hessian of f(i) is only -4 in (i,i)
+	 */
+	private static class Problem extends Uncmin_methods {
+
+		private final int n;
+		private final double[] f;
+
+		Problem(int n) {
+			this.n = n;
+			this.f = new double[n + 1];
+		}
+
+		@Override
+		public double f_to_minimize(double x[]) {
+			BroydenTridiagonal.F(n, x, f, 1);
+			double sum = 0;
+			for (int i = 1; i <= n; i++)
+				sum += f[i] * f[i];
+			return 0.5 * sum;
+		}
+
+		@Override
+		public void gradient(double x[], double g[]) {
+			BroydenTridiagonal.F(n, x, f, 1);
+			for (int j = 0; j < n; j++) {
+				double sum = 0;
+				for (int i = Math.max(0, j - 1); i <= Math.min(n - 1, j + 1); i++)
+					sum += BroydenTridiagonal.J(n, x, 1, i, j) * f[i + 1];
+				g[j + 1] = sum;
+			}
+		}
+
+		@Override
+		public void hessian(double x[], double h[][]) {
+			BroydenTridiagonal.F(n, x, f, 1);
+			for (int i = 1; i <= n; i++)
+				for (int j = 1; j <= n; j++)
+					h[i][j] = 0;
+			for (int i = 0; i < n; i++) {
+				for (int j = Math.max(0, i - 1); j <= Math.min(n - 1, i + 1); j++)
+					for (int k = Math.max(0, i - 1); k <= Math.min(n - 1,
+							i + 1); k++)
+						h[j + 1][k + 1] += BroydenTridiagonal.J(n, x, 1, i, j)
+								* BroydenTridiagonal.J(n, x, 1, i, k);
+				h[i + 1][i + 1] -= 4 * f[i + 1];
+			}
+		}
+
+	}
+
+}
@@ -4,9 +4,6 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.StringTokenizer;
-
-import solver.PrepareUncmin;
 
 import evaluation.DiffAndEvaluator;
 import gui.Config;
@@ -80,7 +77,8 @@ public class CheckString {
 
 	/**
 	 * The input string can't contain comments, use before calling this method
-	 * SolverGUI.cleanComments
+	 * cleanComments. The equation is read once by the Parser, that gives its
+	 * translation to matheclipse, its variables and its tree
 	 * 
 	 * @param cadena
 	 * @return A byte that means: 0 if there are no errors. 1 if there is a
@@ -96,231 +94,61 @@ public class CheckString {
 	 */
 	public GramErr GramCheck(String cadena) {
 
-		String aux = new String("");
-		char c = Espacio;
-		char pc = Espacio;
-		int NumC;
-		int i = 0;
-		int j = 0;
-		boolean Change;
-		boolean Equalsign = false;
-
-		while (i != cadena.length()) {
-			Change = false;
-			c = cadena.charAt(i);
-			c = Character.toLowerCase(c);
-			NumC = (int) c;
-
-			// Comments are introduced with /* and close with */
-			// Only abcdefghijklmnopqrstuvwxyz1234567890 + - * / , . ^ ( ) [ ] =
-			// and Tabulator are allowed
-			// This if is to check if a character is illegal. i.e:@ ; > < : | &
-			// { } " # ? ~ % \ $
-			// Note "_" it's only accepted because it it's translate to Gg
-			if (((NumC <= 57) & (NumC >= 48)) | ((NumC >= 97) & (NumC <= 122))
-					| (NumC == Igual) | (NumC == Plus) | (NumC == Menos)
-					| (NumC == Slash) | (NumC == Espacio) | (NumC == Por)
-					| (NumC == OpenP) | (NumC == CloseP) | (NumC == OpenC)
-					| (NumC == CloseC) | (NumC == Dot) | (NumC == Comma)
-					| (NumC == Elevado)/* |(NumC==Exclamacion) */
-					| (NumC == Barra) | (NumC == Tab)) {/* Accepted characters */
-			} else
-				return (new GramErr((byte) 1, c));
-
-			// At first erase tabs
-			if (c == Tab) {
-				Change = true;
-			}
-
-			// This is the way i decided to make a equation to look like this
-			// 0=something from this
-			// something=other something
-			if (c == Igual) {
-				if (Equalsign)
-					return (new GramErr((byte) 2, c));
-				aux += SubsEqual;
-				Equalsign = true;
-				Change = true;
-			}
-
-			// As matheclipse can't use "_" we make here a change to make it
-			// possible, later we must
-			// translate a "Gg" to a _ to show in the results
-			if (c == Barra) {
-				aux += "Gg";
-				Change = true;
-			}
-
-			// To check if there are empty parenthesis
-			if (c == CloseP | c == CloseC)
-				if (pc == OpenP | pc == OpenC)
-					return (new GramErr((byte) 7, c));
-
-			// Comma and dots can only be behind a number
-			if (((c == Comma) | (c == Dot)) & (!IsNumber(pc)))
-				return (new GramErr((byte) 2, c));
-
-			/*
-			 * //Behind a number can't be a letter if(IsLetter(c) &
-			 * IsNumber(pc)) return (new GramErr((byte) 8,c));
-			 */
-
-			// This is to check that there are not two operators followed
-			// (except +,-)
-			if ((CheckOperator(c)) & (CheckOperator(pc))) {
-				if ((c == Plus) | (c == Menos)) {/* Ignore */
-				} else
-					return (new GramErr((byte) 3, c));
-			}
+		Parser P = new Parser(cadena);
+		GramErr error = P.parse();
+		if (error.GetTypeError() != (byte) 0 || P.getTree() == null)
+			return error;
 
-			// This is to check that behind an operator there isn't a ) or a ]
-			if ((CheckOperator(pc)) & ((c == CloseP) | (c == CloseC)))
-				return (new GramErr((byte) 9, pc));
+		// Only the first case of a variable is stored
+		for (String s : P.getCases())
+			if (SymbolTable.addCase(s))
+				CheckString.CaseVariables.add(s);
 
-			// Looks for a missing operator or a dot or comma after a letter
-			if ((IsLetter(pc)) & ((c == Comma) | (c == Dot)))
-				return (new GramErr((byte) 4, c));
-
-			// Because of the MathEclipse libraries does not use the commas,
-			// only dots, i make this conversion to
-			// allow both possibilities
-			if (c == Comma) {
-				Change = true;
-				aux += ".";
-			}
-
-			// Write the character only if there were no changes
-			if (!Change)
-				aux += c;
-
-			i++;
-
-			if (i != cadena.length()) {
-				j = i;
-				i = SkipSpaces(cadena, i);
-				if (j != i) {
-					i--;
-				}
-			}
-			// Save previous character
-			if (c != Tab)
-				pc = c;
+		VarThisEquation = new VList();
+		for (Expr.Variable v : P.getVariables()) {
+			VarThisEquation.AddVar(v.getName());
+			v.resolve();
 		}
-		// Checks if there is an operator at the end of the line for example x =
-		// 2 / or x = 2 +
-		if (CheckOperator(c))
-			return (new GramErr((byte) 9, c));
-
-		aux += ")";
-		if (Equalsign) {
-			VarThisEquation = new VList();
-			String aux2 = new String("");
-			String aux3 = new String("");
-			String PrevToken = new String(" ");
-			StringTokenizer lector = new StringTokenizer(aux, "+/*-()[]{} ^=!",
-					true);
-			while (lector.hasMoreTokens()) {
-
-				aux3 = lector.nextToken();
-
-				if (aux3.equals("ln"))
-					aux3 = "log";// Translation of ln to log, thats if how ME
-									// understand ln
-
-				// Now we check if the "variable" is not a special function like
-				// Sin or Pi, etc.
-				// This is to check if it is a number, every number start with a
-				// number. I mean there is no dot
-				// at the beginning , i.e:0.5
-
-				if (IsFunction(aux3)) {/* Ignore this tokens */
-				} else {
-					if ((aux3.equals("pi")) | (aux3.equals("e"))
-							| (IsNumber(aux3.charAt(0)))) {
-						if (!IsNumber(aux3) & IsNumber(aux3.charAt(0))) // This
-																		// check
-																		// if
-																		// the
-																		// "number"
-																		// is a
-							return (new GramErr((byte) 8, aux3/* aux3.charAt(0) */));
-					}// variable that start with
-					else { // a number
-						if ((aux3.equals("+")) | (aux3.equals("-"))
-								| (aux3.equals("/")) | (aux3.equals("*"))
-								| (aux3.equals(" ")) | (aux3.equals("^"))
-								| (aux3.equals("!"))) {
-							// Ignore this tokens
-						} else {
-							if ((aux3.equals("(")) | (aux3.equals(")"))
-									| (aux3.equals("[")) | (aux3.equals("]"))) {
-								try {
-									aux3 = P2C(aux3, PrevToken);
-								} catch (Exception e) {
-									return new GramErr((byte) 6);
-								}
-							} else {
-								if ((PrevToken.equals("["))
-										& ((aux3.equals("/"))
-												| (aux3.equals("*"))
-												| (aux3.equals("^")) | (aux3
-												.equals("!")))) {
-									return new GramErr((byte) 2);
-								} else {
-									// First i check the variable
-									if (!checkVariable(aux3))
-										return (new GramErr((byte) 10, aux3));
-
-									// If it is not an operator, a special
-									// function or a number
-									// that means that it must be a variable
-									VarThisEquation.AddVar(aux3);
-								}
-							}
-						}
-					}
-				}
-				// This checks if a special function is empty,unnecessary
-				// if ((PrevToken.equals("["))&(aux3.equals("]"))){
-				// return (new GramErr((byte) 7));}
-
-				PrevToken = aux3;
-				// If the token is a function or pi or e i must translate it to
-				// the matheclipse syntaxes
-				if ((IsFunction(aux3)) | (aux3.equals("e"))
-						| (aux3.equals("pi"))) {
-					aux3 = f2F(aux3);
-				}
-				aux2 += aux3;
-			}
+		for (int m = 0; m < VarThisEquation.getSize(); m++)
+			Var.addCountVar(VarThisEquation.getVar(m), 1);
+		Functions.add(new EqStorer(P.getEquation(), VarThisEquation, P
+				.getTree()));
+		return error;
+	}
 
-			String n;
-			for (int m = 0; m < VarThisEquation.getSize(); m++) {
-				n = VarThisEquation.getVar(m);
-				Var.addCountVar(n, 1);
-			}
-			Functions.add(new EqStorer(aux2, VarThisEquation));
-
-			Pila p = new Pila();
-			if (p.GetSize() != -1) {// If after reading the whole equation are
-									// non paired parenthesis
-				// then the size will be different from -1
-				// p.ErasePila();
-				return (new GramErr((byte) 6));
-			} else {
-				// p.ErasePila();
-				return (new GramErr((byte) 0));
+	/**
+	 * Comments are introduced with /* and close with * /, together. The
+	 * comments are erased in one pass but the line jumps inside them are
+	 * kept, so the lines of the equations don't change
+	 * 
+	 * @param input
+	 * @return The input without comments
+	 */
+	public static String cleanComments(String input) {
+		StringBuilder aux = new StringBuilder(input.length());
+		boolean comments = false;
+		char c;
+		char pc = Espacio;
+		for (int i = 0; i < input.length(); i++) {
+			c = input.charAt(i);
+			if (pc == Slash & c == Por) {
+				// Erase the previous character, the slash
+				if (aux.length() > 0)
+					aux.setLength(aux.length() - 1);
+				comments = true;
+				pc = Espacio;
 			}
-		}// Check if the line is empty or is part of a comment line, that means,
-			// comment =true
-
-		else {
-			if (emptyString(aux))
-				return (new GramErr((byte) 0));
-			else
-				return (new GramErr((byte) 5));
+			if (!comments || c == '\n' || c == '\r')
+				// Don't add the closing * / itself
+				if (!(pc == Por && c == Slash))
+					aux.append(c);
+
+			if (pc == Por & c == Slash)
+				comments = false;
+			// save previous character
+			pc = c;
 		}
-
+		return aux.toString();
 	}
 
 	/**
@@ -442,63 +270,6 @@ public class CheckString {
 
 	}
 
-	// Skip spaces
-	/**
-	 * This method is to ignore spaces
-	 */
-	public int SkipSpaces(String cadena, int i) {
-		char c = cadena.charAt(i);
-		while ((c == Espacio) & (i < cadena.length())) {// There was problems
-														// when the space was at
-														// the end of the line
-			c = cadena.charAt(i);// i think it it's fixed with the
-									// i<cadena.length()
-			i++;
-
-		}
-		return i;
-	}
-
-	/**
-	 * This method is to translate The Parenthesis in a usual equation into
-	 * clasp when its necessary to matheclipse. I.E:Cos(x*(1)) into Cos[x*(1)]
-	 * 
-	 */
-	public String P2C(String aux, String PrevToken) {
-
-		Pila P = new Pila();
-		byte b = (byte) 0;
-		switch (aux.charAt(0)) {
-		case CloseP:
-			b = P.GetTerm();
-			break;
-		case CloseC:
-			b = P.GetTerm();
-			break;
-		default: {
-			if (IsFunction(PrevToken)) {
-				if (IsTrigonometric(PrevToken) & (!Radianes)) {
-					P.AddTerm((byte) 2);
-					return "[Degree(";
-				} else {
-					P.AddTerm((byte) 1);
-					return "[";
-				}
-			} else {
-				P.AddTerm((byte) 0);
-				return "(";
-			}
-		}
-		}
-		if (b == (byte) 1)
-			return "]";
-		if (b == (byte) 2)
-			return ")]";
-		if (b == (byte) 0)
-			return ")";
-		return "";
-	}
-
 	/**
 	 * 
 	 * @param Input
@@ -556,24 +327,6 @@ public class CheckString {
 
 	}
 
-	/**
-	 * Checks if the input string has only spaces and at the end a )
-	 * 
-	 * @param input
-	 * @return True if the string has only spaces
-	 */
-	private boolean emptyString(String input) {
-		boolean empty = true;
-		Character c;
-		for (int i = 0; i < input.length() - 1; i++) {
-			c = input.charAt(i);
-			if (!c.equals(Espacio))
-				empty = false;
-		}
-
-		return empty;
-	}
-
 	/**
 	 * 
 	 * @param cadena
@@ -583,97 +336,14 @@ public class CheckString {
 	 */
 	public void getVariables(String cadena) {
 
-		String aux = new String("");
-		char c, pc;
-		int i = 0;
-		int j = 0;
-		boolean Change;
-		boolean Equalsign = false;
-
-		while (i != cadena.length()) {
-			Change = false;
-			c = cadena.charAt(i);
-
-			if (!false) {
-				// At first erase tabs
-				if (c == Tab) {
-					Change = true;
-				}
-
-				// This is the way i decided to make a equation to look like
-				// this 0=something from this
-				// something=other something
-				if (c == Igual) {
-					aux += SubsEqual;
-					Equalsign = true;
-					Change = true;
-				}
-				if (c == OpenC) {
-					aux += "(";
-					Change = true;
-				}
-				if (c == CloseC) {
-					aux += ")";
-					Change = true;
-				}
-				// As matheclipse can't use "_" we make here a change to make it
-				// possible, later we must
-				// translate a "Gg" to a _ to show in the results
-				if (c == Barra) {
-					aux += "Gg";
-					Change = true;
-				}
-
-				// Because of the MathEclipse libraries does not use the commas,
-				// only dots, i make this conversion to
-				// allow both possibilities
-				if (c == Comma) {
-					Change = true;
-					aux += ".";
-				}
-
-				// Write the character only if there were no changes
-				if (!Change)
-					aux += c;
-
-			}
-			i++;
-
-			if (i != cadena.length()) {// If something fails, maybe is this XD
-				j = i;
-				i = SkipSpaces(cadena, i);
-				if (j != i) {
-					i--;
-				}
-			}
-			// Save previous character
-			if (c != Tab)
-				pc = c;
-		}
-		aux += ")";
-		try {
-			if (Equalsign) {
-				String[] variables = DiffAndEvaluator.getVariables(aux);
-				// Saves the variable only if it is not already in the List
-				// and if it is not an special function like: cos, sin, pi, etc.
-				for (String s : variables) {
-					Change = true;
-					if (IsFunction(s) | s.equalsIgnoreCase("e")
-							| s.equalsIgnoreCase("Pi") | s.equalsIgnoreCase(""))
-						Change = false;
-
-					if (Change)
-						for (String S : CheckString.CaseVariables)
-							if (s.equalsIgnoreCase(S))
-								Change = false;
-
-					if (Change)
-						CheckString.CaseVariables.add(s);
-				}
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		Parser P = new Parser(cadena);
+		P.parse();
+		// The variables found before an error are stored too
+		if (P.hasEqual())
+			for (String s : P.getCases())
+				// Only the first case of a variable is stored
+				if (SymbolTable.addCase(s))
+					CheckString.CaseVariables.add(s);
 	}
 
 	/**
@@ -692,97 +362,7 @@ public class CheckString {
 		// formula
 		cadena = SGUI.searchThermodynamicFunction(cadena, Materiales, ch)
 				.getString();
-		String aux = new String("");
-		char c, pc;
-		int i = 0;
-		int j = 0;
-		boolean Change;
-		boolean Equalsign = false;
-
-		while (i != cadena.length()) {
-			Change = false;
-			c = cadena.charAt(i);
-
-			if (!false) {
-				// At first erase tabs
-				if (c == Tab) {
-					Change = true;
-				}
-
-				// This is the way i decided to make a equation to look like
-				// this 0=something from this
-				// something=other something
-				if (c == Igual) {
-					aux += SubsEqual;
-					Equalsign = true;
-					Change = true;
-				}
-				if (c == OpenC) {
-					aux += "(";
-					Change = true;
-				}
-				if (c == CloseC) {
-					aux += ")";
-					Change = true;
-				}
-				// As matheclipse can't use "_" we make here a change to make it
-				// possible, later we must
-				// translate a "Gg" to a _ to show in the results
-				if (c == Barra) {
-					aux += "Gg";
-					Change = true;
-				}
-
-				// Because of the MathEclipse libraries does not use the commas,
-				// only dots, i make this conversion to
-				// allow both possibilities
-				if (c == Comma) {
-					Change = true;
-					aux += ".";
-				}
-
-				// Write the character only if there were no changes
-				if (!Change)
-					aux += c;
-
-			}
-			i++;
-
-			if (i != cadena.length()) {// If something fails, maybe is this XD
-				j = i;
-				i = SkipSpaces(cadena, i);
-				if (j != i) {
-					i--;
-				}
-			}
-			// Save previous character
-			if (c != Tab)
-				pc = c;
-		}
-		aux += ")";
-		try {
-			if (Equalsign) {
-				String[] variables = DiffAndEvaluator.getVariables(aux);
-				// Saves the variable only if it is not already in the List
-				// and if it is not an special function like: cos, sin, pi, etc.
-				for (String s : variables) {
-					Change = true;
-					if (IsFunction(s) | s.equalsIgnoreCase("e")
-							| s.equalsIgnoreCase("Pi") | s.equalsIgnoreCase(""))
-						Change = false;
-
-					if (Change)
-						for (String S : CheckString.CaseVariables)
-							if (s.equalsIgnoreCase(S))
-								Change = false;
-
-					if (Change)
-						CheckString.CaseVariables.add(s);
-				}
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		getVariables(cadena);
 	}
 
 	/**
@@ -799,6 +379,8 @@ public class CheckString {
 
 		CaseVariables.clear();
 
+		SymbolTable.clear();
+
 		FunctionsSolved.clear();
 
 		Var.Variables.clear();
@@ -807,13 +389,6 @@ public class CheckString {
 
 		ResidualWorkAround.clear();
 
-		// This is to erase the stack that checks and translates the parenthesis
-		// and clasps
-		Pila.ErasePila();
-
-		// Clear Gradient, Hessian, Jacobian...whatever
-		PrepareUncmin.clear();
-
 		// Restart Global variables
 		Config.ErrorFound = false;
 		evaluation.DiffAndEvaluator.TimeLimitExceeded = false;
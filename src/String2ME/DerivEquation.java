@@ -16,6 +16,10 @@ public class DerivEquation {
 	 * The variable
 	 */
 	private String _var;
+	/**
+	 * The id of the variable in the SymbolTable
+	 */
+	private final int _id;
 
 	/**
 	 * @param funcion
@@ -24,10 +28,12 @@ public class DerivEquation {
 	public DerivEquation(String funcion, String var) {
 		_Deriv = funcion;
 		_var = var;
+		_id = SymbolTable.intern(var);
 	}
 
 	public DerivEquation(String var) {
 		_var = var;
+		_id = SymbolTable.intern(var);
 	}
 
 	/**
@@ -48,4 +54,13 @@ public class DerivEquation {
 		return _var;
 	}
 
+	/**
+	 * Returns the id of the variable in the SymbolTable
+	 * 
+	 * @return int
+	 */
+	public int GetId() {
+		return _id;
+	}
+
 }
@@ -15,6 +15,10 @@ public class EqStorer {
 	public List<DerivEquation> aux = new ArrayList<DerivEquation>();
 
 	private String _equation;
+	/**
+	 * The residual of the equation, null if it was not made by the Parser
+	 */
+	private Expr _tree;
 
 	/**
 	 * Makes every partial differentiation of a function
@@ -32,6 +36,18 @@ public class EqStorer {
 		}
 	}
 
+	/**
+	 * 
+	 * @param cadena
+	 * @param var
+	 * @param tree
+	 *            The residual of the equation with the variables resolved
+	 */
+	public EqStorer(String cadena, VList var, Expr tree) {
+		this(cadena, var);
+		_tree = tree;
+	}
+
 	/**
 	 * Returns the equation
 	 * 
@@ -58,6 +74,15 @@ public class EqStorer {
 		return "0";
 	}
 
+	/**
+	 * 
+	 * @return The tree of the residual of the equation, null if it is not
+	 *         known
+	 */
+	public Expr getTree() {
+		return _tree;
+	}
+
 	public void purgeDev() {
 		aux.clear();
 	}
@@ -0,0 +1,202 @@
+package String2ME;
+
+/**
+ * Node of the tree of an equation, made by the Parser. The tree of an equation
+ * is its residual, the left side minus the right side, so the equation is
+ * solved when the tree is 0.
+ *
+ * The variables are already resolved: every Variable has the id of the
+ * variable in the SymbolTable, so the tree can be evaluated with an array of
+ * values indexed by id, without matheclipse.
+ */
+public abstract class Expr {
+
+	/**
+	 *
+	 * @param values
+	 *            Value of every variable, the position is its id
+	 * @return The value of the expression
+	 */
+	public abstract double evaluate(double[] values);
+
+	/**
+	 * A number, pi and e are numbers too
+	 */
+	public static final class Number extends Expr {
+		private final double value;
+
+		Number(double value) {
+			this.value = value;
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		public double evaluate(double[] values) {
+			return value;
+		}
+	}
+
+	/**
+	 * A variable of the equation
+	 */
+	public static final class Variable extends Expr {
+		private final String name;
+		private int id = -1;
+
+		Variable(String name) {
+			this.name = name;
+		}
+
+		/**
+		 *
+		 * @return The name as matheclipse uses it, in lower case
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 *
+		 * @return The id of the variable in the SymbolTable
+		 */
+		public int getId() {
+			return id;
+		}
+
+		void resolve() {
+			id = SymbolTable.intern(name);
+		}
+
+		public double evaluate(double[] values) {
+			return values[id];
+		}
+	}
+
+	/**
+	 * Minus sign before an expression
+	 */
+	public static final class Negate extends Expr {
+		private final Expr operand;
+
+		Negate(Expr operand) {
+			this.operand = operand;
+		}
+
+		public Expr getOperand() {
+			return operand;
+		}
+
+		public double evaluate(double[] values) {
+			return -operand.evaluate(values);
+		}
+	}
+
+	/**
+	 * An operation with two expressions: + - * / ^
+	 */
+	public static final class Binary extends Expr {
+		private final char operator;
+		private final Expr left;
+		private final Expr right;
+
+		Binary(char operator, Expr left, Expr right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		public char getOperator() {
+			return operator;
+		}
+
+		public Expr getLeft() {
+			return left;
+		}
+
+		public Expr getRight() {
+			return right;
+		}
+
+		public double evaluate(double[] values) {
+			double a = left.evaluate(values);
+			double b = right.evaluate(values);
+			switch (operator) {
+			case CheckString.Plus:
+				return a + b;
+			case CheckString.Menos:
+				return a - b;
+			case CheckString.Por:
+				return a * b;
+			case CheckString.Slash:
+				return a / b;
+			default:
+				return Math.pow(a, b);
+			}
+		}
+	}
+
+	/**
+	 * A special function like Cos or Log
+	 */
+	public static final class Function extends Expr {
+		private final String name;
+		private final Expr argument;
+		/**
+		 * If the argument is in degrees, it is translated to radians as
+		 * matheclipse does with Degree
+		 */
+		private final boolean degrees;
+
+		Function(String name, Expr argument, boolean degrees) {
+			this.name = name;
+			this.argument = argument;
+			this.degrees = degrees;
+		}
+
+		/**
+		 *
+		 * @return The name as matheclipse uses it, i.e: ArcTan
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public Expr getArgument() {
+			return argument;
+		}
+
+		public boolean isDegrees() {
+			return degrees;
+		}
+
+		public double evaluate(double[] values) {
+			double x = argument.evaluate(values);
+			if (degrees)
+				x = x * Math.PI / 180;
+			if (name.equals("Cos"))
+				return Math.cos(x);
+			if (name.equals("Sin"))
+				return Math.sin(x);
+			if (name.equals("Tan"))
+				return Math.tan(x);
+			if (name.equals("Exp"))
+				return Math.exp(x);
+			if (name.equals("Log"))
+				return Math.log(x);
+			if (name.equals("Sinh"))
+				return Math.sinh(x);
+			if (name.equals("Cosh"))
+				return Math.cosh(x);
+			if (name.equals("Tanh"))
+				return Math.tanh(x);
+			if (name.equals("ArcSin"))
+				return Math.asin(x);
+			if (name.equals("ArcCos"))
+				return Math.acos(x);
+			return Math.atan(x);
+		}
+	}
+
+}
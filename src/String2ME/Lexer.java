@@ -0,0 +1,408 @@
+package String2ME;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Reads an equation once, character by character, and gives its tokens one by
+ * one to the Parser.
+ *
+ * Every character is checked when it is read, with the same rules and the
+ * same errors that GramCheck always had: illegal characters, two operators
+ * followed, empty parenthesis... Spaces and tabs are ignored, the equation is
+ * in lower case, "_" is translated to Gg and the commas to dots, because
+ * matheclipse can't use them.
+ *
+ * Every token has its translation to the matheclipse syntaxes, i.e: cos is
+ * Cos and the parenthesis after a function are clasps.
+ */
+final class Lexer {
+
+	static final int END = 0;
+	static final int NUMBER = 1;
+	static final int VARIABLE = 2;
+	static final int FUNCTION = 3;
+	static final int PLUS = 4;
+	static final int MINUS = 5;
+	static final int TIMES = 6;
+	static final int DIVIDE = 7;
+	static final int POWER = 8;
+	static final int OPEN = 9;
+	static final int CLOSE = 10;
+	static final int EQUAL = 11;
+
+	/**
+	 * The special functions and the name matheclipse uses
+	 */
+	private static final HashMap<String, String> Functions = new HashMap<String, String>();
+	static {
+		Functions.put("cos", "Cos");
+		Functions.put("sin", "Sin");
+		Functions.put("tan", "Tan");
+		Functions.put("exp", "Exp");
+		Functions.put("log", "Log");
+		Functions.put("ln", "Log");
+		Functions.put("sinh", "Sinh");
+		Functions.put("cosh", "Cosh");
+		Functions.put("tanh", "Tanh");
+		Functions.put("arcsin", "ArcSin");
+		Functions.put("arccos", "ArcCos");
+		Functions.put("arctan", "ArcTan");
+	}
+	private static final HashSet<String> Trigonometric = new HashSet<String>();
+	static {
+		Trigonometric.add("cos");
+		Trigonometric.add("sin");
+		Trigonometric.add("tan");
+		Trigonometric.add("arcsin");
+		Trigonometric.add("arccos");
+		Trigonometric.add("arctan");
+	}
+
+	/**
+	 * Kind of parenthesis: 0 is a parenthesis, 1 is a clasp of a function
+	 * and 2 is a clasp of a trigonometric function in degrees, so ")]" closes
+	 * it
+	 */
+	private static final String[] Close = { ")", "]", ")]" };
+
+	private final String line;
+	private final boolean radianes;
+	private int position = 0;
+	/**
+	 * A character that has been read and checked but not used, 0 if none
+	 */
+	private char back = 0;
+	/**
+	 * The character read before, to check the current one
+	 */
+	private char pc = CheckString.Espacio;
+	private char original;
+	private boolean equal = false;
+	private boolean empty = true;
+	private byte[] parenthesis = new byte[8];
+	private int depth = 0;
+
+	/**
+	 * The current token
+	 */
+	int kind = END;
+	/**
+	 * Translation of the current token to the matheclipse syntaxes
+	 */
+	String text = "";
+	/**
+	 * Name of a variable in lower case, or the matheclipse name of a function
+	 */
+	String name;
+	/**
+	 * Name of a variable as the user wrote it
+	 */
+	String caseName;
+	double value;
+	/**
+	 * For a function, true if it is trigonometric and we are working with
+	 * degrees
+	 */
+	boolean degrees;
+
+	/**
+	 *
+	 * @param line
+	 *            The equation, without comments
+	 * @param radianes
+	 *            false if the trigonometric functions use degrees
+	 */
+	Lexer(String line, boolean radianes) {
+		this.line = line;
+		this.radianes = radianes;
+	}
+
+	/**
+	 * Reads the next token
+	 *
+	 * @throws SyntaxError
+	 */
+	void next() throws SyntaxError {
+		int previous = kind;
+		char c = read();
+		switch (c) {
+		case 0:
+			kind = END;
+			text = "";
+			break;
+		case CheckString.Plus:
+			token(PLUS, c);
+			break;
+		case CheckString.Menos:
+			token(MINUS, c);
+			break;
+		case CheckString.Por:
+			token(TIMES, c);
+			break;
+		case CheckString.Slash:
+			token(DIVIDE, c);
+			break;
+		case CheckString.Elevado:
+			token(POWER, c);
+			break;
+		case CheckString.Igual:
+			kind = EQUAL;
+			text = CheckString.SubsEqual;
+			break;
+		case CheckString.OpenP:
+		case CheckString.OpenC:
+			open(previous == FUNCTION);
+			break;
+		case CheckString.CloseP:
+		case CheckString.CloseC:
+			close();
+			break;
+		default:
+			word(c);
+		}
+	}
+
+	private void token(int kind, char c) {
+		this.kind = kind;
+		this.text = String.valueOf(c);
+	}
+
+	private void open(boolean function) {
+		byte type = 0;
+		if (function)
+			type = degrees ? (byte) 2 : (byte) 1;
+		if (depth == parenthesis.length) {
+			byte[] aux = new byte[depth * 2];
+			System.arraycopy(parenthesis, 0, aux, 0, depth);
+			parenthesis = aux;
+		}
+		parenthesis[depth++] = type;
+		kind = OPEN;
+		text = type == 2 ? "[Degree(" : type == 1 ? "[" : "(";
+	}
+
+	private void close() throws SyntaxError {
+		if (depth == 0)
+			throw new SyntaxError(new GramErr((byte) 6), SyntaxError.TOKEN);
+		kind = CLOSE;
+		text = Close[parenthesis[--depth]];
+	}
+
+	/**
+	 * Reads a number, a variable, a function, pi or e
+	 *
+	 * @param c
+	 *            The first character
+	 * @throws SyntaxError
+	 */
+	private void word(char c) throws SyntaxError {
+		StringBuilder lower = new StringBuilder();
+		StringBuilder cases = new StringBuilder();
+		do {
+			if (c == CheckString.Barra) {
+				lower.append("Gg");
+				cases.append("Gg");
+			} else if (c == CheckString.Comma) {
+				lower.append(CheckString.Dot);
+				cases.append(CheckString.Dot);
+			} else {
+				lower.append(c);
+				cases.append(original);
+			}
+			c = read();
+		} while (c != 0 && isWord(c));
+		back = c;
+
+		String aux = lower.toString();
+		String function = Functions.get(aux);
+		if (function != null) {
+			kind = FUNCTION;
+			text = name = function;
+			degrees = !radianes & Trigonometric.contains(aux);
+		} else if (aux.equals("pi")) {
+			kind = NUMBER;
+			value = Math.PI;
+			text = Double.toString(Math.PI);
+		} else if (aux.equals("e")) {
+			kind = NUMBER;
+			value = Math.E;
+			text = "E";
+		} else if (isNumber(aux.charAt(0))) {
+			// Every number start with a number, there is no dot at the
+			// beginning, i.e:0.5
+			for (int i = 0; i < aux.length(); i++)
+				if (!isNumber(aux.charAt(i)) & aux.charAt(i) != CheckString.Dot)
+					throw new SyntaxError(new GramErr((byte) 8, aux), SyntaxError.TOKEN);
+			kind = NUMBER;
+			text = aux;
+			try {
+				value = Double.parseDouble(aux);
+			} catch (NumberFormatException e) {
+				// More than one dot
+				throw new SyntaxError(new GramErr((byte) 8, aux), SyntaxError.TOKEN);
+			}
+		} else {
+			for (int i = 0; i < aux.length(); i++)
+				if (!isNumber(aux.charAt(i)) & !isLetter(aux.charAt(i)))
+					throw new SyntaxError(new GramErr((byte) 10, aux), SyntaxError.TOKEN);
+			kind = VARIABLE;
+			text = name = aux;
+			caseName = cases.toString();
+		}
+	}
+
+	/**
+	 * Reads and checks the next character that is not a space or a tab
+	 *
+	 * @return The character in lower case, 0 at the end of the line
+	 * @throws SyntaxError
+	 *             If the character is not right after the previous one
+	 */
+	private char read() throws SyntaxError {
+		if (back != 0) {
+			char c = back;
+			back = 0;
+			return c;
+		}
+		while (position < line.length()) {
+			original = line.charAt(position++);
+			if (original == CheckString.Espacio | original == CheckString.Tab)
+				continue;
+			char c = Character.toLowerCase(original);
+			check(c);
+			pc = c;
+			empty = false;
+			return c;
+		}
+		return 0;
+	}
+
+	/**
+	 * The checks GramCheck makes with every character, in the same order
+	 *
+	 * @param c
+	 * @throws SyntaxError
+	 */
+	private void check(char c) throws SyntaxError {
+		// Only abcdefghijklmnopqrstuvwxyz1234567890 + - * / , . ^ ( ) [ ] = _
+		// are allowed
+		boolean accepted = isNumber(c) | (c >= 'a' & c <= 'z')
+				| (isOperator(c) & c != CheckString.Exclamacion)
+				| c == CheckString.OpenP | c == CheckString.CloseP
+				| c == CheckString.OpenC | c == CheckString.CloseC
+				| c == CheckString.Barra;
+		if (!accepted)
+			throw new SyntaxError(new GramErr((byte) 1, c), SyntaxError.CHARACTER);
+
+		if (c == CheckString.Igual) {
+			if (equal)
+				throw new SyntaxError(new GramErr((byte) 2, c), SyntaxError.CHARACTER);
+			equal = true;
+		}
+
+		boolean close = c == CheckString.CloseP | c == CheckString.CloseC;
+		boolean dot = c == CheckString.Comma | c == CheckString.Dot;
+		// Empty parenthesis
+		if (close & (pc == CheckString.OpenP | pc == CheckString.OpenC))
+			throw new SyntaxError(new GramErr((byte) 7, c), SyntaxError.CHARACTER);
+
+		// Comma and dots can only be behind a number
+		if (dot & !isNumber(pc))
+			throw new SyntaxError(new GramErr((byte) 2, c), SyntaxError.CHARACTER);
+
+		// Two operators followed (except +,-)
+		if (isOperator(c) & isOperator(pc) & c != CheckString.Plus
+				& c != CheckString.Menos)
+			throw new SyntaxError(new GramErr((byte) 3, c), SyntaxError.CHARACTER);
+
+		// Behind an operator there isn't a ) or a ]
+		if (isOperator(pc) & close)
+			throw new SyntaxError(new GramErr((byte) 9, pc), SyntaxError.CHARACTER);
+
+		// A dot or comma after a letter
+		if (isLetter(pc) & dot)
+			throw new SyntaxError(new GramErr((byte) 4, c), SyntaxError.CHARACTER);
+	}
+
+	/**
+	 * Reads the rest of the line after an error
+	 *
+	 * @param tokens
+	 *            true to find the errors of the tokens, if false only the
+	 *            errors of the characters are found
+	 * @throws SyntaxError
+	 */
+	void drain(boolean tokens) throws SyntaxError {
+		if (tokens)
+			while (kind != END)
+				next();
+		while (read() != 0)
+			;
+	}
+
+	/**
+	 *
+	 * @return true if there are parenthesis that have not been closed
+	 */
+	boolean isOpen() {
+		return depth > 0;
+	}
+
+	/**
+	 *
+	 * @return true if there is an equal sign in what has been read
+	 */
+	boolean hasEqual() {
+		return equal;
+	}
+
+	/**
+	 *
+	 * @return true if the line has only spaces
+	 */
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 *
+	 * @return The last character read, a space if none
+	 */
+	char getLast() {
+		return pc;
+	}
+
+	static boolean isOperator(char c) {
+		switch (c) {
+		case CheckString.Por:
+		case CheckString.Slash:
+		case CheckString.Igual:
+		case CheckString.Plus:
+		case CheckString.Menos:
+		case CheckString.Exclamacion:
+		case CheckString.Dot:
+		case CheckString.Comma:
+		case CheckString.Elevado:
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean isWord(char c) {
+		return isNumber(c) | isLetter(c) | c == CheckString.Dot
+				| c == CheckString.Comma | c == CheckString.Barra;
+	}
+
+	private static boolean isNumber(char c) {
+		return c >= '0' & c <= '9';
+	}
+
+	/**
+	 * It won't have in consideration letters like ñ or ç
+	 */
+	private static boolean isLetter(char c) {
+		return (c >= 'a' & c <= 'z') | (c >= 'A' & c <= 'Z');
+	}
+
+}
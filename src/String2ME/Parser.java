@@ -0,0 +1,258 @@
+package String2ME;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Recursive descent parser of an equation. It reads the equation once with
+ * the Lexer and makes at the same time the tree of the residual of the
+ * equation and its translation to the matheclipse syntaxes, so matheclipse is
+ * not needed to know the variables.
+ *
+ * The grammar is:
+ *
+ * <pre>
+ * equation := [sum] '=' sum
+ * sum      := product (('+' | '-') product)*
+ * product  := unary (('*' | '/') unary | power)*
+ * unary    := ('+' | '-') unary | power
+ * power    := primary ['^' unary]
+ * primary  := number | variable | function '(' sum ')' | '(' sum ')'
+ * </pre>
+ *
+ * Two factors together are multiplied, like matheclipse does, i.e: 2(x+1).
+ * The clasps are the same as the parenthesis.
+ *
+ * The errors are the ones of GramCheck, and they are found in the same order:
+ * first the errors of the characters of the whole line, then if there is an
+ * operator at the end or there is not an equal sign, and then the errors of
+ * the tokens.
+ */
+public final class Parser {
+
+	private final Lexer lexer;
+	/**
+	 * Translation to the matheclipse syntaxes
+	 */
+	private final StringBuilder equation = new StringBuilder();
+	/**
+	 * The variables in the order they appear
+	 */
+	private final List<Expr.Variable> variables = new ArrayList<Expr.Variable>();
+	/**
+	 * The variables with the case information, in the order matheclipse gives
+	 * them
+	 */
+	private final TreeSet<String> cases = new TreeSet<String>();
+	private Expr tree;
+
+	/**
+	 *
+	 * @param cadena
+	 *            The equation, it can't contain comments
+	 */
+	public Parser(String cadena) {
+		lexer = new Lexer(cadena, CheckString.Radianes);
+	}
+
+	/**
+	 * Reads the equation
+	 *
+	 * @return The error, 0 if there are no errors. See GramErr
+	 */
+	public GramErr parse() {
+		SyntaxError error = null;
+		try {
+			lexer.next();
+			equation();
+		} catch (SyntaxError e) {
+			error = e;
+		}
+		// The rest of the line must be checked, the errors of the characters
+		// are found first, then the errors of the tokens
+		while (error != null) {
+			if (error.level == SyntaxError.CHARACTER)
+				return error.error;
+			try {
+				lexer.drain(error.level == SyntaxError.GRAMMAR);
+				break;
+			} catch (SyntaxError e) {
+				error = e;
+			}
+		}
+		// i.e: x = 2 / or x = 2 +
+		if (Lexer.isOperator(lexer.getLast()))
+			return new GramErr((byte) 9, lexer.getLast());
+		if (!lexer.hasEqual())
+			return new GramErr(lexer.isEmpty() ? (byte) 0 : (byte) 5);
+		if (error != null) {
+			// More open parenthesis than close parenthesis
+			if (error.level == SyntaxError.GRAMMAR & lexer.isOpen())
+				return new GramErr((byte) 6);
+			return error.error;
+		}
+		equation.append(CheckString.CloseP);
+		return new GramErr((byte) 0);
+	}
+
+	private void equation() throws SyntaxError {
+		if (lexer.kind == Lexer.END)
+			return;
+		Expr left = null;
+		if (lexer.kind != Lexer.EQUAL)
+			left = sum();
+		if (lexer.kind != Lexer.EQUAL)
+			throw general();
+		consume();
+		Expr right = sum();
+		if (lexer.kind != Lexer.END)
+			throw general();
+		tree = left == null ? new Expr.Negate(right) : new Expr.Binary(
+				CheckString.Menos, left, right);
+	}
+
+	private Expr sum() throws SyntaxError {
+		Expr aux = product();
+		while (lexer.kind == Lexer.PLUS | lexer.kind == Lexer.MINUS) {
+			char operator = lexer.kind == Lexer.PLUS ? CheckString.Plus
+					: CheckString.Menos;
+			consume();
+			aux = new Expr.Binary(operator, aux, product());
+		}
+		return aux;
+	}
+
+	private Expr product() throws SyntaxError {
+		Expr aux = unary();
+		while (true) {
+			if (lexer.kind == Lexer.TIMES | lexer.kind == Lexer.DIVIDE) {
+				char operator = lexer.kind == Lexer.TIMES ? CheckString.Por
+						: CheckString.Slash;
+				consume();
+				aux = new Expr.Binary(operator, aux, unary());
+			} else if (lexer.kind == Lexer.NUMBER
+					| lexer.kind == Lexer.VARIABLE
+					| lexer.kind == Lexer.FUNCTION | lexer.kind == Lexer.OPEN)
+				aux = new Expr.Binary(CheckString.Por, aux, power());
+			else
+				return aux;
+		}
+	}
+
+	private Expr unary() throws SyntaxError {
+		if (lexer.kind == Lexer.PLUS) {
+			consume();
+			return unary();
+		}
+		if (lexer.kind == Lexer.MINUS) {
+			consume();
+			return new Expr.Negate(unary());
+		}
+		return power();
+	}
+
+	private Expr power() throws SyntaxError {
+		Expr base = primary();
+		if (lexer.kind != Lexer.POWER)
+			return base;
+		consume();
+		return new Expr.Binary(CheckString.Elevado, base, unary());
+	}
+
+	private Expr primary() throws SyntaxError {
+		Expr aux;
+		switch (lexer.kind) {
+		case Lexer.NUMBER:
+			aux = new Expr.Number(lexer.value);
+			consume();
+			return aux;
+		case Lexer.VARIABLE:
+			Expr.Variable var = new Expr.Variable(lexer.name);
+			variables.add(var);
+			cases.add(lexer.caseName);
+			consume();
+			return var;
+		case Lexer.FUNCTION:
+			String name = lexer.name;
+			boolean degrees = lexer.degrees;
+			consume();
+			// A function must be followed by a parenthesis
+			if (lexer.kind != Lexer.OPEN)
+				throw general();
+			consume();
+			aux = new Expr.Function(name, sum(), degrees);
+			close();
+			return aux;
+		case Lexer.OPEN:
+			consume();
+			aux = sum();
+			close();
+			return aux;
+		default:
+			throw general();
+		}
+	}
+
+	private void close() throws SyntaxError {
+		if (lexer.kind != Lexer.CLOSE)
+			throw general();
+		consume();
+	}
+
+	/**
+	 * Writes the translation of the token and reads the next one
+	 *
+	 * @throws SyntaxError
+	 */
+	private void consume() throws SyntaxError {
+		equation.append(lexer.text);
+		lexer.next();
+	}
+
+	private SyntaxError general() {
+		return new SyntaxError(new GramErr((byte) 2), SyntaxError.GRAMMAR);
+	}
+
+	/**
+	 *
+	 * @return true if the equation has an equal sign
+	 */
+	public boolean hasEqual() {
+		return lexer.hasEqual();
+	}
+
+	/**
+	 *
+	 * @return The equation in the matheclipse syntaxes, like 0=something
+	 */
+	public String getEquation() {
+		return equation.toString();
+	}
+
+	/**
+	 *
+	 * @return The residual of the equation, null if the line is empty or
+	 *         there was an error
+	 */
+	public Expr getTree() {
+		return tree;
+	}
+
+	/**
+	 *
+	 * @return The variables in the order they appear, they can be repeated
+	 */
+	public List<Expr.Variable> getVariables() {
+		return variables;
+	}
+
+	/**
+	 *
+	 * @return The variables with the case the user wrote them, sorted
+	 */
+	public TreeSet<String> getCases() {
+		return cases;
+	}
+
+}
@@ -0,0 +1,159 @@
+package String2ME;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The symbols of the model. Every variable is stored once and gets a number,
+ * its id, so the parser, Tarjan and the solvers can find it with an array
+ * index instead of comparing strings. The ids are consecutive from 0 until
+ * the table is cleared with CheckString.PurgeAll.
+ *
+ * The variables are the same whatever their case. The table keeps the name
+ * as matheclipse uses it, with "_" translated to Gg, and the case the user
+ * wrote it with, to show it in the results.
+ */
+public final class SymbolTable {
+
+	private static final HashMap<String, Integer> Ids = new HashMap<String, Integer>();
+	private static final ArrayList<String> Names = new ArrayList<String>();
+	/**
+	 * Name with the case information, null if it is not known
+	 */
+	private static final ArrayList<String> Cases = new ArrayList<String>();
+
+	private SymbolTable() {
+	}
+
+	/**
+	 * Adds the variable if it is not in the table
+	 *
+	 * @param name
+	 * @return The id of the variable
+	 */
+	public static synchronized int intern(String name) {
+		String key = name.toLowerCase();
+		Integer id = Ids.get(key);
+		if (id == null) {
+			id = Names.size();
+			Ids.put(key, id);
+			Names.add(name);
+			Cases.add(null);
+		}
+		return id;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return The id of the variable, -1 if it is not in the table
+	 */
+	public static synchronized int getId(String name) {
+		Integer id = Ids.get(name.toLowerCase());
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return The name of the variable as it was added
+	 */
+	public static synchronized String getName(int id) {
+		return Names.get(id);
+	}
+
+	/**
+	 * Stores the case information of a variable, only the first time
+	 *
+	 * @param name
+	 *            The variable as the user wrote it
+	 * @return true if the case of the variable was not known
+	 */
+	public static synchronized boolean addCase(String name) {
+		int id = intern(name);
+		if (Cases.get(id) != null)
+			return false;
+		Cases.set(id, name);
+		return true;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return The variable as the user wrote it, or the name if the case is
+	 *         not known
+	 */
+	public static synchronized String getCase(String name) {
+		Integer id = Ids.get(name.toLowerCase());
+		if (id == null || Cases.get(id) == null)
+			return name;
+		return Cases.get(id);
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return The variable as the user wrote it, or as it was added if the
+	 *         case is not known
+	 */
+	public static synchronized String getCase(int id) {
+		String aux = Cases.get(id);
+		return aux == null ? Names.get(id) : aux;
+	}
+
+	/**
+	 * Writes every word of a text that is a variable with its case, in one
+	 * pass. A word is a sequence of letters, numbers and _
+	 *
+	 * @param text
+	 * @return The text with the case of the variables
+	 */
+	public static synchronized String replaceCase(String text) {
+		StringBuilder result = null;
+		int i = 0, n = text.length();
+		while (i < n) {
+			if (!isWord(text.charAt(i))) {
+				if (result != null)
+					result.append(text.charAt(i));
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < n && isWord(text.charAt(i)))
+				i++;
+			String word = text.substring(start, i);
+			Integer id = Ids.get(word.toLowerCase());
+			String aux = id == null ? null : Cases.get(id);
+			if (aux != null && !aux.equals(word)) {
+				if (result == null)
+					result = new StringBuilder(text.substring(0, start));
+				result.append(aux);
+			} else if (result != null)
+				result.append(word);
+		}
+		return result == null ? text : result.toString();
+	}
+
+	private static boolean isWord(char c) {
+		return (c >= 'a' & c <= 'z') | (c >= 'A' & c <= 'Z')
+				| (c >= '0' & c <= '9') | c == '_';
+	}
+
+	/**
+	 *
+	 * @return The number of variables
+	 */
+	public static synchronized int size() {
+		return Names.size();
+	}
+
+	/**
+	 * Erases all the variables, the ids start again from 0
+	 */
+	public static synchronized void clear() {
+		Ids.clear();
+		Names.clear();
+		Cases.clear();
+	}
+
+}
@@ -0,0 +1,32 @@
+package String2ME;
+
+/**
+ * Error found by the Lexer or the Parser, with the GramErr that is returned
+ */
+class SyntaxError extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * An error of a character, they are found before the errors of the tokens
+	 * and are reported even if a token error was found before
+	 */
+	static final int CHARACTER = 0;
+	/**
+	 * An error of a token, i.e: a number followed by letters
+	 */
+	static final int TOKEN = 1;
+	/**
+	 * The tokens are right but not its order, i.e: a function without
+	 * parenthesis. This is reported only if there are no other errors
+	 */
+	static final int GRAMMAR = 2;
+
+	final GramErr error;
+	final int level;
+
+	SyntaxError(GramErr error, int level) {
+		this.error = error;
+		this.level = level;
+	}
+
+}
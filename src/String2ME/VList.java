@@ -1,6 +1,7 @@
 package String2ME;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
@@ -13,6 +14,37 @@ import java.util.List;
 public class VList {
 
 	public List<VString> Variables = new ArrayList<VString>();
+	/**
+	 * Position of every variable in Variables. Variables can be changed from
+	 * outside, so a position is checked before using it and the index is
+	 * made again if it is not right
+	 */
+	private HashMap<String, Integer> index = new HashMap<String, Integer>();
+
+	/**
+	 * 
+	 * @param cadena
+	 * @return The position of the variable in the list, -1 if it is not
+	 */
+	private int find(String cadena) {
+		Integer pos = index.get(cadena);
+		if (pos != null && pos < Variables.size()
+				&& Variables.get(pos).getVar().equals(cadena))
+			return pos;
+		if (pos == null && index.size() == Variables.size())
+			return -1;
+		// The list was changed, make the index again
+		index.clear();
+		for (int i = Variables.size() - 1; i >= 0; i--)
+			index.put(Variables.get(i).getVar(), i);
+		pos = index.get(cadena);
+		return pos == null ? -1 : pos;
+	}
+
+	private void add(VString aux) {
+		index.put(aux.getVar(), Variables.size());
+		Variables.add(aux);
+	}
 
 	/**
 	 * At first we check if the variable is already in the List if is in the
@@ -21,21 +53,11 @@ public class VList {
 	 * @param cadena
 	 */
 	public void AddVar(String cadena) {
-		boolean IsInIt = false;
-		Iterator<VString> it = Variables.listIterator();
-		VString aux;
-		// We search for it
-		while ((it.hasNext()) & (!IsInIt)) {
-			aux = it.next();
-			if (aux.getVar().equals(cadena)) {
-				IsInIt = true;
-				aux.CountUp();
-			}
-		}
-		if (!IsInIt) {
-			aux = new VString(cadena);
-			Variables.add(aux);
-		}
+		int pos = find(cadena);
+		if (pos != -1)
+			Variables.get(pos).CountUp();
+		else
+			add(new VString(cadena));
 	}
 
 	/**
@@ -46,22 +68,14 @@ public class VList {
 	 * @return boolean. If the variable is not in the List then returns false
 	 */
 	public boolean Erase(String cadena) {
-		boolean IsInIt = false;
-		Iterator<VString> it = Variables.listIterator();
-		VString aux;
-		// We search for it
-		while ((it.hasNext()) & (!IsInIt)) {
-			aux = it.next(); // Maybe NullPointerException Error
-			if (aux.getVar().equals(cadena)) {
-				IsInIt = true;
-				aux.CountDown();
-				if (aux.getCount() == 0) {
-					it.remove();
-				}
-			}
-		}
-
-		return IsInIt;
+		int pos = find(cadena);
+		if (pos == -1)
+			return false;
+		VString aux = Variables.get(pos);
+		aux.CountDown();
+		if (aux.getCount() == 0)
+			Variables.remove(pos);
+		return true;
 	}
 
 	/**
@@ -90,18 +104,8 @@ public class VList {
 	 * @return the times that that variable appears
 	 */
 	public int getCount(String cadena) {
-		boolean IsInIt = false;
-		Iterator<VString> it = Variables.listIterator();
-		VString aux;
-		while ((it.hasNext()) & (!IsInIt)) {
-			aux = it.next();
-			if (aux.getVar().equals(cadena)) {
-				IsInIt = true;
-				return aux.getCount();
-			}
-		}
-
-		return -1;
+		int pos = find(cadena);
+		return pos == -1 ? -1 : Variables.get(pos).getCount();
 
 	}
 
@@ -114,20 +118,12 @@ public class VList {
 	}
 
 	public void addCountVar(String cadena, int counts) {
-		boolean IsInIt = false;
-		Iterator<VString> it = Variables.listIterator();
-		VString aux;
-		// We search for it
-		while ((it.hasNext()) & (!IsInIt)) {
-			aux = it.next();
-			if (aux.getVar().equals(cadena)) {
-				IsInIt = true;
-				aux.addCount(counts);
-			}
-		}
-		if (!IsInIt) {
-			aux = new VString(cadena);
-			Variables.add(aux);
+		int pos = find(cadena);
+		if (pos != -1)
+			Variables.get(pos).addCount(counts);
+		else {
+			VString aux = new VString(cadena);
+			add(aux);
 			aux.addCount(counts - 1);
 		}
 	}
@@ -15,10 +15,15 @@ public class VString implements Comparable<VString> {
 	 * The count appearance
 	 */
 	private int _n;
+	/**
+	 * The id of the variable in the SymbolTable
+	 */
+	private final int _id;
 
 	public VString(String in) {
 		_cadena = in;
 		_n = 1;
+		_id = SymbolTable.intern(in);
 	}
 
 	/**
@@ -55,6 +60,14 @@ public class VString implements Comparable<VString> {
 		return _cadena;
 	}
 
+	/**
+	 * 
+	 * @return The id of the variable in the SymbolTable
+	 */
+	public int getId() {
+		return _id;
+	}
+
 	/*
 	 * public int compareTo(VString aux) { return this._n - aux.getCount(); }
 	 */
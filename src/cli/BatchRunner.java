@@ -0,0 +1,271 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves many models in one run of the command line, for the --batch option. The models are
+ * solved by a pool of workers, each one takes the next model when it ends the last one.
+ *
+ * The solver keeps the model in static fields (CheckString, SymbolTable, the values of
+ * matheclipse...), so every worker loads the classes of the application and of its libraries with
+ * a class loader of its own: the workers do not share anything, and every worker initializes the
+ * solver once and solves its models one after another with CommandLineRunner.runJob, that purges
+ * the last model before the next one.
+ *
+ * The results of every model are written in the output directory, in a file named with its
+ * position in the batch and its name, with its statistics as JSON. summary.tsv has the status and
+ * the exit code of every model, and the messages of the solvers go to solver.log.
+ */
+public class BatchRunner {
+
+  private final List<String> inputs;
+  private final int workers;
+  private final File output;
+
+  // The models, and what was done with them
+  private List<File> files;
+  private String[] status;
+  private long[] nanos;
+
+  /**
+   * @param inputs Directories, .ris files or files with a list of models, one per line
+   * @param workers Models solved at the same time, 0 or less for one per processor
+   * @param output The directory of the results
+   */
+  public BatchRunner(List<String> inputs, int workers, File output) {
+    this.inputs = inputs;
+    this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    this.output = output;
+  }
+
+  /**
+   * @return The exit code: 0 if every model was solved, even with high residuals, or 1
+   */
+  public int run() {
+    final PrintStream console = System.out;
+    files = collect();
+    if (files == null) {
+      return 1;
+    }
+    if (files.isEmpty()) {
+      System.err.println("ERROR: No .ris files found.");
+      return 1;
+    }
+    if (!output.isDirectory() && !output.mkdirs()) {
+      System.err.println("ERROR: Cannot create the output directory " + output);
+      return 1;
+    }
+    final URL[] classpath;
+    try {
+      classpath = classpath();
+    } catch (MalformedURLException e) {
+      System.err.println("ERROR: Bad class path: " + e.getMessage());
+      return 1;
+    }
+
+    int n = files.size();
+    int threads = Math.min(workers, n);
+    status = new String[n];
+    nanos = new long[n];
+    console.println("Solving " + n + " models with " + threads
+        + (threads == 1 ? " worker" : " workers") + ", results in " + output);
+
+    PrintStream log;
+    try {
+      log = new PrintStream(new FileOutputStream(new File(output, "solver.log")), true, "UTF-8");
+    } catch (IOException e) {
+      System.err.println("ERROR: Cannot write in " + output + ": " + e.getMessage());
+      return 1;
+    }
+    PrintStream out = System.out;
+    PrintStream err = System.err;
+    System.setOut(log);
+    System.setErr(log);
+    long start = System.nanoTime();
+    try {
+      final AtomicInteger next = new AtomicInteger();
+      final AtomicInteger done = new AtomicInteger();
+      Thread[] pool = new Thread[threads];
+      for (int w = 0; w < threads; w++) {
+        pool[w] = new Thread("Batch-" + (w + 1)) {
+          @Override
+          public void run() {
+            work(classpath, next, done, console);
+          }
+        };
+        pool[w].start();
+      }
+      for (Thread t : pool) {
+        while (true) {
+          try {
+            t.join();
+            break;
+          } catch (InterruptedException e) {
+            // The workers always end, their models have a time limit
+          }
+        }
+      }
+    } finally {
+      System.setOut(out);
+      System.setErr(err);
+      log.close();
+    }
+
+    int failed = 0;
+    for (String s : status) {
+      if (exitCode(s) != 0) {
+        failed++;
+      }
+    }
+    boolean written = writeSummary();
+    console.println(String.format(Locale.US, "%d models solved in %.1f s, %d failed, see %s",
+        n, (System.nanoTime() - start) / 1e9, failed, new File(output, "summary.tsv")));
+    return failed == 0 && written ? 0 : 1;
+  }
+
+  // One worker: its own copy of the solver, and the models not taken yet
+  private void work(URL[] classpath, AtomicInteger next, AtomicInteger done, PrintStream console) {
+    URLClassLoader loader = new URLClassLoader(classpath,
+        ClassLoader.getSystemClassLoader().getParent());
+    // The libraries that load classes by name (log4j) find the ones of the worker, and so do the
+    // threads that the solver makes
+    Thread.currentThread().setContextClassLoader(loader);
+    Method runJob = null;
+    try {
+      runJob = loader.loadClass(CommandLineRunner.class.getName()).getMethod("runJob",
+          String.class, String.class, String.class);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    int i;
+    while ((i = next.getAndIncrement()) < files.size()) {
+      String name = name(i);
+      long start = System.nanoTime();
+      String result = "crashed";
+      if (runJob != null) {
+        try {
+          result = (String) runJob.invoke(null, files.get(i).getPath(),
+              new File(output, name + ".txt").getPath(),
+              new File(output, name + ".json").getPath());
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+      nanos[i] = System.nanoTime() - start;
+      status[i] = result;
+      synchronized (console) {
+        console.println(String.format(Locale.US, "[%d/%d] %-14s %8.2f s  %s",
+            done.incrementAndGet(), files.size(), result, nanos[i] / 1e9, files.get(i)));
+      }
+    }
+    try {
+      loader.close();
+    } catch (IOException e) {
+    }
+  }
+
+  /**
+   * @return The models of the inputs, in their order and the ones of a directory sorted by name,
+   *         or null if some input does not exist
+   */
+  private List<File> collect() {
+    List<File> list = new ArrayList<>();
+    for (String input : inputs) {
+      File f = new File(input);
+      if (f.isDirectory()) {
+        addDirectory(f, list);
+      } else if (f.isFile() && input.toLowerCase(Locale.ROOT).endsWith(".ris")) {
+        list.add(f);
+      } else if (f.isFile()) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(f))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+              list.add(new File(line));
+            }
+          }
+        } catch (IOException e) {
+          System.err.println("ERROR: Cannot read the list " + input + ": " + e.getMessage());
+          return null;
+        }
+      } else {
+        System.err.println("ERROR: Input not found: " + input);
+        return null;
+      }
+    }
+    return list;
+  }
+
+  private static void addDirectory(File directory, List<File> list) {
+    File[] children = directory.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (File f : children) {
+      if (f.isDirectory()) {
+        addDirectory(f, list);
+      } else if (f.getName().toLowerCase(Locale.ROOT).endsWith(".ris")) {
+        list.add(f);
+      }
+    }
+  }
+
+  /**
+   * @return The class path of this JVM, the wildcards of the command line are already expanded
+   */
+  private static URL[] classpath() throws MalformedURLException {
+    String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+    URL[] urls = new URL[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      urls[i] = new File(paths[i]).toURI().toURL();
+    }
+    return urls;
+  }
+
+  // The name of the files of a model, unique even for models with the same name
+  private String name(int i) {
+    String name = files.get(i).getName();
+    int dot = name.lastIndexOf('.');
+    if (dot > 0) {
+      name = name.substring(0, dot);
+    }
+    return String.format("%04d_%s", i + 1, name);
+  }
+
+  private static int exitCode(String status) {
+    return "ok".equals(status) || "residuals_high".equals(status) ? 0 : 1;
+  }
+
+  private boolean writeSummary() {
+    File summary = new File(output, "summary.tsv");
+    try (PrintWriter w = new PrintWriter(summary, "UTF-8")) {
+      w.println("file\texit_code\tstatus\tseconds\tresults");
+      for (int i = 0; i < files.size(); i++) {
+        w.println(files.get(i).getPath() + "\t" + exitCode(status[i]) + "\t" + status[i] + "\t"
+            + String.format(Locale.US, "%.3f", nanos[i] / 1e9) + "\t" + name(i) + ".txt");
+      }
+      return true;
+    } catch (IOException e) {
+      System.err.println("ERROR: Cannot write " + summary + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+}
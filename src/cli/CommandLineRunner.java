@@ -1,13 +1,16 @@
 package cli;
 
 import evaluation.DiffAndEvaluator;
+import evaluation.Statistics;
 import gui.Config;
 import gui.SolverGUI; // To access PopUpError/Warning replacements
 import gui.SaveLoad;
 import gui.MaterialMethods; // Needed for parsing
+import solver.Sweep;
 import tarjan.PrepareMatrix;
 import String2ME.CheckString;
 import String2ME.EqStorer;
+import String2ME.SymbolTable;
 import String2ME.VString;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -15,77 +18,172 @@ import java.util.Iterator;
 import java.util.Collections; // Import missing Collections class
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 public class CommandLineRunner {
 
   // Flag to indicate if any error occurred during the process
   private static boolean executionError = false;
+  // The file of --stats, null if the statistics are not written
+  private static String statsFile = null;
+  private static long initializeNanos = 0;
+  private static long startNanos = 0;
+  // Where the messages of a model are written, a file of its own in batch mode
+  private static PrintStream out = System.out;
+  private static PrintStream err = System.err;
+  private static boolean initialized = false;
+  // The property database, loaded by the first model
+  private static MaterialMethods materialMethods = null;
+  // The status of the last model: ok, residuals_high or error
+  private static String status = "error";
 
   public static void main(String[] args) {
     System.out.println("Engineering Suite CLI Mode");
     System.out.println("==========================");
 
-    if (args.length != 1) {
+    String risFilePath = null;
+    boolean batch = false;
+    int workers = 0;
+    String outputDir = "batch";
+    List<String> inputs = new ArrayList<>();
+    List<String> sweeps = new ArrayList<>();
+    String tableFile = null;
+    boolean usage = false;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--stats") && i + 1 < args.length) {
+        statsFile = args[++i];
+      } else if (args[i].equals("--batch")) {
+        batch = true;
+      } else if (args[i].equals("--workers") && i + 1 < args.length) {
+        try {
+          workers = Integer.parseInt(args[++i]);
+        } catch (NumberFormatException e) {
+          usage = true;
+        }
+      } else if (args[i].equals("--output") && i + 1 < args.length) {
+        outputDir = args[++i];
+      } else if (args[i].equals("--sweep") && i + 1 < args.length) {
+        sweeps.add(args[++i]);
+      } else if (args[i].equals("--table") && i + 1 < args.length) {
+        tableFile = args[++i];
+      } else if (args[i].startsWith("--")) {
+        usage = true;
+      } else {
+        inputs.add(args[i]);
+      }
+    }
+    if (!batch && inputs.size() == 1 && !usage) {
+      risFilePath = inputs.get(0);
+    } else if (!batch || inputs.isEmpty() || usage || statsFile != null) {
+      usage = true;
+    }
+    // A sweep is of one model, and it has no statistics
+    if (usage || !sweeps.isEmpty() && (batch || statsFile != null)
+        || sweeps.isEmpty() && tableFile != null) {
       printUsage();
       System.exit(1);
     }
 
-    String risFilePath = args[0];
+    if (batch) {
+      System.exit(new BatchRunner(inputs, workers, new File(outputDir)).run());
+    }
+
     File risFile = new File(risFilePath);
     if (!risFile.exists() || !risFile.isFile()) {
       System.err.println("ERROR: Input file not found or is not a valid file: " + risFilePath);
       System.exit(1);
     }
+    if (!initialize()) {
+      System.exit(1);
+    }
+    if (!sweeps.isEmpty()) {
+      System.exit(sweep(risFilePath, sweeps, tableFile));
+    }
+    System.exit(solve(risFilePath));
 
-    // --- Initialization ---
+  } // End main
+
+  /**
+   * Solves one model in a batch, with the solver initialized the first time. Every worker of
+   * BatchRunner has its own copy of this class and of the solver, loaded by a class loader of its
+   * own, so the static state of the models solved at the same time is not shared.
+   *
+   * @param risFilePath The model
+   * @param outputPath Where the messages and the results are written
+   * @param statsPath Where the statistics are written, null for none
+   * @return The status of the model: ok, residuals_high or error
+   */
+  public static String runJob(String risFilePath, String outputPath, String statsPath) {
+    status = "error";
+    try (PrintStream job = new PrintStream(new FileOutputStream(outputPath), true, "UTF-8")) {
+      out = job;
+      err = job;
+      statsFile = statsPath;
+      if (initialize()) {
+        solve(risFilePath);
+      }
+    } catch (Exception e) {
+      err.println("ERROR: " + e);
+      e.printStackTrace(err);
+      status = "error";
+    } finally {
+      out = System.out;
+      err = System.err;
+    }
+    return status;
+  }
+
+  // Loads the configuration, only once. The symbolic engine, the translations and the property
+  // database are loaded the first time a model needs them
+  private static boolean initialize() {
+    if (initialized) {
+      return true;
+    }
+    long initializeStart = System.nanoTime();
     try {
-      System.out.println("Initializing...");
+      out.println("Initializing...");
       Config.getAbsolutePath(); // Ensure path is set if needed (Linux)
       Config config = new Config();
       config.ReadConfig(); // Load solver settings
       Config.makeEpsilon();
-      DiffAndEvaluator.PrepareME(); // Initialize symbolic engine
-      System.out.println("Using Language: " + Config.Language); // Use loaded language if needed
-                                                                // later
-      new gui.Translation(); // Load translations (might not be strictly needed for pure console
-                             // output)
-
+      out.println("Using Language: " + Config.Language); // Use loaded language if needed
+                                                         // later
     } catch (Exception e) {
-      System.err.println("ERROR during initialization: " + e.getMessage());
-      e.printStackTrace(System.err);
-      System.exit(1);
+      err.println("ERROR during initialization: " + e.getMessage());
+      e.printStackTrace(err);
+      return false;
     }
+    initializeNanos = System.nanoTime() - initializeStart;
+    initialized = true;
+    return true;
+  }
+
+  // Solves one model and prints its results, the state of the last one is purged first
+  // Returns the exit code: 0 if it was solved, even with high residuals, or 1
+  private static int solve(String risFilePath) {
+    executionError = false;
+    status = "error";
+    Statistics.clear();
 
     // --- Load .ris File ---
-    System.out.println("Loading file: " + risFilePath);
+    out.println("Loading file: " + risFilePath);
     // We need the raw text content for parsing
     String fileContent = loadRisFileContent(risFilePath);
     if (fileContent == null) {
-      System.exit(1); // Error message printed in loadRisFileContent
+      return 1; // Error message printed in loadRisFileContent
     }
-    // Also load initial values using SaveLoad (modified for console errors)
-    SaveLoad loader = new SaveLoad();
-    if (!loader.loadInitialValuesFromRis(risFilePath)) {
-      System.err.println("Warning: Could not properly load initial values section.");
-      // Continue anyway, solver might use defaults
-    }
-
-    // --- Parse Equations ---
-    System.out.println("Parsing equations...");
-    CheckString.PurgeAll(); // Ensure clean state
-    MaterialMethods materialMethods = new MaterialMethods(); // Needed for parsing
-    CheckString checkStringInstance = new CheckString();
-    String equationsText = extractEquationsText(fileContent);
-    String cleanedEquations = cleanComments(equationsText);
-
-    if (!parseEquations(cleanedEquations, materialMethods, checkStringInstance)) {
-      System.err.println("ERROR: Halting due to parsing errors.");
-      System.exit(1);
+    if (!parse(risFilePath, fileContent)) {
+      writeStats(risFilePath, "error", CheckString.Functions.size(), CheckString.Var.getSize());
+      return 1;
     }
-    System.out.println("Parsing complete.");
 
     // --- Pre-Check (Informational) ---
     int equationCount = CheckString.Functions.size();
@@ -93,24 +191,24 @@ public class CommandLineRunner {
     int solvedOneVarCount = CheckString.OneEquationVar.size();
     int totalVarCount = initialVarCount + solvedOneVarCount;
 
-    System.out.println("--- Solver Pre-Check ---");
-    System.out.println("Equations found: " + equationCount);
-    System.out.println("Initial unique variables found: " + initialVarCount);
-    System.out.println("Variables solved individually: " + solvedOneVarCount);
-    System.out.println("Total unique symbols treated as variables by parser: " + totalVarCount);
-    System.out.print("Parser variable list: [ ");
+    out.println("--- Solver Pre-Check ---");
+    out.println("Equations found: " + equationCount);
+    out.println("Initial unique variables found: " + initialVarCount);
+    out.println("Variables solved individually: " + solvedOneVarCount);
+    out.println("Total unique symbols treated as variables by parser: " + totalVarCount);
+    out.print("Parser variable list: [ ");
     for (String2ME.VString v : CheckString.Var.Variables) {
-      System.out.print(v.getVar() + " ");
+      out.print(v.getVar() + " ");
     }
-    System.out.println("]");
+    out.println("]");
 
     if (equationCount != totalVarCount) {
-      System.out.println(
+      out.println(
           "WARNING: Equation count differs from initial variable symbol count. Proceeding anyway.");
     }
 
     // --- Solve ---
-    System.out.println("Starting solver process...");
+    out.println("Starting solver process...");
     try {
       // Reset global error flags before solving
       Config.ErrorFound = false;
@@ -125,55 +223,171 @@ public class CommandLineRunner {
         PrepareMatrix DF = new PrepareMatrix();
         DF.PreNewton(); // Solves remaining coupled systems
       } else {
-        System.out.println("No coupled systems remaining after pre-solving.");
+        out.println("No coupled systems remaining after pre-solving.");
       }
-      System.out.println("Solver process finished.");
+      DiffAndEvaluator.SaveDerivatives();
+      out.println("Solver process finished.");
+      out.println("Derivative cache: " + DiffAndEvaluator.Derivatives.getHits()
+          + " hits, " + DiffAndEvaluator.Derivatives.getMisses() + " misses");
 
       // Check for errors flagged during solving
       if (Config.ErrorFound) {
-        System.err.println(
+        err.println(
             "ERROR: Solver indicated an error occurred during evaluation (check logs/previous messages).");
         executionError = true;
       }
       if (DiffAndEvaluator.TimeLimitExceeded) {
-        System.err.println("ERROR: Solver time limit exceeded.");
+        err.println("ERROR: Solver time limit exceeded.");
         executionError = true;
       }
 
     } catch (Exception e) {
-      System.err.println("\nERROR during solving process:");
-      e.printStackTrace(System.err);
+      err.println("\nERROR during solving process:");
+      e.printStackTrace(err);
       executionError = true;
     }
 
     // --- Output Results ---
-    System.out.println("\n--- Results ---");
+    out.println("\n--- Results ---");
     printResultsToConsole();
 
     // --- Output Residuals (Optional) ---
-    System.out.println("\n--- Residuals ---");
+    out.println("\n--- Residuals ---");
     printResidualsToConsole(); // Needs implementation similar to GUI
 
+    // --- Statistics (Optional) ---
+    status = executionError ? "error" : SolverGUI.ResidualsHigh ? "residuals_high" : "ok";
+    writeStats(risFilePath, status, equationCount, totalVarCount);
+
     // --- Final Status ---
     if (executionError) {
-      System.err.println("\nExecution finished with errors.");
-      System.exit(1);
+      err.println("\nExecution finished with errors.");
+      return 1;
     } else {
       if (SolverGUI.ResidualsHigh) {
-        System.out.println(
+        out.println(
             "\nWARNING: Execution finished, but residuals were high. Solution might be inaccurate.");
       } else {
-        System.out.println("\nExecution finished successfully.");
+        out.println("\nExecution finished successfully.");
       }
-      System.exit(0);
+      return 0;
     }
+  }
 
-  } // End main
+  // Loads the initial values of the model and parses its equations, the last model is purged
+  private static boolean parse(String risFilePath, String fileContent) {
+    // Also load initial values using SaveLoad (modified for console errors)
+    SaveLoad loader = new SaveLoad();
+    if (!loader.loadInitialValuesFromRis(risFilePath)) {
+      err.println("Warning: Could not properly load initial values section.");
+      // Continue anyway, solver might use defaults
+    }
+
+    // --- Parse Equations ---
+    out.println("Parsing equations...");
+    startNanos = System.nanoTime();
+    CheckString.PurgeAll(); // Ensure clean state
+    CheckString checkStringInstance = new CheckString();
+    String equationsText = extractEquationsText(fileContent);
+    String cleanedEquations = CheckString.cleanComments(equationsText);
+
+    boolean parsed = parseEquations(cleanedEquations, checkStringInstance);
+    Statistics.addTime(Statistics.PARSE, System.nanoTime() - startNanos);
+    if (!parsed) {
+      err.println("ERROR: Halting due to parsing errors.");
+      return false;
+    }
+    out.println("Parsing complete.");
+    return true;
+  }
+
+  // Solves the model for every point of the sweep and writes the table, in the console if the
+  // file is null. Returns the exit code: 0 if every point converged, or 1
+  private static int sweep(String risFilePath, List<String> specs, String tableFile) {
+    Sweep sweep;
+    try {
+      sweep = Sweep.Parse(specs);
+    } catch (IllegalArgumentException e) {
+      err.println("ERROR: Bad --sweep: " + e.getMessage());
+      return 1;
+    }
+    out.println("Loading file: " + risFilePath);
+    String fileContent = loadRisFileContent(risFilePath);
+    if (fileContent == null || !parse(risFilePath, fileContent)) {
+      return 1;
+    }
+
+    out.println("Preparing the sweep...");
+    Config.ErrorFound = false;
+    DiffAndEvaluator.TimeLimitExceeded = false;
+    if (!sweep.Prepare()) {
+      err.println("ERROR: " + sweep.getError());
+      return 1;
+    }
+    long start = System.nanoTime();
+    sweep.Solve();
+    int points = sweep.getTable().length;
+    out.println(String.format(Locale.US, "%d points solved in %.3f s, %d did not converge",
+        points, (System.nanoTime() - start) / 1e9, sweep.getFailures()));
+    DiffAndEvaluator.SaveDerivatives();
+
+    if (tableFile == null) {
+      out.println("\n--- Table ---");
+      sweep.Write(new PrintWriter(out));
+    } else {
+      try (PrintWriter w = new PrintWriter(tableFile, "UTF-8")) {
+        sweep.Write(w);
+      } catch (IOException e) {
+        err.println("ERROR: Cannot write table file '" + tableFile + "': " + e.getMessage());
+        return 1;
+      }
+      out.println("Table written in " + tableFile);
+    }
+    return sweep.getFailures() == 0 ? 0 : 1;
+  }
 
   private static void printUsage() {
-    System.err.println("Usage: java -cp <classpath> cli.CommandLineRunner <path_to_ris_file>");
-    System.err.println(
+    err.println(
+        "Usage: java -cp <classpath> cli.CommandLineRunner [--stats <file>] <path_to_ris_file>");
+    err.println("       java -cp <classpath> cli.CommandLineRunner --sweep <name=values>..."
+        + " [--table <file>] <path_to_ris_file>");
+    err.println("       java -cp <classpath> cli.CommandLineRunner --batch [--workers <n>]"
+        + " [--output <dir>] <dir|list|ris>...");
+    err.println(
         "Example: java -cp \".;bin;Dependencies\\*\" cli.CommandLineRunner examples\\01_Introduction.ris");
+    err.println(
+        "  --stats <file>  Writes the times and the work of every block solved as JSON, - is the console");
+    err.println(
+        "  --batch         Solves the .ris files of the directories (and their subdirectories),");
+    err.println(
+        "                  the files given and the ones listed in the other files, one per line");
+    err.println("  --workers <n>   Models solved at the same time, one per processor by default");
+    err.println("  --output <dir>  Where the results and the statistics of every model and");
+    err.println("                  summary.tsv are written, batch by default");
+    err.println("  --sweep <name=values>  Solves the model for every value of an input, the");
+    err.println("                  values are start:end:points or separated by commas. With two");
+    err.println("                  or more, for every combination of their values");
+    err.println("  --table <file>  Where the table of the sweep is written, tab separated");
+  }
+
+  // The property database is read by the first model that calls a property and kept for the
+  // next ones
+  private static MaterialMethods getMaterialMethods() {
+    if (materialMethods == null) {
+      materialMethods = new MaterialMethods();
+    }
+    return materialMethods;
+  }
+
+  // Writes the statistics of the model if --stats was given
+  private static void writeStats(String risFilePath, String status, int equations,
+      int variables) {
+    if (statsFile == null)
+      return;
+    StatsReport report = new StatsReport(risFilePath, status, equations, variables,
+        initializeNanos, System.nanoTime() - startNanos);
+    if (!report.write(statsFile))
+      executionError = true;
   }
 
   // Helper to load the whole file content
@@ -186,7 +400,7 @@ public class CommandLineRunner {
       }
       return content.toString();
     } catch (IOException e) {
-      System.err.println("ERROR: Cannot read input file '" + filePath + "': " + e.getMessage());
+      err.println("ERROR: Cannot read input file '" + filePath + "': " + e.getMessage());
       return null;
     }
   }
@@ -197,7 +411,7 @@ public class CommandLineRunner {
     if (markerPos != -1) {
       return fullContent.substring(0, markerPos);
     } else {
-      System.err.println(
+      err.println(
           "WARNING: EndOfEquationData marker not found. Treating whole file as equations.");
       return fullContent; // Or handle as error?
     }
@@ -205,71 +419,8 @@ public class CommandLineRunner {
 
   // --- Need to reimplement/adapt these methods from SolverGUI or similar ---
 
-  // Replicates comment cleaning logic
-  private static String cleanComments(String input) {
-    // (Copy the exact logic from SolverGUI.cleanComments method)
-    boolean comments = false;
-    char c;
-    char pc = CheckString.Espacio;
-    String aux = new String("");
-    StringReader J = new StringReader(input);
-    BufferedReader BufJ = new BufferedReader(J);
-    String s = new String("");
-    int count = 0, line = 0;
-
-    for (int i = 0; i < input.length(); i++) {
-
-      try {// this is only to introduce line-separators while ignoring comments
-        if (count == line)
-          s = BufJ.readLine();
-        if (s != null) {
-          line = s.length();
-        } else
-          line = 0;
-      } catch (Exception e) {
-        line = 0;
-      }
-
-      c = input.charAt(i);
-      count++;
-
-      if (pc == CheckString.Slash & c == CheckString.Por) {
-        // This is to erase the previous character that was inserted in aux
-        aux = aux.substring(0, aux.length() - 1);
-        comments = true;
-        pc = CheckString.Espacio;
-      }
-
-      // Add character only if not inside comments or if it's a newline
-      // Add newline even in comments to maintain structure for line number errors
-      if (!comments || c == '\n' || c == '\r') {
-        if (!(pc == CheckString.Por && c == CheckString.Slash)) { // Don't add the closing */ itself
-          aux += c;
-        }
-      }
-
-      if (pc == CheckString.Por & c == CheckString.Slash)
-        comments = false;
-
-      if (c == '\n' || (c == '\r' && (i + 1 == input.length() || input.charAt(i + 1) != '\n'))) {
-        count = 0; // Reset line character count on newline
-        line = 0; // Force reading next line
-      }
-
-      // save previous character
-      pc = c;
-    }
-    try {
-      BufJ.close();
-      J.close();
-    } catch (IOException e) {
-    }
-    return aux;
-  }
-
-  // Replicates parsing logic, printing errors to System.err
-  private static boolean parseEquations(String equationsText, MaterialMethods materialMethods,
-      CheckString checkStringInstance) {
+  // Reads the equations once, line by line, with the parser of CheckString.GramCheck
+  private static boolean parseEquations(String equationsText, CheckString checkStringInstance) {
     String line;
     int lineNumber = 0;
     boolean success = true;
@@ -287,23 +438,23 @@ public class CommandLineRunner {
 
         String processedLine = line.replace(" ", ""); // Remove internal spaces for check
 
-        // Substitute thermodynamic functions first
-        String2ME.GramErr thermoResult = SolverGUI.searchThermodynamicFunctionCli(processedLine,
-            materialMethods, checkStringInstance);
-        if (thermoResult.GetTypeError() != 0) {
-          System.err.println("ERROR in Thermodynamic Function call on line " + lineNumber
-              + ": Substance/Property not found in '" + processedLine + "'");
-          executionError = true; // Mark error
-          success = false;
-          continue; // Skip further checks on this line
+        // Substitute thermodynamic functions first, the database is only needed by the lines
+        // that look like a call
+        if (SolverGUI.looksLikePropertyCall(processedLine)) {
+          String2ME.GramErr thermoResult = SolverGUI.searchThermodynamicFunctionCli(processedLine,
+              getMaterialMethods(), checkStringInstance);
+          if (thermoResult.GetTypeError() != 0) {
+            err.println("ERROR in Thermodynamic Function call on line " + lineNumber
+                + ": Substance/Property not found in '" + processedLine + "'");
+            executionError = true; // Mark error
+            success = false;
+            continue; // Skip further checks on this line
+          }
+          processedLine = thermoResult.getString(); // Use the potentially substituted formula
         }
-        processedLine = thermoResult.getString(); // Use the potentially substituted formula
-
-        // Save variables with case info (does not affect solving directly but populates
-        // CaseVariables list)
-        checkStringInstance.getVariables(processedLine);
 
-        // Perform grammar check on the processed line
+        // Perform grammar check on the processed line, it also saves the variables with case
+        // info in the CaseVariables list
         String2ME.GramErr gramResult = checkStringInstance.GramCheck(processedLine);
 
         // Check grammar result
@@ -313,7 +464,7 @@ public class CommandLineRunner {
         }
       }
     } catch (IOException e) {
-      System.err.println("ERROR reading processed equations: " + e.getMessage());
+      err.println("ERROR reading processed equations: " + e.getMessage());
       executionError = true;
       return false; // Indicate failure
     } finally {
@@ -325,7 +476,7 @@ public class CommandLineRunner {
     return success; // Return overall status
   }
 
-  // Replicates error checking logic, printing errors to System.err
+  // Replicates error checking logic, printing errors to err
   private static boolean checkGramCli(String2ME.GramErr gramResult, int lineNumber,
       String originalLine) {
     byte errorType = gramResult.GetTypeError();
@@ -335,50 +486,49 @@ public class CommandLineRunner {
 
     // An error occurred, set the flag and print details
     executionError = true;
-    System.err.print("ERROR on line " + lineNumber + ": ");
+    err.print("ERROR on line " + lineNumber + ": ");
 
     switch (errorType) {
       case 1:
-        System.err.println("Illegal character found <" + gramResult.GetCaracter() + ">");
+        err.println("Illegal character found <" + gramResult.GetCaracter() + ">");
         break;
       case 2:
-        System.err.println("Unexpected character <" + gramResult.GetCaracter()
+        err.println("Unexpected character <" + gramResult.GetCaracter()
             + "> (Potential syntax error or duplicate '=')");
         break;
       case 3:
-        System.err
-            .println("Two or more operators followed near <" + gramResult.GetCaracter() + ">");
+        err.println("Two or more operators followed near <" + gramResult.GetCaracter() + ">");
         break;
       case 4:
-        System.err.println("Dot or comma after a letter near <" + gramResult.GetCaracter() + ">");
+        err.println("Dot or comma after a letter near <" + gramResult.GetCaracter() + ">");
         break;
       case 5:
-        System.err.println("Equal sign missing.");
+        err.println("Equal sign missing.");
         break;
       case 6:
-        System.err.println("Parenthesis/bracket mismatch (extra or missing).");
+        err.println("Parenthesis/bracket mismatch (extra or missing).");
         break;
       case 7:
-        System.err.println(
+        err.println(
             "Empty function parenthesis or brackets near <" + gramResult.GetCaracter() + ">");
         break;
       case 8:
-        System.err.println("Number followed directly by variable/letter (missing operator?) near <"
+        err.println("Number followed directly by variable/letter (missing operator?) near <"
             + gramResult.getString() + ">");
         break;
       case 9:
-        System.err.println(
+        err.println(
             "Operator missing operand or at end of line near <" + gramResult.GetCaracter() + ">");
         break;
       case 10:
-        System.err.println("Variable name contains invalid characters in <" + gramResult.getString()
+        err.println("Variable name contains invalid characters in <" + gramResult.getString()
             + "> (Only letters, numbers, '_' allowed; must start with letter)");
         break;
       default:
-        System.err.println("Unknown parsing error code: " + errorType);
+        err.println("Unknown parsing error code: " + errorType);
         break;
     }
-    System.err.println("  Context: " + originalLine.trim());
+    err.println("  Context: " + originalLine.trim());
     return false; // Indicate error
   }
 
@@ -396,18 +546,18 @@ public class CommandLineRunner {
     Collections.sort(allVars);
 
     if (allVars.isEmpty() && !executionError) {
-      System.out.println("No variables to solve for or all were inputs.");
+      out.println("No variables to solve for or all were inputs.");
       return;
     } else if (allVars.isEmpty() && executionError) {
-      System.out.println("No results to display due to errors during execution.");
+      out.println("No results to display due to errors during execution.");
       return;
     }
 
-    System.out.println("Variable          Value");
-    System.out.println("----------------|-------------------");
+    out.println("Variable          Value");
+    out.println("----------------|-------------------");
 
     for (VString vs : allVars) {
-      String varName = getVariableCase(vs.getVar()); // Get original case
+      String varName = SymbolTable.getCase(vs.getId()); // Get original case
       varName = varName.replace("Gg", "_"); // Translate back underscore
       double result;
       String resultStr;
@@ -429,28 +579,18 @@ public class CommandLineRunner {
         executionError = true; // Mark error if evaluation fails post-solve
       }
 
-      System.out.printf("%-15s | %s%n", varName, resultStr);
-    }
-  }
-
-  // Helper to get original case variable name
-  private static String getVariableCase(String lowerCaseVar) {
-    for (String s : CheckString.CaseVariables) {
-      if (lowerCaseVar.equalsIgnoreCase(s)) {
-        return s;
-      }
+      out.printf("%-15s | %s%n", varName, resultStr);
     }
-    return lowerCaseVar; // Fallback if not found (shouldn't happen ideally)
   }
 
   // Helper to format and print residuals
   private static void printResidualsToConsole() {
     if (CheckString.FunctionsSolved.isEmpty() && !executionError) { // Also check executionError
                                                                     // flag
-      System.out.println("No equations were solved or available to calculate residuals.");
+      out.println("No equations were solved or available to calculate residuals.");
       return;
     } else if (CheckString.FunctionsSolved.isEmpty()) {
-      System.out.println("Cannot calculate residuals due to previous errors.");
+      out.println("Cannot calculate residuals due to previous errors.");
       return;
     }
 
@@ -459,9 +599,9 @@ public class CommandLineRunner {
     NumberFormat SmallFormat = new DecimalFormat("0.#####E0");
     NumberFormat BigFormat = new DecimalFormat("#####0.##E0");
 
-    System.out.println("Equation Residuals (Internal Form = 0, Target: 0)"); // Clarify it's
+    out.println("Equation Residuals (Internal Form = 0, Target: 0)"); // Clarify it's
                                                                              // internal form
-    System.out.println("------------------------------------------------------------");
+    out.println("------------------------------------------------------------");
 
     Iterator<EqStorer> it = CheckString.FunctionsSolved.iterator();
 
@@ -474,7 +614,7 @@ public class CommandLineRunner {
 
       try {
         // Calculate residual first
-        residual = DiffAndEvaluator.Evaluate("N(" + internalEquation + ")");
+        residual = DiffAndEvaluator.Evaluate("N[" + internalEquation + "]");
 
         // Format residual value
         if (Math.abs(residual) < 10000 && Math.abs(residual) >= 1e-5)
@@ -502,7 +642,7 @@ public class CommandLineRunner {
       }
 
       // Print, ensuring displayEquation isn't too long for formatting
-      System.out.printf("%-60s | Residual: %s%n",
+      out.printf("%-60s | Residual: %s%n",
           displayEquation.substring(0, Math.min(displayEquation.length(), 60)), residualStr);
 
       // Check if residual is high *only if* evaluation succeeded
@@ -517,7 +657,7 @@ public class CommandLineRunner {
     } // end while
 
     if (SolverGUI.ResidualsHigh) {
-      System.out.println("\nWARNING: One or more residuals are high, solution may be inaccurate.");
+      out.println("\nWARNING: One or more residuals are high, solution may be inaccurate.");
     }
   }
 
@@ -583,7 +723,7 @@ public class CommandLineRunner {
         // return new String2ME.GramErr((byte) 1, input); // Error code 1 for not found
 
         // Placeholder - Full implementation required
-        System.out.println("DEBUG: Thermo function call detected: " + input
+        out.println("DEBUG: Thermo function call detected: " + input
             + " (Substitution logic not fully implemented in CLI)");
         return new String2ME.GramErr((byte) 0, input); // Pass through for now
 
@@ -591,7 +731,7 @@ public class CommandLineRunner {
       return new String2ME.GramErr((byte) 0, input); // Not a thermo function call
 
     } catch (Exception e) {
-      System.err.println("Error during thermodynamic function check for: " + input);
+      err.println("Error during thermodynamic function check for: " + input);
       return new String2ME.GramErr((byte) 0, input); // Treat as non-thermo on error
     }
   }
@@ -620,18 +760,8 @@ public class CommandLineRunner {
   }
 
   private static String replaceVarsWithCase(String equation) {
-    String result = equation;
-    // Sort by length descending to replace longer names first (e.g., Temp before T)
-    java.util.List<String> sortedVars = new java.util.ArrayList<>(CheckString.CaseVariables);
-    Collections.sort(sortedVars, (s1, s2) -> Integer.compare(s2.length(), s1.length()));
-
-    for (String originalCaseVar : sortedVars) {
-      // Use regex word boundaries (\b) to avoid partial replacements (e.g., replacing 't' in 'nt')
-      // Need to escape regex special characters if variable names contain them (unlikely here)
-      result = result.replaceAll("\\b(?i)" + originalCaseVar.replace("_", "Gg") + "\\b",
-          originalCaseVar);
-    }
-    return result;
+    // One pass over the words of the equation, each one is looked up in the symbol table
+    return SymbolTable.replaceCase(equation);
   }
 
 } // End CommandLineRunner Class
@@ -0,0 +1,178 @@
+package cli;
+
+import evaluation.DiffAndEvaluator;
+import evaluation.Statistics;
+import String2ME.SymbolTable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the statistics of the last model solved (see evaluation.Statistics) as JSON, for the
+ * --stats option of the command line. The times are in milliseconds and the residual norm of a
+ * block is the euclidean norm of its equations, evaluated with the values of the results.
+ */
+public class StatsReport {
+
+  private final String file;
+  private final String status;
+  private final int equations;
+  private final int variables;
+  private final long initializeNanos;
+  private final long totalNanos;
+
+  /**
+   * @param file The model solved
+   * @param status ok, residuals_high or error
+   * @param equations The equations of the model
+   * @param variables The variables of the model
+   * @param initializeNanos The time to prepare the solver, before the model is read
+   * @param totalNanos The time from the parse to the results
+   */
+  public StatsReport(String file, String status, int equations, int variables,
+      long initializeNanos, long totalNanos) {
+    this.file = file;
+    this.status = status;
+    this.equations = equations;
+    this.variables = variables;
+    this.initializeNanos = initializeNanos;
+    this.totalNanos = totalNanos;
+  }
+
+  /**
+   * Writes the report in a file, or in System.out if the file is "-"
+   *
+   * @return false if the file could not be written
+   */
+  public boolean write(String path) {
+    if (path.equals("-")) {
+      PrintWriter out = new PrintWriter(System.out);
+      write(out);
+      out.flush();
+      return true;
+    }
+    try (Writer w = new FileWriter(path)) {
+      write(w);
+      return true;
+    } catch (IOException e) {
+      System.err.println("ERROR: Cannot write statistics file '" + path + "': " + e.getMessage());
+      return false;
+    }
+  }
+
+  public void write(Writer w) {
+    PrintWriter out = new PrintWriter(w);
+    out.println("{");
+    out.println("  \"file\": " + string(file) + ",");
+    out.println("  \"status\": " + string(status) + ",");
+    out.println("  \"equations\": " + equations + ",");
+    out.println("  \"variables\": " + variables + ",");
+    out.println("  \"time_ms\": {");
+    out.println("    \"initialize\": " + millis(initializeNanos) + ",");
+    out.println("    \"parse\": " + millis(Statistics.getTime(Statistics.PARSE)) + ",");
+    out.println("    \"presolve\": " + millis(Statistics.getTime(Statistics.PRESOLVE)) + ",");
+    out.println(
+        "    \"decomposition\": " + millis(Statistics.getTime(Statistics.DECOMPOSITION)) + ",");
+    out.println("    \"solve\": " + millis(Statistics.getTime(Statistics.SOLVE)) + ",");
+    out.println("    \"differentiation\": "
+        + millis(Statistics.getTime(Statistics.DIFFERENTIATION)) + ",");
+    out.println("    \"engine\": " + millis(Statistics.getTime(Statistics.ENGINE)) + ",");
+    out.println("    \"total\": " + millis(totalNanos));
+    out.println("  },");
+    out.println("  \"derivatives\": {");
+    out.println("    \"requested\": " + Statistics.getDerivatives() + ",");
+    out.println("    \"cache_hits\": " + DiffAndEvaluator.Derivatives.getHits() + ",");
+    out.println("    \"cache_misses\": " + DiffAndEvaluator.Derivatives.getMisses());
+    out.println("  },");
+    out.print("  \"blocks\": [");
+    List<Statistics.Block> blocks = Statistics.getBlocks();
+    for (int i = 0; i < blocks.size(); i++) {
+      Statistics.Block B = blocks.get(i);
+      out.println(i == 0 ? "" : ",");
+      out.println("    {");
+      out.println("      \"size\": " + B.getSize() + ",");
+      out.println("      \"presolved\": " + B.isSingle() + ",");
+      out.println("      \"method\": " + string(B.getMethod()) + ",");
+      out.println("      \"iterations\": " + B.getIterations() + ",");
+      out.println("      \"function_evaluations\": " + B.getFunctions() + ",");
+      out.println("      \"jacobian_evaluations\": " + B.getJacobians() + ",");
+      out.println("      \"time_ms\": " + millis(B.getNanos()) + ",");
+      out.println("      \"residual_norm\": " + number(residualNorm(B)) + ",");
+      out.print("      \"variables\": [");
+      String[] vars = B.getVariables();
+      for (int j = 0; j < vars.length; j++) {
+        out.print((j == 0 ? "" : ", ")
+            + string(SymbolTable.replaceCase(vars[j]).replace("Gg", "_")));
+      }
+      out.println("]");
+      out.print("    }");
+    }
+    out.println(blocks.isEmpty() ? "]" : "\n  ]");
+    out.println("}");
+    out.flush();
+  }
+
+  /**
+   * @return The euclidean norm of the equations of the block with the values of now, NaN if some
+   *         can not be evaluated
+   */
+  private static double residualNorm(Statistics.Block B) {
+    double sum = 0;
+    for (String equation : B.getEquations()) {
+      try {
+        double r = DiffAndEvaluator.Evaluate("N[" + equation + "]");
+        sum += r * r;
+      } catch (Exception e) {
+        return Double.NaN;
+      }
+    }
+    return Math.sqrt(sum);
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.US, "%.3f", nanos / 1e6);
+  }
+
+  /**
+   * @return The number in JSON, null if it is not finite
+   */
+  private static String number(double d) {
+    if (Double.isNaN(d) || Double.isInfinite(d))
+      return "null";
+    return Double.toString(d);
+  }
+
+  private static String string(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20)
+            sb.append(String.format("\\u%04x", (int) c));
+          else
+            sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+}
@@ -0,0 +1,95 @@
+package doglegMethod;
+
+/**
+ * The blas kernels used by Minpack_j, with the C/Java style indexing that
+ * Blas_f77 announces with the suffix "_j": the vectors start from the position
+ * 0 and a column of a matrix stored by columns in one array is given by its
+ * offset, i.e. the column j of a matrix with leading dimension lda starts at
+ * j*lda. Then every kernel walks consecutive positions of one array, instead
+ * of one position of every row like colaxpy_f77 or coldot_f77.
+ *
+ * The loops are not unrolled: the sums are made in the same order as the
+ * loops of Minpack_f77, so Minpack_j gives the same results bit by bit.
+ */
+public class Blas_j {
+
+	/**
+	 * The dot product of two vectors
+	 *
+	 * @param n
+	 *            Number of elements
+	 * @param dx
+	 * @param xoff
+	 *            Position of the first element of dx
+	 * @param dy
+	 * @param yoff
+	 *            Position of the first element of dy
+	 * @return Sum(dx[xoff+i]*dy[yoff+i]), 0 if n <= 0
+	 */
+	public static double ddot_j(int n, double dx[], int xoff, double dy[],
+			int yoff) {
+		double sum = 0.0;
+		for (int i = 0; i < n; i++)
+			sum += dx[xoff + i] * dy[yoff + i];
+		return sum;
+	}
+
+	/**
+	 * dy = dy + da*dx. Unlike daxpy_f77 nothing is skipped when da is 0, as
+	 * in the loops of Minpack_f77
+	 *
+	 * @param n
+	 *            Number of elements
+	 * @param da
+	 * @param dx
+	 * @param xoff
+	 *            Position of the first element of dx
+	 * @param dy
+	 * @param yoff
+	 *            Position of the first element of dy
+	 */
+	public static void daxpy_j(int n, double da, double dx[], int xoff,
+			double dy[], int yoff) {
+		for (int i = 0; i < n; i++)
+			dy[yoff + i] += da * dx[xoff + i];
+	}
+
+	/**
+	 * Interchanges two vectors, i.e. two columns of a matrix
+	 *
+	 * @param n
+	 *            Number of elements
+	 * @param dx
+	 * @param xoff
+	 *            Position of the first element of dx
+	 * @param dy
+	 * @param yoff
+	 *            Position of the first element of dy
+	 */
+	public static void dswap_j(int n, double dx[], int xoff, double dy[],
+			int yoff) {
+		for (int i = 0; i < n; i++) {
+			double temp = dx[xoff + i];
+			dx[xoff + i] = dy[yoff + i];
+			dy[yoff + i] = temp;
+		}
+	}
+
+	/**
+	 * Copies the row i of a matrix stored by columns to its column i, from
+	 * the diagonal: a[i+k][i] = a[i][i+k]
+	 *
+	 * @param n
+	 *            Number of elements
+	 * @param a
+	 * @param lda
+	 *            Leading dimension of a
+	 * @param i
+	 */
+	public static void rowcol_j(int n, double a[], int lda, int i) {
+		int ii = i + i * lda;
+		for (int k = 0; k < n; k++)
+			a[ii + k] = a[ii + k * lda];
+	}
+
+}
@@ -1,24 +1,61 @@
 package doglegMethod;
 
 import org.apache.commons.math.linear.ArrayRealVector;
-import org.apache.commons.math.linear.RealMatrix;
 import org.apache.commons.math.linear.RealVector;
 
+import evaluation.Scheduler;
+import evaluation.Statistics;
+
 import solver.PrepareUncmin;
-import solver.matriz;
-import solver.nodo;
-import evaluation.DiffAndEvaluator;
+import solver.TornSystem;
 
 /**
- * Class to work with Minpack_f77
+ * Class to work with Minpack_f77 and Minpack_j
  * 
  * @author Pablo Salinas
  * 
  */
 public class Lmder_fcn {
 
-	private static RealVector F;
-	private static RealMatrix J;
+	/**
+	 * The system solved
+	 */
+	private final PrepareUncmin P;
+	/**
+	 * The system solved in the space of its tear variables, null if P is used
+	 */
+	private final TornSystem T;
+	private RealVector F;
+
+	/**
+	 * 
+	 * @param P
+	 *            The system solved
+	 */
+	public Lmder_fcn(PrepareUncmin P) {
+		this.P = P;
+		this.T = null;
+	}
+
+	/**
+	 * 
+	 * @param T
+	 *            The system solved, x are its tear variables. It is only
+	 *            solved with Minpack_j
+	 */
+	public Lmder_fcn(TornSystem T) {
+		this.P = null;
+		this.T = T;
+	}
+
+	/**
+	 * For the subclasses that evaluate their own functions, overriding fcn
+	 * and fcn_j, i.e. the test problems of the benchmarks
+	 */
+	protected Lmder_fcn() {
+		this.P = null;
+		this.T = null;
+	}
 
 	/**
 	 * 
@@ -35,43 +72,89 @@ public class Lmder_fcn {
 	 * @param iflag
 	 *            = if 1 then evaluate only fvec, if 2 then evaluate only fjac
 	 */
-	public static void fcn(int m, int n, double x[], double fvec[],
+	public void fcn(int m, int n, double x[], double fvec[],
 			double fjac[][], int iflag[]) {
+		// A negative iflag stops lmder, when the time is over
+		if (Scheduler.isCancelled()) {
+			iflag[1] = -1;
+			return;
+		}
 		// NOW THE VALUES ARE ONLY INTRODUCED WHEN THE FUNCTION IS GOING TO BE
 		// EVALUATED
 		if (iflag[1] == 1) {
-			Uncmin_methods.IntroduceValues(x);
+			Statistics.function();
+			P.IntroduceValues(x);
 			MakeF();
 			for (int i = 0; i < F.getDimension(); i++)
 				fvec[i + 1] = F.getEntry(i);
 		}
 		if (iflag[1] == 2) {
-			MakeJ();
-			for (int row = 0; row < J.getRowDimension(); row++)
-				for (int col = 0; col < J.getColumnDimension(); col++)
-					fjac[row + 1][col + 1] = J.getEntry(row, col);
+			Statistics.jacobian();
+			Statistics.iteration();
+			P.Jacobian.evaluateFromOne(P.Binding, fjac);
 		}
 
 	}
 
 	/**
-	 * Creates a RealVector with the values of F
+	 * The same as fcn for Minpack_j: the vectors start from the position 0 and
+	 * the Jacobian is stored by columns
+	 * 
+	 * @param m
+	 *            = number of equations
+	 * @param n
+	 *            = number of functions
+	 * @param x
+	 *            = point vector
+	 * @param fvec
+	 *            = vector of the functions evaluated in x
+	 * @param fjac
+	 *            = The Jacobian evaluated in x, fjac(i,j) is
+	 *            fjac[i+j*ldfjac]
+	 * @param ldfjac
+	 *            = leading dimension of fjac
+	 * @param iflag
+	 *            = if 1 then evaluate only fvec, if 2 then evaluate only fjac
 	 */
-	private static void MakeF() {
-
-		F = new ArrayRealVector(PrepareUncmin.Fx.getSize());
-		int i = 0;
-		for (nodo n : PrepareUncmin.Fx.vector) {
-			F.setEntry(i, DiffAndEvaluator.Evaluate(n.GetCadena()));
-			i++;
+	public void fcn_j(int m, int n, double x[], double fvec[],
+			double fjac[], int ldfjac, int iflag[]) {
+		// A negative iflag stops lmder, when the time is over
+		if (Scheduler.isCancelled()) {
+			iflag[0] = -1;
+			return;
+		}
+		// lmder evaluates the Jacobian once every iteration
+		if (iflag[0] == 1)
+			Statistics.function();
+		if (iflag[0] == 2) {
+			Statistics.jacobian();
+			Statistics.iteration();
 		}
+		if (T != null) {
+			if (iflag[0] == 1)
+				T.evaluate(x, fvec);
+			if (iflag[0] == 2)
+				T.jacobian(x, fjac, ldfjac);
+			return;
+		}
+		if (iflag[0] == 1) {
+			P.IntroduceValues(x, 0);
+			for (int i = 0; i < P.CompiledFx.length; i++)
+				fvec[i] = P.CompiledFx[i].evaluate(P.Binding);
+		}
+		if (iflag[0] == 2)
+			P.Jacobian.evaluateByColumns(P.Binding, fjac, ldfjac);
 	}
 
 	/**
-	 * Creates a RealMatrix with the values of the jacobian of F
+	 * Creates a RealVector with the values of F
 	 */
-	private static void MakeJ() {
-		J = matriz.EvaluateJacobian(PrepareUncmin.Jacobian);
+	private void MakeF() {
+
+		F = new ArrayRealVector(P.CompiledFx.length);
+		for (int i = 0; i < P.CompiledFx.length; i++)
+			F.setEntry(i, P.CompiledFx[i]
+					.evaluate(P.Binding));
 	}
 
 }
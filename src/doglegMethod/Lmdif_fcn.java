@@ -3,13 +3,26 @@ package doglegMethod;
 import org.apache.commons.math.linear.ArrayRealVector;
 import org.apache.commons.math.linear.RealVector;
 
+import evaluation.Scheduler;
+
 import solver.PrepareUncmin;
-import solver.nodo;
-import evaluation.DiffAndEvaluator;
 
 public class Lmdif_fcn {
 
-	private static RealVector F;
+	/**
+	 * The system solved
+	 */
+	private final PrepareUncmin P;
+	private RealVector F;
+
+	/**
+	 * 
+	 * @param P
+	 *            The system solved
+	 */
+	public Lmdif_fcn(PrepareUncmin P) {
+		this.P = P;
+	}
 
 	/**
 	 * 
@@ -25,8 +38,13 @@ public class Lmdif_fcn {
 	 *            = if 1 then evaluate only fvec if you use this interface then
 	 *            the jacobian will be evaluated numerically
 	 */
-	public static void fcn(int m, int n, double x[], double fvec[], int iflag[]) {
-		Uncmin_methods.IntroduceValues(x);
+	public void fcn(int m, int n, double x[], double fvec[], int iflag[]) {
+		// A negative iflag stops lmdif, when the time is over
+		if (Scheduler.isCancelled()) {
+			iflag[1] = -1;
+			return;
+		}
+		P.IntroduceValues(x);
 		if (iflag[1] == 1) {
 			MakeF();
 			for (int i = 0; i < F.getDimension(); i++)
@@ -37,13 +55,11 @@ public class Lmdif_fcn {
 	/**
 	 * Creates a RealVector with the values of F
 	 */
-	private static void MakeF() {
+	private void MakeF() {
 
-		F = new ArrayRealVector(PrepareUncmin.Fx.getSize());
-		int i = 0;
-		for (nodo n : PrepareUncmin.Fx.vector) {
-			F.setEntry(i, DiffAndEvaluator.Evaluate(n.GetCadena()));
-			i++;
-		}
+		F = new ArrayRealVector(P.CompiledFx.length);
+		for (int i = 0; i < P.CompiledFx.length; i++)
+			F.setEntry(i, P.CompiledFx[i]
+					.evaluate(P.Binding));
 	}
 }
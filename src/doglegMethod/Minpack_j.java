@@ -0,0 +1,908 @@
+package doglegMethod;
+
+import gui.Config;
+
+/**
+ * The Levenberg-Marquardt routines of Minpack_f77 (lmder1, lmder, lmpar,
+ * qrsolv, qrfac and enorm) with the C/Java style indexing announced there
+ * with the suffix "_j": the vectors start from the position 0 and the
+ * Jacobian is stored by columns in one array, with a leading dimension
+ * ldfjac, so fjac(i,j) is fjac[i + j*ldfjac] as in FORTRAN.
+ *
+ * Every loop of the QR factorization and of the Levenberg-Marquardt
+ * parameter runs along a column, so with this storage they walk consecutive
+ * positions of one array (see Blas_j) and not one position of every row of a
+ * double[n+1][n+1]. No vector is allocated inside the iterations.
+ *
+ * The operations are the same and in the same order as in Minpack_f77, so
+ * the results are the same bit by bit, only ipvt has the columns from 0.
+ */
+public class Minpack_j {
+	// epsmch is the machine precision
+	static final double epsmch = Config.epsilon;
+	// minmag is the smallest magnitude
+	static final double minmag = 2.22507385852e-308;
+
+	static final double zero = 0.0;
+	static final double one = 1.0;
+	static final double p0001 = .0001;
+	static final double p001 = .001;
+	static final double p05 = .05;
+	static final double p1 = .1;
+	static final double p25 = .25;
+	static final double p5 = .5;
+	static final double p75 = .75;
+
+	/**
+	 * Minimizes the sum of the squares of m functions of n variables, see
+	 * lmder1_f77
+	 *
+	 * @param nlls
+	 *            The functions, evaluated with fcn_j
+	 * @param m
+	 *            Number of functions
+	 * @param n
+	 *            Number of variables
+	 * @param x
+	 *            The initial point, and the solution at the end
+	 * @param fvec
+	 *            The functions evaluated at x, of size m
+	 * @param fjac
+	 *            The Jacobian by columns, of size ldfjac*n
+	 * @param ldfjac
+	 *            Leading dimension of fjac, at least m
+	 * @param tol
+	 *            Relative error wanted in the sum of squares and in x
+	 * @param info
+	 *            info[0] is the reason to stop, as in lmder1_f77
+	 * @param ipvt
+	 *            The permutation of the QR factorization, from 0
+	 */
+	public static void lmder1_j(Lmder_fcn nlls, int m, int n, double x[],
+			double fvec[], double fjac[], int ldfjac, double tol, int info[],
+			int ipvt[]) {
+
+		int nfev[] = new int[1];
+		int njev[] = new int[1];
+		double diag[] = new double[n];
+		double qtf[] = new double[n];
+
+		info[0] = 0;
+
+		// Check the input parameters for errors.
+
+		if (n <= 0 || m < n || ldfjac < m || tol < zero)
+			return;
+
+		int maxfev = 100 * (n + 1);
+		Minpack_j.lmder_j(nlls, m, n, x, fvec, fjac, ldfjac, tol, tol, zero,
+				maxfev, diag, 1, 1.0e+2, 0, info, nfev, njev, ipvt, qtf);
+		if (info[0] == 8)
+			info[0] = 4;
+	}
+
+	/**
+	 * Minimizes the sum of the squares of m functions of n variables, see
+	 * lmder_f77. The vectors start from 0 and the Jacobian is stored by
+	 * columns with a leading dimension ldfjac, the rest of the parameters
+	 * are as in lmder_f77, with the scalar results in the position 0
+	 */
+	public static void lmder_j(Lmder_fcn nlls, int m, int n, double x[],
+			double fvec[], double fjac[], int ldfjac, double ftol,
+			double xtol, double gtol, int maxfev, double diag[], int mode,
+			double factor, int nprint, int info[], int nfev[], int njev[],
+			int ipvt[], double qtf[]) {
+
+		int i, iter, j, l, jj;
+		double actred, delta, dirder, fnorm, fnorm1, gnorm, pnorm, prered, ratio, sum, temp, temp1, temp2, xnorm;
+		double par[] = new double[1];
+		boolean doneout, donein;
+		int iflag[] = new int[1];
+		double wa1[] = new double[n];
+		double wa2[] = new double[n];
+		double wa3[] = new double[n];
+		double wa4[] = new double[m];
+
+		delta = 0.0;
+		xnorm = 0.0;
+
+		info[0] = 0;
+		iflag[0] = 0;
+		nfev[0] = 0;
+		njev[0] = 0;
+
+		// Check the input parameters for errors.
+
+		if (n <= 0 || m < n || ldfjac < m || ftol < zero || xtol < zero
+				|| gtol < zero || maxfev <= 0 || factor <= zero) {
+			if (nprint > 0)
+				nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+			return;
+		}
+
+		if (mode == 2) {
+			for (j = 0; j < n; j++) {
+				if (diag[j] <= zero) {
+					if (nprint > 0)
+						nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+					return;
+				}
+			}
+		}
+
+		// Evaluate the function at the starting point and calculate its
+		// norm.
+
+		iflag[0] = 1;
+		nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+		nfev[0] = 1;
+
+		if (iflag[0] < 0) {
+			info[0] = iflag[0];
+			iflag[0] = 0;
+			if (nprint > 0)
+				nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+			return;
+		}
+
+		fnorm = Minpack_j.enorm_j(m, fvec, 0);
+
+		// Initialize Levenberg-Marquardt parameter and iteration counter.
+
+		par[0] = zero;
+		iter = 1;
+
+		// Beginning of the outer loop.
+
+		doneout = false;
+
+		while (!doneout) {
+
+			// Calculate the Jacobian matrix.
+
+			iflag[0] = 2;
+			nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+			njev[0]++;
+
+			if (iflag[0] < 0) {
+				info[0] = iflag[0];
+				iflag[0] = 0;
+				if (nprint > 0)
+					nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+				return;
+			}
+
+			// If requested, call fcn to enable printing of iterates.
+
+			if (nprint > 0) {
+				iflag[0] = 0;
+				if ((iter - 1) % nprint == 0)
+					nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+				if (iflag[0] < 0) {
+					info[0] = iflag[0];
+					iflag[0] = 0;
+					nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+					return;
+				}
+			}
+
+			// Compute the qr factorization of the Jacobian.
+
+			Minpack_j.qrfac_j(m, n, fjac, ldfjac, true, ipvt, wa1, wa2, wa3);
+
+			// On the first iteration and if mode is 1, scale according
+			// to the norms of the columns of the initial Jacobian.
+
+			if (iter == 1) {
+				if (mode != 2) {
+					for (j = 0; j < n; j++) {
+						diag[j] = wa2[j];
+						if (wa2[j] == zero)
+							diag[j] = one;
+					}
+				}
+
+				// On the first iteration, calculate the norm of the scaled
+				// x and initialize the step bound delta.
+
+				for (j = 0; j < n; j++)
+					wa3[j] = diag[j] * x[j];
+
+				xnorm = Minpack_j.enorm_j(n, wa3, 0);
+				delta = factor * xnorm;
+				if (delta == zero)
+					delta = factor;
+			}
+
+			// Form (q transpose)*fvec and store the first n components in
+			// qtf.
+
+			for (i = 0; i < m; i++)
+				wa4[i] = fvec[i];
+
+			for (j = 0; j < n; j++) {
+				jj = j + j * ldfjac;
+				if (fjac[jj] != zero) {
+					sum = Blas_j.ddot_j(m - j, fjac, jj, wa4, j);
+					temp = -sum / fjac[jj];
+					Blas_j.daxpy_j(m - j, temp, fjac, jj, wa4, j);
+				}
+				fjac[jj] = wa1[j];
+				qtf[j] = wa4[j];
+			}
+
+			// Compute the norm of the scaled gradient.
+
+			gnorm = zero;
+
+			if (fnorm != zero) {
+				for (j = 0; j < n; j++) {
+					l = ipvt[j];
+					if (wa2[l] != zero) {
+						sum = zero;
+						for (i = 0; i <= j; i++)
+							sum += fjac[i + j * ldfjac] * (qtf[i] / fnorm);
+						gnorm = Math.max(gnorm, Math.abs(sum / wa2[l]));
+					}
+				}
+			}
+
+			// Test for convergence of the gradient norm.
+
+			if (gnorm <= gtol)
+				info[0] = 4;
+
+			if (info[0] != 0) {
+				if (iflag[0] < 0)
+					info[0] = iflag[0];
+				iflag[0] = 0;
+				if (nprint > 0)
+					nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+				return;
+			}
+
+			// Rescale if necessary.
+
+			if (mode != 2) {
+				for (j = 0; j < n; j++)
+					diag[j] = Math.max(diag[j], wa2[j]);
+			}
+
+			// Beginning of the inner loop.
+
+			donein = false;
+
+			while (!donein) {
+
+				// Determine the Levenberg-Marquardt parameter.
+
+				Minpack_j.lmpar_j(n, fjac, ldfjac, ipvt, diag, qtf, delta,
+						par, wa1, wa2, wa3, wa4);
+
+				// Store the direction p and x + p. Calculate the norm of p.
+
+				for (j = 0; j < n; j++) {
+					wa1[j] = -wa1[j];
+					wa2[j] = x[j] + wa1[j];
+					wa3[j] = diag[j] * wa1[j];
+				}
+
+				pnorm = Minpack_j.enorm_j(n, wa3, 0);
+
+				// On the first iteration, adjust the initial step bound.
+
+				if (iter == 1)
+					delta = Math.min(delta, pnorm);
+
+				// Evaluate the function at x + p and calculate its norm.
+
+				iflag[0] = 1;
+				nlls.fcn_j(m, n, wa2, wa4, fjac, ldfjac, iflag);
+				nfev[0]++;
+
+				if (iflag[0] < 0) {
+					info[0] = iflag[0];
+					iflag[0] = 0;
+					if (nprint > 0)
+						nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+					return;
+				}
+
+				fnorm1 = Minpack_j.enorm_j(m, wa4, 0);
+
+				// Compute the scaled actual reduction.
+
+				actred = -one;
+				if (p1 * fnorm1 < fnorm)
+					actred = one - (fnorm1 / fnorm) * (fnorm1 / fnorm);
+
+				// Compute the scaled predicted reduction and the scaled
+				// directional derivative.
+
+				for (j = 0; j < n; j++) {
+					wa3[j] = zero;
+					l = ipvt[j];
+					temp = wa1[l];
+					Blas_j.daxpy_j(j + 1, temp, fjac, j * ldfjac, wa3, 0);
+				}
+
+				temp1 = Minpack_j.enorm_j(n, wa3, 0) / fnorm;
+				temp2 = (Math.sqrt(par[0]) * pnorm) / fnorm;
+				prered = temp1 * temp1 + temp2 * temp2 / p5;
+				dirder = -(temp1 * temp1 + temp2 * temp2);
+
+				// Compute the ratio of the actual to the predicted
+				// reduction.
+
+				ratio = zero;
+				if (prered != zero)
+					ratio = actred / prered;
+
+				// Update the step bound.
+
+				if (ratio <= p25) {
+					if (actred >= zero) {
+						temp = p5;
+					} else {
+						temp = p5 * dirder / (dirder + p5 * actred);
+					}
+					if (p1 * fnorm1 >= fnorm || temp < p1)
+						temp = p1;
+					delta = temp * Math.min(delta, pnorm / p1);
+					par[0] /= temp;
+				} else {
+					if (par[0] == zero || ratio >= p75) {
+						delta = pnorm / p5;
+						par[0] *= p5;
+					}
+				}
+
+				// Test for successful iteration.
+
+				if (ratio >= p0001) {
+
+					// Successful iteration. Update x, fvec, and their norms.
+
+					for (j = 0; j < n; j++) {
+						x[j] = wa2[j];
+						wa2[j] = diag[j] * x[j];
+					}
+					for (i = 0; i < m; i++)
+						fvec[i] = wa4[i];
+
+					xnorm = Minpack_j.enorm_j(n, wa2, 0);
+					fnorm = fnorm1;
+					iter++;
+				}
+
+				// Tests for convergence.
+
+				if (Math.abs(actred) <= ftol && prered <= ftol
+						&& p5 * ratio <= one)
+					info[0] = 1;
+				if (delta <= xtol * xnorm)
+					info[0] = 2;
+				if (Math.abs(actred) <= ftol && prered <= ftol
+						&& p5 * ratio <= one && info[0] == 2)
+					info[0] = 3;
+
+				if (info[0] != 0) {
+					if (iflag[0] < 0)
+						info[0] = iflag[0];
+					iflag[0] = 0;
+					if (nprint > 0)
+						nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+					return;
+				}
+
+				// Tests for termination and stringent tolerances.
+
+				if (nfev[0] >= maxfev)
+					info[0] = 5;
+				if (Math.abs(actred) <= epsmch && prered <= epsmch
+						&& p5 * ratio <= one)
+					info[0] = 6;
+				if (delta <= epsmch * xnorm)
+					info[0] = 7;
+				if (gnorm <= epsmch)
+					info[0] = 8;
+
+				if (info[0] != 0) {
+					if (iflag[0] < 0)
+						info[0] = iflag[0];
+					iflag[0] = 0;
+					if (nprint > 0)
+						nlls.fcn_j(m, n, x, fvec, fjac, ldfjac, iflag);
+					return;
+				}
+
+				// End of the inner loop. Repeat if iteration unsuccessful.
+
+				if (ratio >= p0001)
+					donein = true;
+			}
+
+			// End of the outer loop.
+		}
+	}
+
+	/**
+	 * The euclidean norm of a vector, avoiding overflows and underflows, see
+	 * enorm_f77
+	 *
+	 * @param n
+	 *            Number of elements
+	 * @param x
+	 * @param off
+	 *            Position of the first element, i.e. a part of a column
+	 * @return The norm
+	 */
+	public static double enorm_j(int n, double x[], int off) {
+
+		int i;
+		double agiant, floatn, rdwarf, rgiant, s1, s2, s3, xabs, x1max, x3max;
+		double enorm;
+
+		rdwarf = 3.834e-20;
+		rgiant = 1.304e+19;
+
+		s1 = zero;
+		s2 = zero;
+		s3 = zero;
+		x1max = zero;
+		x3max = zero;
+		floatn = n;
+		agiant = rgiant / floatn;
+
+		for (i = off; i < off + n; i++) {
+			xabs = Math.abs(x[i]);
+			if (xabs <= rdwarf || xabs >= agiant) {
+				if (xabs > rdwarf) {
+
+					// Sum for large components.
+
+					if (xabs > x1max) {
+						s1 = one + s1 * (x1max / xabs) * (x1max / xabs);
+						x1max = xabs;
+					} else {
+						s1 += (xabs / x1max) * (xabs / x1max);
+					}
+				} else {
+
+					// Sum for small components.
+
+					if (xabs > x3max) {
+						s3 = one + s3 * (x3max / xabs) * (x3max / xabs);
+						x3max = xabs;
+					} else {
+						if (xabs != zero)
+							s3 += (xabs / x3max) * (xabs / x3max);
+					}
+				}
+			} else {
+
+				// Sum for intermediate components.
+
+				s2 += xabs * xabs;
+			}
+		}
+
+		// Calculation of norm.
+
+		if (s1 != zero) {
+			enorm = x1max * Math.sqrt(s1 + (s2 / x1max) / x1max);
+		} else {
+			if (s2 != zero) {
+				if (s2 >= x3max) {
+					enorm = Math.sqrt(s2 * (one + (x3max / s2) * (x3max * s3)));
+				} else {
+					enorm = Math.sqrt(x3max * ((s2 / x3max) + (x3max * s3)));
+				}
+			} else {
+				enorm = x3max * Math.sqrt(s3);
+			}
+		}
+
+		return enorm;
+	}
+
+	/**
+	 * QR factorization with column pivoting of a m by n matrix stored by
+	 * columns, see qrfac_f77. The norms of the columns are calculated in
+	 * place, without copying them to a vector
+	 *
+	 * @param m
+	 * @param n
+	 * @param a
+	 *            The matrix, at the end R in its upper triangle and the
+	 *            Householder vectors below
+	 * @param lda
+	 *            Leading dimension of a
+	 * @param pivot
+	 * @param ipvt
+	 *            The permutation, from 0
+	 * @param rdiag
+	 *            The diagonal of R
+	 * @param acnorm
+	 *            The norms of the columns of a
+	 * @param wa
+	 *            Work vector of size n
+	 */
+	public static void qrfac_j(int m, int n, double a[], int lda,
+			boolean pivot, int ipvt[], double rdiag[], double acnorm[],
+			double wa[]) {
+
+		int j, jj, k, kj, kmax, minmn;
+		double ajnorm, sum, temp;
+		double fac;
+
+		// Compute the initial column norms and initialize several arrays.
+
+		for (j = 0; j < n; j++) {
+			acnorm[j] = Minpack_j.enorm_j(m, a, j * lda);
+			rdiag[j] = acnorm[j];
+			wa[j] = rdiag[j];
+			if (pivot)
+				ipvt[j] = j;
+		}
+
+		// Reduce a to r with Householder transformations.
+
+		minmn = Math.min(m, n);
+
+		for (j = 0; j < minmn; j++) {
+			if (pivot) {
+
+				// Bring the column of largest norm into the pivot position.
+
+				kmax = j;
+				for (k = j; k < n; k++) {
+					if (rdiag[k] > rdiag[kmax])
+						kmax = k;
+				}
+				if (kmax != j) {
+					Blas_j.dswap_j(m, a, j * lda, a, kmax * lda);
+					rdiag[kmax] = rdiag[j];
+					wa[kmax] = wa[j];
+					k = ipvt[j];
+					ipvt[j] = ipvt[kmax];
+					ipvt[kmax] = k;
+				}
+			}
+
+			// Compute the Householder transformation to reduce the j-th
+			// column of a to a multiple of the j-th unit vector.
+
+			jj = j + j * lda;
+			ajnorm = Minpack_j.enorm_j(m - j, a, jj);
+
+			if (ajnorm != zero) {
+				if (a[jj] < zero)
+					ajnorm = -ajnorm;
+				for (int i = jj; i < jj + m - j; i++)
+					a[i] /= ajnorm;
+				a[jj] += one;
+
+				// Apply the transformation to the remaining columns and
+				// update the norms.
+
+				for (k = j + 1; k < n; k++) {
+					kj = j + k * lda;
+					sum = Blas_j.ddot_j(m - j, a, jj, a, kj);
+					temp = sum / a[jj];
+					Blas_j.daxpy_j(m - j, -temp, a, jj, a, kj);
+
+					if (pivot && rdiag[k] != zero) {
+						temp = a[kj] / rdiag[k];
+						rdiag[k] *= Math.sqrt(Math.max(zero, one - temp
+								* temp));
+						fac = rdiag[k] / wa[k];
+						if (p05 * fac * fac <= epsmch) {
+							rdiag[k] = Minpack_j.enorm_j(m - j - 1, a, kj + 1);
+							wa[k] = rdiag[k];
+						}
+					}
+				}
+			}
+			rdiag[j] = -ajnorm;
+		}
+	}
+
+	/**
+	 * Solves the least squares problem of R*z = Q'*b with the diagonal
+	 * d*z = 0, see qrsolv_f77. r is stored by columns
+	 *
+	 * @param n
+	 * @param r
+	 *            R in its upper triangle, at the end the transpose of the
+	 *            triangular matrix S below the diagonal
+	 * @param ldr
+	 *            Leading dimension of r
+	 * @param ipvt
+	 *            The permutation, from 0
+	 * @param diag
+	 *            d
+	 * @param qtb
+	 *            The first n elements of Q'*b
+	 * @param x
+	 *            The solution
+	 * @param sdiag
+	 *            The diagonal of S
+	 * @param wa
+	 *            Work vector of size n
+	 */
+	public static void qrsolv_j(int n, double r[], int ldr, int ipvt[],
+			double diag[], double qtb[], double x[], double sdiag[],
+			double wa[]) {
+
+		int i, j, k, kk, l, nsing;
+		double cos, cotan, qtbpj, sin, sum, tan, temp;
+
+		// Copy r and (q transpose)*b to preserve input and initialize s.
+		// In particular, save the diagonal elements of r in x.
+
+		for (j = 0; j < n; j++) {
+			Blas_j.rowcol_j(n - j, r, ldr, j);
+			x[j] = r[j + j * ldr];
+			wa[j] = qtb[j];
+		}
+
+		// Eliminate the diagonal matrix d using a Givens rotation.
+
+		for (j = 0; j < n; j++) {
+
+			// Prepare the row of d to be eliminated, locating the diagonal
+			// element using p from the qr factorization.
+
+			l = ipvt[j];
+
+			if (diag[l] != zero) {
+				for (k = j; k < n; k++)
+					sdiag[k] = zero;
+				sdiag[j] = diag[l];
+
+				// The transformations to eliminate the row of d modify only
+				// a single element of (q transpose)*b beyond the first n,
+				// which is initially zero.
+
+				qtbpj = zero;
+
+				for (k = j; k < n; k++) {
+
+					// Determine a Givens rotation which eliminates the
+					// appropriate element in the current row of d.
+
+					if (sdiag[k] != zero) {
+						kk = k + k * ldr;
+						if (Math.abs(r[kk]) < Math.abs(sdiag[k])) {
+							cotan = r[kk] / sdiag[k];
+							sin = p5 / Math.sqrt(p25 + p25 * cotan * cotan);
+							cos = sin * cotan;
+						} else {
+							tan = sdiag[k] / r[kk];
+							cos = p5 / Math.sqrt(p25 + p25 * tan * tan);
+							sin = cos * tan;
+						}
+
+						// Compute the modified diagonal element of r and the
+						// modified element of ((q transpose)*b,0).
+
+						r[kk] = cos * r[kk] + sin * sdiag[k];
+						temp = cos * wa[k] + sin * qtbpj;
+						qtbpj = -sin * wa[k] + cos * qtbpj;
+						wa[k] = temp;
+
+						// Accumulate the tranformation in the row of s.
+
+						for (i = k + 1; i < n; i++) {
+							temp = cos * r[kk + i - k] + sin * sdiag[i];
+							sdiag[i] = -sin * r[kk + i - k] + cos * sdiag[i];
+							r[kk + i - k] = temp;
+						}
+					}
+				}
+			}
+
+			// Store the diagonal element of s and restore the corresponding
+			// diagonal element of r.
+
+			sdiag[j] = r[j + j * ldr];
+			r[j + j * ldr] = x[j];
+		}
+
+		// Solve the triangular system for z. If the system is singular,
+		// then obtain a least squares solution.
+
+		nsing = n;
+		for (j = 0; j < n; j++) {
+			if (sdiag[j] == zero && nsing == n)
+				nsing = j;
+			if (nsing < n)
+				wa[j] = zero;
+		}
+
+		for (j = nsing - 1; j >= 0; j--) {
+			sum = Blas_j.ddot_j(nsing - j - 1, r, j + 1 + j * ldr, wa, j + 1);
+			wa[j] = (wa[j] - sum) / sdiag[j];
+		}
+
+		// Permute the components of z back to components of x.
+
+		for (j = 0; j < n; j++) {
+			l = ipvt[j];
+			x[l] = wa[j];
+		}
+	}
+
+	/**
+	 * Determines the Levenberg-Marquardt parameter, see lmpar_f77. r is
+	 * stored by columns with a leading dimension ldr, the rest of the
+	 * parameters are as in lmpar_f77 with par in the position 0
+	 */
+	public static void lmpar_j(int n, double r[], int ldr, int ipvt[],
+			double diag[], double qtb[], double delta, double par[],
+			double x[], double sdiag[], double wa1[], double wa2[]) {
+
+		int iter, j, jj, l, nsing;
+		double dxnorm, dwarf, fp, gnorm, parc, parl, paru, sum, temp;
+		boolean loop;
+
+		// dwarf is the smallest positive magnitude.
+
+		dwarf = minmag;
+
+		// Compute and store in x the Gauss-Newton direction. If the
+		// Jacobian is rank-deficient, obtain a least squares solution.
+
+		nsing = n;
+
+		for (j = 0; j < n; j++) {
+			wa1[j] = qtb[j];
+			if (r[j + j * ldr] == zero && nsing == n)
+				nsing = j;
+			if (nsing < n)
+				wa1[j] = zero;
+		}
+
+		for (j = nsing - 1; j >= 0; j--) {
+			wa1[j] /= r[j + j * ldr];
+			temp = wa1[j];
+			Blas_j.daxpy_j(j, -temp, r, j * ldr, wa1, 0);
+		}
+
+		for (j = 0; j < n; j++) {
+			l = ipvt[j];
+			x[l] = wa1[j];
+		}
+
+		// Initialize the iteration counter. Evaluate the function at the
+		// origin, and test for acceptance of the Gauss-Newton direction.
+
+		iter = 0;
+
+		for (j = 0; j < n; j++)
+			wa2[j] = diag[j] * x[j];
+
+		dxnorm = Minpack_j.enorm_j(n, wa2, 0);
+
+		fp = dxnorm - delta;
+
+		if (fp <= p1 * delta) {
+			par[0] = zero;
+			return;
+		}
+
+		// If the Jacobian is not rank deficient, the Newton step provides a
+		// lower bound, parl, for the zero of the function. Otherwise set
+		// this bound to zero.
+
+		parl = zero;
+
+		if (nsing >= n) {
+			for (j = 0; j < n; j++) {
+				l = ipvt[j];
+				wa1[j] = diag[l] * (wa2[l] / dxnorm);
+			}
+			for (j = 0; j < n; j++) {
+				jj = j + j * ldr;
+				sum = Blas_j.ddot_j(j, r, j * ldr, wa1, 0);
+				wa1[j] = (wa1[j] - sum) / r[jj];
+			}
+			temp = Minpack_j.enorm_j(n, wa1, 0);
+			parl = ((fp / delta) / temp) / temp;
+		}
+
+		// Calculate an upper bound, paru, for the zero of the function.
+
+		for (j = 0; j < n; j++) {
+			sum = Blas_j.ddot_j(j + 1, r, j * ldr, qtb, 0);
+			l = ipvt[j];
+			wa1[j] = sum / diag[l];
+		}
+
+		gnorm = Minpack_j.enorm_j(n, wa1, 0);
+		paru = gnorm / delta;
+
+		if (paru == zero)
+			paru = dwarf / Math.min(delta, p1);
+
+		// If the input par lies outside of the interval (parl,paru), set
+		// par to the closer endpoint.
+
+		par[0] = Math.max(par[0], parl);
+		par[0] = Math.min(par[0], paru);
+
+		if (par[0] == zero)
+			par[0] = gnorm / dxnorm;
+
+		// Beginning of an iteration.
+
+		loop = true;
+
+		while (loop) {
+
+			iter++;
+
+			// Evaluate the function at the current value of par.
+
+			if (par[0] == zero)
+				par[0] = Math.max(dwarf, p001 * paru);
+
+			temp = Math.sqrt(par[0]);
+
+			for (j = 0; j < n; j++)
+				wa1[j] = temp * diag[j];
+
+			Minpack_j.qrsolv_j(n, r, ldr, ipvt, wa1, qtb, x, sdiag, wa2);
+
+			for (j = 0; j < n; j++)
+				wa2[j] = diag[j] * x[j];
+
+			dxnorm = Minpack_j.enorm_j(n, wa2, 0);
+			temp = fp;
+			fp = dxnorm - delta;
+
+			// If the function is small enough, accept the current value of
+			// par. Also test for the exceptional cases where parl is zero
+			// or the number of iterations has reached 10.
+
+			if (Math.abs(fp) <= p1 * delta || parl == zero && fp <= temp
+					&& temp < zero || iter == 10) {
+				if (iter == 0)
+					par[0] = zero;
+				return;
+			}
+
+			// Compute the Newton correction.
+
+			for (j = 0; j < n; j++) {
+				l = ipvt[j];
+				wa1[j] = diag[l] * (wa2[l] / dxnorm);
+			}
+
+			for (j = 0; j < n; j++) {
+				wa1[j] /= sdiag[j];
+				temp = wa1[j];
+				Blas_j.daxpy_j(n - j - 1, -temp, r, j + 1 + j * ldr, wa1,
+						j + 1);
+			}
+
+			temp = Minpack_j.enorm_j(n, wa1, 0);
+			parc = ((fp / delta) / temp) / temp;
+
+			// Depending on the sign of the function, update parl or paru.
+
+			if (fp > zero)
+				parl = Math.max(parl, par[0]);
+			if (fp < zero)
+				paru = Math.min(paru, par[0]);
+
+			// Compute an improved estimate for par[0].
+
+			par[0] = Math.max(parl, par[0] + parc);
+
+			// End of an iteration.
+		}
+	}
+
+}
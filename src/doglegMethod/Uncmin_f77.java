@@ -48,6 +48,9 @@ Date        Translator        Changes
 
 package doglegMethod;
 
+import evaluation.Scheduler;
+import evaluation.Statistics;
+
 /**
  * 
  *<p>
@@ -306,7 +309,8 @@ public class Uncmin_f77 extends Object {
 	 *            = 1 if the optimization function f_to_minimize is expensive to
 	 *            evaluate, = 0 otherwise. If iexp = 1, then the Hessian will be
 	 *            evaluated by secant update rather than analytically or by
-	 *            finite differences.
+	 *            finite differences, starting from the analytic Hessian if
+	 *            iahflg = 1.
 	 *@param msg
 	 *            Message to inhibit certain automatic checks and output
 	 *@param ndigit
@@ -3307,7 +3311,8 @@ public class Uncmin_f77 extends Object {
 	 *            Expense flag. 1 -- optimization function, f_to_minimize, is
 	 *            expensive to evaluate 0 -- otherwise If iexp = 1, the Hessian
 	 *            will be evaluated by secant update rather than analytically or
-	 *            by finite differences.
+	 *            by finite differences, starting from the analytic Hessian if
+	 *            iahflg = 1.
 	 *@param msg
 	 *            On input: (> 0) message to inhibit certain automatic checks On
 	 *            output: (< 0) error code (= 0, no error)
@@ -3611,7 +3616,21 @@ public class Uncmin_f77 extends Object {
 				// HESSIAN WILL BE OBTAINED BY SECANT UPDATES. GET INITIAL
 				// HESSIAN.
 
-				Uncmin_f77.hsnint_f77(n, a, sx, method);
+				if (iahflg[1] == 1) {
+
+					// The updates start from the analytic Hessian at x, not
+					// from the identity. The factored secant method (line
+					// search and dogleg) needs its decomposition
+
+					minclass.hessian(x, a);
+					if (method[1] != 3)
+						Uncmin_f77.chlhsn_f77(n, a, epsm, sx, udiag);
+
+				} else {
+
+					Uncmin_f77.hsnint_f77(n, a, sx, method);
+
+				}
 
 			} else {
 
@@ -3666,6 +3685,8 @@ public class Uncmin_f77 extends Object {
 			while (itrmcd[1] == 0) {
 
 				itncnt[1]++;
+				Scheduler.checkCancelled();
+				Statistics.iteration();
 
 				// FIND PERTURBED LOCAL MODEL HESSIAN AND ITS LL+ DECOMPOSITION
 				// (SKIP THIS STEP IF LINE SEARCH OR DOGSTEP TECHNIQUES BEING
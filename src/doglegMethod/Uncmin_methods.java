@@ -4,20 +4,50 @@ import org.apache.commons.math.linear.ArrayRealVector;
 import org.apache.commons.math.linear.RealMatrix;
 import org.apache.commons.math.linear.RealVector;
 
-import evaluation.DiffAndEvaluator;
+import evaluation.Statistics;
+import evaluation.VariableBinding;
+
 import solver.PrepareUncmin;
-import solver.matriz;
-import solver.nodo;
 
-//NOW THE VALUES ARE ONLY INTRODUCED WHEN THE FUNCTION IS GOING TO BE EVALUATED
 /**
  * Class to use with the Uncmin_f77
  * 
  * @author pablo Salinas
  */
 public class Uncmin_methods {
-	private static RealVector F;
-	private static RealMatrix J;
+	/**
+	 * The system solved
+	 */
+	private final PrepareUncmin P;
+	/**
+	 * The value of f at a point out of the real domain of some equation
+	 */
+	private static final double Failed = 1e100;
+	private RealVector F;
+	private RealMatrix J;
+	/**
+	 * The point of the last gradient, where the Jacobian of the Hessian is
+	 * made
+	 */
+	private double[] gradientPoint;
+
+	/**
+	 * 
+	 * @param P
+	 *            The system solved
+	 */
+	public Uncmin_methods(PrepareUncmin P) {
+		this.P = P;
+	}
+
+	/**
+	 * For the subclasses that evaluate their own function, overriding
+	 * f_to_minimize, gradient and hessian, i.e. the test problems of the
+	 * benchmarks
+	 */
+	protected Uncmin_methods() {
+		this.P = null;
+	}
 
 	/**
 	 * Introduce the values of f= 1/2 Sum(F^2) in matheclipse
@@ -25,24 +55,40 @@ public class Uncmin_methods {
 	 * @param x
 	 * @return
 	 */
-	public static double f_to_minimize(double x[]) {
-
-		IntroduceValues(x); // TEMPORAL
+	public double f_to_minimize(double x[]) {
+
+		P.IntroduceValues(x); // TEMPORAL
+		Statistics.function();
+		// A step out of the domain (a log or a root of a negative number)
+		// makes f very big, so it is shortened. The first point is evaluated
+		// as always, its errors are reported
+		if (F != null && !Real())
+			return Failed;
 		MakeF();
 		return F.dotProduct(F.mapMultiply(0.5));
 
 	}
 
 	/**
-	 * Creates and evaluates the gradient of f
+	 * Evaluates the gradient of f, J'*F. It is calculated in reverse mode on
+	 * the tape of the functions, so the Jacobian is not made. If some function
+	 * is not compiled J'*F is used
 	 * 
 	 * @param x
 	 * @param g
 	 */
-	public static void gradient(double x[], double g[]) {
+	public void gradient(double x[], double g[]) {
 
 		// IntroduceValues(x); //TEMPORAL
 
+		J = null;
+		gradientPoint = P.Binding.getValues().clone();
+		double[] grad = new double[P.Xk.getSize()];
+		if (P.Compiled.gradient(0, F.toArray(), grad)) {
+			System.arraycopy(grad, 0, g, 1, grad.length);
+			return;
+		}
+
 		MakeJ();
 
 		RealVector aux = J.transpose().operate(F);
@@ -62,73 +108,69 @@ public class Uncmin_methods {
 	 * @param x
 	 * @param h
 	 */
-	public static void hessian(double x[], double h[][]) {
+	public void hessian(double x[], double h[][]) {
 
 		// IntroduceValues(x); //TEMPORAL
 
+		if (J == null) {
+			// The Jacobian was not needed by the gradient, it is made at the
+			// same point, f could have been evaluated at others after it
+			VariableBinding B = P.Binding;
+			double[] current = B.getValues().clone();
+			for (int i = 0; i < current.length; i++)
+				B.set(i, gradientPoint[i]);
+			MakeJ();
+			for (int i = 0; i < current.length; i++)
+				B.set(i, current[i]);
+		}
 		RealMatrix Raux;
 		Raux = J.transpose().multiply(J);
-		for (int row = 0; row < PrepareUncmin.Xk.getSize(); row++)
-			for (int col = 0; col < PrepareUncmin.Xk.getSize(); col++) {
+		// Gauss-Newton if there are no second derivatives
+		if (P.Hessian == null) {
+			for (int row = 0; row < P.Xk.getSize(); row++)
+				for (int col = 0; col < P.Xk.getSize(); col++)
+					h[row + 1][col + 1] = Raux.getEntry(row, col);
+			return;
+		}
+		double[] Fvalues = F.toArray();
+		for (int row = 0; row < P.Xk.getSize(); row++)
+			for (int col = 0; col < P.Xk.getSize(); col++) {
 				h[row + 1][col + 1] = Raux.getEntry(row, col)
-						+ HelpHessian(row, col);
+						+ P.Hessian.evaluate(row, col, Fvalues);
 			}
 
 		return;
 	}
 
-	/**
-	 * Introduce the values in matheclipse and updates the values of the vector
-	 * Xk
-	 * 
-	 * @param x
-	 */
-	protected static void IntroduceValues(double x[]) {
-		int i = 1;
-		for (nodo n : PrepareUncmin.Xk.vector) {
-			n.SetValue(x[i]);
-			i++;
-		}
-
-		DiffAndEvaluator.IntroduceValues(PrepareUncmin.Xk.EvaluateVector2ME());
-	}
-
 	/**
 	 * Creates a RealVector with the values of F
 	 */
-	private static void MakeF() {
+	private void MakeF() {
 
-		F = new ArrayRealVector(PrepareUncmin.Fx.getSize());
-		int i = 0;
-		for (nodo n : PrepareUncmin.Fx.vector) {
-			F.setEntry(i, DiffAndEvaluator.Evaluate(n.GetCadena()));
-			i++;
-		}
+		F = new ArrayRealVector(P.CompiledFx.length);
+		for (int i = 0; i < P.CompiledFx.length; i++)
+			F.setEntry(i, P.CompiledFx[i]
+					.evaluate(P.Binding));
 	}
 
 	/**
-	 * Creates a RealMatrix with the values of the jacobian
+	 * 
+	 * @return false if some compiled function is not a real number at the
+	 *         point of the binding
 	 */
-	private static void MakeJ() {
-		J = matriz.EvaluateJacobian(PrepareUncmin.Jacobian);
+	private boolean Real() {
+		for (int i = 0; i < P.CompiledFx.length; i++)
+			if (P.Compiled.isCompiled(i) && Double.isNaN(P.Compiled.value(i)))
+				return false;
+		return true;
 	}
 
 	/**
-	 * 
-	 * @param row
-	 * @param col
-	 * @return Sum(Fj*Laplacian(Fj)). Not exactly that, this only returns one
-	 *         value of that sum;
+	 * Creates a RealMatrix with the values of the jacobian
 	 */
-	public static double HelpHessian(int row, int col) {
-		double aux = 0;
-		int i = 0;
-		for (String[][] S : PrepareUncmin.Hessians) {
-			aux += F.getEntry(i)
-					* evaluation.DiffAndEvaluator.Evaluate(S[row][col]);
-			i++;
-		}
-		return aux;
+	private void MakeJ() {
+		Statistics.jacobian();
+		J = P.Jacobian.evaluate(P.Binding);
 	}
 
 }
@@ -0,0 +1,129 @@
+package evaluation;
+
+import java.util.Map;
+
+/**
+ * An equation or derivative compiled once to be evaluated many times. If the
+ * expression could not be compiled, or the result is not a real number, it is
+ * evaluated by matheclipse as before, after publishing the values of the
+ * binding.
+ *
+ * The expression can also be one of the expressions of a CompiledSystem, then
+ * it is evaluated in the tape of the system.
+ */
+public class CompiledExpression {
+	/**
+	 * The expression as a string
+	 */
+	private final String source;
+	/**
+	 * The compiled expression, null if it could not be compiled
+	 */
+	private final Tape tape;
+	/**
+	 * The system of the expression and its position, null if it has its own
+	 * tape
+	 */
+	private final CompiledSystem system;
+	private final int index;
+
+	/**
+	 * Compiles the expression
+	 *
+	 * @param expression
+	 * @param slots
+	 *            The position in the slots array of every variable
+	 */
+	public CompiledExpression(String expression, Map<String, Integer> slots) {
+		this.source = expression;
+		this.tape = ExpressionCompiler.compile(expression, slots);
+		this.system = null;
+		this.index = -1;
+	}
+
+	/**
+	 * The expression i of a system
+	 *
+	 * @param system
+	 * @param i
+	 */
+	CompiledExpression(CompiledSystem system, int i) {
+		this.source = null;
+		this.tape = null;
+		this.system = system;
+		this.index = i;
+	}
+
+	/**
+	 * Evaluates the expression at the point stored in the binding
+	 *
+	 * @param binding
+	 *            The values of the variables
+	 * @return A double of the expression evaluated
+	 */
+	public double evaluate(VariableBinding binding) {
+		if (system != null)
+			return system.evaluate(index);
+		if (tape != null) {
+			double d = tape.evaluate(binding.getValues());
+			if (!Double.isNaN(d) & !Double.isInfinite(d))
+				return d;
+		}
+		// Not compiled, out of the real domain or a division by zero,
+		// matheclipse decides what to do (returns NaN, a complex number or an
+		// error)
+		binding.publish();
+		return DiffAndEvaluator.Evaluate(source);
+	}
+
+	/**
+	 *
+	 * @return true if the expression is evaluated without matheclipse
+	 */
+	public boolean isCompiled() {
+		if (system != null)
+			return system.isCompiled(index);
+		return tape != null;
+	}
+
+	/**
+	 *
+	 * @return The expression as a string
+	 */
+	public String getSource() {
+		if (system != null)
+			return system.getSource(index);
+		return source;
+	}
+
+	/**
+	 * Compiles every expression of the array
+	 *
+	 * @param expressions
+	 * @param slots
+	 * @return The compiled expressions
+	 */
+	public static CompiledExpression[] compile(String[] expressions,
+			Map<String, Integer> slots) {
+		CompiledExpression[] result = new CompiledExpression[expressions.length];
+		for (int i = 0; i < expressions.length; i++)
+			result[i] = new CompiledExpression(expressions[i], slots);
+		return result;
+	}
+
+	/**
+	 * Compiles every expression of the matrix
+	 *
+	 * @param expressions
+	 * @param slots
+	 * @return The compiled expressions
+	 */
+	public static CompiledExpression[][] compile(String[][] expressions,
+			Map<String, Integer> slots) {
+		CompiledExpression[][] result = new CompiledExpression[expressions.length][];
+		for (int i = 0; i < expressions.length; i++)
+			result[i] = compile(expressions[i], slots);
+		return result;
+	}
+
+}
@@ -0,0 +1,220 @@
+package evaluation;
+
+import java.util.Arrays;
+
+/**
+ * The functions and the Jacobian of a block compiled together in one Tape.
+ * The common subexpressions of all of them are calculated only once, and the
+ * tape is run once per point: the functions are written first, so their
+ * instructions are run when a function is needed and the rest of the tape
+ * when a derivative is needed at the same point.
+ *
+ * Every expression that can not be compiled, or whose result is not a real
+ * number, is evaluated by matheclipse as in CompiledExpression.
+ *
+ * The derivatives of the expressions by a variable are calculated in forward
+ * mode on the same tape, without differentiating the strings, and the
+ * gradient of a weighted sum of expressions in reverse mode.
+ */
+public class CompiledSystem {
+	private final String[] sources;
+	private final Tape tape;
+	/**
+	 * Register of the result of every expression, -1 if it was not compiled
+	 */
+	private final int[] register;
+	private final VariableBinding binding;
+	/**
+	 * Version of the binding when the tape was run
+	 */
+	private long version = -1;
+	/**
+	 * Number of instructions run at that version
+	 */
+	private int done = 0;
+	/**
+	 * Derivatives of the registers by the variable dotSlot, the first dotDone
+	 * registers are calculated at the version dotVersion
+	 */
+	private final double[] dot;
+	private int dotSlot = -1;
+	private long dotVersion = -1;
+	private int dotDone = 0;
+	/**
+	 * Adjoints of the registers for the reverse mode
+	 */
+	private double[] bar;
+
+	/**
+	 * Compiles the expressions, in this order, in the same tape
+	 *
+	 * @param expressions
+	 * @param binding
+	 *            The variables of the expressions
+	 */
+	public CompiledSystem(String[] expressions, VariableBinding binding) {
+		this.sources = expressions;
+		this.binding = binding;
+		this.register = new int[expressions.length];
+		TapeBuilder TB = new TapeBuilder();
+		ExpressionCompiler EC = new ExpressionCompiler(binding.getSlots(), TB);
+		for (int i = 0; i < expressions.length; i++) {
+			register[i] = EC.add(expressions[i]);
+			if (register[i] != -1)
+				TB.output(register[i]);
+		}
+		this.tape = TB.build();
+		this.dot = new double[tape.size()];
+	}
+
+	/**
+	 * Runs the tape at the point of the binding until the register needed
+	 */
+	private void run(int last) {
+		if (version != binding.getVersion()) {
+			version = binding.getVersion();
+			done = 0;
+		}
+		if (done <= last) {
+			tape.run(binding.getValues(), done, last + 1);
+			done = last + 1;
+		}
+	}
+
+	/**
+	 * Evaluates the expression i at the point stored in the binding
+	 *
+	 * @param i
+	 * @return A double of the expression evaluated
+	 */
+	public double evaluate(int i) {
+		if (register[i] != -1) {
+			run(register[i]);
+			double d = tape.getRegister(register[i]);
+			if (!Double.isNaN(d) & !Double.isInfinite(d))
+				return d;
+		}
+		binding.publish();
+		return DiffAndEvaluator.Evaluate(sources[i]);
+	}
+
+	/**
+	 * Evaluates the expression i only with the tape, matheclipse is never used
+	 *
+	 * @param i
+	 * @return The value or NaN if the expression was not compiled or the
+	 *         value is not a real number
+	 */
+	public double value(int i) {
+		if (register[i] == -1)
+			return Double.NaN;
+		run(register[i]);
+		double d = tape.getRegister(register[i]);
+		return Double.isInfinite(d) ? Double.NaN : d;
+	}
+
+	/**
+	 * The derivative of the expression i by a variable at the point stored in
+	 * the binding. The derivatives by the same variable at the same point are
+	 * calculated together, so the entries of a Jacobian should be asked for
+	 * by columns.
+	 *
+	 * @param i
+	 * @param slot
+	 *            The variable
+	 * @return The derivative or NaN if the expression was not compiled or
+	 *         the derivative is not a real number
+	 */
+	public double derivative(int i, int slot) {
+		if (register[i] == -1)
+			return Double.NaN;
+		run(register[i]);
+		if (dotVersion != version | dotSlot != slot | dotDone <= register[i]) {
+			tape.forward(slot, dot, done);
+			dotVersion = version;
+			dotSlot = slot;
+			dotDone = done;
+		}
+		double d = dot[register[i]];
+		return Double.isInfinite(d) ? Double.NaN : d;
+	}
+
+	/**
+	 * The gradient of Sum(weights[j]*expression(first+j)) at the point stored
+	 * in the binding, in reverse mode. The cost is about the same as
+	 * evaluating the expressions, whatever the number of variables
+	 *
+	 * @param first
+	 * @param weights
+	 * @param gradient
+	 *            Where the gradient is written, one position for every slot
+	 * @return false if some expression is not compiled or the gradient is
+	 *         not a real number, then gradient is not valid
+	 */
+	public boolean gradient(int first, double[] weights, double[] gradient) {
+		int last = -1;
+		for (int j = 0; j < weights.length; j++) {
+			if (register[first + j] == -1)
+				return false;
+			last = Math.max(last, register[first + j]);
+		}
+		Arrays.fill(gradient, 0);
+		if (last == -1)
+			return true;
+		run(last);
+		if (bar == null)
+			bar = new double[tape.size()];
+		Arrays.fill(bar, 0, last + 1, 0);
+		for (int j = 0; j < weights.length; j++)
+			bar[register[first + j]] += weights[j];
+		tape.reverse(bar, gradient, last + 1);
+		for (double d : gradient)
+			if (Double.isNaN(d) | Double.isInfinite(d))
+				return false;
+		return true;
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return true if the expression i is evaluated without matheclipse
+	 */
+	public boolean isCompiled(int i) {
+		return register[i] != -1;
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return The expression i as a string
+	 */
+	public String getSource(int i) {
+		return sources[i];
+	}
+
+	/**
+	 *
+	 * @param from
+	 * @param count
+	 * @return The expressions from one position, to be used one by one
+	 */
+	public CompiledExpression[] expressions(int from, int count) {
+		CompiledExpression[] result = new CompiledExpression[count];
+		for (int i = 0; i < count; i++)
+			result[i] = new CompiledExpression(this, from + i);
+		return result;
+	}
+
+	/**
+	 *
+	 * @return The number of instructions of the tape
+	 */
+	public int size() {
+		return tape.size();
+	}
+
+	public VariableBinding getBinding() {
+		return binding;
+	}
+
+}
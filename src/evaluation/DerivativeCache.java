@@ -0,0 +1,184 @@
+package evaluation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the derivatives returned by matheclipse, so the same D[expr,var]
+ * is not calculated twice. When the cache is full the derivative used least
+ * recently is forgotten. The cache can be saved in a file and loaded in the
+ * next run.
+ *
+ * The derivative depends on the values that matheclipse has for the symbols
+ * of the expression (they are replaced by their values), so those values are
+ * part of the key.
+ */
+public class DerivativeCache {
+
+	/**
+	 * Separates the key and the derivative in the file
+	 */
+	private static final char SEPARATOR = '\t';
+
+	private final int capacity;
+	private final LinkedHashMap<String, String> map;
+	private long hits = 0;
+	private long misses = 0;
+	/**
+	 * true if there are derivatives that have not been saved
+	 */
+	private boolean modified = false;
+
+	/**
+	 *
+	 * @param capacity
+	 *            Maximum number of derivatives stored
+	 */
+	public DerivativeCache(final int capacity) {
+		this.capacity = capacity;
+		this.map = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > DerivativeCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param equation
+	 * @param var
+	 * @param values
+	 *            The values of the symbols of the equation in matheclipse
+	 * @return The key of the derivative
+	 */
+	public static String key(String equation, String var, String values) {
+		return equation.replace(" ", "") + "," + var + "," + values;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return The derivative or null if it is not stored
+	 */
+	public synchronized String get(String key) {
+		String result = map.get(key);
+		if (result == null)
+			misses++;
+		else
+			hits++;
+		return result;
+	}
+
+	public synchronized void put(String key, String derivative) {
+		map.put(key, derivative);
+		modified = true;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Restarts the counters of hits and misses, the derivatives are kept
+	 */
+	public synchronized void resetCounters() {
+		hits = 0;
+		misses = 0;
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * Forgets every derivative and restarts the counters
+	 */
+	public synchronized void clear() {
+		map.clear();
+		hits = 0;
+		misses = 0;
+		modified = true;
+	}
+
+	/**
+	 * Adds the derivatives stored in the file. If the file does not exist
+	 * nothing is done
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public synchronized void load(File file) throws IOException {
+		if (!file.exists())
+			return;
+		BufferedReader b = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int pos;
+			while ((line = b.readLine()) != null) {
+				pos = line.lastIndexOf(SEPARATOR);
+				if (pos > 0)
+					map.put(line.substring(0, pos), line.substring(pos + 1));
+			}
+		} finally {
+			b.close();
+		}
+	}
+
+	/**
+	 * Writes the derivatives in the file, from the least recently used to the
+	 * most, if there are new ones. They are written in a temporary file that
+	 * then replaces the file, so the workers of a batch that save at the same
+	 * time do not mix their lines
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public synchronized void save(File file) throws IOException {
+		if (!modified)
+			return;
+		File parent = file.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(file.getName(), ".tmp", parent);
+		BufferedWriter w = new BufferedWriter(new FileWriter(temporary));
+		try {
+			for (Map.Entry<String, String> E : map.entrySet()) {
+				w.write(E.getKey());
+				w.write(SEPARATOR);
+				w.write(E.getValue());
+				w.newLine();
+			}
+		} finally {
+			w.close();
+		}
+		try {
+			try {
+				Files.move(temporary.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			temporary.delete();
+			throw e;
+		}
+		modified = false;
+	}
+
+}
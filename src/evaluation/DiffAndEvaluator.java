@@ -1,5 +1,11 @@
 package evaluation;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
 import org.matheclipse.basic.EvaluationInterruptedException;
 import org.matheclipse.core.eval.EvalEngine;
 import org.matheclipse.core.eval.EvalUtilities;
@@ -40,16 +46,63 @@ public class DiffAndEvaluator {
 	 */
 	public static boolean IrrealEvaluation = false;
 	/**
-	 * Matheclipse class to communicate with
+	 * Matheclipse class to communicate with. Matheclipse is not thread safe,
+	 * so the methods that use it are synchronized: the systems solved at the
+	 * same time take turns to use it. It is made by ME() the first time it is
+	 * needed, null until then
+	 */
+	private static EvalUtilities util = null;
+	/**
+	 * The values introduced before matheclipse is started, they are
+	 * introduced in it when it starts. A model without derivatives or
+	 * symbolic functions is evaluated with them and never starts it
+	 */
+	private static final HashMap<String, Double> Values = new HashMap<String, Double>();
+	/**
+	 * The derivatives already calculated
+	 */
+	public static final DerivativeCache Derivatives = new DerivativeCache(
+			20000);
+	/**
+	 * File where the derivatives are saved between runs
+	 */
+	public static final String DERIVATIVES_FILE = "derivatives.txt";
+	/**
+	 * true after trying to load the derivatives file
+	 */
+	private static boolean DerivativesLoaded = false;
+
+	/**
+	 * Starts matheclipse now, instead of waiting until it is needed. It takes
+	 * some hundreds of milliseconds, so the GUI does it after showing the
+	 * window. It can be called many times.
 	 */
-	static EvalUtilities util = new EvalUtilities();
+	public static synchronized void PrepareME() {
+		ME();
+	}
 
 	/**
-	 * This must be the first thing to start if you want matheclipse to work.
-	 * But you only have to call it once.
+	 * Starts matheclipse the first time, F.initSymbols must be called before
+	 * using it, and introduces the values stored until then
+	 * 
+	 * @return The class to communicate with matheclipse
 	 */
-	public static void PrepareME() {
-		F.initSymbols(null);
+	private static synchronized EvalUtilities ME() {
+		if (util == null) {
+			long start = System.nanoTime();
+			F.initSymbols(null);
+			util = new EvalUtilities();
+			try {
+				for (Map.Entry<String, Double> E : Values.entrySet())
+					util.evaluate(E.getKey() + "="
+							+ Double.toString(E.getValue()));
+			} catch (final Exception e) {
+				e.printStackTrace();
+			}
+			Values.clear();
+			Statistics.addTime(Statistics.ENGINE, System.nanoTime() - start);
+		}
+		return util;
 	}
 
 	/**
@@ -58,12 +111,22 @@ public class DiffAndEvaluator {
 	 * @param Input
 	 *            string, A=4;B=5;C=8
 	 */
-	public static void IntroduceValues(String input) {
+	public static synchronized void IntroduceValues(String input) {
 
 		try {
 			String[] values = input.split(";");
-			for (String S : values)
-				util.evaluate(S);
+			for (String S : values) {
+				int pos = S.indexOf('=');
+				double value = Double.NaN;
+				// Only values like x=2.0 are stored
+				if (util == null & pos > 0
+						&& S.substring(0, pos).matches("[A-Za-z][A-Za-z0-9]*"))
+					value = Number(S.substring(pos + 1));
+				if (Double.isNaN(value))
+					ME().evaluate(S);
+				else
+					Values.put(S.substring(0, pos), value);
+			}
 			// util.evaluate(s);
 
 		} catch (final Exception e) {
@@ -72,6 +135,64 @@ public class DiffAndEvaluator {
 
 	}
 
+	/**
+	 * Introduces the value of one variable into the matheclipse engine.
+	 * 
+	 * @param var
+	 * @param value
+	 */
+	public static synchronized void IntroduceValue(String var, double value) {
+		try {
+			if (util == null & !Double.isNaN(value))
+				Values.put(var, value);
+			else
+				ME().evaluate(var + "=" + Double.toString(value));
+		} catch (final Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 
+	 * @param s
+	 * @return The number written in s, or NaN if it is not only a number
+	 */
+	private static double Number(String s) {
+		try {
+			double d = Double.parseDouble(s);
+			// Double accepts things like 2d or 0x1p3 that matheclipse would
+			// not read as numbers
+			if (!Double.isInfinite(d) & !s.endsWith("d") & !s.endsWith("D")
+					& !s.endsWith("f") & !s.endsWith("F") & s.indexOf('x') < 0
+					& s.indexOf('X') < 0)
+				return d;
+		} catch (NumberFormatException e) {
+			// Not a number
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Evaluates without matheclipse, while it is not started, an expression
+	 * with numbers, the values introduced and the functions that
+	 * ExpressionCompiler knows
+	 * 
+	 * @param s
+	 *            The expression, like 3*x+1 or N[3*x+1]
+	 * @return The value or NaN if matheclipse is needed
+	 */
+	private static double Compiled(String s) {
+		if (s.startsWith("N[") & s.endsWith("]"))
+			s = s.substring(2, s.length() - 1);
+		Tape tape = ExpressionCompiler.compile(s,
+				new HashMap<String, Integer>(0));
+		if (tape == null)
+			return Double.NaN;
+		double d = tape.evaluate(new double[0]);
+		// Out of the real domain or a division by zero, matheclipse decides
+		return Double.isInfinite(d) ? Double.NaN : d;
+	}
+
 	/**
 	 * Evaluates a equation as a string in a point, the values must be
 	 * introduced before using this method
@@ -80,10 +201,15 @@ public class DiffAndEvaluator {
 	 *            string like this A*x/8-(1+c)
 	 * @return A double of the equation evaluated
 	 */
-	public static double Evaluate(String s) {
+	public static synchronized double Evaluate(String s) {
 		if (s != null) {
-			try {				
-				return Double.parseDouble(util.evaluate(s).fullFormString());
+			try {
+				if (util == null) {
+					double d = Compiled(s);
+					if (!Double.isNaN(d))
+						return d;
+				}
+				return Double.parseDouble(ME().evaluate(s).fullFormString());
 			} catch (DivisionByZero D) {
 				D.printStackTrace();
 				StringErrorEvaluating = s;
@@ -118,37 +244,143 @@ public class DiffAndEvaluator {
 	}
 
 	/**
-	 * 
+	 * Returns the value stored in matheclipse for a variable. Unlike Evaluate
+	 * this does not mark an error if the variable has no value.
+	 *
+	 * @param var
+	 * @return The value of the variable or NaN if it has not a numeric value
+	 */
+	public static synchronized double getValue(String var) {
+		if (util == null) {
+			Double value = Values.get(var);
+			return value == null ? Double.NaN : value;
+		}
+		try {
+			IExpr result = util.evaluate("N[" + var + "]");
+			if (result.isNumber())
+				return Double.parseDouble(result.fullFormString());
+		} catch (Exception e) {
+			// Not a number
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 *
 	 * @param equation
 	 * @param var
 	 * @return The differentiation of the equation respect the variable
 	 */
-	public static String diff(String equation, String var) {
+	public static synchronized String diff(String equation, String var) {
+		long start = System.nanoTime();
 		try {
 			if (equation.contains(var)) {
-				String input = "D[" + equation + "," + var + "]";
-				return util.evaluate(input).fullFormString();
+				LoadDerivatives();
+				String key = DerivativeCache.key(equation, var,
+						SymbolValues(equation));
+				String result = Derivatives.get(key);
+				if (result == null) {
+					String input = "D[" + equation + "," + var + "]";
+					result = ME().evaluate(input).fullFormString();
+					Derivatives.put(key, result);
+				}
+				return result;
 			} else
 				return "0";
 
 		} catch (final Exception e) {
 			e.printStackTrace();
+		} finally {
+			Statistics.addDerivative(System.nanoTime() - start);
 		}
 
 		return null;
 	}
 
+	/**
+	 * 
+	 * @param equation
+	 * @return The values that matheclipse has for the variables of the
+	 *         equation, like List[2.0, y]
+	 */
+	private static String SymbolValues(String equation) throws Exception {
+		TreeSet<String> symbols = new TreeSet<String>();
+		int i = 0, start;
+		while (i < equation.length()) {
+			if (Character.isLetter(equation.charAt(i))) {
+				start = i;
+				while (i < equation.length()
+						&& Character.isLetterOrDigit(equation.charAt(i)))
+					i++;
+				// Every symbol but the functions, the variables with an
+				// underscore (Ggx) start with a capital letter
+				if (i == equation.length() || equation.charAt(i) != '[')
+					symbols.add(equation.substring(start, i));
+			} else if (Character.isDigit(equation.charAt(i))) {
+				// Skip numbers like 1.0E-10
+				while (i < equation.length()
+						&& (Character.isLetterOrDigit(equation.charAt(i)) | equation
+								.charAt(i) == '.'))
+					i++;
+			} else
+				i++;
+		}
+		if (symbols.isEmpty())
+			return "";
+		StringBuilder list = new StringBuilder("{");
+		for (String S : symbols) {
+			if (list.length() > 1)
+				list.append(',');
+			list.append(S);
+		}
+		list.append('}');
+		return ME().evaluate(list.toString()).fullFormString();
+	}
+
+	/**
+	 * Loads the derivatives saved in the last run, only the first time and if
+	 * Config.PersistDerivatives is true
+	 */
+	private static void LoadDerivatives() {
+		if (DerivativesLoaded)
+			return;
+		DerivativesLoaded = true;
+		if (Config.PersistDerivatives) {
+			try {
+				Derivatives.load(new File(Config.AbsolutePath
+						+ DERIVATIVES_FILE));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Saves the derivatives calculated in a file, to use them in the next run,
+	 * if Config.PersistDerivatives is true
+	 */
+	public static synchronized void SaveDerivatives() {
+		if (Config.PersistDerivatives) {
+			try {
+				Derivatives.save(new File(Config.AbsolutePath
+						+ DERIVATIVES_FILE));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * Returns the variables of an equation
 	 * 
 	 * @param equation
 	 * @return Array of String with the variables
 	 */
-	public static String[] getVariables(String equation) {
+	public static synchronized String[] getVariables(String equation) {
 
 		try {
 			String input = "Variables[" + equation + "]";
-			input = util.evaluate(input).fullFormString();
+			input = ME().evaluate(input).fullFormString();
 			input = input.substring(5, input.length() - 1);
 			input = input.replace(" ", "");
 			return input.split(",");
@@ -163,10 +395,17 @@ public class DiffAndEvaluator {
 	/**
 	 * A method to clean the values of the variables in the matheclipse engine
 	 */
-	public static void PurgeVar() {
+	public static synchronized void PurgeVar() {
 
 		@SuppressWarnings("unused")
 		IExpr result;
+		if (util == null) {
+			for (VString VS : CheckString.Var.Variables)
+				Values.remove(VS.getVar());
+			for (VString S : CheckString.OneEquationVar)
+				Values.remove(S.getVar());
+			return;
+		}
 		try {
 
 			for (VString VS : CheckString.Var.Variables)
@@ -188,9 +427,13 @@ public class DiffAndEvaluator {
 	 * 
 	 * @param var
 	 */
-	public static void PurgeVar(String var) {
+	public static synchronized void PurgeVar(String var) {
 		@SuppressWarnings("unused")
 		IExpr result;
+		if (util == null) {
+			Values.remove(var);
+			return;
+		}
 		try {
 			result = util.evaluate("ClearAll[" + var + "]");
 
@@ -208,15 +451,9 @@ public class DiffAndEvaluator {
 	 * @returnThe result as a string
 	 */
 	public static String SymbolicEvaluator(String In) {
-		Counter c = new Counter();
-		Thread n = new Thread(c, "Clock");
+		PrepareME();
 		CalculateThread t = new CalculateThread(In);
-		Thread m = new Thread(t, "Evaluator");
-		n.start();
-		m.start();
-		while (m.isAlive())
-			if (!n.isAlive())
-				m.interrupt();
+		Scheduler.run(t, Config.MaxCalculateTime * 1000L);
 
 		return CalculateThread.getOutput();
 
@@ -244,6 +481,7 @@ public class DiffAndEvaluator {
 	 * @return The string wrote in mathML syntaxes
 	 */
 	public static String MathML(String cadena) {
+		PrepareME();
 		EvalEngine EVAL = new EvalEngine();
 		// IF RENDER IS SLOW MAYBE IT IS BECAUSE THERE ARE COMMENTS INSIDE THE
 		// MATHML FORMULA
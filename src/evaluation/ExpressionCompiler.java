@@ -0,0 +1,350 @@
+package evaluation;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Translates an equation written in matheclipse syntax into a Tape. It
+ * understands the strings written by CheckString (x^2-1*(Sin[Degree(y)])) and
+ * the full form returned by matheclipse after a differentiation
+ * (Plus[Times[2, x], Power[y, -1]]).
+ *
+ * The variables are read from slots. Any other symbol must already have a
+ * numeric value in matheclipse (a variable solved before), and that value is
+ * stored in the tape as a constant.
+ */
+public class ExpressionCompiler {
+
+	/**
+	 * Thrown when the expression uses something that cannot be compiled, then
+	 * the expression must be evaluated by matheclipse
+	 */
+	static class CompileException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		CompileException(String msg) {
+			super(msg);
+		}
+	}
+
+	private final Map<String, Integer> slots;
+	private final TapeBuilder builder;
+
+	private String input;
+	private int pos;
+
+	/**
+	 *
+	 * @param slots
+	 *            The position in the slots array of every variable, with the
+	 *            names written by the Lexer
+	 * @param builder
+	 *            Where the instructions are written
+	 */
+	public ExpressionCompiler(Map<String, Integer> slots, TapeBuilder builder) {
+		this.slots = slots;
+		this.builder = builder;
+	}
+
+	/**
+	 * Compiles an expression on its own tape
+	 *
+	 * @param expression
+	 * @param slots
+	 * @return The tape or null if the expression can not be compiled
+	 */
+	public static Tape compile(String expression, Map<String, Integer> slots) {
+		TapeBuilder TB = new TapeBuilder();
+		int register = new ExpressionCompiler(slots, TB).add(expression);
+		if (register == -1)
+			return null;
+		TB.output(register);
+		return TB.build();
+	}
+
+	/**
+	 * Writes the expression in the builder
+	 *
+	 * @param expression
+	 * @return The register with the result of the expression, -1 if the
+	 *         expression can not be compiled
+	 */
+	public int add(String expression) {
+		if (expression == null)
+			return -1;
+		this.input = expression;
+		this.pos = 0;
+		try {
+			int r = sum();
+			skipSpaces();
+			if (pos != input.length())
+				throw new CompileException("Unexpected character at " + pos);
+			return r;
+		} catch (CompileException e) {
+			return -1;
+		} catch (RuntimeException e) {
+			return -1;
+		}
+	}
+
+	/*---------------------------- Parser ----------------------------*/
+
+	private void skipSpaces() {
+		while (pos < input.length() && input.charAt(pos) == ' ')
+			pos++;
+	}
+
+	private char peek() {
+		skipSpaces();
+		return pos < input.length() ? input.charAt(pos) : (char) 0;
+	}
+
+	private void expect(char c) throws CompileException {
+		if (peek() != c)
+			throw new CompileException("Expected " + c + " at " + pos);
+		pos++;
+	}
+
+	/**
+	 * sum := product (('+' | '-') product)*
+	 */
+	private int sum() throws CompileException {
+		int r = product();
+		while (true) {
+			char c = peek();
+			if (c == '+') {
+				pos++;
+				r = builder.binary(Tape.ADD, r, product());
+			} else if (c == '-') {
+				pos++;
+				r = builder.binary(Tape.SUB, r, product());
+			} else
+				return r;
+		}
+	}
+
+	/**
+	 * product := unary (('*' | '/') unary | unary)*. Two terms together are
+	 * multiplied, like Degree(x)
+	 */
+	private int product() throws CompileException {
+		int r = unary();
+		while (true) {
+			char c = peek();
+			if (c == '*') {
+				pos++;
+				r = builder.binary(Tape.MUL, r, unary());
+			} else if (c == '/') {
+				pos++;
+				r = builder.binary(Tape.DIV, r, unary());
+			} else if (c == '(' | Character.isLetterOrDigit(c) | c == '.') {
+				r = builder.binary(Tape.MUL, r, unary());
+			} else
+				return r;
+		}
+	}
+
+	/**
+	 * unary := ('-' | '+') unary | power
+	 */
+	private int unary() throws CompileException {
+		char c = peek();
+		if (c == '-') {
+			pos++;
+			return builder.unary(Tape.NEG, unary());
+		}
+		if (c == '+') {
+			pos++;
+			return unary();
+		}
+		return power();
+	}
+
+	/**
+	 * power := primary ('^' exponent)?; exponent := ('-' | '+') exponent |
+	 * power. As in matheclipse -2^2 = -4 and 2^-1*3 = 3/2
+	 */
+	private int power() throws CompileException {
+		int base = primary();
+		if (peek() == '^') {
+			pos++;
+			return builder.binary(Tape.POW, base, exponent());
+		}
+		return base;
+	}
+
+	private int exponent() throws CompileException {
+		char c = peek();
+		if (c == '-') {
+			pos++;
+			return builder.unary(Tape.NEG, exponent());
+		}
+		if (c == '+') {
+			pos++;
+			return exponent();
+		}
+		return power();
+	}
+
+	/**
+	 * primary := number | '(' sum ')' | symbol | symbol '[' arguments ']'
+	 */
+	private int primary() throws CompileException {
+		char c = peek();
+		if (c == '(') {
+			pos++;
+			int r = sum();
+			expect(')');
+			return r;
+		}
+		if (Character.isDigit(c) | c == '.')
+			return builder.constant(number());
+		if (Character.isLetter(c)) {
+			String name = symbol();
+			if (peek() == '[') {
+				pos++;
+				ArrayList<Integer> args = new ArrayList<Integer>();
+				if (peek() != ']') {
+					args.add(sum());
+					while (peek() == ',') {
+						pos++;
+						args.add(sum());
+					}
+				}
+				expect(']');
+				return function(name, args);
+			}
+			return symbol(name);
+		}
+		throw new CompileException("Unexpected character at " + pos);
+	}
+
+	private double number() throws CompileException {
+		int start = pos;
+		while (pos < input.length()
+				&& (Character.isDigit(input.charAt(pos)) | input.charAt(pos) == '.'))
+			pos++;
+		// Exponent, written by matheclipse like 1.0E-10
+		if (pos < input.length() && input.charAt(pos) == 'E' & pos + 1 < input.length()) {
+			int e = pos + 1;
+			if (input.charAt(e) == '-' | input.charAt(e) == '+')
+				e++;
+			if (e < input.length() && Character.isDigit(input.charAt(e))) {
+				pos = e;
+				while (pos < input.length() && Character.isDigit(input.charAt(pos)))
+					pos++;
+			}
+		}
+		try {
+			return Double.parseDouble(input.substring(start, pos));
+		} catch (NumberFormatException e) {
+			throw new CompileException("Bad number at " + start);
+		}
+	}
+
+	private String symbol() {
+		int start = pos;
+		while (pos < input.length()
+				&& Character.isLetterOrDigit(input.charAt(pos)))
+			pos++;
+		return input.substring(start, pos);
+	}
+
+	/**
+	 * Constants, variables and values already calculated
+	 */
+	private int symbol(String name) throws CompileException {
+		if (name.equals("E"))
+			return builder.constant(Math.E);
+		if (name.equals("Pi"))
+			return builder.constant(Math.PI);
+		if (name.equals("Degree"))
+			return builder.constant(Math.PI / 180);
+
+		Integer slot = slots.get(name);
+		if (slot != null)
+			return builder.variable(slot);
+		// The Lexer writes the variables in lower case and the underscore as
+		// Gg, any other capitalized symbol (I, Infinity...) is left to
+		// matheclipse
+		if (Character.isUpperCase(name.charAt(0)) & !name.startsWith("Gg"))
+			throw new CompileException("Unknown symbol " + name);
+
+		double value = DiffAndEvaluator.getValue(name);
+		if (Double.isNaN(value))
+			throw new CompileException("Unknown symbol " + name);
+		return builder.constant(value);
+	}
+
+	private int function(String name, ArrayList<Integer> args)
+			throws CompileException {
+		int n = args.size();
+		if (name.equals("Plus") & n > 0) {
+			int r = args.get(0);
+			for (int i = 1; i < n; i++)
+				r = builder.binary(Tape.ADD, r, args.get(i));
+			return r;
+		}
+		if (name.equals("Times") & n > 0) {
+			int r = args.get(0);
+			for (int i = 1; i < n; i++)
+				r = builder.binary(Tape.MUL, r, args.get(i));
+			return r;
+		}
+		if (name.equals("Power") & n == 2)
+			return builder.binary(Tape.POW, args.get(0), args.get(1));
+		if (name.equals("Rational") & n == 2)
+			return builder.binary(Tape.DIV, args.get(0), args.get(1));
+		if (name.equals("Log") & n == 2)
+			return builder.binary(Tape.DIV, builder.unary(Tape.LOG, args
+					.get(1)), builder.unary(Tape.LOG, args.get(0)));
+		if (name.equals("ArcTan") & n == 2)
+			return builder.binary(Tape.ATAN2, args.get(0), args.get(1));
+		if (n != 1)
+			throw new CompileException("Unknown function " + name);
+
+		int x = args.get(0);
+		if (name.equals("Sin"))
+			return builder.unary(Tape.SIN, x);
+		if (name.equals("Cos"))
+			return builder.unary(Tape.COS, x);
+		if (name.equals("Tan"))
+			return builder.unary(Tape.TAN, x);
+		if (name.equals("Exp"))
+			return builder.unary(Tape.EXP, x);
+		if (name.equals("Log"))
+			return builder.unary(Tape.LOG, x);
+		if (name.equals("Sinh"))
+			return builder.unary(Tape.SINH, x);
+		if (name.equals("Cosh"))
+			return builder.unary(Tape.COSH, x);
+		if (name.equals("Tanh"))
+			return builder.unary(Tape.TANH, x);
+		if (name.equals("ArcSin"))
+			return builder.unary(Tape.ASIN, x);
+		if (name.equals("ArcCos"))
+			return builder.unary(Tape.ACOS, x);
+		if (name.equals("ArcTan"))
+			return builder.unary(Tape.ATAN, x);
+		if (name.equals("Sqrt"))
+			return builder.unary(Tape.SQRT, x);
+		if (name.equals("Abs"))
+			return builder.unary(Tape.ABS, x);
+		// The reciprocal functions appear in the derivatives
+		if (name.equals("Sec"))
+			return builder.unary(Tape.RECIP, builder.unary(Tape.COS, x));
+		if (name.equals("Csc"))
+			return builder.unary(Tape.RECIP, builder.unary(Tape.SIN, x));
+		if (name.equals("Cot"))
+			return builder.unary(Tape.RECIP, builder.unary(Tape.TAN, x));
+		if (name.equals("Sech"))
+			return builder.unary(Tape.RECIP, builder.unary(Tape.COSH, x));
+		if (name.equals("Csch"))
+			return builder.unary(Tape.RECIP, builder.unary(Tape.SINH, x));
+		if (name.equals("Coth"))
+			return builder.unary(Tape.RECIP, builder.unary(Tape.TANH, x));
+
+		throw new CompileException("Unknown function " + name);
+	}
+
+}
@@ -3,6 +3,7 @@ package evaluation;
 import gui.Config;
 import gui.SolverGUI;
 
+import org.apache.commons.math.linear.ArrayRealVector;
 import org.apache.commons.math.linear.DecompositionSolver;
 import org.apache.commons.math.linear.LUDecompositionImpl;
 import org.apache.commons.math.linear.RealMatrix;
@@ -20,6 +21,10 @@ public class LU {
 	 * The zero of the machine
 	 */
 	private static double epsilon = Config.epsilon;
+	/**
+	 * A pivot smaller than this is zero, as in LUDecompositionImpl
+	 */
+	private static final double TooSmall = 1e-11;
 
 	/**
 	 * 
@@ -67,4 +72,152 @@ public class LU {
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * The same with a sparse matrix. If it is singular, it is solved as a
+	 * dense matrix, with the jitter of the diagonal
+	 * 
+	 * @param Jacobian
+	 *            The structure of the matrix, factored again with the values
+	 * @param values
+	 *            The values of the non zero entries
+	 * @param F
+	 *            It is overwritten with the solution to this J*X=F but
+	 *            multiplied by -1
+	 */
+	public static void Operate(SparseLU Jacobian, double[] values, double[] F) {
+		if (!Jacobian.factor(values)) {
+			RealVector X = Operate(Jacobian.toMatrix(values),
+					new ArrayRealVector(F));
+			for (int i = 0; i < F.length; i++)
+				F[i] = X.getEntry(i);
+			return;
+		}
+		Jacobian.solve(F);
+		for (int i = 0; i < F.length; i++)
+			F[i] = -F[i];
+	}
+
+	/**
+	 * The same with the matrix stored by rows in an array. Nothing is
+	 * allocated, the factorization is made in a workspace
+	 * 
+	 * @param Jacobian
+	 *            The n*n matrix by rows, its diagonal is jittered if it is
+	 *            singular
+	 * @param n
+	 * @param F
+	 *            It is overwritten with the solution to this J*X=F but
+	 *            multiplied by -1
+	 * @param work
+	 *            Workspace of n*n
+	 * @param pivot
+	 *            Workspace of n
+	 */
+	public static void Operate(double[] Jacobian, int n, double[] F,
+			double[] work, int[] pivot) {
+		System.arraycopy(Jacobian, 0, work, 0, n * n);
+		if (!Factor(work, n, pivot)) {
+			Jitter(Jacobian, n);
+			System.arraycopy(Jacobian, 0, work, 0, n * n);
+			if (!Factor(work, n, pivot)) {
+				SolverGUI.PopUpError("Matrix is singular");
+				throw new RuntimeException("Matrix is singular.");
+			}
+		}
+		Solve(work, n, pivot, F);
+		for (int i = 0; i < n; i++)
+			F[i] = -F[i];
+	}
+
+	/**
+	 * The same jitter of the diagonal as Operate with a RealMatrix
+	 */
+	private static void Jitter(double[] J, int n) {
+		for (int i = 0; i < n; i++) {
+			double aux = J[i * n + i];
+			double multiplier = 1;
+			if (!(aux < 1e-8)) {
+				while (Math.abs(aux / 1000) + epsilon * multiplier == Math
+						.abs(aux / 1000))
+					multiplier *= 10;
+				while (Math.abs(aux) * multiplier / (epsilon) < 10)
+					multiplier /= 10;
+			}
+			J[i * n + i] = aux + epsilon * multiplier * i;
+		}
+	}
+
+	/**
+	 * PLU in place with partial pivoting. L (without its unit diagonal) and U
+	 * are written in the matrix
+	 * 
+	 * @param a
+	 *            The n*n matrix by rows
+	 * @param n
+	 * @param pivot
+	 *            The row swapped with every row
+	 * @return false if the matrix is singular
+	 */
+	public static boolean Factor(double[] a, int n, int[] pivot) {
+		for (int k = 0; k < n; k++) {
+			int p = k;
+			double max = Math.abs(a[k * n + k]);
+			for (int i = k + 1; i < n; i++) {
+				double aux = Math.abs(a[i * n + k]);
+				if (aux > max) {
+					max = aux;
+					p = i;
+				}
+			}
+			if (!(max >= TooSmall))
+				return false;
+			pivot[k] = p;
+			if (p != k)
+				for (int j = 0; j < n; j++) {
+					double aux = a[k * n + j];
+					a[k * n + j] = a[p * n + j];
+					a[p * n + j] = aux;
+				}
+			double d = a[k * n + k];
+			for (int i = k + 1; i < n; i++) {
+				double l = a[i * n + k] / d;
+				a[i * n + k] = l;
+				if (l != 0)
+					for (int j = k + 1; j < n; j++)
+						a[i * n + j] -= l * a[k * n + j];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solves A*x=b with the PLU made by Factor
+	 * 
+	 * @param a
+	 * @param n
+	 * @param pivot
+	 * @param b
+	 *            It is overwritten with x
+	 */
+	public static void Solve(double[] a, int n, int[] pivot, double[] b) {
+		for (int k = 0; k < n; k++)
+			if (pivot[k] != k) {
+				double aux = b[k];
+				b[k] = b[pivot[k]];
+				b[pivot[k]] = aux;
+			}
+		for (int i = 1; i < n; i++) {
+			double sum = b[i];
+			for (int j = 0; j < i; j++)
+				sum -= a[i * n + j] * b[j];
+			b[i] = sum;
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double sum = b[i];
+			for (int j = i + 1; j < n; j++)
+				sum -= a[i * n + j] * b[j];
+			b[i] = sum / a[i * n + i];
+		}
+	}
+
+}
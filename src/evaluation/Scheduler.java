@@ -0,0 +1,322 @@
+package evaluation;
+
+import gui.Config;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the solver operations and the symbolic evaluations with a time limit.
+ * The operations are executed by a shared pool of threads and the caller
+ * waits without using the processor until the operation ends or its deadline
+ * passes. Then the operation is cancelled: the thread is interrupted, so
+ * matheclipse stops, and the solvers stop in their next iteration because
+ * they call checkCancelled.
+ *
+ * Every operation has its own deadline and all the operations of a model
+ * share the deadline of the model, the nearest one is used.
+ *
+ * Operations that depend on others can be executed as a graph on a
+ * work-stealing pool, every operation starts when the ones it depends on have
+ * ended, see runAll.
+ */
+public final class Scheduler {
+
+	/**
+	 * Thrown when the time of an operation is over
+	 */
+	public static class TimeLimitException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public TimeLimitException() {
+			super("Time limit exceeded");
+		}
+	}
+
+	/**
+	 * An operation and its deadline
+	 */
+	private static final class Task implements Runnable {
+		final Runnable operation;
+		/**
+		 * Time allowed since the operation starts
+		 */
+		final long millis;
+		/**
+		 * Where the position of the task is written when it ends, can be null
+		 */
+		final BlockingQueue<Integer> finished;
+		final int position;
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile boolean cancelled = false;
+		/**
+		 * The deadline is known when the operation starts
+		 */
+		volatile long deadline = Long.MAX_VALUE;
+		/**
+		 * The thread that executes the operation, null if it has not started
+		 * or it has ended
+		 */
+		volatile Thread runner;
+
+		Task(Runnable operation, long millis, BlockingQueue<Integer> finished,
+				int position) {
+			this.operation = operation;
+			this.millis = millis;
+			this.finished = finished;
+			this.position = position;
+		}
+
+		public void run() {
+			deadline = deadline(millis);
+			runner = Thread.currentThread();
+			// An interruption of a previous operation of this thread
+			Thread.interrupted();
+			Current.set(this);
+			try {
+				if (!cancelled)
+					operation.run();
+			} finally {
+				Current.remove();
+				runner = null;
+				done.countDown();
+				if (finished != null)
+					finished.add(position);
+			}
+		}
+
+		void cancel() {
+			cancelled = true;
+			Thread t = runner;
+			if (t != null)
+				t.interrupt();
+		}
+
+		boolean expired() {
+			return cancelled || System.currentTimeMillis() >= deadline;
+		}
+	}
+
+	private static final ExecutorService Pool = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Operations-"
+							+ count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	/**
+	 * The task executed by the current thread
+	 */
+	private static final ThreadLocal<Task> Current = new ThreadLocal<Task>();
+
+	/**
+	 * Deadline of the whole model in milliseconds since the epoch
+	 */
+	private static volatile long ModelDeadline = Long.MAX_VALUE;
+
+	private Scheduler() {
+	}
+
+	/**
+	 *
+	 * @param millis
+	 * @return The deadline of an operation that starts now
+	 */
+	private static long deadline(long millis) {
+		long now = System.currentTimeMillis();
+		return Math.min(ModelDeadline, millis > Long.MAX_VALUE - now
+				? Long.MAX_VALUE : now + millis);
+	}
+
+	/**
+	 * Starts the time of a model
+	 *
+	 * @param millis
+	 *            Time allowed to solve the whole model, 0 or less is no limit
+	 */
+	public static void startModel(long millis) {
+		ModelDeadline = millis > 0 ? System.currentTimeMillis() + millis
+				: Long.MAX_VALUE;
+	}
+
+	/**
+	 * Starts the time of a model with the limit of Config.MaxModelTime
+	 */
+	public static void startModel() {
+		startModel(Config.MaxModelTime * 1000L);
+	}
+
+	/**
+	 * Executes an operation in the pool and waits until it ends or its time is
+	 * over. If the time is over the operation is cancelled, the method
+	 * returns when it has stopped and TimeLimitExceeded is set
+	 *
+	 * @param operation
+	 * @param millis
+	 *            Time allowed to the operation
+	 * @return true if the operation ended on time
+	 */
+	public static boolean run(Runnable operation, long millis) {
+		long now = System.currentTimeMillis();
+		long deadline = deadline(millis);
+		Task T = new Task(operation, millis, null, 0);
+		Pool.execute(T);
+		boolean interrupted = false;
+		boolean onTime = false;
+		try {
+			onTime = T.done.await(Math.max(0, deadline - now),
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+		if (!onTime) {
+			T.cancel();
+			// The operation uses static data, wait until it stops
+			while (true) {
+				try {
+					T.done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			DiffAndEvaluator.TimeLimitExceeded = true;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return onTime;
+	}
+
+	/**
+	 * Executes a graph of operations. An operation starts when all its
+	 * predecessors have ended, and the independent ones are executed at the
+	 * same time by a work-stealing pool of Config.SolverThreads threads. If
+	 * the time of an operation is over the rest are not started, the method
+	 * returns when the ones started have stopped and TimeLimitExceeded is set.
+	 *
+	 * @param operations
+	 * @param predecessors
+	 *            For every operation, the positions of the ones it depends on
+	 * @param millis
+	 *            Time allowed to every operation
+	 * @return true if all the operations ended on time
+	 */
+	public static boolean runAll(List<? extends Runnable> operations,
+			int[][] predecessors, long millis) {
+		int n = operations.size();
+		int threads = Config.SolverThreads > 0 ? Config.SolverThreads
+				: Runtime.getRuntime().availableProcessors();
+		if (threads == 1 | n <= 1) {
+			for (Runnable operation : operations)
+				if (!run(operation, millis))
+					return false;
+			return true;
+		}
+
+		int[] waiting = new int[n];
+		int[][] successors = new int[n][];
+		int[] count = new int[n];
+		for (int i = 0; i < n; i++) {
+			waiting[i] = predecessors[i].length;
+			for (int p : predecessors[i])
+				count[p]++;
+		}
+		for (int i = 0; i < n; i++)
+			successors[i] = new int[count[i]];
+		for (int i = 0; i < n; i++)
+			for (int p : predecessors[i])
+				successors[p][--count[p]] = i;
+
+		ForkJoinPool Blocks = new ForkJoinPool(Math.min(threads, n));
+		LinkedBlockingQueue<Integer> finished = new LinkedBlockingQueue<Integer>();
+		Task[] tasks = new Task[n];
+		int running = 0;
+		for (int i = 0; i < n; i++)
+			if (waiting[i] == 0) {
+				tasks[i] = new Task(operations.get(i), millis, finished, i);
+				Blocks.execute(tasks[i]);
+				running++;
+			}
+
+		boolean onTime = true;
+		boolean interrupted = false;
+		while (running > 0) {
+			long next = Long.MAX_VALUE;
+			for (Task T : tasks)
+				if (T != null && T.done.getCount() > 0)
+					next = Math.min(next, T.deadline);
+			// The deadline of the operations that have not started is not
+			// known yet, they are checked again soon
+			long wait = Math.max(1,
+					Math.min(next - System.currentTimeMillis(), 100));
+			Integer i = null;
+			try {
+				i = finished.poll(wait, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
+				onTime = false;
+			}
+			if (i == null) {
+				for (Task T : tasks)
+					if (T != null && T.done.getCount() > 0
+							&& (!onTime | T.expired())) {
+						T.cancel();
+						onTime = false;
+					}
+				continue;
+			}
+			running--;
+			if (!onTime | tasks[i].cancelled)
+				continue;
+			for (int s : successors[i])
+				if (--waiting[s] == 0) {
+					tasks[s] = new Task(operations.get(s), millis, finished, s);
+					Blocks.execute(tasks[s]);
+					running++;
+				}
+		}
+		Blocks.shutdown();
+		if (!onTime)
+			DiffAndEvaluator.TimeLimitExceeded = true;
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return onTime;
+	}
+
+	/**
+	 *
+	 * @return true if the operation of the current thread must stop. Out of
+	 *         the scheduler it is always false
+	 */
+	public static boolean isCancelled() {
+		Task T = Current.get();
+		return T != null && T.expired();
+	}
+
+	/**
+	 * Called by the solvers in every iteration. If the operation of the
+	 * current thread must stop, TimeLimitExceeded and Config.ErrorFound are set
+	 * and a TimeLimitException is thrown
+	 */
+	public static void checkCancelled() {
+		if (isCancelled()) {
+			DiffAndEvaluator.TimeLimitExceeded = true;
+			Config.ErrorFound = true;
+			throw new TimeLimitException();
+		}
+	}
+
+}
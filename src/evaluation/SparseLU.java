@@ -0,0 +1,403 @@
+package evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.RealMatrix;
+
+/**
+ * LU of a sparse matrix, for the big Jacobians. The matrix is stored by
+ * columns (CSC) and the columns are ordered before the first factorization
+ * with minimum degree on the pattern of A'*A, like COLAMD, so the fill of L
+ * and U is small whatever rows are chosen as pivots.
+ *
+ * Every column is factored with a sparse triangular solve (Gilbert-Peierls)
+ * and partial pivoting with threshold: the row of the diagonal is preferred
+ * if it is not much smaller than the biggest one. The pattern of every
+ * column and the rows chosen are stored, so the next factorizations, with
+ * the same pattern and other values, only repeat the numeric operations. If
+ * a pivot is too small with the new values, the matrix is factored again
+ * from the beginning.
+ */
+public class SparseLU {
+	/**
+	 * Smaller matrices, or with a bigger part of non zeros, are faster with
+	 * the dense LU
+	 */
+	private static final int MinSize = 40;
+	private static final double MaxDensity = 0.1;
+	/**
+	 * A row is chosen as pivot instead of the biggest one if it is at least
+	 * this part of it
+	 */
+	private static final double PivotTolerance = 0.1;
+	/**
+	 * In a refactorization the pivots can be smaller
+	 */
+	private static final double RefactorTolerance = 1e-3;
+
+	private final int n;
+	/**
+	 * The matrix by columns, source is the position of every entry in the
+	 * values given by rows
+	 */
+	private final int[] colStart, rowIndex, source;
+	/**
+	 * The order of the columns
+	 */
+	private final int[] q;
+	/**
+	 * L without its unit diagonal, by columns and with the original rows, and
+	 * U by columns with the rows in the order of the pivots, the diagonal is
+	 * the last one of every column
+	 */
+	private int[] Lp, Li, Up, Ui;
+	private double[] Lx, Ux;
+	/**
+	 * The position of every row in the order of the pivots
+	 */
+	private final int[] pinv;
+	/**
+	 * The rows reached by every column, in the order they are solved, and
+	 * the row of its pivot
+	 */
+	private int[] reachStart, reach;
+	private final int[] pivotRow;
+	private boolean factored = false;
+	private final double[] x, z;
+	private final int[] xi, stack, pstack, mark;
+	private int stamp = 0;
+
+	/**
+	 * Orders the columns, the values are given later
+	 *
+	 * @param n
+	 *            The number of rows and columns
+	 * @param rowStart
+	 *            The entries of the row i are from rowStart[i] to
+	 *            rowStart[i+1]-1
+	 * @param column
+	 *            The column of every entry
+	 */
+	public SparseLU(int n, int[] rowStart, int[] column) {
+		this.n = n;
+		int nnz = rowStart[n];
+		colStart = new int[n + 1];
+		for (int k = 0; k < nnz; k++)
+			colStart[column[k] + 1]++;
+		for (int j = 0; j < n; j++)
+			colStart[j + 1] += colStart[j];
+		rowIndex = new int[nnz];
+		source = new int[nnz];
+		int[] fill = Arrays.copyOf(colStart, n);
+		for (int i = 0; i < n; i++)
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+				int p = fill[column[k]]++;
+				rowIndex[p] = i;
+				source[p] = k;
+			}
+		q = MinimumDegree(n, rowStart, column);
+		pinv = new int[n];
+		pivotRow = new int[n];
+		x = new double[n];
+		z = new double[n];
+		xi = new int[n];
+		stack = new int[n];
+		pstack = new int[n];
+		mark = new int[n];
+	}
+
+	/**
+	 *
+	 * @param n
+	 *            The size of the matrix
+	 * @param nnz
+	 *            The number of entries that can be different from zero
+	 * @return true if the sparse LU is faster than the dense one
+	 */
+	public static boolean isWorth(int n, int nnz) {
+		return n >= MinSize & nnz <= MaxDensity * n * n;
+	}
+
+	/**
+	 * Minimum degree ordering of the graph of A'*A: two columns are related
+	 * if they have a row in common. The column with less related columns is
+	 * taken first, and when it is taken its related columns become related
+	 * among them
+	 *
+	 * @return The columns in order
+	 */
+	private static int[] MinimumDegree(int n, int[] rowStart, int[] column) {
+		ArrayList<HashSet<Integer>> adjacency = new ArrayList<HashSet<Integer>>(
+				n);
+		for (int j = 0; j < n; j++)
+			adjacency.add(new HashSet<Integer>());
+		for (int i = 0; i < n; i++)
+			for (int a = rowStart[i]; a < rowStart[i + 1]; a++)
+				for (int b = a + 1; b < rowStart[i + 1]; b++)
+					if (column[a] != column[b]) {
+						adjacency.get(column[a]).add(column[b]);
+						adjacency.get(column[b]).add(column[a]);
+					}
+		int[] order = new int[n];
+		boolean[] taken = new boolean[n];
+		for (int k = 0; k < n; k++) {
+			int best = -1;
+			for (int j = 0; j < n; j++)
+				if (!taken[j]
+						&& (best == -1 || adjacency.get(j).size() < adjacency
+								.get(best).size()))
+					best = j;
+			order[k] = best;
+			taken[best] = true;
+			HashSet<Integer> related = adjacency.get(best);
+			for (int u : related) {
+				HashSet<Integer> aux = adjacency.get(u);
+				aux.remove(best);
+				for (int w : related)
+					if (w != u)
+						aux.add(w);
+			}
+			adjacency.set(best, null);
+		}
+		return order;
+	}
+
+	/**
+	 * Factors the matrix, only the numeric part if it was factored before
+	 *
+	 * @param values
+	 *            The values of the entries, in the order of the rows given
+	 *            to the constructor
+	 * @return false if the matrix is singular
+	 */
+	public boolean factor(double[] values) {
+		if (factored && refactor(values))
+			return true;
+		factored = factorPivoting(values);
+		return factored;
+	}
+
+	/**
+	 * The factorization with partial pivoting, it finds the patterns of L and
+	 * U
+	 */
+	private boolean factorPivoting(double[] values) {
+		int nnz = colStart[n];
+		Lp = new int[n + 1];
+		Up = new int[n + 1];
+		Li = new int[4 * nnz + n];
+		Lx = new double[Li.length];
+		Ui = new int[4 * nnz + n];
+		Ux = new double[Ui.length];
+		reachStart = new int[n + 1];
+		reach = new int[4 * nnz + n];
+		Arrays.fill(pinv, -1);
+		int lnz = 0, unz = 0, rnz = 0;
+		for (int k = 0; k < n; k++) {
+			Lp[k] = lnz;
+			Up[k] = unz;
+			reachStart[k] = rnz;
+			int col = q[k];
+			int top = solve(col, values, k);
+			// Room for this column
+			if (lnz + n > Li.length) {
+				Li = Arrays.copyOf(Li, 2 * Li.length + n);
+				Lx = Arrays.copyOf(Lx, Li.length);
+			}
+			if (unz + n > Ui.length) {
+				Ui = Arrays.copyOf(Ui, 2 * Ui.length + n);
+				Ux = Arrays.copyOf(Ux, Ui.length);
+			}
+			if (rnz + n > reach.length)
+				reach = Arrays.copyOf(reach, 2 * reach.length + n);
+
+			int ipiv = -1;
+			double max = -1;
+			for (int p = top; p < n; p++) {
+				int i = xi[p];
+				reach[rnz++] = i;
+				if (pinv[i] < 0) {
+					if (Math.abs(x[i]) > max) {
+						max = Math.abs(x[i]);
+						ipiv = i;
+					}
+				} else {
+					Ui[unz] = pinv[i];
+					Ux[unz++] = x[i];
+				}
+			}
+			if (ipiv == -1 || max <= 0)
+				return false;
+			// The diagonal is preferred, so the order of the columns is kept
+			if (mark[col] == stamp && pinv[col] < 0
+					&& Math.abs(x[col]) >= PivotTolerance * max)
+				ipiv = col;
+			double pivot = x[ipiv];
+			Ui[unz] = k;
+			Ux[unz++] = pivot;
+			pinv[ipiv] = k;
+			pivotRow[k] = ipiv;
+			for (int p = top; p < n; p++) {
+				int i = xi[p];
+				if (pinv[i] < 0) {
+					Li[lnz] = i;
+					Lx[lnz++] = x[i] / pivot;
+				}
+				x[i] = 0;
+			}
+		}
+		Lp[n] = lnz;
+		Up[n] = unz;
+		reachStart[n] = rnz;
+		return true;
+	}
+
+	/**
+	 * Solves L*x=A(:,col) with the columns of L already made
+	 *
+	 * @return The first position of the rows reached in xi, they are in the
+	 *         order they must be solved
+	 */
+	private int solve(int col, double[] values, int k) {
+		stamp++;
+		int top = n;
+		for (int p = colStart[col]; p < colStart[col + 1]; p++)
+			if (mark[rowIndex[p]] != stamp)
+				top = dfs(rowIndex[p], top);
+		for (int p = top; p < n; p++)
+			x[xi[p]] = 0;
+		for (int p = colStart[col]; p < colStart[col + 1]; p++)
+			x[rowIndex[p]] += values[source[p]];
+		for (int p = top; p < n; p++) {
+			int j = xi[p];
+			int J = pinv[j];
+			if (J < 0)
+				continue;
+			for (int r = Lp[J]; r < Lp[J + 1]; r++)
+				x[Li[r]] -= Lx[r] * x[j];
+		}
+		return top;
+	}
+
+	/**
+	 * Depth first search in the graph of L from a row, without recursion
+	 */
+	private int dfs(int j, int top) {
+		int head = 0;
+		stack[0] = j;
+		while (head >= 0) {
+			j = stack[head];
+			int J = pinv[j];
+			if (mark[j] != stamp) {
+				mark[j] = stamp;
+				pstack[head] = J < 0 ? 0 : Lp[J];
+			}
+			boolean done = true;
+			int end = J < 0 ? 0 : Lp[J + 1];
+			for (int p = pstack[head]; p < end; p++) {
+				int i = Li[p];
+				if (mark[i] == stamp)
+					continue;
+				pstack[head] = p + 1;
+				stack[++head] = i;
+				done = false;
+				break;
+			}
+			if (done) {
+				head--;
+				xi[--top] = j;
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * The numeric factorization with the patterns and pivots of the last one
+	 *
+	 * @return false if some pivot is too small, then the matrix must be
+	 *         factored with pivoting
+	 */
+	private boolean refactor(double[] values) {
+		for (int k = 0; k < n; k++) {
+			int col = q[k];
+			for (int p = reachStart[k]; p < reachStart[k + 1]; p++)
+				x[reach[p]] = 0;
+			for (int p = colStart[col]; p < colStart[col + 1]; p++)
+				x[rowIndex[p]] += values[source[p]];
+			int unz = Up[k], lnz = Lp[k];
+			double max = 0;
+			for (int p = reachStart[k]; p < reachStart[k + 1]; p++) {
+				int j = reach[p];
+				int J = pinv[j];
+				if (J < k) {
+					for (int r = Lp[J]; r < Lp[J + 1]; r++)
+						x[Li[r]] -= Lx[r] * x[j];
+					Ux[unz++] = x[j];
+				} else
+					max = Math.max(max, Math.abs(x[j]));
+			}
+			double pivot = x[pivotRow[k]];
+			if (pivot == 0 || Double.isNaN(pivot)
+					|| Math.abs(pivot) < RefactorTolerance * max) {
+				factored = false;
+				return false;
+			}
+			Ux[unz] = pivot;
+			for (int p = reachStart[k]; p < reachStart[k + 1]; p++) {
+				int j = reach[p];
+				if (pinv[j] > k)
+					Lx[lnz++] = x[j] / pivot;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solves A*x=b with the last factorization
+	 *
+	 * @param b
+	 *            It is overwritten
+	 * @return x
+	 */
+	public double[] solve(double[] b) {
+		for (int i = 0; i < n; i++)
+			z[pinv[i]] = b[i];
+		for (int k = 0; k < n; k++)
+			for (int p = Lp[k]; p < Lp[k + 1]; p++)
+				z[pinv[Li[p]]] -= Lx[p] * z[k];
+		for (int k = n - 1; k >= 0; k--) {
+			z[k] /= Ux[Up[k + 1] - 1];
+			for (int p = Up[k]; p < Up[k + 1] - 1; p++)
+				z[Ui[p]] -= Ux[p] * z[k];
+		}
+		for (int k = 0; k < n; k++)
+			b[q[k]] = z[k];
+		return b;
+	}
+
+	/**
+	 *
+	 * @param values
+	 * @return The matrix as a dense matrix
+	 */
+	public RealMatrix toMatrix(double[] values) {
+		Array2DRowRealMatrix aux = new Array2DRowRealMatrix(n, n);
+		double[][] data = aux.getDataRef();
+		for (int j = 0; j < n; j++)
+			for (int p = colStart[j]; p < colStart[j + 1]; p++)
+				data[rowIndex[p]][j] += values[source[p]];
+		return aux;
+	}
+
+	/**
+	 *
+	 * @return The number of entries of L and U
+	 */
+	public int getFill() {
+		return factored ? Lp[n] + Up[n] : 0;
+	}
+
+}
@@ -0,0 +1,267 @@
+package evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts what the solver does while it solves a model: the time of every
+ * phase and, for every system solved, its method, iterations, evaluations
+ * of F and of the Jacobian and its time. The counters are only increments of
+ * a field of the system that the current thread solves, so they are always
+ * on.
+ *
+ * The systems are recorded in the order they are made, the one equation
+ * systems of PrepareMatrix.PreTarjan first and then the blocks, see
+ * solver.LaunchOperations. The solvers call function, jacobian and
+ * iteration, that do nothing if the thread is not solving a system.
+ */
+public final class Statistics {
+
+	/**
+	 * One system solved
+	 */
+	public static final class Block {
+		private final String[] equations;
+		private final String[] variables;
+		/**
+		 * true if it was solved by PrepareMatrix.PreTarjan
+		 */
+		private final boolean single;
+		private String method = "";
+		private int iterations = 0;
+		private int functions = 0;
+		private int jacobians = 0;
+		private long nanos = 0;
+
+		private Block(String[] equations, String[] variables, boolean single) {
+			this.equations = equations;
+			this.variables = variables;
+			this.single = single;
+		}
+
+		public int getSize() {
+			return equations.length;
+		}
+
+		/**
+		 *
+		 * @return The equations in the internal form, equation = 0
+		 */
+		public String[] getEquations() {
+			return equations;
+		}
+
+		public String[] getVariables() {
+			return variables;
+		}
+
+		public boolean isSingle() {
+			return single;
+		}
+
+		/**
+		 *
+		 * @return The last method used, the ones that could not solve the
+		 *         system are replaced by the next one
+		 */
+		public String getMethod() {
+			return method;
+		}
+
+		public int getIterations() {
+			return iterations;
+		}
+
+		/**
+		 *
+		 * @return The evaluations of F, the whole vector of the system
+		 */
+		public int getFunctions() {
+			return functions;
+		}
+
+		public int getJacobians() {
+			return jacobians;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+	/**
+	 * The phases of a model, in the order they are done. ENGINE is the start
+	 * of matheclipse, in the first model that needs it
+	 */
+	public static final int PARSE = 0, PRESOLVE = 1, DECOMPOSITION = 2,
+			SOLVE = 3, DIFFERENTIATION = 4, ENGINE = 5;
+
+	/**
+	 * The systems of the model, in the order they are made
+	 */
+	private static final List<Block> Blocks = new ArrayList<Block>();
+
+	/**
+	 * The system solved by the current thread
+	 */
+	private static final ThreadLocal<Block> Current = new ThreadLocal<Block>();
+
+	/**
+	 * The time of every phase in nanoseconds. The differentiation and the
+	 * start of matheclipse are done inside the others, while the systems are
+	 * prepared
+	 */
+	private static final long[] Phases = new long[6];
+	private static long Derivatives = 0;
+
+	private Statistics() {
+	}
+
+	/**
+	 * Forgets everything, before a model is parsed
+	 */
+	public static synchronized void clear() {
+		startModel();
+		Phases[PARSE] = 0;
+	}
+
+	/**
+	 * Forgets the last model, except the time of the parse that is measured
+	 * before the model starts
+	 */
+	public static synchronized void startModel() {
+		Blocks.clear();
+		for (int i = PRESOLVE; i < Phases.length; i++)
+			Phases[i] = 0;
+		Derivatives = 0;
+		DiffAndEvaluator.Derivatives.resetCounters();
+	}
+
+	/**
+	 * Records a system that will be solved
+	 *
+	 * @param equations
+	 * @param variables
+	 * @param single
+	 *            true if it is one equation solved by
+	 *            PrepareMatrix.PreTarjan
+	 * @return The record, its counters are increased while the thread that
+	 *         solves it is between start and end
+	 */
+	public static synchronized Block newBlock(String[] equations,
+			String[] variables, boolean single) {
+		Block B = new Block(equations, variables, single);
+		Blocks.add(B);
+		return B;
+	}
+
+	/**
+	 * The current thread starts to solve a system
+	 *
+	 * @param B
+	 * @return The time now, for end
+	 */
+	public static long start(Block B) {
+		Current.set(B);
+		return System.nanoTime();
+	}
+
+	/**
+	 * The current thread has ended its system
+	 *
+	 * @param start
+	 *            The time returned by start
+	 */
+	public static void end(long start) {
+		Block B = Current.get();
+		if (B != null)
+			B.nanos += System.nanoTime() - start;
+		Current.remove();
+	}
+
+	/**
+	 *
+	 * @param method
+	 *            The method that solves the system of the current thread
+	 */
+	public static void method(String method) {
+		Block B = Current.get();
+		if (B != null)
+			B.method = method;
+	}
+
+	/**
+	 * One evaluation of F
+	 */
+	public static void function() {
+		Block B = Current.get();
+		if (B != null)
+			B.functions++;
+	}
+
+	/**
+	 * One evaluation of the Jacobian
+	 */
+	public static void jacobian() {
+		Block B = Current.get();
+		if (B != null)
+			B.jacobians++;
+	}
+
+	/**
+	 * One iteration of the method
+	 */
+	public static void iteration() {
+		Block B = Current.get();
+		if (B != null)
+			B.iterations++;
+	}
+
+	/**
+	 * Adds time to a phase
+	 *
+	 * @param phase
+	 *            PARSE, PRESOLVE, DECOMPOSITION, SOLVE, DIFFERENTIATION or
+	 *            ENGINE
+	 * @param nanos
+	 */
+	public static synchronized void addTime(int phase, long nanos) {
+		Phases[phase] += nanos;
+	}
+
+	/**
+	 * Adds the time of one symbolic derivative
+	 *
+	 * @param nanos
+	 */
+	public static synchronized void addDerivative(long nanos) {
+		Phases[DIFFERENTIATION] += nanos;
+		Derivatives++;
+	}
+
+	/**
+	 *
+	 * @param phase
+	 * @return The time of the phase in nanoseconds
+	 */
+	public static synchronized long getTime(int phase) {
+		return Phases[phase];
+	}
+
+	/**
+	 *
+	 * @return The symbolic derivatives asked, from the cache or not
+	 */
+	public static synchronized long getDerivatives() {
+		return Derivatives;
+	}
+
+	/**
+	 *
+	 * @return A copy of the systems of the model
+	 */
+	public static synchronized List<Block> getBlocks() {
+		return new ArrayList<Block>(Blocks);
+	}
+
+}
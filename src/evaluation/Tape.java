@@ -0,0 +1,406 @@
+package evaluation;
+
+/**
+ * A compiled numeric program. Every instruction writes one register (the
+ * register number is the position of the instruction), so evaluating the tape
+ * is a single pass over primitive arrays with no allocation and no calls to
+ * matheclipse. Tapes are made with the TapeBuilder.
+ *
+ * A tape is not thread safe, every thread must use its own copy.
+ */
+public final class Tape {
+
+	/* Operation codes */
+	static final byte CONST = 0;
+	static final byte VAR = 1;
+	static final byte ADD = 2;
+	static final byte SUB = 3;
+	static final byte MUL = 4;
+	static final byte DIV = 5;
+	static final byte POW = 6;
+	static final byte NEG = 7;
+	static final byte SQUARE = 8;
+	static final byte RECIP = 9;
+	static final byte SQRT = 10;
+	static final byte SIN = 11;
+	static final byte COS = 12;
+	static final byte TAN = 13;
+	static final byte EXP = 14;
+	static final byte LOG = 15;
+	static final byte SINH = 16;
+	static final byte COSH = 17;
+	static final byte TANH = 18;
+	static final byte ASIN = 19;
+	static final byte ACOS = 20;
+	static final byte ATAN = 21;
+	static final byte ABS = 22;
+	static final byte ATAN2 = 23;
+
+	final byte[] op;
+	/**
+	 * First operand register, or the slot for VAR
+	 */
+	final int[] a;
+	/**
+	 * Second operand register
+	 */
+	final int[] b;
+	/**
+	 * Value of the CONST instructions
+	 */
+	final double[] k;
+	/**
+	 * Registers that are the results of the tape
+	 */
+	final int[] outputs;
+	/**
+	 * Working registers
+	 */
+	final double[] reg;
+
+	Tape(byte[] op, int[] a, int[] b, double[] k, int[] outputs) {
+		this.op = op;
+		this.a = a;
+		this.b = b;
+		this.k = k;
+		this.outputs = outputs;
+		this.reg = new double[op.length];
+		for (int i = 0; i < op.length; i++)
+			if (op[i] == CONST)
+				reg[i] = k[i];
+	}
+
+	/**
+	 * Evaluates every instruction of the tape at the point stored in slots.
+	 *
+	 * @param slots
+	 *            The values of the variables
+	 */
+	public void run(double[] slots) {
+		run(slots, 0, op.length);
+	}
+
+	/**
+	 * Evaluates the instructions from one register to another. The operands
+	 * are always before the instruction, so the registers before from must
+	 * have been evaluated at the same point.
+	 *
+	 * @param slots
+	 *            The values of the variables
+	 * @param from
+	 *            First register evaluated
+	 * @param to
+	 *            The last register evaluated is to-1
+	 */
+	public void run(double[] slots, int from, int to) {
+		final byte[] op = this.op;
+		final int[] a = this.a;
+		final int[] b = this.b;
+		final double[] r = this.reg;
+		for (int i = from; i < to; i++) {
+			switch (op[i]) {
+			case CONST:
+				break;
+			case VAR:
+				r[i] = slots[a[i]];
+				break;
+			case ADD:
+				r[i] = r[a[i]] + r[b[i]];
+				break;
+			case SUB:
+				r[i] = r[a[i]] - r[b[i]];
+				break;
+			case MUL:
+				r[i] = r[a[i]] * r[b[i]];
+				break;
+			case DIV:
+				r[i] = r[a[i]] / r[b[i]];
+				break;
+			case POW:
+				r[i] = Math.pow(r[a[i]], r[b[i]]);
+				break;
+			case NEG:
+				r[i] = -r[a[i]];
+				break;
+			case SQUARE:
+				r[i] = r[a[i]] * r[a[i]];
+				break;
+			case RECIP:
+				r[i] = 1.0 / r[a[i]];
+				break;
+			case ATAN2:
+				r[i] = Math.atan2(r[b[i]], r[a[i]]);
+				break;
+			default:
+				r[i] = function(op[i], r[a[i]], 0);
+			}
+		}
+	}
+
+	/**
+	 * Forward mode differentiation. Calculates the derivative of every
+	 * register by one variable, using the values of the last run, that must
+	 * have evaluated the same registers at the same point.
+	 *
+	 * @param slot
+	 *            The variable
+	 * @param dot
+	 *            The derivatives of the registers, at least size() long
+	 * @param to
+	 *            The last register differentiated is to-1
+	 */
+	public void forward(int slot, double[] dot, int to) {
+		final byte[] op = this.op;
+		final int[] a = this.a;
+		final int[] b = this.b;
+		final double[] r = this.reg;
+		double da, db;
+		for (int i = 0; i < to; i++) {
+			switch (op[i]) {
+			case CONST:
+				dot[i] = 0;
+				break;
+			case VAR:
+				dot[i] = a[i] == slot ? 1 : 0;
+				break;
+			case ADD:
+				dot[i] = dot[a[i]] + dot[b[i]];
+				break;
+			case SUB:
+				dot[i] = dot[a[i]] - dot[b[i]];
+				break;
+			case MUL:
+				dot[i] = dot[a[i]] * r[b[i]] + r[a[i]] * dot[b[i]];
+				break;
+			case DIV:
+				dot[i] = (dot[a[i]] - r[i] * dot[b[i]]) / r[b[i]];
+				break;
+			case POW:
+				da = dot[a[i]];
+				db = dot[b[i]];
+				// The terms that are zero are not calculated, the logarithm of
+				// a negative base or the power of a zero base would be NaN
+				dot[i] = (da == 0 ? 0 : r[b[i]]
+						* Math.pow(r[a[i]], r[b[i]] - 1) * da)
+						+ (db == 0 ? 0 : r[i] * Math.log(r[a[i]]) * db);
+				break;
+			case ATAN2:
+				da = dot[a[i]];
+				db = dot[b[i]];
+				dot[i] = da == 0 & db == 0 ? 0 : (r[a[i]] * db - r[b[i]] * da)
+						/ (r[a[i]] * r[a[i]] + r[b[i]] * r[b[i]]);
+				break;
+			default:
+				da = dot[a[i]];
+				dot[i] = da == 0 ? 0 : da * derivative(op[i], r[a[i]], r[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reverse mode differentiation. Propagates the adjoints of the registers
+	 * back to the variables, using the values of the last run, that must have
+	 * evaluated the same registers at the same point. If bar has the weights
+	 * w of some registers r, gradient gets the gradient of Sum(w*r) whatever
+	 * the number of variables.
+	 *
+	 * @param bar
+	 *            The adjoints of the registers, with the weights written and
+	 *            zero in the rest. They are overwritten
+	 * @param gradient
+	 *            The derivatives are added to the position of every variable
+	 * @param to
+	 *            The last register used is to-1
+	 */
+	public void reverse(double[] bar, double[] gradient, int to) {
+		final byte[] op = this.op;
+		final int[] a = this.a;
+		final int[] b = this.b;
+		final double[] r = this.reg;
+		double w, den;
+		for (int i = to - 1; i >= 0; i--) {
+			w = bar[i];
+			if (w == 0)
+				continue;
+			switch (op[i]) {
+			case CONST:
+				break;
+			case VAR:
+				gradient[a[i]] += w;
+				break;
+			case ADD:
+				bar[a[i]] += w;
+				bar[b[i]] += w;
+				break;
+			case SUB:
+				bar[a[i]] += w;
+				bar[b[i]] -= w;
+				break;
+			case MUL:
+				bar[a[i]] += w * r[b[i]];
+				bar[b[i]] += w * r[a[i]];
+				break;
+			case DIV:
+				bar[a[i]] += w / r[b[i]];
+				bar[b[i]] -= w * r[i] / r[b[i]];
+				break;
+			case POW:
+				if (op[a[i]] != CONST)
+					bar[a[i]] += w * r[b[i]] * Math.pow(r[a[i]], r[b[i]] - 1);
+				// A constant exponent is the usual case, the logarithm of a
+				// negative base would be NaN
+				if (op[b[i]] != CONST)
+					bar[b[i]] += w * r[i] * Math.log(r[a[i]]);
+				break;
+			case ATAN2:
+				den = r[a[i]] * r[a[i]] + r[b[i]] * r[b[i]];
+				bar[a[i]] -= w * r[b[i]] / den;
+				bar[b[i]] += w * r[a[i]] / den;
+				break;
+			default:
+				bar[a[i]] += w * derivative(op[i], r[a[i]], r[i]);
+			}
+		}
+	}
+
+	/**
+	 * The derivative of an operation of one operand
+	 *
+	 * @param op
+	 * @param x
+	 *            The operand
+	 * @param v
+	 *            The result
+	 */
+	static double derivative(byte op, double x, double v) {
+		switch (op) {
+		case NEG:
+			return -1;
+		case SQUARE:
+			return 2 * x;
+		case RECIP:
+			return -v * v;
+		case SQRT:
+			return 0.5 / v;
+		case SIN:
+			return Math.cos(x);
+		case COS:
+			return -Math.sin(x);
+		case TAN:
+			return 1 + v * v;
+		case EXP:
+			return v;
+		case LOG:
+			return 1 / x;
+		case SINH:
+			return Math.cosh(x);
+		case COSH:
+			return Math.sinh(x);
+		case TANH:
+			return 1 - v * v;
+		case ASIN:
+			return 1 / Math.sqrt(1 - x * x);
+		case ACOS:
+			return -1 / Math.sqrt(1 - x * x);
+		case ATAN:
+			return 1 / (1 + x * x);
+		case ABS:
+			return Math.signum(x);
+		default:
+			throw new IllegalStateException("Unknown operation " + op);
+		}
+	}
+
+	/**
+	 * The special functions, they are slow anyway so they are kept out of the
+	 * main loop
+	 */
+	static double function(byte op, double x, double y) {
+		switch (op) {
+		case SQRT:
+			return Math.sqrt(x);
+		case SIN:
+			return Math.sin(x);
+		case COS:
+			return Math.cos(x);
+		case TAN:
+			return Math.tan(x);
+		case EXP:
+			return Math.exp(x);
+		case LOG:
+			return Math.log(x);
+		case SINH:
+			return Math.sinh(x);
+		case COSH:
+			return Math.cosh(x);
+		case TANH:
+			return Math.tanh(x);
+		case ASIN:
+			return Math.asin(x);
+		case ACOS:
+			return Math.acos(x);
+		case ATAN:
+			return Math.atan(x);
+		case ABS:
+			return Math.abs(x);
+		case ATAN2:
+			return Math.atan2(y, x);
+		default:
+			throw new IllegalStateException("Unknown operation " + op);
+		}
+	}
+
+	/**
+	 * Runs the tape and returns the first output. For single expression tapes.
+	 *
+	 * @param slots
+	 * @return The value of the expression
+	 */
+	public double evaluate(double[] slots) {
+		run(slots);
+		return reg[outputs[0]];
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return The value of the output i after the last run
+	 */
+	public double output(int i) {
+		return reg[outputs[i]];
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return The value of the register i after the last run
+	 */
+	public double getRegister(int i) {
+		return reg[i];
+	}
+
+	/**
+	 *
+	 * @return The number of outputs
+	 */
+	public int getOutputs() {
+		return outputs.length;
+	}
+
+	/**
+	 *
+	 * @return The number of instructions
+	 */
+	public int size() {
+		return op.length;
+	}
+
+	/**
+	 *
+	 * @return A new tape with the same program and its own registers
+	 */
+	public Tape copy() {
+		return new Tape(op, a, b, k, outputs);
+	}
+
+}
@@ -0,0 +1,253 @@
+package evaluation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Makes a Tape instruction by instruction. Operations whose operands are
+ * constants are calculated here, so they are not repeated on every
+ * evaluation. An instruction that is already in the tape is not added again,
+ * its register is returned, so the common subexpressions of all the
+ * expressions written in the same builder are calculated only once.
+ */
+public class TapeBuilder {
+
+	/**
+	 * An instruction, to find the ones already added
+	 */
+	private static final class Instruction {
+		final byte op;
+		final int a, b;
+		final long k;
+
+		Instruction(byte op, int a, int b, double k) {
+			this.op = op;
+			// The operands of + and * can be swapped
+			if ((op == Tape.ADD | op == Tape.MUL) & a > b) {
+				this.a = b;
+				this.b = a;
+			} else {
+				this.a = a;
+				this.b = b;
+			}
+			this.k = Double.doubleToLongBits(k);
+		}
+
+		@Override
+		public int hashCode() {
+			int h = op;
+			h = 31 * h + a;
+			h = 31 * h + b;
+			return 31 * h + (int) (k ^ (k >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Instruction))
+				return false;
+			Instruction I = (Instruction) o;
+			return op == I.op & a == I.a & b == I.b & k == I.k;
+		}
+	}
+
+	private byte[] op = new byte[16];
+	private int[] a = new int[16];
+	private int[] b = new int[16];
+	private double[] k = new double[16];
+	private int size = 0;
+
+	private int[] outputs = new int[4];
+	private int outputCount = 0;
+
+	/**
+	 * Register of every instruction added
+	 */
+	private final HashMap<Instruction, Integer> added = new HashMap<Instruction, Integer>();
+
+	/**
+	 * Adds an instruction and returns its register, or the register of the
+	 * same instruction if it was already added
+	 */
+	private int add(byte operation, int first, int second, double value) {
+		Instruction I = new Instruction(operation, first, second, value);
+		Integer register = added.get(I);
+		if (register != null)
+			return register;
+		added.put(I, size);
+
+		if (size == op.length) {
+			int n = size * 2;
+			op = Arrays.copyOf(op, n);
+			a = Arrays.copyOf(a, n);
+			b = Arrays.copyOf(b, n);
+			k = Arrays.copyOf(k, n);
+		}
+		op[size] = operation;
+		a[size] = first;
+		b[size] = second;
+		k[size] = value;
+		return size++;
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return The register of the constant
+	 */
+	public int constant(double value) {
+		return add(Tape.CONST, -1, -1, value);
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return The register that reads the variable stored in that slot
+	 */
+	public int variable(int slot) {
+		return add(Tape.VAR, slot, -1, 0);
+	}
+
+	/**
+	 *
+	 * @param register
+	 * @return true if the register is a constant
+	 */
+	public boolean isConstant(int register) {
+		return op[register] == Tape.CONST;
+	}
+
+	/**
+	 *
+	 * @param register
+	 * @return The value of a constant register
+	 */
+	public double constantValue(int register) {
+		return k[register];
+	}
+
+	/**
+	 * Adds a function of one argument like Tape.SIN or Tape.NEG
+	 *
+	 * @param operation
+	 * @param x
+	 * @return The register with the result
+	 */
+	public int unary(byte operation, int x) {
+		if (isConstant(x))
+			return constant(fold(operation, k[x], 0));
+		return add(operation, x, -1, 0);
+	}
+
+	/**
+	 * Adds an operation of two arguments like Tape.ADD or Tape.POW
+	 *
+	 * @param operation
+	 * @param x
+	 * @param y
+	 * @return The register with the result
+	 */
+	public int binary(byte operation, int x, int y) {
+		if (isConstant(x) & isConstant(y))
+			return constant(fold(operation, k[x], k[y]));
+
+		switch (operation) {
+		case Tape.ADD:
+			if (isConstant(y) && k[y] == 0)
+				return x;
+			if (isConstant(x) && k[x] == 0)
+				return y;
+			break;
+		case Tape.SUB:
+			if (isConstant(y) && k[y] == 0)
+				return x;
+			break;
+		case Tape.MUL:
+			if (isConstant(y) && k[y] == 1)
+				return x;
+			if (isConstant(x) && k[x] == 1)
+				return y;
+			if (isConstant(x) && k[x] == -1)
+				return add(Tape.NEG, y, -1, 0);
+			if (isConstant(y) && k[y] == -1)
+				return add(Tape.NEG, x, -1, 0);
+			break;
+		case Tape.DIV:
+			if (isConstant(y) && k[y] == 1)
+				return x;
+			break;
+		case Tape.POW:
+			if (isConstant(y)) {
+				double e = k[y];
+				if (e == 1)
+					return x;
+				if (e == 2)
+					return add(Tape.SQUARE, x, -1, 0);
+				if (e == -1)
+					return add(Tape.RECIP, x, -1, 0);
+				if (e == 0.5)
+					return add(Tape.SQRT, x, -1, 0);
+			}
+			break;
+		}
+		return add(operation, x, y, 0);
+	}
+
+	/**
+	 * Calculates an operation between constants
+	 */
+	static double fold(byte operation, double x, double y) {
+		switch (operation) {
+		case Tape.ADD:
+			return x + y;
+		case Tape.SUB:
+			return x - y;
+		case Tape.MUL:
+			return x * y;
+		case Tape.DIV:
+			return x / y;
+		case Tape.POW:
+			return Math.pow(x, y);
+		case Tape.NEG:
+			return -x;
+		case Tape.SQUARE:
+			return x * x;
+		case Tape.RECIP:
+			return 1.0 / x;
+		default:
+			return Tape.function(operation, x, y);
+		}
+	}
+
+	/**
+	 * Marks a register as a result of the tape
+	 *
+	 * @param register
+	 * @return The position of the output
+	 */
+	public int output(int register) {
+		if (outputCount == outputs.length)
+			outputs = Arrays.copyOf(outputs, outputCount * 2);
+		outputs[outputCount] = register;
+		return outputCount++;
+	}
+
+	/**
+	 *
+	 * @return The number of instructions added
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return The tape with all the instructions and outputs added
+	 */
+	public Tape build() {
+		return new Tape(Arrays.copyOf(op, size), Arrays
+				.copyOf(a, size), Arrays.copyOf(b, size),
+				Arrays.copyOf(k, size), Arrays.copyOf(
+						outputs, outputCount));
+	}
+
+}
@@ -0,0 +1,175 @@
+package evaluation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The values of the variables of a system while it is being solved. Every
+ * variable has a slot (its position in the list) and the solver writes the
+ * values directly in the array, no string is made and matheclipse is not
+ * used.
+ *
+ * The values are only introduced in matheclipse when publish is called, that
+ * is when an expression that could not be compiled must be evaluated or when
+ * the system is solved.
+ *
+ * A binding can also have parameters, values known while the system is
+ * solved (the variables of other systems in a parametric sweep). Their slots
+ * are after the ones of the variables and the solvers never change them.
+ */
+public class VariableBinding {
+	/**
+	 * Names of the variables, in the order of the slots
+	 */
+	private final String[] names;
+	/**
+	 * Slot of every variable, the names as the Lexer writes them
+	 */
+	private final HashMap<String, Integer> slots;
+	/**
+	 * Values of the variables
+	 */
+	private final double[] values;
+	/**
+	 * Number of variables, the rest of the slots are parameters
+	 */
+	private final int size;
+	/**
+	 * true if the values have changed since the last publish
+	 */
+	private boolean dirty = true;
+	/**
+	 * Changes every time a value is set
+	 */
+	private long version = 0;
+
+	/**
+	 *
+	 * @param variables
+	 *            The names of the variables
+	 */
+	public VariableBinding(List<String> variables) {
+		this(variables, new ArrayList<String>(0));
+	}
+
+	/**
+	 *
+	 * @param variables
+	 *            The names of the variables
+	 * @param parameters
+	 *            The names of the parameters, their slots are after the
+	 *            variables
+	 */
+	public VariableBinding(List<String> variables, List<String> parameters) {
+		size = variables.size();
+		names = new String[size + parameters.size()];
+		int i = 0;
+		for (String name : variables)
+			names[i++] = name;
+		for (String name : parameters)
+			names[i++] = name;
+		slots = new HashMap<String, Integer>(names.length * 2);
+		values = new double[names.length];
+		for (i = 0; i < names.length; i++)
+			slots.put(names[i], i);
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @param value
+	 */
+	public void set(int slot, double value) {
+		values[slot] = value;
+		dirty = true;
+		version++;
+	}
+
+	/**
+	 * Copies the values of an array that starts from the position 1, like
+	 * the ones used by Uncmin_f77 and Minpack_f77
+	 *
+	 * @param x
+	 */
+	public void setFromOne(double[] x) {
+		set(x, 1);
+	}
+
+	/**
+	 * Copies the values of the variables from an array
+	 *
+	 * @param x
+	 * @param first
+	 *            Position of the value of the first variable, 0 for the ones
+	 *            used by Minpack_j
+	 */
+	public void set(double[] x, int first) {
+		System.arraycopy(x, first, values, 0, size);
+		dirty = true;
+		version++;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return The value of the variable
+	 */
+	public double get(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * The array is not copied, it must not be modified
+	 *
+	 * @return The values of all the variables and then the parameters
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 *
+	 * @return The slot of every variable
+	 */
+	public HashMap<String, Integer> getSlots() {
+		return slots;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return The name of the variable
+	 */
+	public String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 *
+	 * @return The number of variables, without the parameters
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return A number that changes when any value changes
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Introduces the values in matheclipse if they have changed
+	 */
+	public void publish() {
+		if (!dirty)
+			return;
+		for (int i = 0; i < names.length; i++)
+			DiffAndEvaluator.IntroduceValue(names[i], values[i]);
+		dirty = false;
+	}
+
+}
@@ -101,10 +101,25 @@ public class Config {
 	 */
 	public static int CurrentFontSize = 14;
 	/**
-	 * Stores the Current font in use in the SyntaxTextAreas
+	 * Stores the Current font in use in the SyntaxTextAreas. It is made by
+	 * getCurrentFont, the first font takes some time to load and the command
+	 * line does not need it
 	 */
-	public static Font CurrentFont = new Font(CurrentFontName, Font.PLAIN,
-			CurrentFontSize);
+	private static Font CurrentFont = null;
+
+	/**
+	 * 
+	 * @return The font of CurrentFontName and CurrentFontSize
+	 */
+	public static Font getCurrentFont() {
+		if (CurrentFont == null
+				|| !CurrentFont.getName().equals(CurrentFontName)
+				| CurrentFont.getSize() != CurrentFontSize)
+			CurrentFont = new Font(CurrentFontName, Font.PLAIN,
+					CurrentFontSize);
+		return CurrentFont;
+	}
+
 	/**
 	 * Stores the UITheme. By default Nimbus.
 	 */
@@ -123,7 +138,8 @@ public class Config {
 	public static double MaxJump = 0;
 	/**
 	 * The method to use in the resolution of system of equations 1 =
-	 * Line-Search 2 = Double Dogleg 3 = Hebden-More 4 = Levenberg-Marquard
+	 * Line-Search 2 = Double Dogleg 3 = Hebden-More 4 = Levenberg-Marquard 5
+	 * = Broyden
 	 */
 	public static byte MultiVariableMethod = 4;
 	/**
@@ -131,6 +147,24 @@ public class Config {
 	 * = Double Dogleg 3 = Hebden-More 4 = Levenberg-Marquard
 	 */
 	public static byte SingleVariableMethod = 4;
+	/**
+	 * The Hessian used by the methods 1, 2 and 3. 1 = Analytic, the second
+	 * derivatives are made only when they are needed. 2 = Gauss-Newton, only
+	 * J'*J, no second derivatives. 3 = Secant updates (BFGS), no second
+	 * derivatives
+	 */
+	public static byte HessianMethod = 1;
+	/**
+	 * How the Jacobian is calculated. 1 = Symbolic, every entry is
+	 * differentiated by matheclipse before solving. 2 = Automatic
+	 * differentiation in forward mode, no derivative is made before solving
+	 */
+	public static byte JacobianMethod = 1;
+	/**
+	 * If true the derivatives calculated are saved in a file and used in the
+	 * next run
+	 */
+	public static boolean PersistDerivatives = false;
 	/**
 	 * If this is !=0 , if the optimization method ends in a minimum that is not
 	 * a root the solver will call a newton step and then again the optimization
@@ -170,6 +204,22 @@ public class Config {
 	 * This is the maximum time in seconds allowed for solving the variables
 	 */
 	public static int MaxOperationsTime = 20;
+	/**
+	 * This is the maximum time in seconds allowed for solving the whole
+	 * model, 0 is no limit
+	 */
+	public static int MaxModelTime = 0;
+	/**
+	 * Threads used to solve the independent systems at the same time. 1
+	 * solves them one after another, 0 uses one thread per processor
+	 */
+	public static int SolverThreads = 0;
+	/**
+	 * Systems with this number of equations or more are torn and solved by
+	 * Levenberg-Marquardt before MultiVariableMethod is tried, see TornSystem.
+	 * 0 never tears them
+	 */
+	public static int TearingSize = 0;
 	/**
 	 * Maximum positive number allowed in plot
 	 */
@@ -224,9 +274,6 @@ public class Config {
 				CurrentFontSize = 14;
 			}
 
-			// Sets the new font
-			CurrentFont = new Font(CurrentFontName, Font.PLAIN, CurrentFontSize);
-
 			// 3º theme. I don't check this, because, later if there is any
 			// problem Nimbus will be forced to be the UI
 			s = ReadConf(b.readLine());
@@ -356,6 +403,62 @@ public class Config {
 				e.printStackTrace(); /* Don't change the initial value */
 			}
 
+			// 20º Hessian method, older files do not have it
+			s = b.readLine();
+			if (s != null) {
+				try {
+					Config.HessianMethod = Byte.parseByte(ReadConf(s));
+				} catch (Exception e) {
+					e.printStackTrace();/* Don't change the initial value */
+				}
+			}
+
+			// 21º Save the derivatives between runs
+			s = b.readLine();
+			if (s != null)
+				Config.PersistDerivatives = Boolean.parseBoolean(ReadConf(s));
+
+			// 22º Jacobian method, older files do not have it
+			s = b.readLine();
+			if (s != null) {
+				try {
+					Config.JacobianMethod = Byte.parseByte(ReadConf(s));
+				} catch (Exception e) {
+					e.printStackTrace();/* Don't change the initial value */
+				}
+			}
+
+			// 23º Maximum time for the whole model, older files do not have it
+			s = b.readLine();
+			if (s != null) {
+				try {
+					Config.MaxModelTime = Integer.parseInt(ReadConf(s));
+				} catch (Exception e) {
+					e.printStackTrace();/* Don't change the initial value */
+				}
+			}
+
+			// 24º Solver threads, older files do not have it
+			s = b.readLine();
+			if (s != null) {
+				try {
+					Config.SolverThreads = Integer.parseInt(ReadConf(s));
+				} catch (Exception e) {
+					e.printStackTrace();/* Don't change the initial value */
+				}
+			}
+
+			// 25º Minimum size of the systems that are torn, older files do not
+			// have it
+			s = b.readLine();
+			if (s != null) {
+				try {
+					Config.TearingSize = Integer.parseInt(ReadConf(s));
+				} catch (Exception e) {
+					e.printStackTrace();/* Don't change the initial value */
+				}
+			}
+
 			// Close the readers
 			b.close();
 			r.close();
@@ -452,6 +555,27 @@ public class Config {
 			p.println("TrustRegionRadius: "
 					+ Double.toString(Config.TrustRegionRadius));
 
+			// 20º Hessian method
+			p.println("HessianMethod: "
+					+ Byte.toString(Config.HessianMethod));
+
+			// 21º Save the derivatives between runs
+			p.println("PersistDerivatives: "
+					+ Boolean.toString(Config.PersistDerivatives));
+
+			// 22º Jacobian method
+			p.println("JacobianMethod: "
+					+ Byte.toString(Config.JacobianMethod));
+
+			// 23º Maximum time for the whole model
+			p.println("MaxModelCalcTime: " + Config.MaxModelTime);
+
+			// 24º Solver threads
+			p.println("SolverThreads: " + Config.SolverThreads);
+
+			// 25º Minimum size of the systems that are torn
+			p.println("TearingSize: " + Config.TearingSize);
+
 			// Close the writers
 			p.close();
 			o.close();
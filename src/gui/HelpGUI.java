@@ -294,7 +294,7 @@ public class HelpGUI extends JDialog {
 				HelpGUI dialog = new HelpGUI();
 				dialog.setDefaultCloseOperation(HelpGUI.DISPOSE_ON_CLOSE);
 				dialog.setTitle(Translation.Language.get(28));
-				dialog.setIconImage(SaveLoad.Icon);
+				dialog.setIconImage(SaveLoad.getIcon());
 				dialog.setModalityType(ModalityType.APPLICATION_MODAL);
 				dialog.setResizable(true);
 				dialog.setLocationRelativeTo(null);
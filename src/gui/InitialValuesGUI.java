@@ -461,7 +461,7 @@ public class InitialValuesGUI extends JDialog {
 						Principal.frame);
 				dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
 				dialog.setTitle(Translation.Language.get(20));
-				dialog.setIconImage(SaveLoad.Icon);
+				dialog.setIconImage(SaveLoad.getIcon());
 				Principal.frame.setEnabled(false);
 				// dialog.setAlwaysOnTop(true);
 				dialog.setModalityType(ModalityType.MODELESS);
@@ -30,7 +30,8 @@ class MainMenu implements ActionListener {
 	protected JMenuBar jMenuBar0;
 	private JMenuItem jExit, jOpen, jSaveAs, jSave, jNew, jPrint, jPDF;
 	protected JMenu jFile, jEdit, jHelp;
-	private JMenuItem jPreferences, jInitialValue, jPlay, jRefresh, jMaterial;
+	private JMenuItem jPreferences, jInitialValue, jPlay, jRefresh, jMaterial,
+			jSweep;
 	protected JMenuItem jUndo, jRedo, jCut, jCopy, jPaste;
 	private JMenuItem jAbout, jHelpF1;
 
@@ -69,6 +70,7 @@ class MainMenu implements ActionListener {
 			jEdit.addSeparator();
 			jEdit.add(getJPlay());
 			jEdit.add(getJRefresh());
+			jEdit.add(getJSweep());
 			jEdit.addSeparator();
 			jEdit.add(getJMaterial());
 			jEdit.add(getJInitialValue());
@@ -393,6 +395,22 @@ class MainMenu implements ActionListener {
 		return jRefresh;
 	}
 
+	private JMenuItem getJSweep() {
+		if (jSweep == null) {
+			jSweep = new JMenuItem(Translation.Language.get(385),
+					new ImageIcon(Config.AbsolutePath
+							+ "icons/media-seek-forward.png"));
+			jSweep.addMouseListener(new MouseAdapter() {
+
+				public void mouseReleased(MouseEvent event) {
+					SweepGUI.jSweep();
+				}
+
+			});
+		}
+		return jSweep;
+	}
+
 	private JMenuItem getJExit() {
 		if (jExit == null) {
 			jExit = new JMenuItem(Translation.Language.get(40), new ImageIcon(
@@ -848,7 +848,7 @@ public class MaterialGUI extends JDialog {
 				final MaterialGUI dialog = new MaterialGUI(Principal.frame);
 				dialog.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
 				dialog.setTitle(Translation.Language.get(361));
-				dialog.setIconImage(SaveLoad.Icon);
+				dialog.setIconImage(SaveLoad.getIcon());
 				Principal.frame.setEnabled(false);
 				// dialog.setAlwaysOnTop(true);
 				dialog.setModalityType(ModalityType.MODELESS);
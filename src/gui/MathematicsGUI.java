@@ -23,7 +23,7 @@ class MathematicsGUI {
 	 */
 	protected void PlotButton() {
 		JDialog windowplot = new PlotWindow(null);
-		windowplot.setIconImage(SaveLoad.Icon);
+		windowplot.setIconImage(SaveLoad.getIcon());
 		windowplot.pack();
 		windowplot.setVisible(true);
 
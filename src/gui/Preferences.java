@@ -69,6 +69,11 @@ public class Preferences extends JDialog {
 	private double maxpositiveplot = Config.MaxPositivePlot;
 	private double maxnegativeplot = Config.MaxNegativePlot;
 	private double trustregionradius = Config.TrustRegionRadius;
+	private byte hessianmethod = Config.HessianMethod;
+	private byte jacobianmethod = Config.JacobianMethod;
+	private int maxmodeltime = Config.MaxModelTime;
+	private int solverthreads = Config.SolverThreads;
+	private int tearingsize = Config.TearingSize;
 	/* End of intermediate variables */
 	private JPanel GlobalPane;
 	private JTabbedPane WindowTabbed;
@@ -123,6 +128,18 @@ public class Preferences extends JDialog {
 	private eTextField GradientPrecisionTextField;
 	private eTextField AntiMinimumTextField;
 	private eTextField TrustRegionTextField;
+	private JPanel jPanel10;
+	private JPanel SolverPane;
+	private JLabel HessianLabel;
+	private JComboBox<String> HessianComboBox;
+	private JLabel JacobianLabel;
+	private JComboBox<String> JacobianComboBox;
+	private JLabel MaxModelTimeLabel;
+	private eTextField MaxModelTimeTextField;
+	private JLabel SolverThreadsLabel;
+	private eTextField SolverThreadsTextField;
+	private JLabel TearingSizeLabel;
+	private eTextField TearingSizeTextField;
 	@SuppressWarnings("unused")
 	private static final String PREFERRED_LOOK_AND_FEEL = "com.sun.java.swing.plaf.nimbus.NimbusLookAndFeel";
 
@@ -288,7 +305,7 @@ public class Preferences extends JDialog {
 			MultiVariableMethodTextField = new JComboBox();
 			MultiVariableMethodTextField.setModel(new DefaultComboBoxModel(
 					new String[] { "Line-Search", "Double Dogleg",
-							"Hebden-More", "Levenberg-Marquardt" }));
+							"Hebden-More", "Levenberg-Marquardt", "Broyden" }));
 			MultiVariableMethodTextField
 					.setSelectedIndex(Config.MultiVariableMethod - 1);
 			MultiVariableMethodTextField.setToolTipText(Translation.Language
@@ -636,6 +653,186 @@ public class Preferences extends JDialog {
 		return EquationsPane;
 	}
 
+	private JLabel getHessianLabel() {
+		if (HessianLabel == null) {
+			HessianLabel = new JLabel();
+			HessianLabel.setFont(Principal.TimesBold);
+			HessianLabel.setText(Translation.Language.get(392));
+			HessianLabel.setToolTipText(Translation.Language.get(393));
+		}
+		return HessianLabel;
+	}
+
+	private JComboBox<String> getHessianComboBox() {
+		if (HessianComboBox == null) {
+			HessianComboBox = new JComboBox<String>();
+			HessianComboBox.setModel(new DefaultComboBoxModel<String>(
+					new String[] { Translation.Language.get(394),
+							Translation.Language.get(395),
+							Translation.Language.get(396) }));
+			HessianComboBox.setSelectedIndex(Config.HessianMethod - 1);
+			HessianComboBox.setToolTipText(Translation.Language.get(393));
+			HessianComboBox.addActionListener(new ActionListener() {
+
+				public void actionPerformed(ActionEvent event) {
+					HessianComboBoxActionActionPerformed(event);
+				}
+			});
+		}
+		return HessianComboBox;
+	}
+
+	private JLabel getJacobianLabel() {
+		if (JacobianLabel == null) {
+			JacobianLabel = new JLabel();
+			JacobianLabel.setFont(Principal.TimesBold);
+			JacobianLabel.setText(Translation.Language.get(397));
+			JacobianLabel.setToolTipText(Translation.Language.get(398));
+		}
+		return JacobianLabel;
+	}
+
+	private JComboBox<String> getJacobianComboBox() {
+		if (JacobianComboBox == null) {
+			JacobianComboBox = new JComboBox<String>();
+			JacobianComboBox.setModel(new DefaultComboBoxModel<String>(
+					new String[] { Translation.Language.get(399),
+							Translation.Language.get(400) }));
+			JacobianComboBox.setSelectedIndex(Config.JacobianMethod - 1);
+			JacobianComboBox.setToolTipText(Translation.Language.get(398));
+			JacobianComboBox.addActionListener(new ActionListener() {
+
+				public void actionPerformed(ActionEvent event) {
+					JacobianComboBoxActionActionPerformed(event);
+				}
+			});
+		}
+		return JacobianComboBox;
+	}
+
+	private JLabel getMaxModelTimeLabel() {
+		if (MaxModelTimeLabel == null) {
+			MaxModelTimeLabel = new JLabel();
+			MaxModelTimeLabel.setFont(Principal.TimesBold);
+			MaxModelTimeLabel.setText(Translation.Language.get(401));
+			MaxModelTimeLabel.setToolTipText(Translation.Language.get(402));
+		}
+		return MaxModelTimeLabel;
+	}
+
+	private eTextField getMaxModelTimeTextField() {
+		if (MaxModelTimeTextField == null) {
+			MaxModelTimeTextField = new eTextField();
+			MaxModelTimeTextField.setText(Integer
+					.toString(Config.MaxModelTime));
+			MaxModelTimeTextField.setToolTipText(Translation.Language
+					.get(402));
+			MaxModelTimeTextField.addFocusListener(new FocusAdapter() {
+
+				public void focusLost(FocusEvent event) {
+					MaxModelTimeTextFieldFocusFocusLost(event);
+				}
+			});
+		}
+		return MaxModelTimeTextField;
+	}
+
+	private JLabel getSolverThreadsLabel() {
+		if (SolverThreadsLabel == null) {
+			SolverThreadsLabel = new JLabel();
+			SolverThreadsLabel.setFont(Principal.TimesBold);
+			SolverThreadsLabel.setText(Translation.Language.get(403));
+			SolverThreadsLabel.setToolTipText(Translation.Language.get(404));
+		}
+		return SolverThreadsLabel;
+	}
+
+	private eTextField getSolverThreadsTextField() {
+		if (SolverThreadsTextField == null) {
+			SolverThreadsTextField = new eTextField();
+			SolverThreadsTextField.setText(Integer
+					.toString(Config.SolverThreads));
+			SolverThreadsTextField.setToolTipText(Translation.Language
+					.get(404));
+			SolverThreadsTextField.addFocusListener(new FocusAdapter() {
+
+				public void focusLost(FocusEvent event) {
+					SolverThreadsTextFieldFocusFocusLost(event);
+				}
+			});
+		}
+		return SolverThreadsTextField;
+	}
+
+	private JLabel getTearingSizeLabel() {
+		if (TearingSizeLabel == null) {
+			TearingSizeLabel = new JLabel();
+			TearingSizeLabel.setFont(Principal.TimesBold);
+			TearingSizeLabel.setText(Translation.Language.get(405));
+			TearingSizeLabel.setToolTipText(Translation.Language.get(406));
+		}
+		return TearingSizeLabel;
+	}
+
+	private eTextField getTearingSizeTextField() {
+		if (TearingSizeTextField == null) {
+			TearingSizeTextField = new eTextField();
+			TearingSizeTextField.setText(Integer
+					.toString(Config.TearingSize));
+			TearingSizeTextField.setToolTipText(Translation.Language
+					.get(406));
+			TearingSizeTextField.addFocusListener(new FocusAdapter() {
+
+				public void focusLost(FocusEvent event) {
+					TearingSizeTextFieldFocusFocusLost(event);
+				}
+			});
+		}
+		return TearingSizeTextField;
+	}
+
+	private JPanel getSolverPane() {
+		if (SolverPane == null) {
+			SolverPane = new JPanel();
+			SolverPane.setBorder(BorderFactory.createTitledBorder(null,
+					Translation.Language.get(391), TitledBorder.LEADING,
+					TitledBorder.ABOVE_TOP, new Font("DejaVu Sans", Font.BOLD,
+							12), new Color(59, 59, 59)));
+			SolverPane.setLayout(new GroupLayout());
+			SolverPane.add(getHessianLabel(), new Constraints(new Leading(24,
+					200, 6, 6), new Leading(5, 6, 6)));
+			SolverPane.add(getHessianComboBox(), new Constraints(new Leading(
+					230, 150, 6, 6), new Leading(0, 6, 6)));
+			SolverPane.add(getJacobianLabel(), new Constraints(new Leading(24,
+					200, 6, 6), new Leading(45, 6, 6)));
+			SolverPane.add(getJacobianComboBox(), new Constraints(new Leading(
+					230, 150, 6, 6), new Leading(40, 6, 6)));
+			SolverPane.add(getMaxModelTimeLabel(), new Constraints(
+					new Leading(24, 200, 6, 6), new Leading(85, 6, 6)));
+			SolverPane.add(getMaxModelTimeTextField(), new Constraints(
+					new Leading(230, 150, 6, 6), new Leading(80, 6, 6)));
+			SolverPane.add(getSolverThreadsLabel(), new Constraints(
+					new Leading(24, 200, 6, 6), new Leading(125, 6, 6)));
+			SolverPane.add(getSolverThreadsTextField(), new Constraints(
+					new Leading(230, 150, 6, 6), new Leading(120, 6, 6)));
+			SolverPane.add(getTearingSizeLabel(), new Constraints(
+					new Leading(24, 200, 6, 6), new Leading(165, 6, 6)));
+			SolverPane.add(getTearingSizeTextField(), new Constraints(
+					new Leading(230, 150, 6, 6), new Leading(160, 6, 6)));
+		}
+		return SolverPane;
+	}
+
+	private JPanel getJPanel10() {
+		if (jPanel10 == null) {
+			jPanel10 = new JPanel();
+			jPanel10.setLayout(new GroupLayout());
+			jPanel10.add(getSolverPane(), new Constraints(new Bilateral(6, 6,
+					0), new Bilateral(6, 6, 103)));
+		}
+		return jPanel10;
+	}
+
 	private JComboBox getLanguageComboBox() {
 		if (LanguageComboBox == null) {
 			LanguageComboBox = new JComboBox();
@@ -938,6 +1135,7 @@ public class Preferences extends JDialog {
 			WindowTabbed.addTab(Translation.Language.get(97), getGeneralPane());
 			WindowTabbed.addTab(Translation.Language.get(98), getJPanel6());
 			WindowTabbed.addTab(Translation.Language.get(99), getJPanel9());
+			WindowTabbed.addTab(Translation.Language.get(390), getJPanel10());
 		}
 		return WindowTabbed;
 	}
@@ -965,7 +1163,7 @@ public class Preferences extends JDialog {
 				Preferences dialog = new Preferences();
 				dialog.setDefaultCloseOperation(Preferences.DISPOSE_ON_CLOSE);
 				dialog.setTitle(Translation.Language.get(37));
-				dialog.setIconImage(SaveLoad.Icon);
+				dialog.setIconImage(SaveLoad.getIcon());
 				// dialog.setAlwaysOnTop(true);
 				dialog.setModalityType(ModalityType.APPLICATION_MODAL);
 				dialog.setResizable(false);
@@ -1011,7 +1209,6 @@ public class Preferences extends JDialog {
 		CheckString.Radianes = Degrees;
 		Config.CurrentFontName = fontname;
 		Config.CurrentFontSize = fontsize;
-		Config.CurrentFont = new Font(fontname, Font.PLAIN, fontsize);
 		Config.Theme = theme;
 		Config.Language = lang;
 		Config.MaxNumberOfIteration = Iteraciones;
@@ -1027,6 +1224,11 @@ public class Preferences extends JDialog {
 		Config.MultiVariableMethod = this.multivariablemethod;
 		Config.MaxJump = this.maxjump;
 		Config.TrustRegionRadius = this.trustregionradius;
+		Config.HessianMethod = this.hessianmethod;
+		Config.JacobianMethod = this.jacobianmethod;
+		Config.MaxModelTime = this.maxmodeltime;
+		Config.SolverThreads = this.solverthreads;
+		Config.TearingSize = this.tearingsize;
 
 		Principal.UpdateTextArea();
 		Config C = new Config();
@@ -1279,4 +1481,65 @@ public class Preferences extends JDialog {
 					.setSelectedItem(this.multivariablemethod - 1);
 		}
 	}
+
+	// Hessian method
+	private void HessianComboBoxActionActionPerformed(ActionEvent event) {
+		this.hessianmethod = (byte) (HessianComboBox.getSelectedIndex() + 1);
+	}
+
+	// Jacobian method
+	private void JacobianComboBoxActionActionPerformed(ActionEvent event) {
+		this.jacobianmethod = (byte) (JacobianComboBox.getSelectedIndex() + 1);
+	}
+
+	// Maximum time for the whole model
+	private void MaxModelTimeTextFieldFocusFocusLost(FocusEvent event) {
+		try {
+			String s = MaxModelTimeTextField.getText();
+			this.maxmodeltime = Integer.parseInt(s);
+			if (this.maxmodeltime < 0)
+				throw new Exception();
+
+		} catch (Exception e) {
+			this.maxmodeltime = Config.MaxModelTime;
+			MaxModelTimeTextField.setText(Integer
+					.toString(Config.MaxModelTime));
+			SolverGUI.PopUpWarning(Translation.Language.get(103));
+
+		}
+	}
+
+	// Solver threads
+	private void SolverThreadsTextFieldFocusFocusLost(FocusEvent event) {
+		try {
+			String s = SolverThreadsTextField.getText();
+			this.solverthreads = Integer.parseInt(s);
+			if (this.solverthreads < 0)
+				throw new Exception();
+
+		} catch (Exception e) {
+			this.solverthreads = Config.SolverThreads;
+			SolverThreadsTextField.setText(Integer
+					.toString(Config.SolverThreads));
+			SolverGUI.PopUpWarning(Translation.Language.get(103));
+
+		}
+	}
+
+	// Minimum size of the systems that are torn
+	private void TearingSizeTextFieldFocusFocusLost(FocusEvent event) {
+		try {
+			String s = TearingSizeTextField.getText();
+			this.tearingsize = Integer.parseInt(s);
+			if (this.tearingsize < 0)
+				throw new Exception();
+
+		} catch (Exception e) {
+			this.tearingsize = Config.TearingSize;
+			TearingSizeTextField.setText(Integer
+					.toString(Config.TearingSize));
+			SolverGUI.PopUpWarning(Translation.Language.get(103));
+
+		}
+	}
 }
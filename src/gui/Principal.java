@@ -300,7 +300,7 @@ public class Principal extends JFrame {
 				frame = new Principal();
 				frame.setDefaultCloseOperation(Principal.DO_NOTHING_ON_CLOSE);
 				frame.setTitle("Engineering Suite " + VERSION);
-				frame.setIconImage(SaveLoad.Icon);
+				frame.setIconImage(SaveLoad.getIcon());
 				frame.getContentPane().setPreferredSize(frame.getSize());
 				frame.pack();
 				frame.setLocationRelativeTo(null);
@@ -349,13 +349,13 @@ public class Principal extends JFrame {
 	 * Updates the font of the equationArea, resultArea y logArea
 	 */
 	public static void UpdateTextArea() {
-		TextArea.TextArea.setFont(Config.CurrentFont);
+		TextArea.TextArea.setFont(Config.getCurrentFont());
 		TextArea.TextArea.repaint();
 		ResultArea.TextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN,
-				Config.CurrentFont.getSize()));
+				Config.getCurrentFont().getSize()));
 		ResultArea.TextArea.repaint();
 		LogArea.TextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN,
-				Config.CurrentFont.getSize()));
+				Config.getCurrentFont().getSize()));
 		ResultArea.TextArea.repaint();
 	}
 
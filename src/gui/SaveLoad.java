@@ -120,10 +120,21 @@ public class SaveLoad {
 	}
 
 	/**
-	 * The icon for the windows
+	 * The icon for the windows, see getIcon
 	 */
-	public static final Image Icon =
-			(Toolkit.getDefaultToolkit().getImage(Config.AbsolutePath + "icons/logo.png"));
+	private static Image Icon = null;
+
+	/**
+	 * The toolkit is loaded with the icon, only when a window is shown: the command line reads
+	 * the models with this class and does not need it
+	 * 
+	 * @return The icon for the windows
+	 */
+	public static synchronized Image getIcon() {
+		if (Icon == null)
+			Icon = Toolkit.getDefaultToolkit().getImage(Config.AbsolutePath + "icons/logo.png");
+		return Icon;
+	}
 
 	/**
 	 * Open dialog
@@ -29,6 +29,7 @@ import String2ME.DerivEquation;
 import String2ME.EqStorer;
 import String2ME.GramErr;
 import String2ME.PositionStorer;
+import String2ME.SymbolTable;
 import String2ME.VString;
 
 /**
@@ -107,6 +108,7 @@ public class SolverGUI {
 				 */
 				PrepareMatrix DF = new PrepareMatrix();
 				DF.PreNewton();
+				evaluation.DiffAndEvaluator.SaveDerivatives();
 				System.out.println("Solver process finished.");
 				// --- End Solver Execution Block ---
 			}
@@ -160,10 +162,8 @@ public class SolverGUI {
 		for (int i = 0; i < Principal.TextArea.TextArea.getLineCount(); i++) {
 			s = BufJ.readLine();
 			if (s != null) {
-				// This saves the Variables with case information(this is less
-				// robust)
-				aux.getVariables(s);
-				// This saves variables and functions in lowercase
+				// This saves variables and functions in lowercase, and the
+				// variables with case information
 				aux2 = aux.GramCheck(s);
 				// If there is any kind of error a pop up window will be shown
 				checkGram(aux2);
@@ -210,9 +210,8 @@ public class SolverGUI {
 
 				s = aux3.getString();
 
-				// This saves the Variables with case information
-				aux.getVariables(s);
-				// This saves variables and functions in lower case
+				// This saves variables and functions in lower case, and the
+				// variables with case information
 				aux2 = aux.GramCheck(s);
 
 				if (aux3.GetTypeError() == (byte) 0) {
@@ -380,13 +379,7 @@ public class SolverGUI {
 			// This is for changing the variables with no case information to
 			// the CaseVariables
 			for (DerivEquation e : Eqaux.aux)
-				for (String s : CheckString.CaseVariables)
-					if (e.GetVar().equalsIgnoreCase(s)) {
-						aux2 = aux2.replace(e.GetVar(), s);
-						// When the variable has been replaced then we move to
-						// the next variable.
-						break;
-					}
+				aux2 = aux2.replace(e.GetVar(), SymbolTable.getCase(e.GetId()));
 
 			// if is a thermodynamic function then translate
 			try {// to a function(Substance,property) = (Variables)
@@ -539,11 +532,7 @@ public class SolverGUI {
 			while (lector.hasMoreTokens()) {
 				aux3 = lector.nextToken();
 				if (!Ch.IsNumber(aux3) & !Ch.IsFunction(aux3))
-					for (String s : CheckString.CaseVariables)
-						if (aux3.equalsIgnoreCase(s)) {
-							aux2 = aux2.replace(aux3, s);
-							break;
-						}
+					aux2 = aux2.replace(aux3, SymbolTable.getCase(aux3));
 			}
 			// If the equation is one that belongs to the thermodynamic list
 			// it won't be show
@@ -672,15 +661,7 @@ public class SolverGUI {
 	 * @return
 	 */
 	private String getVariable(String input) {
-		try {
-			for (String s : CheckString.CaseVariables)
-				if (input.equalsIgnoreCase(s))
-					return s;
-			return input;
-		} catch (Exception e) {
-			return input;
-		}
-
+		return SymbolTable.getCase(input);
 	}
 
 	protected static int LastWindowFocused = 0;
@@ -743,61 +724,7 @@ public class SolverGUI {
 	 * @return The input without comments
 	 */
 	private String cleanComments(String input) {
-		boolean comments = false;
-		char c;
-		char pc = CheckString.Espacio;
-		String aux = new String("");
-		StringReader J = new StringReader(input);
-		BufferedReader BufJ = new BufferedReader(J);
-		String s = new String("");
-		int count = 0, line = 0;
-
-		for (int i = 0; i < input.length(); i++) {
-
-			try {// this is only to introduce line-separators while ignoring
-						// comments
-				if (count == line)
-					s = BufJ.readLine();
-				if (s != null) {
-					line = s.length();
-				} else
-					line = 0;
-			} catch (Exception e) {
-				line = 0;
-			}
-
-			c = input.charAt(i);
-			count++;
-
-			if (pc == CheckString.Slash & c == CheckString.Por) {
-				// This is to erase the previous character that was inserted in
-				// aux
-				aux = aux.substring(0, aux.length() - 1);
-				comments = true;
-				pc = CheckString.Espacio;
-			}
-
-			if (comments) {
-				if (count == line)
-					if (pc == CheckString.Por & c == CheckString.Slash) {/*
-																																 * Do nothing
-																																 */
-					} else
-						aux += Config.JumpLine;
-
-			} else
-				aux += c;
-
-			if (pc == CheckString.Por & c == CheckString.Slash)
-				comments = false;
-
-			if (count == line)
-				count = 0;
-			// save previous character
-			pc = c;
-
-		}
-		return aux;
+		return CheckString.cleanComments(input);
 	}
 
 	/**
@@ -1114,6 +1041,27 @@ public class SolverGUI {
 	}
 
 
+	/**
+	 * Checks without the database if the input string has the form of a call
+	 * function, like water.Cp(Temp,Cp): something before the first dot that
+	 * is not a number or an operation, and a parenthesis after it. Only these
+	 * strings can pass checkSubstanceCli, so the database is not read for
+	 * the others
+	 * 
+	 * @param input
+	 * @return true if it can be a call function
+	 */
+	public static boolean looksLikePropertyCall(String input) {
+		int pos = input.indexOf(".");
+		if (pos <= 0 || Character.isDigit(input.charAt(0)))
+			return false;
+		for (int i = 0; i < pos; i++)
+			if ("+-*/^=()[]{},".indexOf(input.charAt(i)) >= 0)
+				return false;
+		int openParen = input.indexOf('(', pos);
+		return openParen > pos && input.lastIndexOf(')') > openParen;
+	}
+
 	public static boolean checkSubstanceCli(String input, MaterialMethods Materiales) {
 		int pos = input.indexOf(".");
 		if (pos <= 0 || pos == input.length() - 1)
@@ -0,0 +1,137 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+
+import solver.Sweep;
+import String2ME.CheckString;
+
+/**
+ * The parametric table: the model of the text area is solved for the values
+ * of some of its inputs, see solver.Sweep, and the results are shown in a
+ * table. The rows can be selected and copied with Ctrl+C, separated by tabs.
+ */
+public class SweepGUI extends JDialog {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The last inputs written, to change them in the next table
+	 */
+	private static String LastInputs = "";
+
+	public SweepGUI(Sweep S) {
+		super(Principal.frame, Translation.Language.get(385) + " ("
+				+ S.getTable().length + ")", false);
+
+		String[] columns = S.getColumns();
+		String[] header = Arrays.copyOf(columns, columns.length + 1);
+		header[columns.length] = "OK";
+		double[][] table = S.getTable();
+		Object[][] rows = new Object[table.length][header.length];
+		for (int p = 0; p < table.length; p++) {
+			for (int j = 0; j < columns.length; j++)
+				rows[p][j] = table[p][j];
+			rows[p][columns.length] = S.isConverged(p);
+		}
+		JTable Table = new JTable(new DefaultTableModel(rows, header) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+		});
+		Table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+
+		JButton CloseButton = new JButton(Translation.Language.get(389),
+				new ImageIcon(Config.AbsolutePath + "icons/window-close.png"));
+		CloseButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		});
+		JPanel Buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		Buttons.add(CloseButton);
+
+		getContentPane().setLayout(new BorderLayout());
+		getContentPane().add(new JScrollPane(Table), BorderLayout.CENTER);
+		getContentPane().add(Buttons, BorderLayout.SOUTH);
+		setSize(Math.min(120 * header.length + 40, 1000), 500);
+		setLocationRelativeTo(Principal.frame);
+	}
+
+	/**
+	 * Asks for the inputs and their values, solves the model for all of them
+	 * and shows the table
+	 */
+	public static void jSweep() {
+		Object answer = JOptionPane.showInputDialog(null, Translation.Language
+				.get(386), Translation.Language.get(385),
+				JOptionPane.QUESTION_MESSAGE, new ImageIcon(Config.AbsolutePath
+						+ "icons/help-browser.png"), null, LastInputs);
+		if (answer == null || answer.toString().trim().length() == 0)
+			return;
+		LastInputs = answer.toString();
+
+		Sweep S;
+		try {
+			S = Sweep.Parse(Arrays.asList(LastInputs.split(";")));
+		} catch (IllegalArgumentException e) {
+			SolverGUI.PopUpError(Translation.Language.get(387)
+					+ Config.JumpLine + e.getMessage());
+			return;
+		}
+
+		Config C = new Config();
+		boolean solved = false;
+		try {
+			// Sets the cursor to busy
+			C.setAllWaitCursor();
+
+			// Restart everything
+			CheckString.PurgeAll();
+			evaluation.DiffAndEvaluator.TimeLimitExceeded = false;
+			Principal.createLog();
+			SolverGUI G = new SolverGUI();
+			G.readJTextArea(false);
+			if (Config.ErrorFound)
+				return;
+			if (!S.Prepare()) {
+				SolverGUI.PopUpError(S.getError());
+				return;
+			}
+			S.Solve();
+			evaluation.DiffAndEvaluator.SaveDerivatives();
+			solved = true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			SolverGUI.PopUpError("Unexpected error: " + e.getMessage());
+		} finally {
+			// Sets the cursor to default
+			C.setInitialCursor();
+			// Restart everything
+			CheckString.PurgeAll();
+		}
+
+		if (!solved)
+			return;
+		new SweepGUI(S).setVisible(true);
+		if (S.getFailures() > 0)
+			SolverGUI.PopUpWarning(Translation.Language.get(388)
+					+ S.getFailures());
+	}
+
+}
@@ -106,7 +106,7 @@ public class SyntaxPane {
 				TextArea.setMarginLineEnabled(true);
 			}
 			SolverGUI S = new SolverGUI();
-			S.PrepareSyntaxText(TextArea, Config.CurrentFont, editable);
+			S.PrepareSyntaxText(TextArea, Config.getCurrentFont(), editable);
 			TextScroll = new RTextScrollPane(TextArea);
 			TextScroll.setLineNumbersEnabled(editable);
 		}
@@ -3,13 +3,25 @@ package gui;
 import java.util.ArrayList;
 
 /**
- * This class must be executed at first. Contains the translations.
+ * Contains the translations. They are loaded in the language of
+ * Config.Language the first time one is needed, or again when the class is
+ * executed.
  * 
  * @author Pablo Salinas
  * 
  */
 public class Translation {
-	public static ArrayList<String> Language = new ArrayList<String>();
+	public static ArrayList<String> Language = new ArrayList<String>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String get(int index) {
+			// The command line only needs them to show an error
+			if (isEmpty())
+				new Translation();
+			return super.get(index);
+		}
+	};
 	static char com = (int) 34;// "
 
 	// IF YOU WANT TO ADD A NEW LANGUAGE JUST COPY AND PASTE THIS STRINGS INSIDE
@@ -20,6 +32,7 @@ public class Translation {
 	 */
 	public Translation() {
 
+		Language.clear();
 		if (Config.Language.equalsIgnoreCase("Español")) {
 			/* 0 */Language.add("Cortar");
 			Language.add("Copiar");
@@ -617,6 +630,35 @@ public class Translation {
 					.add("Modifique las ecuaciones, valores iniciales o los algoritmos usados.");
 			Language
 					.add("Valor complejo alcanzado: Debido a las ecuaciones o al algoritmo usado, algunas variables han alcanzado el plano complejo. Lo mas probable es que una ecuación este mal escrita. Sin embargo, puedes probar a resolverlo en la sección Mathematics que si trabaja con números complejos.\n\n");
+			/* 385 */Language.add("Tabla paramétrica");
+			Language
+					.add("Entradas y sus valores, separadas por ;\ninicio:fin:puntos o los valores separados por comas, por ejemplo:\nT = 300:400:11; P = 100, 200");
+			Language.add("Los valores de las entradas no están bien escritos:");
+			Language.add("Puntos que no han convergido: ");
+			Language.add("Cerrar");
+			/* 390 */Language
+					.add("<html><body leftmargin=0 topmargin=6 marginwidth=5 marginheight=6>Resolución</body></html>");
+			Language.add("Opciones de resolución");
+			Language.add("Hessiano >>");
+			Language
+					.add("Hessiano de los métodos GN, DD y HM. Por defecto analítico");
+			Language.add("Analítico");
+			/* 395 */Language.add("Gauss-Newton (J'*J)");
+			Language.add("Actualizaciones secantes (BFGS)");
+			Language.add("Jacobiano >>");
+			Language
+					.add("Derivadas simbólicas de matheclipse o diferenciación automática. Por defecto simbólico");
+			Language.add("Simbólico");
+			/* 400 */Language.add("Diferenciación automática");
+			Language.add("Tiempo máx. modelo >>");
+			Language
+					.add("Tiempo máximo en segundos para resolver todo el modelo, 0 = sin límite");
+			Language.add("Hilos de cálculo >>");
+			Language
+					.add("Sistemas independientes resueltos a la vez, 1 = uno detrás de otro, 0 = uno por procesador");
+			/* 405 */Language.add("Tamaño para rasgar >>");
+			Language
+					.add("Los sistemas con este número de ecuaciones o más se rasgan y se resuelven con Levenberg-Marquardt antes que con el método de los sistemas, 0 = nunca");
 		} else {// If any error, the english
 		/* 0 */
 			Language.add("Cut");
@@ -1227,6 +1269,35 @@ public class Translation {
 					.add("Modify the equations, initial values or the algorithms used.");
 			Language
 					.add("Complex value reached: Due to your equations or because the algorithms, some variables have reached a complex value. The most probably thing is that one equation is wrong. However, you can try solving in in the Mathematics section, which can work with complex numbers.\n\n");
+			/* 385 */Language.add("Parametric table");
+			Language
+					.add("Inputs and their values, separated by ;\nstart:end:points or the values separated by commas, for example:\nT = 300:400:11; P = 100, 200");
+			Language.add("The values of the inputs are not well written:");
+			Language.add("Points that did not converge: ");
+			Language.add("Close");
+			/* 390 */Language
+					.add("<html><body leftmargin=0 topmargin=6 marginwidth=5 marginheight=6>Solver</body></html>");
+			Language.add("Solver options");
+			Language.add("Hessian >>");
+			Language
+					.add("Hessian of the methods GN, DD and HM. By default analytic");
+			Language.add("Analytic");
+			/* 395 */Language.add("Gauss-Newton (J'*J)");
+			Language.add("Secant updates (BFGS)");
+			Language.add("Jacobian >>");
+			Language
+					.add("Symbolic derivatives made by matheclipse or automatic differentiation. By default symbolic");
+			Language.add("Symbolic");
+			/* 400 */Language.add("Automatic differentiation");
+			Language.add("Max. model time >>");
+			Language
+					.add("Maximum time in seconds for solving the whole model, 0 = no limit");
+			Language.add("Solver threads >>");
+			Language
+					.add("Independent systems solved at the same time, 1 = one after another, 0 = one per processor");
+			/* 405 */Language.add("Tearing size >>");
+			Language
+					.add("Systems with this number of equations or more are torn and solved by Levenberg-Marquardt before the method for systems, 0 = never");
 		}
 
 	}
@@ -0,0 +1,340 @@
+package solver;
+
+import gui.Config;
+
+import evaluation.Scheduler;
+import evaluation.Statistics;
+
+/**
+ * Broyden method with a line search. The Jacobian is evaluated and factored
+ * (QR) only at the beginning and when the method stops making progress; in
+ * the rest of the iterations the factors are updated with the secant
+ * condition J(x+s)*s = F(x+s)-F(x), a rank one change that costs O(n^2)
+ * with Givens rotations (Dennis and Schnabel, A3.4.1), so the Jacobian is
+ * evaluated much less than with Newton, Uncmin or Levenberg-Marquardt.
+ *
+ * The matrices are dense and stored by rows in arrays made once.
+ */
+public class Broyden {
+	/**
+	 * Decrease of |F| needed to accept a step, and decrease of the step
+	 * while it is not accepted
+	 */
+	private static final double Armijo = 1e-4;
+	private static final int MaxHalving = 20;
+	/**
+	 * If |F| is not reduced at least to this part of it with a Jacobian
+	 * updated, the Jacobian is evaluated again
+	 */
+	private static final double Stall = 0.9;
+
+	private final PrepareUncmin P;
+	private final int n;
+	/**
+	 * The point, F, the step and the new point
+	 */
+	private final double[] x, f, s, xt, ft;
+	/**
+	 * J = Q*R
+	 */
+	private final double[] q, r;
+	private final double[] aux, t;
+	private int iterations = 0, jacobians = 0;
+
+	/**
+	 *
+	 * @param P
+	 *            The system, compiled
+	 */
+	public Broyden(PrepareUncmin P) {
+		this.P = P;
+		this.n = P.Binding.size();
+		x = new double[n];
+		f = new double[n];
+		s = new double[n];
+		xt = new double[n];
+		ft = new double[n];
+		q = new double[n * n];
+		r = new double[n * n];
+		aux = new double[n];
+		t = new double[n];
+	}
+
+	/**
+	 * Solves the system from the values of the binding. At the end the
+	 * binding has the best point found
+	 *
+	 * @return true if |F| is smaller than Config.Precision
+	 */
+	public boolean Solve() {
+		for (int i = 0; i < n; i++)
+			x[i] = P.Binding.get(i);
+		double norm = Evaluate(x, f);
+		if (Double.isNaN(norm))
+			return false;
+		boolean fresh = Jacobian();
+		if (!fresh)
+			return false;
+
+		while (iterations < Config.MaxNumberOfIteration) {
+			Scheduler.checkCancelled();
+			if (norm <= Config.Precision)
+				break;
+			iterations++;
+			Statistics.iteration();
+
+			// s = -R^-1*Q'*F, with a Jacobian updated it may not be a
+			// descent direction, then the Jacobian is evaluated again
+			if (!Step()) {
+				if (fresh)
+					break;
+				fresh = Jacobian();
+				if (!fresh)
+					break;
+				continue;
+			}
+			double lambda = 1, normt = Double.NaN;
+			for (int h = 0; h < MaxHalving; h++) {
+				for (int i = 0; i < n; i++)
+					xt[i] = x[i] + lambda * s[i];
+				normt = Evaluate(xt, ft);
+				if (normt <= (1 - Armijo * lambda) * norm)
+					break;
+				normt = Double.NaN;
+				lambda /= 2;
+			}
+			if (Double.isNaN(normt)) {
+				Evaluate(x, f);
+				if (fresh)
+					break;
+				fresh = Jacobian();
+				if (!fresh)
+					break;
+				continue;
+			}
+
+			// The new point, s is the step made and f the change of F
+			double step = 0;
+			for (int i = 0; i < n; i++) {
+				s[i] = xt[i] - x[i];
+				step = Math.max(step, Math.abs(s[i]) / (1 + Math.abs(xt[i])));
+				x[i] = xt[i];
+				double d = ft[i];
+				ft[i] = d - f[i];
+				f[i] = d;
+			}
+			boolean stalled = !fresh & normt > Stall * norm;
+			norm = normt;
+			if (norm <= Config.Precision)
+				break;
+			if (step <= Config.epsilon)
+				break;
+			if (stalled) {
+				fresh = Jacobian();
+				if (!fresh)
+					break;
+			} else {
+				Update(s, ft);
+				fresh = false;
+			}
+		}
+
+		for (int i = 0; i < n; i++)
+			P.Binding.set(i, x[i]);
+		return norm <= Config.Precision;
+	}
+
+	/**
+	 * Evaluates F at a point
+	 *
+	 * @return The infinity norm of F. Along the Newton step F decreases as
+	 *         (1-lambda)*F, so this norm is used in the line search
+	 */
+	private double Evaluate(double[] point, double[] F) {
+		for (int i = 0; i < n; i++)
+			P.Binding.set(i, point[i]);
+		Statistics.function();
+		double norm = 0;
+		for (int i = 0; i < n; i++) {
+			F[i] = P.CompiledFx[i].evaluate(P.Binding);
+			if (Double.isNaN(F[i]) | Double.isInfinite(F[i]))
+				return Double.NaN;
+			norm = Math.max(norm, Math.abs(F[i]));
+		}
+		return norm;
+	}
+
+	/**
+	 * Evaluates the Jacobian at x and makes its QR with Householder
+	 * reflections, Q is made explicitly to be updated later
+	 *
+	 * @return false if the Jacobian is not a real number
+	 */
+	private boolean Jacobian() {
+		for (int i = 0; i < n; i++)
+			P.Binding.set(i, x[i]);
+		P.Jacobian.evaluateDense(P.Binding, r);
+		jacobians++;
+		Statistics.jacobian();
+		for (int i = 0; i < n * n; i++)
+			if (Double.isNaN(r[i]) | Double.isInfinite(r[i]))
+				return false;
+		for (int i = 0; i < n * n; i++)
+			q[i] = 0;
+		for (int i = 0; i < n; i++)
+			q[i * n + i] = 1;
+		for (int k = 0; k < n - 1; k++) {
+			double alpha = 0;
+			for (int i = k; i < n; i++)
+				alpha = Math.max(alpha, Math.abs(r[i * n + k]));
+			if (alpha == 0)
+				continue;
+			// The reflection v, in aux
+			double sigma = 0;
+			for (int i = k; i < n; i++) {
+				aux[i] = r[i * n + k] / alpha;
+				sigma += aux[i] * aux[i];
+			}
+			sigma = Math.sqrt(sigma);
+			if (aux[k] < 0)
+				sigma = -sigma;
+			aux[k] += sigma;
+			double vv = sigma * aux[k];
+			// R = H*R
+			for (int j = k; j < n; j++) {
+				double d = 0;
+				for (int i = k; i < n; i++)
+					d += aux[i] * r[i * n + j];
+				d /= vv;
+				for (int i = k; i < n; i++)
+					r[i * n + j] -= d * aux[i];
+			}
+			// Q = Q*H
+			for (int i = 0; i < n; i++) {
+				double d = 0;
+				for (int j = k; j < n; j++)
+					d += q[i * n + j] * aux[j];
+				d /= vv;
+				for (int j = k; j < n; j++)
+					q[i * n + j] -= d * aux[j];
+			}
+			for (int i = k + 1; i < n; i++)
+				r[i * n + k] = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * The step s = -R^-1*Q'*F
+	 *
+	 * @return false if R is singular
+	 */
+	private boolean Step() {
+		double max = 0;
+		for (int i = 0; i < n; i++)
+			max = Math.max(max, Math.abs(r[i * n + i]));
+		for (int i = 0; i < n; i++) {
+			double d = 0;
+			for (int j = 0; j < n; j++)
+				d += q[j * n + i] * f[j];
+			s[i] = -d;
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double diagonal = r[i * n + i];
+			if (!(Math.abs(diagonal) > Config.epsilon * max))
+				return false;
+			double d = s[i];
+			for (int j = i + 1; j < n; j++)
+				d -= r[i * n + j] * s[j];
+			s[i] = d / diagonal;
+		}
+		return true;
+	}
+
+	/**
+	 * Broyden update J = J + (y-J*s)*s'/(s'*s) of the factors Q and R
+	 *
+	 * @param step
+	 *            s
+	 * @param y
+	 *            The change of F
+	 */
+	private void Update(double[] step, double[] y) {
+		double ss = 0;
+		for (int i = 0; i < n; i++)
+			ss += step[i] * step[i];
+		if (ss == 0)
+			return;
+		// aux = R*s, then u = (y-Q*R*s)/(s'*s) and t = Q'*u
+		for (int i = 0; i < n; i++) {
+			double d = 0;
+			for (int j = i; j < n; j++)
+				d += r[i * n + j] * step[j];
+			aux[i] = d;
+		}
+		for (int i = 0; i < n; i++) {
+			double d = y[i];
+			for (int j = 0; j < n; j++)
+				d -= q[i * n + j] * aux[j];
+			xt[i] = d / ss;
+		}
+		for (int i = 0; i < n; i++) {
+			double d = 0;
+			for (int j = 0; j < n; j++)
+				d += q[j * n + i] * xt[j];
+			t[i] = d;
+		}
+
+		// Q*R + Q*t*s' = Q*(R + t*s'), t is rotated to the first position
+		int k = n - 1;
+		while (k > 0 && t[k] == 0)
+			k--;
+		for (int i = k - 1; i >= 0; i--) {
+			Rotate(i, t[i], -t[i + 1]);
+			t[i] = Math.hypot(t[i], t[i + 1]);
+		}
+		for (int j = 0; j < n; j++)
+			r[j] += t[0] * step[j];
+		// R is upper Hessenberg now, it is triangular again
+		for (int i = 0; i < k; i++)
+			Rotate(i, r[i * n + i], -r[(i + 1) * n + i]);
+	}
+
+	/**
+	 * Rotates the rows i and i+1 of R and the columns i and i+1 of Q
+	 */
+	private void Rotate(int i, double a, double b) {
+		double c, sn;
+		if (a == 0) {
+			c = 0;
+			sn = b < 0 ? -1 : 1;
+		} else {
+			double den = Math.hypot(a, b);
+			c = a / den;
+			sn = b / den;
+		}
+		for (int j = i; j < n; j++) {
+			double y = r[i * n + j], w = r[(i + 1) * n + j];
+			r[i * n + j] = c * y - sn * w;
+			r[(i + 1) * n + j] = sn * y + c * w;
+		}
+		for (int j = 0; j < n; j++) {
+			double y = q[j * n + i], w = q[j * n + i + 1];
+			q[j * n + i] = c * y - sn * w;
+			q[j * n + i + 1] = sn * y + c * w;
+		}
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 *
+	 * @return The times the Jacobian was evaluated
+	 */
+	public int getJacobians() {
+		return jacobians;
+	}
+
+}
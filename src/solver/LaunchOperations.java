@@ -1,9 +1,12 @@
 package solver;
 
+import evaluation.Statistics;
 import gui.Config;
 
 import java.util.LinkedList;
 
+import String2ME.CheckString;
+
 /**
  * This class calls the evaluations methods with time limit. And changing the
  * method if is a one equation system or not.
@@ -34,6 +37,10 @@ public class LaunchOperations implements Runnable {
 	 * Variable for one equation system
 	 */
 	String var;
+	/**
+	 * What is done to solve the system
+	 */
+	Statistics.Block Record;
 
 	/**
 	 * Equation system constructor
@@ -46,6 +53,15 @@ public class LaunchOperations implements Runnable {
 		One = false;
 		this.Functions = Functions;
 		this.Vars = Vars;
+		String[] equations = new String[Functions.size()];
+		String[] variables = new String[Vars.size()];
+		int i = 0;
+		for (int f : Functions)
+			equations[i++] = CheckString.Functions.get(f).getEquation();
+		i = 0;
+		for (int v : Vars)
+			variables[i++] = CheckString.Var.Variables.get(v).getVar();
+		Record = Statistics.newBlock(equations, variables, false);
 	}
 
 	/**
@@ -58,6 +74,8 @@ public class LaunchOperations implements Runnable {
 		this.One = true;
 		this.function = function;
 		this.var = var;
+		Record = Statistics.newBlock(new String[] { function },
+				new String[] { var }, true);
 	}
 
 	@Override
@@ -66,11 +84,14 @@ public class LaunchOperations implements Runnable {
 	 * 
 	 */
 	public void run() {
+		long start = Statistics.start(Record);
 		try {
 			if (One) {
 				// At first we try the ConstantSolver. If the return is false
 				// then we will try a different method
+				Statistics.method("Constant");
 				if (!Newton.ConstantSolver(function, var)) {
+					Statistics.method(Method(Config.SingleVariableMethod, false));
 					switch (Config.SingleVariableMethod) {
 					case 1:
 						PrepareUncmin PU1 = new PrepareUncmin(function, var);
@@ -93,6 +114,16 @@ public class LaunchOperations implements Runnable {
 				}
 			} else {
 				if (Functions.size() != 1) {
+					// A big system is solved in the space of its tear
+					// variables, if it can't it is solved as always
+					if (Config.TearingSize > 0
+							&& Functions.size() >= Config.TearingSize) {
+						Statistics.method("Tearing");
+						TornSystem T = TornSystem.tear(Functions, Vars);
+						if (T != null && T.Solve())
+							return;
+					}
+					Statistics.method(Method(Config.MultiVariableMethod, true));
 					switch (Config.MultiVariableMethod) {
 					case 1:
 						PrepareUncmin PU1 = new PrepareUncmin(Functions, Vars);
@@ -106,6 +137,11 @@ public class LaunchOperations implements Runnable {
 						PrepareUncmin PU3 = new PrepareUncmin(Functions, Vars);
 						PU3.Solve(3);
 						break;
+					case 5:
+						PrepareUncmin PU5 = new PrepareUncmin(Functions, Vars,
+								true);
+						PU5.BroydenSolve();
+						break;
 					default:
 						PrepareUncmin PU4 = new PrepareUncmin(Functions, Vars,
 								true);
@@ -113,6 +149,7 @@ public class LaunchOperations implements Runnable {
 					}
 				} else {
 
+					Statistics.method(Method(Config.SingleVariableMethod, false));
 					switch (Config.SingleVariableMethod) {
 					case 1:
 						PrepareUncmin PU1 = new PrepareUncmin(Functions, Vars);
@@ -137,7 +174,33 @@ public class LaunchOperations implements Runnable {
 			e.printStackTrace();
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			Statistics.end(start);
 		}
 
 	}
-}
\ No newline at end of file
+
+	/**
+	 * 
+	 * @param method
+	 *            Config.SingleVariableMethod or Config.MultiVariableMethod
+	 * @param system
+	 *            false for one equation, it is not solved by Broyden
+	 * @return The name of the method in the statistics
+	 */
+	private static String Method(int method, boolean system) {
+		switch (method) {
+		case 1:
+			return "LineSearch";
+		case 2:
+			return "Dogleg";
+		case 3:
+			return "MoreHebdon";
+		case 5:
+			// One equation is solved by Levenberg-Marquardt
+			return system ? "Broyden" : "LevenbergMarquardt";
+		default:
+			return "LevenbergMarquardt";
+		}
+	}
+}
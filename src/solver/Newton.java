@@ -2,9 +2,6 @@ package solver;
 
 import java.util.StringTokenizer;
 
-import org.apache.commons.math.linear.RealMatrix;
-import org.apache.commons.math.linear.RealVector;
-
 import evaluation.*;
 import gui.Config;
 
@@ -19,9 +16,12 @@ public class Newton {
 
 	vector Xk = new vector();
 	vector Fx = new vector();
-	String[][] J;
-	int size;
-	RealVector norm;
+	/**
+	 * Workspaces of the compiled Newton: the point, F and the step, and the
+	 * Jacobian, dense with its LU or the values of the sparse one
+	 */
+	private double[] x, f, jacobian, work, values;
+	private int[] pivot;
 
 	public Newton(vector Fx, vector Xk) {
 		this.Xk = Xk;
@@ -36,12 +36,7 @@ public class Newton {
 	public static boolean ConstantSolver(String equation, String var) {
 		try {
 			// Set initial value
-			double f = Config.DefaultInitialValue;
-			for (int i = 0; i < Config.InitValue.size(); i++)
-				if (Config.InitValue.get(i).getVariable().equalsIgnoreCase(var)) {
-					f = Config.InitValue.get(i).getValue();
-					i = Config.InitValue.size();
-				}
+			double f = vector.InitialValue(var);
 
 			// This is to replace the variable by the initial value f
 			// Supposing f = 1, the result would be:
@@ -59,6 +54,7 @@ public class Newton {
 			}
 
 			// Formula to solve constant equation in one step
+			Statistics.function();
 			f = evaluation.DiffAndEvaluator.Evaluate(Double.toString(f) + "-("
 					+ equation2 + ")");
 
@@ -93,51 +89,75 @@ public class Newton {
 	/**
 	 * This method makes the newton-raphson solver. It is used to make the
 	 * antiminimun method, because the Newton method is a root solver method not
-	 * an optimization method.
+	 * an optimization method. F and the Jacobian are compiled, the values of Xk
+	 * are written in the binding, not in matheclipse, and in Xk only at the
+	 * end.
+	 * 
+	 * The iterations work on arrays made the first time for the size of the
+	 * system, and the LU is made in place, so nothing is allocated while
+	 * iterating. The same Newton can be called again with the same system
+	 * 
+	 * @param Functions
+	 * @param Jacobian
+	 * @param binding
+	 *            The binding of the variables of Xk
+	 * @param iterations
+	 * @return Xk
 	 */
-	public vector Newtonsolver(String[][] Jacobian, int iterations) {
-		// boolean sol = false;
-		RealMatrix J;
-		RealVector F, Xk0;
-		for (int k = 0; k < iterations; k++) {
-
-			// Introduce the values in matheclipse
-			if (Xk.vector.size() > 0)
-				DiffAndEvaluator.IntroduceValues(Xk.EvaluateVector2ME());
-
-			// Xk0 it's also used to test if the new solution is the solution
-			Xk0 = Xk.vector2Realvector();
-
-			// This method evaluates F at the Xk point
-			F = Fx.FVector2LU();
-
-			// This method evaluates the jacobian at the Xk point
-			J = matriz.EvaluateJacobian(Jacobian);
-
-			// This method solves the system equation Jacobian*P=F using P-LU
-			F = LU.Operate(J, F);
-
-			// This makes one iteration of the Newton method
-			F = F.add(Xk0);
+	public vector Newtonsolver(CompiledExpression[] Functions,
+			SparseJacobian Jacobian, VariableBinding binding,
+			int iterations) {
+		int n = binding.size();
+		// Big and sparse Jacobians use the sparse LU, its ordering and its
+		// patterns are made once
+		SparseLU lu = Jacobian.getLU();
+		if (x == null) {
+			x = new double[n];
+			f = new double[n];
+			if (lu != null)
+				values = new double[Jacobian.getNonZeros()];
+			else {
+				jacobian = new double[n * n];
+				work = new double[n * n];
+				pivot = new int[n];
+			}
+		}
 
-			// Refresh Xk values
-			int i = 0;
-			for (nodo n : Xk.vector) {
-				n.SetValue(F.getEntry(i));
-				i++;
+		int i = 0;
+		for (nodo node : Xk.vector)
+			x[i++] = node.GetValue();
+		for (int k = 0; k < iterations; k++) {
+			Scheduler.checkCancelled();
+
+			for (i = 0; i < n; i++)
+				binding.set(i, x[i]);
+			Statistics.iteration();
+			Statistics.function();
+			Statistics.jacobian();
+
+			// F at the Xk point
+			for (i = 0; i < n; i++)
+				f[i] = Functions[i].evaluate(binding);
+
+			// The jacobian at the Xk point, then f=-P where Jacobian*P=F
+			if (lu != null) {
+				Jacobian.evaluate(binding, values);
+				LU.Operate(lu, values, f);
+			} else {
+				Jacobian.evaluateDense(binding, jacobian);
+				LU.Operate(jacobian, n, f, work, pivot);
 			}
 
+			// This makes one iteration of the Newton method
+			for (i = 0; i < n; i++)
+				x[i] += f[i];
 		}
-		return Xk;
-	}
 
-	@SuppressWarnings("unused")
-	/**
-	 * Refresh the values of Xk in the newton method
-	 */
-	private void RefreshXkAndIntroduceValues(RealVector X) {
-		Xk.EvaluateVector2ME(X);
-		DiffAndEvaluator.IntroduceValues(Xk.EvaluateVector2ME());
+		// Refresh Xk values
+		i = 0;
+		for (nodo node : Xk.vector)
+			node.SetValue(x[i++]);
+		return Xk;
 	}
 
 }
\ No newline at end of file
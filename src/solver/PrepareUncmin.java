@@ -2,12 +2,20 @@ package solver;
 
 import gui.Config;
 
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 
-import String2ME.InitVal;
+import String2ME.CheckString;
+import String2ME.EqStorer;
+
+import evaluation.CompiledExpression;
+import evaluation.CompiledSystem;
+import evaluation.Statistics;
+import evaluation.VariableBinding;
 
 import doglegMethod.Lmder_fcn;
-import doglegMethod.Minpack_f77;
+import doglegMethod.Minpack_j;
 import doglegMethod.Uncmin_f77;
 import doglegMethod.Uncmin_methods;
 
@@ -15,29 +23,55 @@ import doglegMethod.Uncmin_methods;
  * Creates the necessary gradient, hessian or Jacobian to call the solver
  * methods
  * 
- * @author Pablo Salinas This class must be static.
+ * Every system solved has its own PrepareUncmin, so independent systems can
+ * be solved at the same time.
+ * 
+ * @author Pablo Salinas
  */
 public class PrepareUncmin {
 	/**
 	 * Functions evaluated
 	 */
-	public static vector Fx = new vector();
+	public vector Fx = new vector();
 	/**
 	 * Variables evaluated
 	 */
-	public static vector Xk = new vector();
+	public vector Xk = new vector();
 	/**
-	 * Analytic Jacobian
+	 * Analytic Jacobian, only with the derivatives that are not zero
 	 */
-	public static String[][] Jacobian;
+	public SparseJacobian Jacobian;
 
 	/**
-	 * Each element of the List is the Hessian of an equation; Example: Two
-	 * functions: Cos(x)-1/2=0 ;x^2*y^3 = 25; Then this functions stores this:
-	 * at the first position -> { {-cos(x) , 0}, {0 , 0}} at the second position
-	 * ->{ {2*Y^3 , 6*x*y^2}, {6*x*y^2 , 6*x^2*y}}
+	 * The second derivatives of the equations, used to make the Hessian.
+	 * Example: Two functions: Cos(x)-1/2=0 ;x^2*y^3 = 25; Then the Hessian of
+	 * the first one is { {-cos(x) , 0}, {0 , 0}} and the second one ->{ {2*Y^3
+	 * , 6*x*y^2}, {6*x*y^2 , 6*x^2*y}}. They are made only when they are
+	 * needed and only if Config.HessianMethod is 1, otherwise this is null
 	 */
-	public static LinkedList<String[][]> Hessians;
+	public SparseHessian Hessian;
+
+	/**
+	 * Values of the variables of Xk while the system is being solved
+	 */
+	public VariableBinding Binding;
+	/**
+	 * The functions of Fx compiled
+	 */
+	public CompiledExpression[] CompiledFx;
+	/**
+	 * The system where Fx is compiled, from its first expression
+	 */
+	public CompiledSystem Compiled;
+	/**
+	 * The names of the parameters of the binding, see VariableBinding
+	 */
+	private List<String> Parameters = new LinkedList<String>();
+	/**
+	 * true if the system is solved again after a solve, then it is not
+	 * cleared
+	 */
+	private boolean Reused = false;
 
 	/**
 	 * This constructor creates the f, that is a List with all the 1/2*Fx^2
@@ -58,7 +92,7 @@ public class PrepareUncmin {
 		Fx.Fvector(Functions);
 		// Hessians = new LinkedList<String[][]>();
 
-		CreateJacobianAndHessian();
+		CreateJacobianAndHessian(Equations(Functions));
 
 	}
 
@@ -80,10 +114,42 @@ public class PrepareUncmin {
 
 		// Create Jacobian
 		/* Jacobian Matrix */
-		Jacobian = matriz.JacobianLU(Xk, Fx);
+		Jacobian = new SparseJacobian(Xk, Fx, Equations(Functions),
+				Config.JacobianMethod == 1);
+		Compile();
 
 	}
 
+	/**
+	 * A system solved many times with the Levenberg-Marquardt method or
+	 * Broyden, for the points of a parametric sweep (see Sweep). It is
+	 * differentiated and compiled once, the values of the variables of other
+	 * systems are parameters of the binding, and it is not cleared when it
+	 * is solved
+	 * 
+	 * @param Functions
+	 * @param Variables
+	 * @param Parameters
+	 *            The variables of other systems that the functions have
+	 */
+	public PrepareUncmin(LinkedList<Integer> Functions,
+			LinkedList<Integer> Variables, List<String> Parameters) {
+
+		clear();
+
+		Xk.Xvector(Variables);
+		Fx.Fvector(Functions);
+		this.Parameters = Parameters;
+
+		Jacobian = new SparseJacobian(Xk, Fx, Equations(Functions),
+				Config.JacobianMethod == 1);
+		Compile();
+		// Later matheclipse would differentiate them with the values of a
+		// point
+		Jacobian.differentiateUncompiled();
+		Reused = true;
+	}
+
 	/**
 	 * This method is for the CheckString.OneEquationVar
 	 * 
@@ -98,12 +164,8 @@ public class PrepareUncmin {
 
 		Xk.vector.add(new nodo(Var));// Xk stores the variable
 		// Now i have to set the initial value of that variable
-		Xk.vector.get(0).SetValue(Config.DefaultInitialValue);
-		for (InitVal IV : Config.InitValue) {
-			if (Var.equalsIgnoreCase(IV.getVariable()))
-				Xk.vector.get(0).SetValue(IV.getValue());
-		}
-		CreateJacobianAndHessian();
+		Xk.vector.get(0).SetValue(vector.InitialValue(Var));
+		CreateJacobianAndHessian(null);
 
 	}
 
@@ -123,44 +185,82 @@ public class PrepareUncmin {
 
 		Xk.vector.add(new nodo(Var));// Xk stores the variable
 		// Now i have to set the initial value of that variable
-		Xk.vector.get(0).SetValue(Config.DefaultInitialValue);
-		for (InitVal IV : Config.InitValue) {
-			if (Var.equalsIgnoreCase(IV.getVariable()))
-				Xk.vector.get(0).SetValue(IV.getValue());
-		}
+		Xk.vector.get(0).SetValue(vector.InitialValue(Var));
 		// CreateJacobianAndHessian();
 		// Create Jacobian
 		/* Jacobian Matrix */
-		Jacobian = matriz.JacobianLU(Xk, Fx);
+		Jacobian = new SparseJacobian(Xk, Fx, null,
+				Config.JacobianMethod == 1);
+		Compile();
+	}
+
+	/**
+	 * 
+	 * @param Functions
+	 *            Positions in CheckString.Functions, sorted as in Fx
+	 * @return The equations of Fx, to know which variables each one has
+	 */
+	private static LinkedList<EqStorer> Equations(LinkedList<Integer> Functions) {
+		LinkedList<EqStorer> equations = new LinkedList<EqStorer>();
+		for (Integer i : Functions)
+			equations.add(CheckString.Functions.get(i));
+		return equations;
 	}
 
 	/**
-	 * Creates from Xk and Fx the analytic Jacobian and Hessian
+	 * Creates from Xk and Fx the analytic Jacobian. The second derivatives of
+	 * the Hessian are not made here, only when the solver needs them
+	 * 
+	 * @param equations
+	 *            The equations of Fx or null
 	 */
-	private void CreateJacobianAndHessian() {
-		Hessians = new LinkedList<String[][]>();
+	private void CreateJacobianAndHessian(LinkedList<EqStorer> equations) {
 
 		/* Jacobian Matrix */
-		Jacobian = matriz.JacobianLU(Xk, Fx);
+		Jacobian = new SparseJacobian(Xk, Fx, equations,
+				Config.JacobianMethod == 1);
+		Compile();
 
-		/* List with arrays of the second and partial derivatives */
-		/* Each element of the List is the Hessian of an equation */
-		String[][] Saux;
-		int i = 0;
-		for (int row = 0; row < Xk.getSize(); row++) {
-
-			Saux = new String[Xk.getSize()][Xk.getSize()];
+		/* Second derivatives, only with the analytic Hessian */
+		if (Config.HessianMethod == 1)
+			Hessian = new SparseHessian(Jacobian, Binding);
+		else
+			Hessian = null;
+	}
 
-			for (int col = 0; col < Xk.getSize(); col++) {
-				i = 0;
-				for (nodo n : Xk.vector) {
-					Saux[col][i] = evaluation.DiffAndEvaluator.diff(
-							Jacobian[row][col], n.GetCadena());
-					i++;
-				}
-			}
-			Hessians.add(Saux);
+	/**
+	 * Compiles Fx and the Jacobian in the same system, so the solvers evaluate
+	 * them without matheclipse and their common subexpressions only once per
+	 * point. Without symbolic derivatives the Jacobian is calculated in
+	 * forward mode on the tape of Fx
+	 */
+	private void Compile() {
+		LinkedList<String> names = new LinkedList<String>();
+		for (nodo n : Xk.vector)
+			names.add(n.GetCadena());
+		Binding = new VariableBinding(names, Parameters);
+		int i = 0;
+		for (nodo n : Xk.vector)
+			Binding.set(i++, n.GetValue());
+
+		String[] functions = new String[Fx.getSize()];
+		i = 0;
+		for (nodo n : Fx.vector)
+			functions[i++] = n.GetCadena();
+		if (!Jacobian.isSymbolic()) {
+			Compiled = new CompiledSystem(functions, Binding);
+			CompiledFx = Compiled.expressions(0, functions.length);
+			Jacobian.compile(Compiled, 0);
+			return;
 		}
+		String[] entries = Jacobian.getEntries();
+		String[] expressions = Arrays.copyOf(functions, functions.length
+				+ entries.length);
+		System.arraycopy(entries, 0, expressions, functions.length,
+				entries.length);
+		Compiled = new CompiledSystem(expressions, Binding);
+		CompiledFx = Compiled.expressions(0, functions.length);
+		Jacobian.compile(Compiled.expressions(functions.length, entries.length));
 	}
 
 	/*
@@ -232,9 +332,9 @@ public class PrepareUncmin {
 	 *            Changes the method for solving the equation method; 1 =
 	 *            Line-Search 2 = Double Dogleg 3 = Hebden-More
 	 */
-	public static void Solve(int EvaluationMethod) {
+	public void Solve(int EvaluationMethod) {
 
-		Uncmin_methods UM = new Uncmin_methods();
+		Uncmin_methods UM = new Uncmin_methods(this);
 		int tam = Fx.getSize();
 		double[] xpls = new double[tam + 1];
 		double[] fpls = new double[tam + 1];
@@ -281,7 +381,9 @@ public class PrepareUncmin {
 		else
 			method[1] = 2;
 
-		iexp[1] = 0;
+		// The Hessian: 1 = analytic, 2 = Gauss-Newton (only J'*J), 3 = secant
+		// updates made by Uncmin (iexp = 1), they start from J'*J at Xk
+		iexp[1] = Config.HessianMethod == 3 ? 1 : 0;
 		msg[1] = 80; // 40 means no gradient and Hessian check, 80 the same plus
 						// less comments
 		ndigit[1] = -1;// tomada del default normal
@@ -308,8 +410,13 @@ public class PrepareUncmin {
 			else {
 				int MaxIterations = 0;
 				vector Xkaux = Xk;
+				// The same Newton every time, with its workspaces
+				Newton N = null;
 				double max = 0;
 				do {
+					// A new one every time, the first point of each
+					// optimization is evaluated as always
+					UM = new Uncmin_methods(this);
 					Uncmin_f77.optif9_f77(tam, Xkaux.Vector2Dogleg(), UM,
 							typsiz, fscale, method, iexp, msg, ndigit, itnlim,
 							iagflg, iahflg, dlt, gradtl, stepmx, steptl, xpls,
@@ -323,8 +430,10 @@ public class PrepareUncmin {
 								max = d;
 
 						if (Math.abs(max) > Math.sqrt(Config.Precision)) {
-							Newton N = new Newton(Fx, Xk);
-							Xkaux = N.Newtonsolver(Jacobian,
+							if (N == null)
+								N = new Newton(Fx, Xk);
+							Xkaux = N.Newtonsolver(CompiledFx,
+									Jacobian, Binding,
 									Config.IterationAntiMinimum);
 
 						} else {
@@ -342,40 +451,140 @@ public class PrepareUncmin {
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
-			clear();
+			// The last values calculated are the result
+			if (Binding != null)
+				Binding.publish();
+			HessianLog();
+			release();
 		}
 
 	}
 
+	/**
+	 * Writes in the log the Hessian used by the last Solve
+	 */
+	private void HessianLog() {
+		switch (Config.HessianMethod) {
+		case 2:
+			System.out.println("Uncmin Hessian: Gauss-Newton (J'*J)");
+			break;
+		case 3:
+			System.out.println("Uncmin Hessian: secant updates");
+			break;
+		default:
+			System.out.println("Uncmin Hessian: analytic, "
+					+ (Hessian == null ? 0 : Hessian.getDerivatives())
+					+ " second derivatives made");
+		}
+	}
+
 	/**
 	 * Solves by the Levenberg-Marquard method
 	 */
-	public static void LMSolve() {
-		Lmder_fcn Lder = new Lmder_fcn();
+	public void LMSolve() {
+		Lmder_fcn Lder = new Lmder_fcn(this);
 		int tam = Fx.getSize();
-		double x[] = new double[tam + 1];
-		x = Xk.Vector2Dogleg();
-		double fvec[] = new double[tam + 1];
-		double fjac[][] = new double[tam + 1][tam + 1];
+		double x[] = new double[Xk.vector.size()];
+		int i = 0;
+		for (nodo n : Xk.vector)
+			x[i++] = n.GetValue();
+		double fvec[] = new double[tam];
+		// The Jacobian by columns, see Minpack_j
+		double fjac[] = new double[tam * tam];
 		double tol = Config.Precision;// Math.sqrt(Config.epsilon);
-		int info[] = new int[2];// This is a return value
-		int ipvt[] = new int[tam + 1];// See Minpack_f77
+		int info[] = new int[1];// This is a return value
+		int ipvt[] = new int[tam];// See Minpack_j
 
 		try { // Call the method
-			Minpack_f77.lmder1_f77(Lder, tam, tam, x, fvec, fjac, tol, info,
+			Minpack_j.lmder1_j(Lder, tam, tam, x, fvec, fjac, tam, tol, info,
 					ipvt);
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
-			clear();
+			// The last values calculated are the result
+			if (Binding != null)
+				Binding.publish();
+			release();
+		}
+	}
+
+	/**
+	 * Solves by the Broyden method, see Broyden. If it does not converge, the
+	 * system is solved by Levenberg-Marquardt from the last point
+	 */
+	public void BroydenSolve() {
+		Broyden B = new Broyden(this);
+		boolean solved;
+		try {
+			solved = B.Solve();
+		} catch (RuntimeException e) {
+			// The time is over, the last values calculated are the result
+			Binding.publish();
+			release();
+			throw e;
+		}
+		System.out.println("Broyden: " + B.getIterations() + " iterations, "
+				+ B.getJacobians() + " Jacobian evaluations");
+		if (solved) {
+			Binding.publish();
+			release();
+			return;
 		}
+		int i = 0;
+		for (nodo n : Xk.vector)
+			n.SetValue(Binding.get(i++));
+		Statistics.method("LevenbergMarquardt");
+		LMSolve();
+	}
+
+	/**
+	 * Updates the values of the vector Xk and of the binding, the values are
+	 * not introduced in matheclipse
+	 * 
+	 * @param x
+	 *            The values, from the position 1
+	 */
+	public void IntroduceValues(double x[]) {
+		IntroduceValues(x, 1);
+	}
+
+	/**
+	 * Updates the values of the vector Xk and of the binding, the values are
+	 * not introduced in matheclipse
+	 * 
+	 * @param x
+	 *            The values
+	 * @param first
+	 *            Position of the first value, 0 for Minpack_j
+	 */
+	public void IntroduceValues(double x[], int first) {
+		int i = first;
+		for (nodo n : Xk.vector) {
+			n.SetValue(x[i]);
+			i++;
+		}
+
+		Binding.set(x, first);
+	}
+
+	/**
+	 * The solve has ended, the system is cleared unless it is solved again
+	 */
+	private void release() {
+		if (!Reused)
+			clear();
 	}
 
 	/**
 	 * Erase the values of Fx and Xk
 	 */
-	public static void clear() {
+	public void clear() {
 		Fx.clear();
 		Xk.clear();
+		Binding = null;
+		CompiledFx = null;
+		Compiled = null;
+		Jacobian = null;
+		Hessian = null;
 	}
 }
\ No newline at end of file
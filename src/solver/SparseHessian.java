@@ -0,0 +1,112 @@
+package solver;
+
+import java.util.Arrays;
+
+import evaluation.CompiledExpression;
+import evaluation.DiffAndEvaluator;
+import evaluation.VariableBinding;
+
+/**
+ * The second derivatives needed by the Hessian of f = 1/2 Sum(F^2), that is
+ * Sum(Fj*Laplacian(Fj)). They are made the first time an entry is needed and
+ * only for the equations that have both variables, so most of them are never
+ * differentiated.
+ */
+public class SparseHessian {
+
+	private final SparseJacobian J;
+	private final VariableBinding binding;
+	private final int n;
+	/**
+	 * For every entry of the lower triangle, the equations that have both
+	 * variables. Null until the entry is needed
+	 */
+	private final int[][] equations;
+	/**
+	 * The second derivative of each of those equations
+	 */
+	private final CompiledExpression[][] terms;
+	/**
+	 * Number of second derivatives made
+	 */
+	private int derivatives = 0;
+
+	/**
+	 *
+	 * @param J
+	 *            The Jacobian of the functions
+	 * @param binding
+	 *            The variables, in the same order as the columns of J
+	 */
+	public SparseHessian(SparseJacobian J, VariableBinding binding) {
+		this.J = J;
+		this.binding = binding;
+		this.n = J.getCols();
+		this.equations = new int[n * (n + 1) / 2][];
+		this.terms = new CompiledExpression[equations.length][];
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @param col
+	 * @param F
+	 *            The functions evaluated
+	 * @return Sum(Fj * d2Fj/(dxrow dxcol))
+	 */
+	public double evaluate(int row, int col, double[] F) {
+		if (col > row) {
+			int aux = row;
+			row = col;
+			col = aux;
+		}
+		int pos = row * (row + 1) / 2 + col;
+		if (equations[pos] == null)
+			make(pos, row, col);
+
+		double sum = 0;
+		for (int k = 0; k < equations[pos].length; k++)
+			sum += F[equations[pos][k]] * terms[pos][k].evaluate(binding);
+		return sum;
+	}
+
+	/**
+	 * Differentiates the entry for every equation that has both variables
+	 */
+	private void make(int pos, int row, int col) {
+		int[] rowStart = J.getRowStart();
+		int[] eqs = new int[J.getRows()];
+		CompiledExpression[] exprs = new CompiledExpression[eqs.length];
+		int count = 0;
+		for (int eq = 0; eq < J.getRows(); eq++) {
+			String deriv = null;
+			boolean other = false;
+			for (int k = rowStart[eq]; k < rowStart[eq + 1]; k++) {
+				if (J.getColumns()[k] == row)
+					deriv = J.getEntry(eq, row);
+				if (J.getColumns()[k] == col)
+					other = true;
+			}
+			if (deriv == null | !other)
+				continue;
+			String second = DiffAndEvaluator.diff(deriv, binding.getName(col));
+			derivatives++;
+			if (second != null && (second.equals("0") | second.equals("0.0")))
+				continue;
+			eqs[count] = eq;
+			exprs[count] = new CompiledExpression(second, binding.getSlots());
+			count++;
+		}
+		equations[pos] = Arrays.copyOf(eqs, count);
+		terms[pos] = Arrays.copyOf(exprs, count);
+	}
+
+	/**
+	 *
+	 * @return The number of second derivatives made until now
+	 */
+	public int getDerivatives() {
+		return derivatives;
+	}
+
+}
@@ -0,0 +1,430 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+
+import String2ME.DerivEquation;
+import String2ME.EqStorer;
+import evaluation.CompiledExpression;
+import evaluation.CompiledSystem;
+import evaluation.DiffAndEvaluator;
+import evaluation.SparseLU;
+import evaluation.VariableBinding;
+
+/**
+ * The analytic Jacobian stored by rows (CSR). Only the derivatives of the
+ * variables that appear in each equation are calculated, the rest are
+ * structural zeros and they are never differentiated nor evaluated.
+ *
+ * The entries can be differentiated by matheclipse (symbolic) or calculated
+ * in forward mode on the tape of the functions, then no string is
+ * differentiated unless the function could not be compiled.
+ */
+public class SparseJacobian {
+	/**
+	 * Number of rows (functions) and columns (variables)
+	 */
+	private final int rows, cols;
+	/**
+	 * The entries of the row i are from rowStart[i] to rowStart[i+1]-1
+	 */
+	private final int[] rowStart;
+	/**
+	 * Column of every entry
+	 */
+	private final int[] column;
+	/**
+	 * The derivative of every entry. Without symbolic differentiation they
+	 * are null until getEntry needs them
+	 */
+	private final String[] entry;
+	/**
+	 * The entries compiled
+	 */
+	private CompiledExpression[] compiled;
+	/**
+	 * The variables and the functions, to differentiate them later
+	 */
+	private final String[] variables, functions;
+	private final boolean symbolic;
+	/**
+	 * In forward mode, the system with the functions and the position of the
+	 * first one
+	 */
+	private CompiledSystem system;
+	private int first;
+	/**
+	 * Row of every entry and the entries sorted by columns
+	 */
+	private int[] entryRow, byColumn;
+	/**
+	 * Values of the entries
+	 */
+	private double[] values;
+	/**
+	 * The sparse LU of a big Jacobian, its ordering is made once
+	 */
+	private SparseLU lu;
+
+	/**
+	 * Differentiates every function by the variables that appear in it
+	 *
+	 * @param Xk
+	 *            The variables
+	 * @param Fx
+	 *            The functions
+	 * @param equations
+	 *            The equations of Fx in the same order, their aux list says
+	 *            which variables they have. If null every variable is tried
+	 */
+	public SparseJacobian(vector Xk, vector Fx, List<EqStorer> equations) {
+		this(Xk, Fx, equations, true);
+	}
+
+	/**
+	 * Finds the entries that can be different from zero
+	 *
+	 * @param Xk
+	 *            The variables
+	 * @param Fx
+	 *            The functions
+	 * @param equations
+	 *            The equations of Fx in the same order, their aux list says
+	 *            which variables they have. If null every variable is tried
+	 * @param symbolic
+	 *            If true the entries are differentiated by matheclipse, if
+	 *            false they must be calculated in forward mode, see compile
+	 */
+	public SparseJacobian(vector Xk, vector Fx, List<EqStorer> equations,
+			boolean symbolic) {
+		this.symbolic = symbolic;
+		rows = Fx.getSize();
+		cols = Xk.getSize();
+		variables = new String[cols];
+		int j = 0;
+		for (nodo n : Xk.vector)
+			variables[j++] = n.GetCadena();
+		functions = new String[rows];
+		j = 0;
+		for (nodo n : Fx.vector)
+			functions[j++] = n.GetCadena();
+
+		rowStart = new int[rows + 1];
+		int[] columnAux = new int[Math.max(cols, 4)];
+		String[] entryAux = new String[columnAux.length];
+		boolean[] present = new boolean[cols];
+		int nnz = 0;
+		for (int row = 0; row < rows; row++) {
+			rowStart[row] = nnz;
+			pattern(equations == null ? null : equations.get(row), variables,
+					present);
+			for (int col = 0; col < cols; col++) {
+				if (!present[col])
+					continue;
+				String deriv = symbolic ? DiffAndEvaluator.diff(
+						functions[row], variables[col]) : null;
+				// Zeros found by matheclipse are not stored either
+				if (deriv != null && isZero(deriv))
+					continue;
+				if (nnz == columnAux.length) {
+					columnAux = Arrays.copyOf(columnAux, nnz * 2);
+					entryAux = Arrays.copyOf(entryAux, nnz * 2);
+				}
+				columnAux[nnz] = col;
+				entryAux[nnz] = deriv;
+				nnz++;
+			}
+		}
+		rowStart[rows] = nnz;
+		column = Arrays.copyOf(columnAux, nnz);
+		entry = Arrays.copyOf(entryAux, nnz);
+	}
+
+	/**
+	 * Marks in present the columns that can be different from zero
+	 */
+	private static void pattern(EqStorer equation, String[] variables,
+			boolean[] present) {
+		if (equation == null) {
+			Arrays.fill(present, true);
+			return;
+		}
+		Arrays.fill(present, false);
+		for (DerivEquation DE : equation.aux)
+			for (int col = 0; col < variables.length; col++)
+				if (DE.GetVar().equalsIgnoreCase(variables[col]))
+					present[col] = true;
+	}
+
+	private static boolean isZero(String deriv) {
+		return deriv.equals("0") | deriv.equals("0.0");
+	}
+
+	/**
+	 * Compiles the entries
+	 *
+	 * @param slots
+	 *            The position of every variable in the binding
+	 */
+	public void compile(Map<String, Integer> slots) {
+		compiled = CompiledExpression.compile(entry, slots);
+	}
+
+	/**
+	 * Uses entries already compiled, for example in a CompiledSystem
+	 *
+	 * @param entries
+	 *            The entries in the same order as getEntries
+	 */
+	public void compile(CompiledExpression[] entries) {
+		compiled = entries;
+	}
+
+	/**
+	 * Calculates the entries in forward mode. The entries of the functions
+	 * that could not be compiled are differentiated by matheclipse
+	 *
+	 * @param system
+	 *            A system compiled with the functions, in the same order
+	 * @param first
+	 *            The position of the first function in the system
+	 */
+	public void compile(CompiledSystem system, int first) {
+		this.system = system;
+		this.first = first;
+		int nnz = column.length;
+		entryRow = new int[nnz];
+		for (int row = 0; row < rows; row++)
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+				entryRow[k] = row;
+		// Counting sort of the entries by column
+		int[] start = new int[cols + 1];
+		for (int k = 0; k < nnz; k++)
+			start[column[k] + 1]++;
+		for (int col = 0; col < cols; col++)
+			start[col + 1] += start[col];
+		byColumn = new int[nnz];
+		for (int k = 0; k < nnz; k++)
+			byColumn[start[column[k]]++] = k;
+		values = new double[nnz];
+		compiled = new CompiledExpression[nnz];
+	}
+
+	/**
+	 * In forward mode, differentiates now the entries of the functions that
+	 * could not be compiled, otherwise they are differentiated when they are
+	 * needed. Matheclipse replaces the variables that have a value in the
+	 * derivatives, so they must be made before a system is solved if it will
+	 * be solved again with other values
+	 */
+	public void differentiateUncompiled() {
+		if (system == null)
+			return;
+		for (int row = 0; row < rows; row++)
+			if (!system.isCompiled(first + row))
+				for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+					getEntry(row, column[k]);
+	}
+
+	/**
+	 * Evaluates every entry in values, by columns in forward mode
+	 */
+	private void forward(VariableBinding binding) {
+		for (int k : byColumn) {
+			int row = entryRow[k];
+			double d = system.derivative(first + row, column[k]);
+			if (Double.isNaN(d)) {
+				// Not compiled or not a real number, matheclipse decides
+				if (compiled[k] == null)
+					compiled[k] = new CompiledExpression(getEntry(row,
+							column[k]), binding.getSlots());
+				d = compiled[k].evaluate(binding);
+			}
+			values[k] = d;
+		}
+	}
+
+	/**
+	 *
+	 * @return The derivative of every entry, in the same order as getColumns
+	 */
+	public String[] getEntries() {
+		return entry;
+	}
+
+	/**
+	 *
+	 * @param binding
+	 * @return The Jacobian evaluated at the point of the binding, as a dense
+	 *         matrix
+	 */
+	public Array2DRowRealMatrix evaluate(VariableBinding binding) {
+		Array2DRowRealMatrix aux = new Array2DRowRealMatrix(rows, cols);
+		double[][] data = aux.getDataRef();
+		if (system != null) {
+			forward(binding);
+			for (int row = 0; row < rows; row++)
+				for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+					data[row][column[k]] = values[k];
+			return aux;
+		}
+		for (int row = 0; row < rows; row++)
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+				data[row][column[k]] = compiled[k].evaluate(binding);
+		return aux;
+	}
+
+	/**
+	 * Evaluates the Jacobian in an array, by rows, without allocating
+	 *
+	 * @param binding
+	 * @param a
+	 *            The rows*cols matrix
+	 */
+	public void evaluateDense(VariableBinding binding, double[] a) {
+		if (system != null)
+			forward(binding);
+		Arrays.fill(a, 0, rows * cols, 0);
+		for (int row = 0; row < rows; row++)
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+				a[row * cols + column[k]] = system != null ? values[k]
+						: compiled[k].evaluate(binding);
+	}
+
+	/**
+	 * Evaluates the Jacobian in a matrix that starts from the position 1, like
+	 * the ones used by Minpack_f77
+	 *
+	 * @param binding
+	 * @param fjac
+	 */
+	public void evaluateFromOne(VariableBinding binding, double[][] fjac) {
+		if (system != null)
+			forward(binding);
+		for (int row = 0; row < rows; row++) {
+			Arrays.fill(fjac[row + 1], 1, cols + 1, 0);
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+				fjac[row + 1][column[k] + 1] = system != null ? values[k]
+						: compiled[k].evaluate(binding);
+		}
+	}
+
+	/**
+	 * Evaluates the Jacobian in a matrix stored by columns, like the ones
+	 * used by Minpack_j
+	 *
+	 * @param binding
+	 * @param fjac
+	 *            fjac(row,column) is fjac[row+column*ld]
+	 * @param ld
+	 *            Leading dimension of fjac
+	 */
+	public void evaluateByColumns(VariableBinding binding, double[] fjac,
+			int ld) {
+		if (system != null)
+			forward(binding);
+		for (int col = 0; col < cols; col++)
+			Arrays.fill(fjac, col * ld, col * ld + rows, 0);
+		for (int row = 0; row < rows; row++)
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+				fjac[row + column[k] * ld] = system != null ? values[k]
+						: compiled[k].evaluate(binding);
+	}
+
+	/**
+	 * Evaluates only the non zero entries
+	 *
+	 * @param binding
+	 * @param values
+	 *            The values of the entries, in the same order as getColumns
+	 */
+	public void evaluate(VariableBinding binding, double[] values) {
+		if (system != null) {
+			forward(binding);
+			System.arraycopy(this.values, 0, values, 0, values.length);
+			return;
+		}
+		for (int k = 0; k < compiled.length; k++)
+			values[k] = compiled[k].evaluate(binding);
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @param col
+	 * @return The derivative of the function row by the variable col
+	 */
+	public String getEntry(int row, int col) {
+		for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+			if (column[k] == col) {
+				if (entry[k] == null)
+					entry[k] = DiffAndEvaluator.diff(functions[row],
+							variables[col]);
+				return entry[k];
+			}
+		return "0";
+	}
+
+	/**
+	 *
+	 * @return The Jacobian as a dense matrix of strings
+	 */
+	public String[][] toArray() {
+		String[][] result = new String[rows][cols];
+		for (int row = 0; row < rows; row++) {
+			Arrays.fill(result[row], "0");
+			for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+				result[row][column[k]] = getEntry(row, column[k]);
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return true if the entries were differentiated by matheclipse
+	 */
+	public boolean isSymbolic() {
+		return symbolic;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 *
+	 * @return The number of entries that can be different from zero
+	 */
+	public int getNonZeros() {
+		return column.length;
+	}
+
+	/**
+	 * 
+	 * @return The sparse LU of the Jacobian with the values of getColumns, or
+	 *         null if it is small or not sparse enough, then the dense LU is
+	 *         faster
+	 */
+	public SparseLU getLU() {
+		if (lu == null && rows == cols
+				&& SparseLU.isWorth(rows, column.length))
+			lu = new SparseLU(rows, rowStart, column);
+		return lu;
+	}
+
+	public int[] getRowStart() {
+		return rowStart;
+	}
+
+	public int[] getColumns() {
+		return column;
+	}
+
+}
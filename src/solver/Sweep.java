@@ -0,0 +1,475 @@
+package solver;
+
+import evaluation.CompiledExpression;
+import evaluation.DiffAndEvaluator;
+import evaluation.Scheduler;
+import gui.Config;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import String2ME.CheckString;
+import String2ME.DerivEquation;
+import String2ME.EqStorer;
+import String2ME.SymbolTable;
+import String2ME.VString;
+import tarjan.PrepareMatrix;
+
+/**
+ * Solves the model parsed in CheckString for many values of some of its
+ * inputs, a parametric table: the model is solved at every point of the grid
+ * of the values of the inputs. The equations that give the value of an input
+ * in the model are replaced by the values of the sweep.
+ *
+ * The model is decomposed, differentiated and compiled only once. Every block
+ * of the block triangular form is prepared before the first point, with the
+ * variables of the other blocks and the inputs as parameters of its binding,
+ * see PrepareUncmin, and at every point only the values of the parameters
+ * change. Every point starts from the solution of the last point solved, and
+ * the points are solved in an order where only one input changes, one step,
+ * from one point to the next, so the solver needs few iterations. A block
+ * that does not converge from there is solved again from the initial values.
+ * The blocks that do not depend on the inputs are solved only once.
+ *
+ * The systems are solved by the Levenberg-Marquardt method, or by Broyden if
+ * it is the method chosen for systems, because the methods of Uncmin need
+ * second derivatives made with the values of every point.
+ */
+public class Sweep {
+	/**
+	 * The inputs as they are written by the user
+	 */
+	private final String[] Inputs;
+	/**
+	 * The values of the inputs at every point, the first input changes the
+	 * slowest
+	 */
+	private final double[][] Points;
+	/**
+	 * Number of values of every input
+	 */
+	private final int[] Sizes;
+	/**
+	 * The id in the SymbolTable of every input
+	 */
+	private int[] InputIds;
+	/**
+	 * The variables of the table, sorted by name
+	 */
+	private int[] VarIds;
+	/**
+	 * The blocks in the order they are solved
+	 */
+	private final ArrayList<PrepareUncmin> Systems = new ArrayList<PrepareUncmin>();
+	/**
+	 * For every block, the id of the variable of every slot of its binding,
+	 * first its variables and then its parameters
+	 */
+	private final ArrayList<int[]> Slots = new ArrayList<int[]>();
+	/**
+	 * true if the block depends on some input
+	 */
+	private boolean[] Varying;
+	/**
+	 * true if the block was solved in some point
+	 */
+	private boolean[] Solved;
+	/**
+	 * The value of every variable at the point being solved, at the last
+	 * point solved and its initial value, by id
+	 */
+	private double[] Values, Good, Start;
+	private double[][] Table;
+	private boolean[] Converged;
+	private String Error = null;
+
+	/**
+	 *
+	 * @param inputs
+	 *            The names of the inputs
+	 * @param values
+	 *            The values of every input
+	 */
+	public Sweep(List<String> inputs, List<double[]> values) {
+		Inputs = inputs.toArray(new String[inputs.size()]);
+		Sizes = new int[Inputs.length];
+		int n = 1;
+		for (int k = 0; k < Inputs.length; k++) {
+			Sizes[k] = values.get(k).length;
+			n *= Sizes[k];
+		}
+		Points = new double[n][Inputs.length];
+		for (int p = 0; p < n; p++) {
+			int rest = p;
+			for (int k = Inputs.length - 1; k >= 0; k--) {
+				Points[p][k] = values.get(k)[rest % Sizes[k]];
+				rest /= Sizes[k];
+			}
+		}
+	}
+
+	/**
+	 * Makes a sweep from the inputs written as name=values, see Values
+	 *
+	 * @param specs
+	 * @return The sweep of all the inputs
+	 * @throws IllegalArgumentException
+	 *             If some input is not well written, with the message to show
+	 */
+	public static Sweep Parse(List<String> specs) {
+		LinkedList<String> inputs = new LinkedList<String>();
+		LinkedList<double[]> values = new LinkedList<double[]>();
+		for (String spec : specs) {
+			int equal = spec.indexOf('=');
+			if (equal <= 0)
+				throw new IllegalArgumentException("Expected name=values: "
+						+ spec);
+			inputs.add(spec.substring(0, equal).trim());
+			values.add(Values(spec.substring(equal + 1)));
+		}
+		if (inputs.isEmpty())
+			throw new IllegalArgumentException("No inputs to sweep");
+		return new Sweep(inputs, values);
+	}
+
+	/**
+	 *
+	 * @param spec
+	 *            start:end:points for points values equally spaced from
+	 *            start to end, or the values separated by commas
+	 * @return The values
+	 * @throws IllegalArgumentException
+	 *             If spec is not well written
+	 */
+	public static double[] Values(String spec) {
+		String[] parts = spec.split(":");
+		if (parts.length == 3) {
+			double start = Double.parseDouble(parts[0].trim());
+			double end = Double.parseDouble(parts[1].trim());
+			int points = Integer.parseInt(parts[2].trim());
+			if (points < 1)
+				throw new IllegalArgumentException(
+						"The number of points must be at least 1: " + spec);
+			double[] values = new double[points];
+			for (int i = 0; i < points; i++)
+				values[i] = points == 1 ? start : start + (end - start) * i
+						/ (points - 1);
+			return values;
+		}
+		if (parts.length != 1)
+			throw new IllegalArgumentException(
+					"Expected start:end:points or values separated by commas: "
+							+ spec);
+		String[] list = spec.split(",");
+		double[] values = new double[list.length];
+		for (int i = 0; i < list.length; i++)
+			values[i] = Double.parseDouble(list[i].trim());
+		return values;
+	}
+
+	/**
+	 * Removes the inputs from the model and prepares its blocks. The model
+	 * must be parsed and not solved, so the derivatives are made without the
+	 * values of any point
+	 *
+	 * @return false if the model can not be swept, see getError
+	 */
+	public boolean Prepare() {
+		DiffAndEvaluator.PurgeVar();
+		vector.PrepareInitialValues();
+
+		/*--The inputs--*/
+		InputIds = new int[Inputs.length];
+		boolean[] input = new boolean[SymbolTable.size()];
+		for (int k = 0; k < Inputs.length; k++) {
+			VString VS = Find(Inputs[k]);
+			if (VS == null) {
+				Error = "The variable " + Inputs[k] + " is not in the model";
+				return false;
+			}
+			if (input[VS.getId()]) {
+				Error = "The variable " + Inputs[k] + " is swept twice";
+				return false;
+			}
+			InputIds[k] = VS.getId();
+			input[VS.getId()] = true;
+		}
+
+		// The equations that only have inputs give their values
+		Iterator<EqStorer> itF = CheckString.Functions.iterator();
+		while (itF.hasNext()) {
+			boolean only = true;
+			for (DerivEquation DE : itF.next().aux)
+				only &= input[DE.GetId()];
+			if (only)
+				itF.remove();
+		}
+		Iterator<VString> itV = CheckString.Var.Variables.iterator();
+		while (itV.hasNext())
+			if (input[itV.next().getId()])
+				itV.remove();
+		if (CheckString.Functions.size() != CheckString.Var.getSize()) {
+			Error = "Without the inputs the model has "
+					+ CheckString.Functions.size() + " equations and "
+					+ CheckString.Var.getSize() + " variables";
+			return false;
+		}
+
+		/*--The blocks, compiled with the variables of the others--*/
+		PrepareMatrix PM = new PrepareMatrix();
+		if (!PM.Decompose()) {
+			Error = "The system is structurally singular";
+			return false;
+		}
+		int n = PM.getBlockFunctions().size();
+		Varying = new boolean[n];
+		Solved = new boolean[n];
+		boolean[] varying = new boolean[SymbolTable.size()];
+		System.arraycopy(input, 0, varying, 0, input.length);
+		Good = new double[SymbolTable.size()];
+		Iterator<LinkedList<Integer>> itVars = PM.getBlockVars().iterator();
+		int b = 0;
+		for (LinkedList<Integer> Functions : PM.getBlockFunctions()) {
+			LinkedList<Integer> Vars = itVars.next();
+			HashSet<Integer> own = new HashSet<Integer>();
+			for (int v : Vars)
+				own.add(CheckString.Var.Variables.get(v).getId());
+			LinkedList<String> parameters = new LinkedList<String>();
+			for (int f : Functions)
+				for (DerivEquation DE : CheckString.Functions.get(f).aux)
+					if (own.add(DE.GetId())) {
+						parameters.add(DE.GetVar());
+						Varying[b] |= varying[DE.GetId()];
+					}
+			PrepareUncmin P = new PrepareUncmin(Functions, Vars, parameters);
+			int[] slots = new int[P.Binding.getValues().length];
+			for (int i = 0; i < slots.length; i++)
+				slots[i] = SymbolTable.getId(P.Binding.getName(i));
+			for (int i = 0; i < P.Binding.size(); i++) {
+				varying[slots[i]] = Varying[b];
+				Good[slots[i]] = P.Binding.get(i);
+			}
+			Systems.add(P);
+			Slots.add(slots);
+			b++;
+		}
+
+		/*--The variables of the table--*/
+		VarIds = new int[CheckString.Var.getSize()];
+		int i = 0;
+		for (VString VS : CheckString.Var.Variables)
+			VarIds[i++] = VS.getId();
+		Integer[] sorted = new Integer[VarIds.length];
+		for (i = 0; i < sorted.length; i++)
+			sorted[i] = VarIds[i];
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Name(a).compareToIgnoreCase(Name(b));
+			}
+		});
+		for (i = 0; i < sorted.length; i++)
+			VarIds[i] = sorted[i];
+		Values = Good.clone();
+		Start = Good.clone();
+		return true;
+	}
+
+	/**
+	 * Solves every point, see getTable
+	 */
+	public void Solve() {
+		Table = new double[Points.length][Inputs.length + VarIds.length];
+		Converged = new boolean[Points.length];
+		for (int p : Order()) {
+			Scheduler.startModel();
+			for (int k = 0; k < Inputs.length; k++)
+				Values[InputIds[k]] = Points[p][k];
+			boolean converged = true;
+			for (int b = 0; b < Systems.size(); b++)
+				if (Varying[b] | !Solved[b]) {
+					// From the last point, or from the initial values if it
+					// is far away
+					Solved[b] = SolveSystem(b, Good)
+							|| SolveSystem(b, Start);
+					converged &= Solved[b];
+				}
+			Converged[p] = converged;
+			// The next point starts from the last one that converged
+			if (converged)
+				System.arraycopy(Values, 0, Good, 0, Values.length);
+			System.arraycopy(Points[p], 0, Table[p], 0, Inputs.length);
+			for (int j = 0; j < VarIds.length; j++)
+				Table[p][Inputs.length + j] = Values[VarIds[j]];
+		}
+	}
+
+	/**
+	 * Solves one block with the values of its parameters at this point
+	 *
+	 * @param b
+	 * @param from
+	 *            The values of the variables where the solver starts, by id
+	 * @return true if it converged on time
+	 */
+	private boolean SolveSystem(int b, double[] from) {
+		final PrepareUncmin P = Systems.get(b);
+		int[] slots = Slots.get(b);
+		final int n = P.Binding.size();
+		double[] x = new double[n];
+		for (int i = 0; i < n; i++)
+			x[i] = from[slots[i]];
+		P.IntroduceValues(x, 0);
+		for (int i = n; i < slots.length; i++)
+			P.Binding.set(i, Values[slots[i]]);
+
+		boolean onTime = Scheduler.run(new Runnable() {
+			public void run() {
+				try {
+					if (Config.MultiVariableMethod == 5 & n > 1)
+						P.BroydenSolve();
+					else
+						P.LMSolve();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}, Config.MaxOperationsTime * 1000L);
+		for (int i = 0; i < n; i++)
+			Values[slots[i]] = P.Binding.get(i);
+		if (!onTime)
+			return false;
+		for (CompiledExpression F : P.CompiledFx) {
+			double r = F.evaluate(P.Binding);
+			if (Double.isNaN(r) || Math.abs(r) > Config.Precision * 10)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return The points in the order they are solved: the last input
+	 *         changes the fastest and it goes back and forth, so only one
+	 *         input changes one step from one point to the next
+	 */
+	private int[] Order() {
+		int[] order = new int[Points.length];
+		for (int s = 0; s < order.length; s++) {
+			int[] digit = new int[Sizes.length];
+			int rest = s;
+			for (int k = Sizes.length - 1; k >= 0; k--) {
+				digit[k] = rest % Sizes[k];
+				rest /= Sizes[k];
+			}
+			int p = 0, higher = 0;
+			for (int k = 0; k < Sizes.length; k++) {
+				int d = higher % 2 == 0 ? digit[k] : Sizes[k] - 1 - digit[k];
+				higher += d;
+				p = p * Sizes[k] + d;
+			}
+			order[s] = p;
+		}
+		return order;
+	}
+
+	/**
+	 *
+	 * @param name
+	 *            As it is written by the user
+	 * @return The variable of the model or null
+	 */
+	private static VString Find(String name) {
+		String internal = name.replace("_", "Gg");
+		for (VString VS : CheckString.Var.Variables)
+			if (VS.getVar().equalsIgnoreCase(internal))
+				return VS;
+		return null;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return The name of the variable as it is written in the model
+	 */
+	private static String Name(int id) {
+		return SymbolTable.getCase(id).replace("Gg", "_");
+	}
+
+	/**
+	 *
+	 * @return The names of the columns of the table, the inputs and then the
+	 *         variables
+	 */
+	public String[] getColumns() {
+		String[] columns = new String[InputIds.length + VarIds.length];
+		for (int k = 0; k < InputIds.length; k++)
+			columns[k] = Name(InputIds[k]);
+		for (int j = 0; j < VarIds.length; j++)
+			columns[InputIds.length + j] = Name(VarIds[j]);
+		return columns;
+	}
+
+	/**
+	 *
+	 * @return One row for every point, with the values of getColumns
+	 */
+	public double[][] getTable() {
+		return Table;
+	}
+
+	/**
+	 *
+	 * @param point
+	 * @return true if every equation has a small residual at that point
+	 */
+	public boolean isConverged(int point) {
+		return Converged[point];
+	}
+
+	/**
+	 *
+	 * @return The number of points that did not converge
+	 */
+	public int getFailures() {
+		int failures = 0;
+		for (boolean c : Converged)
+			if (!c)
+				failures++;
+		return failures;
+	}
+
+	/**
+	 *
+	 * @return Why the model could not be prepared
+	 */
+	public String getError() {
+		return Error;
+	}
+
+	/**
+	 * Writes the table separated by tabs, with the names of the columns in
+	 * the first line and whether every point converged in the last column
+	 *
+	 * @param out
+	 */
+	public void Write(PrintWriter out) {
+		StringBuilder sb = new StringBuilder();
+		for (String column : getColumns())
+			sb.append(column).append('\t');
+		out.println(sb.append("converged"));
+		for (int p = 0; p < Table.length; p++) {
+			sb.setLength(0);
+			for (double d : Table[p])
+				sb.append(d).append('\t');
+			out.println(sb.append(Converged[p]));
+		}
+		out.flush();
+	}
+
+}
@@ -0,0 +1,414 @@
+package solver;
+
+import gui.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import String2ME.CheckString;
+import String2ME.DerivEquation;
+import String2ME.EqStorer;
+import String2ME.SymbolTable;
+import String2ME.VString;
+
+import tarjan.BlockTriangular;
+
+import evaluation.CompiledSystem;
+import evaluation.Scheduler;
+import evaluation.VariableBinding;
+
+import doglegMethod.Lmder_fcn;
+import doglegMethod.Minpack_j;
+
+/**
+ * A big system solved in a small space. Every equation is assigned to one of
+ * its variables with a matching, and the equations are ordered so each one
+ * can be solved for its variable when the variables of the previous ones are
+ * known. When no equation can be solved, one variable is torn: its value is
+ * given by the outer solver, and its equation is not solved but it is a
+ * residual.
+ *
+ * For every point of the tear variables, the rest of the system is solved by
+ * forward substitution, one equation and one variable at a time with Newton,
+ * and the residuals are evaluated at the end. Levenberg-Marquardt only sees
+ * the residuals, so its matrices are of the size of the tear variables and
+ * not of the whole system. The Jacobian of the residuals is exact: the
+ * derivatives of the substituted variables are found by implicit
+ * differentiation in the same order they are solved.
+ */
+public class TornSystem {
+	/**
+	 * Maximum Newton iterations for one equation of the forward substitution
+	 */
+	private static final int MaxInner = 50;
+	/**
+	 * Maximum times the step of Newton is halved
+	 */
+	private static final int MaxHalving = 30;
+	/**
+	 * Value of the residuals where an equation can not be solved, so
+	 * Levenberg-Marquardt rejects the point and tries a shorter step
+	 */
+	private static final double Failed = 1e100;
+
+	private final int size;
+	private final String[] names;
+	private final String[] equations;
+	/**
+	 * The variables of every equation, positions in names
+	 */
+	private final int[][] incidence;
+	/**
+	 * The equations solved by substitution in order, and the variable each
+	 * one solves
+	 */
+	private final int[] inner;
+	private final int[] innerVar;
+	/**
+	 * The residual equations and the tear variables
+	 */
+	private final int[] residual;
+	private final int[] tear;
+
+	private VariableBinding Binding;
+	/**
+	 * Every equation compiled alone, in the same binding
+	 */
+	private CompiledSystem[] compiled;
+	/**
+	 * The values of the last point where the substitution worked, and the
+	 * tear variables there
+	 */
+	private double[] good;
+	private double[] last;
+	/**
+	 * Derivatives of every equation by its variables, like incidence
+	 */
+	private double[][] partial;
+	private double[] dx;
+
+	private TornSystem(String[] names, String[] equations, int[][] incidence,
+			int[] inner, int[] innerVar, int[] residual, int[] tear) {
+		this.size = names.length;
+		this.names = names;
+		this.equations = equations;
+		this.incidence = incidence;
+		this.inner = inner;
+		this.innerVar = innerVar;
+		this.residual = residual;
+		this.tear = tear;
+	}
+
+	/**
+	 * Chooses the tear variables of a system. The equations are taken in
+	 * order while all their variables are known except the one assigned to
+	 * them. When no one can be taken, the variable torn is the one of the
+	 * equations that appears in more equations not taken yet
+	 *
+	 * @param Functions
+	 *            Positions in CheckString.Functions
+	 * @param Vars
+	 *            Positions in CheckString.Var
+	 * @return null if the system can not be torn or if the tear variables are
+	 *         more than half of the variables, then it is solved as always
+	 */
+	public static TornSystem tear(LinkedList<Integer> Functions,
+			LinkedList<Integer> Vars) {
+		int n = Functions.size();
+		if (Vars.size() != n)
+			return null;
+
+		int[] position = new int[SymbolTable.size()];
+		Arrays.fill(position, -1);
+		String[] names = new String[n];
+		int k = 0;
+		for (int v : Vars) {
+			VString VS = CheckString.Var.Variables.get(v);
+			position[VS.getId()] = k;
+			names[k++] = VS.getVar();
+		}
+
+		String[] equations = new String[n];
+		int[][] incidence = new int[n][];
+		int[] aux = new int[n];
+		k = 0;
+		for (int f : Functions) {
+			EqStorer E = CheckString.Functions.get(f);
+			int count = 0;
+			for (DerivEquation DE : E.aux)
+				if (position[DE.GetId()] != -1)
+					aux[count++] = position[DE.GetId()];
+			incidence[k] = Arrays.copyOf(aux, count);
+			equations[k++] = E.getEquation();
+		}
+
+		BlockTriangular BT = new BlockTriangular(n, incidence);
+		if (!BT.decompose())
+			return null;
+		int[] match = new int[n];
+		int[] owner = new int[n];
+		for (int i = 0; i < n; i++) {
+			match[i] = BT.getMatch(i);
+			owner[match[i]] = i;
+		}
+
+		// The equations of every variable
+		int[] start = new int[n + 1];
+		for (int i = 0; i < n; i++)
+			for (int v : incidence[i])
+				start[v + 1]++;
+		for (int v = 0; v < n; v++)
+			start[v + 1] += start[v];
+		int[] users = new int[start[n]];
+		int[] fill = Arrays.copyOf(start, n);
+		for (int i = 0; i < n; i++)
+			for (int v : incidence[i])
+				users[fill[v]++] = i;
+
+		// Variables not known of every equation, besides its own
+		int[] waiting = new int[n];
+		for (int i = 0; i < n; i++)
+			waiting[i] = incidence[i].length - 1;
+		boolean[] done = new boolean[n];
+		int[] ready = new int[n];
+		int head = 0, tail = 0;
+		for (int i = 0; i < n; i++)
+			if (waiting[i] == 0)
+				ready[tail++] = i;
+
+		int[] inner = new int[n];
+		int[] innerVar = new int[n];
+		int[] residual = new int[n];
+		int[] tear = new int[n];
+		int innerCount = 0, tearCount = 0, taken = 0;
+		while (taken < n) {
+			int v;
+			if (head < tail) {
+				int i = ready[head++];
+				if (done[i])
+					continue;
+				inner[innerCount] = i;
+				innerVar[innerCount++] = v = match[i];
+				done[i] = true;
+			} else {
+				int best = -1, bestCount = -1;
+				for (int i = 0; i < n; i++) {
+					if (done[i])
+						continue;
+					int count = 0;
+					for (int j = start[match[i]]; j < start[match[i] + 1]; j++)
+						if (!done[users[j]])
+							count++;
+					if (count > bestCount) {
+						best = i;
+						bestCount = count;
+					}
+				}
+				residual[tearCount] = best;
+				tear[tearCount++] = v = match[best];
+				done[best] = true;
+			}
+			taken++;
+			// The variable of the equation taken is known now
+			for (int j = start[v]; j < start[v + 1]; j++) {
+				int e = users[j];
+				if (e != owner[v] && --waiting[e] == 0 && !done[e])
+					ready[tail++] = e;
+			}
+		}
+
+		if (tearCount * 2 > n)
+			return null;
+		return new TornSystem(names, equations, incidence, Arrays.copyOf(
+				inner, innerCount), Arrays.copyOf(innerVar, innerCount),
+				Arrays.copyOf(residual, tearCount), Arrays.copyOf(tear,
+						tearCount));
+	}
+
+	/**
+	 * Solves the system with Levenberg-Marquardt in the space of the tear
+	 * variables. The equations are compiled here, because the values of the
+	 * previous systems must be known
+	 *
+	 * @return false if some equation can not be compiled or the equations
+	 *         are not small enough, then the system must be solved as always
+	 */
+	public boolean Solve() {
+		ArrayList<String> list = new ArrayList<String>(size);
+		for (String s : names)
+			list.add(s);
+		Binding = new VariableBinding(list);
+		for (int i = 0; i < size; i++)
+			Binding.set(i, vector.InitialValue(names[i]));
+		compiled = new CompiledSystem[size];
+		for (int i = 0; i < size; i++) {
+			compiled[i] = new CompiledSystem(new String[] { equations[i] },
+					Binding);
+			if (!compiled[i].isCompiled(0))
+				return false;
+		}
+		partial = new double[size][];
+		for (int i = 0; i < size; i++)
+			partial[i] = new double[incidence[i].length];
+		dx = new double[size];
+		good = Binding.getValues().clone();
+
+		int k = tear.length;
+		double x[] = new double[k];
+		for (int j = 0; j < k; j++)
+			x[j] = Binding.get(tear[j]);
+		double fvec[] = new double[k];
+		double fjac[] = new double[k * k];
+		int info[] = new int[1];
+		int ipvt[] = new int[k];
+		try {
+			Minpack_j.lmder1_j(new Lmder_fcn(this), k, k, x, fvec, fjac, k,
+					Config.Precision, info, ipvt);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+		Scheduler.checkCancelled();
+
+		if (!evaluate(x, fvec))
+			return false;
+		// Every equation is checked, the inner ones too
+		double tolerance = Math.sqrt(Config.Precision);
+		for (int i = 0; i < size; i++)
+			if (!(Math.abs(compiled[i].value(0)) <= tolerance))
+				return false;
+		Binding.publish();
+		System.out.println("Tearing: " + size + " equations solved with "
+				+ k + " tear variables");
+		return true;
+	}
+
+	/**
+	 * Solves the inner equations for some values of the tear variables and
+	 * evaluates the residuals
+	 *
+	 * @param x
+	 *            The tear variables
+	 * @param fvec
+	 *            The residuals
+	 * @return false if some equation could not be solved, then the residuals
+	 *         are very big and the last good point is restored
+	 */
+	public boolean evaluate(double x[], double fvec[]) {
+		for (int j = 0; j < tear.length; j++)
+			Binding.set(tear[j], x[j]);
+		boolean solved = true;
+		for (int p = 0; p < inner.length & solved; p++)
+			solved = solveInner(compiled[inner[p]], innerVar[p]);
+		for (int j = 0; j < residual.length & solved; j++) {
+			fvec[j] = compiled[residual[j]].value(0);
+			solved = !Double.isNaN(fvec[j]);
+		}
+		if (!solved) {
+			for (int i = 0; i < size; i++)
+				Binding.set(i, good[i]);
+			Arrays.fill(fvec, 0, residual.length, Failed);
+			last = null;
+			return false;
+		}
+		System.arraycopy(Binding.getValues(), 0, good, 0, size);
+		last = x.clone();
+		return true;
+	}
+
+	/**
+	 * Newton with one variable, from the value it has. The step is halved
+	 * while the equation does not decrease
+	 *
+	 * @param C
+	 *            The equation
+	 * @param v
+	 *            The variable
+	 * @return false if the equation can not be solved or it is not small
+	 *         enough when the step stops
+	 */
+	private boolean solveInner(CompiledSystem C, int v) {
+		double value = Binding.get(v);
+		double g = C.value(0);
+		for (int it = 0; it < MaxInner; it++) {
+			if (Double.isNaN(g))
+				return false;
+			if (g == 0)
+				return true;
+			double d = C.derivative(0, v);
+			if (Double.isNaN(d) | d == 0)
+				return false;
+			double step = g / d;
+			double next = value - step;
+			Binding.set(v, next);
+			double aux = C.value(0);
+			for (int h = 0; h < MaxHalving
+					&& (Double.isNaN(aux) || Math.abs(aux) > Math.abs(g)); h++) {
+				step /= 2;
+				next = value - step;
+				Binding.set(v, next);
+				aux = C.value(0);
+			}
+			// The step is too small to go on, it is solved only if the
+			// equation is small enough
+			if (Math.abs(next - value) <= 1e-12 * (1 + Math.abs(next)))
+				return Math.abs(aux) <= Math.sqrt(Config.Precision);
+			value = next;
+			g = aux;
+		}
+		return false;
+	}
+
+	/**
+	 * The Jacobian of the residuals by the tear variables at the last point
+	 * evaluated. For every tear variable the derivatives of the inner
+	 * variables are found in the order they are solved:
+	 * dx(v)=-Sum(dg/du*dx(u))/(dg/dv), then dF/dt=Sum(dF/du*dx(u))
+	 *
+	 * @param x
+	 *            The tear variables
+	 * @param fjac
+	 *            The Jacobian by columns, as in Minpack_j
+	 * @param ld
+	 *            Leading dimension of fjac
+	 */
+	public void jacobian(double x[], double fjac[], int ld) {
+		if (last == null || !Arrays.equals(last, x))
+			evaluate(x, new double[x.length]);
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < incidence[i].length; j++)
+				partial[i][j] = compiled[i].derivative(0, incidence[i][j]);
+		for (int t = 0; t < tear.length; t++) {
+			Arrays.fill(dx, 0);
+			dx[tear[t]] = 1;
+			for (int p = 0; p < inner.length; p++) {
+				int e = inner[p], v = innerVar[p];
+				double sum = 0, own = 0;
+				for (int j = 0; j < incidence[e].length; j++) {
+					if (incidence[e][j] == v)
+						own = partial[e][j];
+					else
+						sum += partial[e][j] * dx[incidence[e][j]];
+				}
+				dx[v] = -sum / own;
+			}
+			for (int r = 0; r < residual.length; r++) {
+				int e = residual[r];
+				double sum = 0;
+				for (int j = 0; j < incidence[e].length; j++)
+					sum += partial[e][j] * dx[incidence[e][j]];
+				fjac[r + t * ld] = sum;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of tear variables
+	 */
+	public int getTearSize() {
+		return tear.length;
+	}
+
+}
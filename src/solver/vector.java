@@ -1,5 +1,6 @@
 package solver;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import java.util.LinkedList;
@@ -9,6 +10,8 @@ import java.util.Iterator;
 import org.apache.commons.math.linear.ArrayRealVector;
 import org.apache.commons.math.linear.RealVector;
 
+import evaluation.CompiledExpression;
+import evaluation.VariableBinding;
 import evaluation.DiffAndEvaluator;
 import gui.Config;
 import String2ME.*;
@@ -25,32 +28,54 @@ public class vector {
 	public List<nodo> vector = new LinkedList<nodo>();
 
 	/**
-	 * Add all the variables equal to default value, unless the user had set a
-	 * different value
+	 * The initial value of every variable of the SymbolTable, see
+	 * PrepareInitialValues
 	 */
-	public void Xvector() {
+	private static double[] InitialValues = new double[0];
 
-		Iterator<VString> it = CheckString.Var.Variables.iterator();
-		String aux;
-		boolean found;
-		while (it.hasNext()) {
-			found = false;
-			aux = it.next().getVar();
-
-			for (int i = 0; i < Config.InitValue.size(); i++) {
-				// This is to check if the variable has a different initial
-				// value
-				if (Config.InitValue.get(i).getVariable().equalsIgnoreCase(aux)) {
-					found = true;
-					this.vector.add(new nodo(
-							Config.InitValue.get(i).getValue(), aux));
-					i = Config.InitValue.size();
-				}
-			}
-			if (!found)
-				this.vector.add(new nodo(Config.DefaultInitialValue, aux));
+	/**
+	 * Stores the initial value of every variable of the model, the first one
+	 * of Config.InitValue or Config.DefaultInitialValue. This must be called
+	 * when the model is parsed and before solving it, so the values are found
+	 * by the id of the variable
+	 */
+	public static void PrepareInitialValues() {
+		double[] values = new double[SymbolTable.size()];
+		Arrays.fill(values, Config.DefaultInitialValue);
+		// Backwards, so the first one is the one stored
+		for (int i = Config.InitValue.size() - 1; i >= 0; i--) {
+			int id = SymbolTable.getId(Config.InitValue.get(i).getVariable());
+			if (id != -1)
+				values[id] = Config.InitValue.get(i).getValue();
 		}
+		InitialValues = values;
+	}
+
+	/**
+	 * 
+	 * @param var
+	 * @return The initial value of the variable, the one the user has set or
+	 *         Config.DefaultInitialValue
+	 */
+	public static double InitialValue(String var) {
+		int id = SymbolTable.getId(var);
+		double[] values = InitialValues;
+		if (id != -1 && id < values.length)
+			return values[id];
+		for (int i = 0; i < Config.InitValue.size(); i++)
+			// This is to check if the variable has a different initial value
+			if (Config.InitValue.get(i).getVariable().equalsIgnoreCase(var))
+				return Config.InitValue.get(i).getValue();
+		return Config.DefaultInitialValue;
+	}
 
+	/**
+	 * Add all the variables equal to default value, unless the user had set a
+	 * different value
+	 */
+	public void Xvector() {
+		for (VString VS : CheckString.Var.Variables)
+			this.vector.add(new nodo(InitialValue(VS.getVar()), VS.getVar()));
 	}
 
 	/**
@@ -59,40 +84,10 @@ public class vector {
 	 */
 	public void Xvector(LinkedList<Integer> var) {
 		Collections.sort(var);
-		Iterator<Integer> it = var.listIterator();
-		Iterator<VString> it2 = CheckString.Var.Variables.listIterator();
-		boolean found, finish = false;
 		String aux;
-		int j = 0;
-		int pos = it.next().intValue();
-		while (it2.hasNext() & !finish) {
-			found = false;
-			aux = it2.next().getVar();
-
-			if (pos == j) {
-				if (it.hasNext())
-					pos = it.next().intValue();
-				else
-					finish = true;
-
-				for (int i = 0; i < Config.InitValue.size(); i++) {// This is
-																	// not
-																	// optimized
-					// This is to check if the variable has a different initial
-					// value
-					if (Config.InitValue.get(i).getVariable().equalsIgnoreCase(
-							aux)) {
-						found = true;
-						this.vector.add(new nodo(Config.InitValue.get(i)
-								.getValue(), aux));
-						i = Config.InitValue.size();
-					}
-				}
-				if (!found)
-					this.vector.add(new nodo(Config.DefaultInitialValue, aux));
-
-			}
-			j++;
+		for (int pos : var) {
+			aux = CheckString.Var.getVar(pos);
+			this.vector.add(new nodo(InitialValue(aux), aux));
 		}
 	}
 
@@ -113,24 +108,9 @@ public class vector {
 	 */
 	public void Fvector(LinkedList<Integer> functions) {
 		Collections.sort(functions);
-		Iterator<Integer> it = functions.listIterator();
-		Iterator<EqStorer> it2 = CheckString.Functions.listIterator();
-		int pos = it.next().intValue();
-		int i = 0;
-		boolean finish = false;
-		EqStorer eq;
-		while (it2.hasNext() & !finish) {
-			eq = it2.next();
-			if (pos == i) {
-				if (it.hasNext())
-					pos = it.next().intValue();
-				else
-					finish = true;
-
-				this.vector.add(new nodo(eq.getEquation()));
-			}
-			i++;
-		}
+		for (int pos : functions)
+			this.vector.add(new nodo(CheckString.Functions.get(pos)
+					.getEquation()));
 	}
 
 	/**
@@ -229,6 +209,22 @@ public class vector {
 		return aux;
 	}
 
+	/**
+	 * 
+	 * @param F
+	 *            The compiled functions
+	 * @param binding
+	 *            The values of the variables
+	 * @return a Vector evaluated
+	 */
+	public static ArrayRealVector FVector2LU(CompiledExpression[] F,
+			VariableBinding binding) {
+		ArrayRealVector aux = new ArrayRealVector(F.length);
+		for (int i = 0; i < F.length; i++)
+			aux.setEntry(i, F[i].evaluate(binding));
+		return aux;
+	}
+
 	public double[] FVector2SumaVectores(double[] N) {
 		double[] aux = new double[N.length - 1];// We want a zero in the zero
 												// row
@@ -0,0 +1,275 @@
+package tarjan;
+
+import java.util.Arrays;
+
+/**
+ * Block lower triangular decomposition of an equation system. Every equation
+ * is assigned to one of its variables with a maximum matching (Hopcroft-Karp),
+ * and then the strongly connected components of the equations are found with
+ * an iterative Tarjan: equation i depends on equation j if i has the variable
+ * assigned to j. Each component is a system that must be solved at the same
+ * time, and they are found in the order they can be solved.
+ *
+ * The cost is O(E*sqrt(V)) for the matching and O(E) for the components,
+ * where E is the number of times a variable appears in an equation, and no
+ * recursion is used, so it works with very big models.
+ */
+public final class BlockTriangular {
+
+	private static final int FREE = -1;
+
+	private final int equations;
+	private final int variables;
+	/**
+	 * The variables of equation i are vars[start[i]] .. vars[start[i+1]-1]
+	 */
+	private final int[] start;
+	private final int[] vars;
+	/**
+	 * Variable assigned to every equation and equation assigned to every
+	 * variable, FREE if none
+	 */
+	private final int[] eqMatch;
+	private final int[] varMatch;
+	/**
+	 * The equations in the order they are solved, the block b is
+	 * order[blockStart[b]] .. order[blockStart[b+1]-1]
+	 */
+	private int[] order;
+	private int[] blockStart;
+	private int blocks = 0;
+
+	/**
+	 *
+	 * @param variables
+	 *            Number of variables
+	 * @param incidence
+	 *            For every equation, the positions of its variables
+	 */
+	public BlockTriangular(int variables, int[][] incidence) {
+		this.equations = incidence.length;
+		this.variables = variables;
+		this.start = new int[equations + 1];
+		for (int i = 0; i < equations; i++)
+			start[i + 1] = start[i] + incidence[i].length;
+		this.vars = new int[start[equations]];
+		for (int i = 0; i < equations; i++)
+			System.arraycopy(incidence[i], 0, vars, start[i],
+					incidence[i].length);
+		this.eqMatch = new int[equations];
+		this.varMatch = new int[variables];
+	}
+
+	/**
+	 * Makes the decomposition
+	 *
+	 * @return false if the system is structurally singular: there is not the
+	 *         same number of equations and variables or some of them can not
+	 *         be assigned. Then there are no blocks
+	 */
+	public boolean decompose() {
+		if (equations != variables)
+			return false;
+		if (match() != equations)
+			return false;
+		components();
+		return true;
+	}
+
+	/**
+	 * Hopcroft-Karp. Every phase finds with a breadth first search the
+	 * shortest augmenting paths, and then a maximal set of disjoint ones with
+	 * a depth first search that uses its own stack.
+	 *
+	 * @return The size of the matching
+	 */
+	private int match() {
+		Arrays.fill(eqMatch, FREE);
+		Arrays.fill(varMatch, FREE);
+		int size = 0;
+		// A cheap first matching, most of the equations are matched here
+		for (int i = 0; i < equations; i++)
+			for (int k = start[i]; k < start[i + 1]; k++)
+				if (varMatch[vars[k]] == FREE) {
+					eqMatch[i] = vars[k];
+					varMatch[vars[k]] = i;
+					size++;
+					break;
+				}
+		if (size == equations)
+			return size;
+
+		int[] layer = new int[equations];
+		int[] queue = new int[equations];
+		int[] stack = new int[equations];
+		int[] next = new int[equations];
+		while (true) {
+			// Breadth first search from the free equations
+			int head = 0, tail = 0;
+			for (int i = 0; i < equations; i++)
+				if (eqMatch[i] == FREE) {
+					layer[i] = 0;
+					queue[tail++] = i;
+				} else
+					layer[i] = Integer.MAX_VALUE;
+			int found = Integer.MAX_VALUE;
+			while (head < tail) {
+				int i = queue[head++];
+				if (layer[i] >= found)
+					continue;
+				for (int k = start[i]; k < start[i + 1]; k++) {
+					int j = varMatch[vars[k]];
+					if (j == FREE)
+						found = layer[i] + 1;
+					else if (layer[j] == Integer.MAX_VALUE) {
+						layer[j] = layer[i] + 1;
+						queue[tail++] = j;
+					}
+				}
+			}
+			if (found == Integer.MAX_VALUE)
+				return size;
+
+			// Depth first search along the layers
+			for (int i = 0; i < equations; i++)
+				next[i] = start[i];
+			for (int root = 0; root < equations; root++) {
+				if (eqMatch[root] != FREE)
+					continue;
+				int top = 0;
+				stack[top++] = root;
+				boolean augmented = false;
+				while (top > 0 & !augmented) {
+					int i = stack[top - 1];
+					if (next[i] == start[i + 1]) {
+						// Dead end, it is not visited again in this phase
+						layer[i] = Integer.MAX_VALUE;
+						top--;
+						continue;
+					}
+					int v = vars[next[i]++];
+					int j = varMatch[v];
+					if (j == FREE) {
+						if (layer[i] + 1 == found) {
+							// Augment along the stack, every equation takes
+							// the variable of the next one
+							int w = v;
+							for (int t = top - 1; t >= 0; t--) {
+								int e = stack[t];
+								int old = eqMatch[e];
+								eqMatch[e] = w;
+								varMatch[w] = e;
+								w = old;
+							}
+							size++;
+							augmented = true;
+						}
+					} else if (layer[j] == layer[i] + 1)
+						stack[top++] = j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterative Tarjan over the equations. The equations in the stack are
+	 * marked in a bitset, so asking if one is in the stack costs O(1)
+	 */
+	private void components() {
+		int[] index = new int[equations];
+		int[] low = new int[equations];
+		int[] edge = new int[equations];
+		int[] call = new int[equations];
+		int[] stack = new int[equations];
+		long[] onStack = new long[(equations + 63) >>> 6];
+		Arrays.fill(index, -1);
+		order = new int[equations];
+		blockStart = new int[equations + 1];
+		blocks = 0;
+		int counter = 0, top = 0, depth = 0, written = 0;
+
+		for (int root = 0; root < equations; root++) {
+			if (index[root] != -1)
+				continue;
+			call[depth++] = root;
+			index[root] = low[root] = counter++;
+			edge[root] = start[root];
+			stack[top++] = root;
+			onStack[root >>> 6] |= 1L << root;
+			while (depth > 0) {
+				int i = call[depth - 1];
+				if (edge[i] < start[i + 1]) {
+					int j = varMatch[vars[edge[i]++]];
+					if (j == i)
+						continue;
+					if (index[j] == -1) {
+						index[j] = low[j] = counter++;
+						edge[j] = start[j];
+						stack[top++] = j;
+						onStack[j >>> 6] |= 1L << j;
+						call[depth++] = j;
+					} else if ((onStack[j >>> 6] & 1L << j) != 0)
+						low[i] = Math.min(low[i], index[j]);
+					continue;
+				}
+				depth--;
+				if (depth > 0) {
+					int parent = call[depth - 1];
+					low[parent] = Math.min(low[parent], low[i]);
+				}
+				if (low[i] == index[i]) {
+					// The equations this one depends on are already written,
+					// so the blocks are found in the order they are solved
+					blockStart[blocks++] = written;
+					int j;
+					do {
+						j = stack[--top];
+						onStack[j >>> 6] &= ~(1L << j);
+						order[written++] = j;
+					} while (j != i);
+				}
+			}
+		}
+		blockStart[blocks] = written;
+	}
+
+	/**
+	 *
+	 * @return The number of blocks
+	 */
+	public int getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 *
+	 * @param b
+	 * @return The equations of the block b
+	 */
+	public int[] getEquations(int b) {
+		return Arrays.copyOfRange(order, blockStart[b], blockStart[b + 1]);
+	}
+
+	/**
+	 *
+	 * @param b
+	 * @return The variables of the block b, the variable k is assigned to the
+	 *         equation k of getEquations(b)
+	 */
+	public int[] getVariables(int b) {
+		int[] result = new int[blockStart[b + 1] - blockStart[b]];
+		for (int k = 0; k < result.length; k++)
+			result[k] = eqMatch[order[blockStart[b] + k]];
+		return result;
+	}
+
+	/**
+	 *
+	 * @param equation
+	 * @return The variable assigned to the equation, -1 if none
+	 */
+	public int getMatch(int equation) {
+		return eqMatch[equation];
+	}
+
+}
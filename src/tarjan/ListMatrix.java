@@ -2,206 +2,259 @@ package tarjan;
 
 import gui.Config;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.ListIterator;
 
 /**
- * Relation matrix. Is a matrix to represent with byte the relation between
+ * Relation matrix. Is a matrix to represent with bits the relation between
  * functions and variables.
- * 
+ *
+ * Every row is packed in a long[], 64 columns per word, so the operations
+ * with rows work with 64 variables at the same time. The rows and columns are
+ * never moved: erasing a row and a column clears its bit in a mask of the
+ * ones that remain, and the positions used outside are the positions among
+ * the remaining ones, as if they had been removed.
+ *
  * @author Pablo Salinas
- * 
+ *
  */
 class ListMatrix {
-	private ArrayList<ArrayList<Byte>> _NodeMatrix;
+	private long[][] _NodeMatrix;
+	/**
+	 * Rows and columns that have not been erased, they are always the same
+	 * because the matrix is square and a row is erased with its column
+	 */
+	private long[] alive;
+	private int size;
 	final static byte cero = (byte) 0;
-	final static byte dos = (byte) 2;
+	final static byte uno = (byte) 1;
 
 	/**
 	 * Creates an empty matrix
-	 * 
+	 *
 	 * @param col
 	 */
 	protected ListMatrix(int col) {
-		_NodeMatrix = new ArrayList<ArrayList<Byte>>();
-		ArrayList<Byte> aux = new ArrayList<Byte>();
-		for (int k = 0; k < col; k++)
-			aux.add(new Byte(cero));
+		int words = (col + 63) >>> 6;
+		_NodeMatrix = new long[col][words];
+		alive = new long[words];
 		for (int i = 0; i < col; i++)
-			this._NodeMatrix.add(new ArrayList<Byte>(aux));
+			alive[i >>> 6] |= 1L << i;
+		size = col;
+	}
+
+	/**
+	 *
+	 * @param position
+	 *            Position among the rows or columns that remain
+	 * @return The position in the arrays
+	 */
+	private int physical(int position) {
+		int w = 0;
+		int count = Long.bitCount(alive[0]);
+		while (count <= position) {
+			position -= count;
+			count = Long.bitCount(alive[++w]);
+		}
+		long word = alive[w];
+		for (int k = 0; k < position; k++)
+			word &= word - 1;
+		return (w << 6) + Long.numberOfTrailingZeros(word);
 	}
 
 	/**
-	 * 
+	 *
 	 * @param row
 	 * @param col
 	 * @return the value at that position
 	 */
 	protected byte getValue(int row, int col) {
-		return _NodeMatrix.get(row).get(col).byteValue();
+		int c = physical(col);
+		return (_NodeMatrix[physical(row)][c >>> 6] & 1L << c) != 0 ? uno
+				: cero;
 	}
 
 	/**
 	 * Change the value at the specified position
-	 * 
+	 *
 	 * @param row
 	 * @param col
 	 * @param value
 	 */
 	protected void setValue(int row, int col, byte value) {
-		ArrayList<Byte> aux = this._NodeMatrix.get(row);
-		aux.set(col, Byte.valueOf(value));
-
-		this._NodeMatrix.set(row, aux);
-
+		int c = physical(col);
+		if (value != cero)
+			_NodeMatrix[physical(row)][c >>> 6] |= 1L << c;
+		else
+			_NodeMatrix[physical(row)][c >>> 6] &= ~(1L << c);
 	}
 
 	/**
 	 * Erase the specified row and column
-	 * 
+	 *
 	 * @param row
 	 */
 	protected void eraseRowCol(int rowcol) {
-		this._NodeMatrix.remove(rowcol);
-
-		for (ArrayList<Byte> nodes : this._NodeMatrix)
-			nodes.remove(rowcol);
+		int p = physical(rowcol);
+		alive[p >>> 6] &= ~(1L << p);
+		size--;
 	}
 
 	/**
 	 * @return true if all the values in the diagonal are true
 	 */
 	protected boolean checkDiagonal() {
-		for (int i = 0; i < this._NodeMatrix.size(); i++)
-			if (getValue(i, i) == cero)
+		for (int p = 0; p < _NodeMatrix.length; p++)
+			if ((alive[p >>> 6] & 1L << p) != 0
+					&& (_NodeMatrix[p][p >>> 6] & 1L << p) == 0)
 				return false;
 
 		return true;
 
 	}
 
+	/**
+	 *
+	 * @return The number of values that are not zero on or below the diagonal
+	 */
+	protected int valuesDownDiagonal() {
+		int n = 0;
+		for (int p = 0; p < _NodeMatrix.length; p++) {
+			if ((alive[p >>> 6] & 1L << p) == 0)
+				continue;
+			long[] row = _NodeMatrix[p];
+			int w = p >>> 6;
+			for (int k = 0; k < w; k++)
+				n += Long.bitCount(row[k] & alive[k]);
+			// The columns up to p, included
+			n += Long.bitCount(row[w] & alive[w] & (-1L >>> (63 - (p & 63))));
+		}
+		return n;
+	}
+
 	/**
 	 * Clear the list
 	 */
 	protected void purge() {
-		this._NodeMatrix.clear();
+		Arrays.fill(alive, 0);
+		size = 0;
 	}
 
 	public String toString() {
-		String salida = new String();
-		for (ArrayList<Byte> nodes : _NodeMatrix) {
-			for (Byte node : nodes)
-				salida += node.toString() + " ";
+		StringBuilder salida = new StringBuilder();
+		for (int p = 0; p < _NodeMatrix.length; p++) {
+			if ((alive[p >>> 6] & 1L << p) == 0)
+				continue;
+			for (int c = 0; c < _NodeMatrix.length; c++)
+				if ((alive[c >>> 6] & 1L << c) != 0)
+					salida.append((_NodeMatrix[p][c >>> 6] & 1L << c) != 0 ? "1 "
+							: "0 ");
 
-			salida += Config.JumpLine;
+			salida.append(Config.JumpLine);
 		}
-		return salida;
+		return salida.toString();
 	}
 
 	/**
-	 * 
+	 *
 	 * @param row
 	 * @return The number of variables in that row
 	 */
-	protected static int numberVariables(ArrayList<Byte> row) {
+	protected int numberVariables(long[] row) {
 		int n = 0;
-		for (Byte b : row)
-			if (b != cero)
-				n++;
+		for (int w = 0; w < row.length; w++)
+			n += Long.bitCount(row[w] & alive[w]);
 
 		return n;
 	}
 
 	/**
-	 * 
+	 *
 	 * @param Lista
 	 * @param row
 	 * @return A LinkedList updated with the position of the variables
 	 */
-	protected static LinkedList<Integer> AnalizeRow(LinkedList<Integer> Lista,
-			ArrayList<Byte> row) {
-		int i = 0;
-		boolean found;
-		for (Byte bol : row) {
-			found = false;
-			if (bol != cero) {
-				for (Integer k : Lista)
-					if (k.intValue() == i)
-						found = true;
-
-				if (!found)
+	protected LinkedList<Integer> AnalizeRow(LinkedList<Integer> Lista,
+			long[] row) {
+		long[] found = new long[alive.length];
+		for (Integer k : Lista)
+			found[k >>> 6] |= 1L << k;
+
+		int position = 0;
+		for (int w = 0; w < row.length; w++) {
+			long bits = row[w] & alive[w];
+			while (bits != 0) {
+				long bit = bits & -bits;
+				int i = position + Long.bitCount(alive[w] & (bit - 1));
+				if ((found[i >>> 6] & 1L << i) == 0)
 					Lista.add(i);
+				bits ^= bit;
 			}
-			i++;
+			position += Long.bitCount(alive[w]);
 		}
 
 		return Lista;
 	}
 
 	/**
-	 * 
+	 *
 	 * @param Row
 	 * @return The number of variables in that row
 	 */
 	protected int numberVariable(int Row) {
-		ArrayList<Byte> row = this._NodeMatrix.get(Row);
-		return numberVariables(row);
+		return numberVariables(getRow(Row));
 	}
 
 	/**
-	 * 
+	 *
 	 * @param row1
 	 * @param row2
-	 * @return Returns the subtraction of row1 and row2; 0 = no relation; 1 =
-	 *         relation ; 2 = that variable has been found in more than one
-	 *         function 0 + 0 -> 0 ; 0 + 1 -> 1; 1 + 0 -> 1; 1 + 1-> 2 ; 2 + x
-	 *         -> 2
-	 * 
-	 */
-	protected ArrayList<Byte> OperateRow(ArrayList<Byte> row1,
-			ArrayList<Byte> row2) {
-		Iterator<Byte> it1 = row1.listIterator();
-		Iterator<Byte> it2 = row2.listIterator();
-		ArrayList<Byte> result = new ArrayList<Byte>();
-		byte aux = cero;
-		while (it1.hasNext()) {
-			aux = (byte) (it1.next().byteValue() + it2.next().byteValue());
-
-			if (aux > dos)
-				aux = dos;
-
-			result.add(aux);
-		}
+	 * @return The union of row1 and row2, the variables that are in any of
+	 *         them
+	 *
+	 */
+	protected long[] OperateRow(long[] row1, long[] row2) {
+		long[] result = new long[row1.length];
+		for (int w = 0; w < result.length; w++)
+			result[w] = row1[w] | row2[w];
 		return result;
 	}
 
 	/**
-	 * 
+	 *
 	 * @return Number of rows
 	 */
 	public int size() {
-		return this._NodeMatrix.size();
+		return this.size;
 	}
 
 	/**
 	 * Erase all the rows and columns of the ListMatrix that are in the input
 	 * list;
-	 * 
+	 *
 	 * @param rows
 	 */
 	protected void refresh(LinkedList<Integer> Lista) {
 
 		Collections.sort(Lista);// Order the list into ascending order
-		ListIterator<Integer> it = Lista.listIterator(Lista.size());
-		while (it.hasPrevious())
-			this.eraseRowCol(it.previous());
+		// The positions are found before erasing any of them
+		int[] erase = new int[Lista.size()];
+		int i = 0;
+		for (Integer k : Lista)
+			erase[i++] = physical(k);
+		for (int p : erase)
+			alive[p >>> 6] &= ~(1L << p);
+		size -= erase.length;
 	}
 
-	protected ArrayList<Byte> getRow(int row) {
-		return this._NodeMatrix.get(row);
+	/**
+	 *
+	 * @param row
+	 * @return The row, the columns erased must be ignored
+	 */
+	protected long[] getRow(int row) {
+		return this._NodeMatrix[physical(row)];
 	}
 
-}
\ No newline at end of file
+}
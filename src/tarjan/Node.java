@@ -13,6 +13,7 @@ public class Node implements Comparable<Node> {
 								// algorithm
 	int lowlink = -1; // used for Tarjan's algorithm
 	int index = -1; // used for Tarjan's algorithm
+	boolean onStack = false; // used for Tarjan's algorithm
 
 	public Node(final int argName) {
 		name = argName;
@@ -33,6 +34,7 @@ public class Node implements Comparable<Node> {
 		this.lowlink = -1;
 		this.index = -1;
 		this.visited = false;
+		this.onStack = false;
 	}
 
 	/**
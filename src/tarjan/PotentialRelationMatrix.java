@@ -22,16 +22,7 @@ class PotentialRelationMatrix implements Comparable<PotentialRelationMatrix> {
 	 */
 	PotentialRelationMatrix(ListMatrix Relations, ArrayList<ArrayList<Node>> SCC) {
 		this.SCC = SCC;
-		int size = Relations.size();
-		int aux = 0;
-		for (int row = 0; row < size; row++) {
-			aux = 0;
-			while (aux <= row) {
-				if (Relations.getValue(row, aux) != (byte) 0)
-					ValuesDownDiagonal++;
-				aux++;
-			}
-		}
+		this.ValuesDownDiagonal = Relations.valuesDownDiagonal();
 	}
 
 	public int compareTo(PotentialRelationMatrix PRM) {
@@ -1,15 +1,23 @@
 package tarjan;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
 
 import evaluation.DiffAndEvaluator;
+import evaluation.Scheduler;
+import evaluation.Statistics;
+import gui.Config;
 
 import String2ME.CheckString;
 import String2ME.DerivEquation;
 import String2ME.EqStorer;
+import String2ME.SymbolTable;
 import String2ME.VString;
 
 /**
@@ -29,9 +37,16 @@ public class PrepareMatrix {
 	private ArrayList<ArrayList<Node>> SCC;
 	/* The nodes must be created first, so i will create two list of nodes */
 	/** Variable nodes list */
-	private LinkedList<Node> VarNodes = new LinkedList<Node>();
+	private ArrayList<Node> VarNodes = new ArrayList<Node>();
 	/** Functions node list */
-	private LinkedList<Node> FuncNodes = new LinkedList<Node>();
+	private ArrayList<Node> FuncNodes = new ArrayList<Node>();
+	/**
+	 * The systems found by Tarjan, in the order they are found. The functions
+	 * (positions in CheckString.Functions) and the variables (positions in
+	 * CheckString.Var) of each one
+	 */
+	private LinkedList<LinkedList<Integer>> BlockFunctions = new LinkedList<LinkedList<Integer>>();
+	private LinkedList<LinkedList<Integer>> BlockVars = new LinkedList<LinkedList<Integer>>();
 
 	public PrepareMatrix() {
 		// Create the nodes
@@ -48,6 +63,15 @@ public class PrepareMatrix {
 	 */
 	public void PreNewton() {
 
+		long start = System.nanoTime();
+		if (BlockTriangular()) {
+			Statistics.addTime(Statistics.DECOMPOSITION, System.nanoTime()
+					- start);
+			SolveBlocks();
+			return;
+		}
+		// The system is structurally singular, the blocks are searched as
+		// before so the solver reports the error
 		createAdjacencyList();
 		// now i will call Tarjan with the AdjacencyList
 		// and with the variable with the lowest appearance count
@@ -98,7 +122,140 @@ public class PrepareMatrix {
 			RelationMatrix2Newton(Relations, SCC);
 
 		}
+		Statistics.addTime(Statistics.DECOMPOSITION, System.nanoTime() - start);
+
+		SolveBlocks();
+	}
+
+	/**
+	 * Splits the system in blocks without solving them, for a model that is
+	 * solved many times, see solver.Sweep. The blocks are in the order they
+	 * must be solved, see getBlockFunctions and getBlockVars
+	 *
+	 * @return false if the system is structurally singular
+	 */
+	public boolean Decompose() {
+		long start = System.nanoTime();
+		try {
+			return BlockTriangular();
+		} finally {
+			Statistics.addTime(Statistics.DECOMPOSITION, System.nanoTime()
+					- start);
+		}
+	}
+
+	/**
+	 *
+	 * @return The functions of every block of Decompose, positions in
+	 *         CheckString.Functions
+	 */
+	public LinkedList<LinkedList<Integer>> getBlockFunctions() {
+		return BlockFunctions;
+	}
+
+	/**
+	 *
+	 * @return The variables of every block of Decompose, positions in
+	 *         CheckString.Var
+	 */
+	public LinkedList<LinkedList<Integer>> getBlockVars() {
+		return BlockVars;
+	}
+
+	/**
+	 * Splits the system in blocks with a maximum matching and Tarjan, see
+	 * BlockTriangular, and stores them in BlockFunctions and BlockVars
+	 * 
+	 * @return false if the system is structurally singular
+	 */
+	private boolean BlockTriangular() {
+		int size = CheckString.Var.getSize();
+		int[] position = VarPositions();
+
+		int[][] incidence = new int[CheckString.Functions.size()][];
+		int[] aux = new int[size];
+		int i = 0;
+		for (EqStorer E : CheckString.Functions) {
+			int count = 0;
+			for (DerivEquation DE : E.aux)
+				if (position[DE.GetId()] != -1)
+					aux[count++] = position[DE.GetId()];
+			incidence[i++] = Arrays.copyOf(aux, count);
+		}
+
+		BlockTriangular BT = new BlockTriangular(size, incidence);
+		if (!BT.decompose())
+			return false;
+		for (int b = 0; b < BT.getBlocks(); b++) {
+			LinkedList<Integer> Functions = new LinkedList<Integer>();
+			LinkedList<Integer> Vars = new LinkedList<Integer>();
+			for (int f : BT.getEquations(b))
+				Functions.add(f);
+			for (int v : BT.getVariables(b))
+				Vars.add(v);
+			BlockFunctions.add(Functions);
+			BlockVars.add(Vars);
+		}
+		return true;
+	}
+
+	/**
+	 * Solves the systems found. A system depends on a previous one if one of
+	 * them has variables of the other, then it is solved after it. The rest
+	 * are solved at the same time, the values of their variables are the same
+	 * as if they were solved one after another
+	 */
+	private void SolveBlocks() {
+		long start = System.nanoTime();
+		int n = BlockFunctions.size();
+		ArrayList<solver.LaunchOperations> operations = new ArrayList<solver.LaunchOperations>(
+				n);
+		// The system that solves every variable
+		int[] owner = new int[SymbolTable.size()];
+		Arrays.fill(owner, -1);
+		int b = 0;
+		Iterator<LinkedList<Integer>> itVars = BlockVars.iterator();
+		for (LinkedList<Integer> Functions : BlockFunctions) {
+			LinkedList<Integer> Vars = itVars.next();
+			operations.add(new solver.LaunchOperations(Functions, Vars));
+			for (int v : Vars)
+				owner[CheckString.Var.Variables.get(v).getId()] = b;
+			b++;
+		}
+
+		// The previous systems related with every one
+		ArrayList<HashSet<Integer>> related = new ArrayList<HashSet<Integer>>(n);
+		for (int j = 0; j < n; j++)
+			related.add(new HashSet<Integer>());
+		b = 0;
+		for (LinkedList<Integer> Functions : BlockFunctions) {
+			for (int f : Functions)
+				for (DerivEquation DE : CheckString.Functions.get(f).aux) {
+					int i = owner[DE.GetId()];
+					if (i != -1 & i != b)
+						related.get(Math.max(i, b)).add(Math.min(i, b));
+				}
+			b++;
+		}
+
+		int[][] predecessors = new int[n][];
+		for (int j = 0; j < n; j++) {
+			predecessors[j] = new int[related.get(j).size()];
+			int count = 0;
+			for (int i : related.get(j))
+				predecessors[j][count++] = i;
+			Arrays.sort(predecessors[j]);
+		}
 
+		BlockFunctions.clear();
+		BlockVars.clear();
+		try {
+			if (!Scheduler.runAll(operations, predecessors,
+					Config.MaxOperationsTime * 1000L))
+				throw new Scheduler.TimeLimitException();
+		} finally {
+			Statistics.addTime(Statistics.SOLVE, System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -162,7 +319,7 @@ public class PrepareMatrix {
 		// for(Node n :An)
 		// System.out.println("Nodo: "+n.getName());
 
-		LinkedList<String> var = new LinkedList<String>();
+		LinkedList<Integer> var = new LinkedList<Integer>();
 		LinkedList<Integer> func = new LinkedList<Integer>();
 		int variable;
 		/*
@@ -173,8 +330,8 @@ public class PrepareMatrix {
 			for (int j = 0; j < SCC.get(i).size(); j++) {
 				variable = SCC.get(i).get(j).getName();
 				if (variable > 0)
-					var.add(CheckString.Var.getVar(variable - 1));// previously
-																	// i added 1
+					var.add(CheckString.Var.Variables.get(variable - 1)
+							.getId());// previously i added 1
 				else {
 					// if(variable != 0)
 					func.add(Math.abs(variable) - 1);// previously i added 1
@@ -184,6 +341,11 @@ public class PrepareMatrix {
 		}
 
 		ListMatrix result = new ListMatrix(var.size());
+		int[] column = new int[SymbolTable.size()];
+		Arrays.fill(column, -1);
+		int col = 0;
+		for (int id : var)
+			column[id] = col++;
 
 		Iterator<Integer> it = func.listIterator();
 		EqStorer function;
@@ -192,17 +354,9 @@ public class PrepareMatrix {
 			int position = it.next();
 			function = CheckString.Functions.get(position);
 
-			Iterator<String> it2 = var.listIterator();
-			String nombre;
-			int col = 0;
-			while (it2.hasNext()) {
-				nombre = it2.next();
-				for (int j = 0; j < function.aux.size(); j++)
-					if (function.aux.get(j).GetVar().equalsIgnoreCase(nombre))
-						result.setValue(row, col, (byte) 1);
-
-				col++;
-			}
+			for (DerivEquation DE : function.aux)
+				if (column[DE.GetId()] != -1)
+					result.setValue(row, column[DE.GetId()], (byte) 1);
 
 			row++;
 		}
@@ -217,35 +371,41 @@ public class PrepareMatrix {
 	 * @return the node of the list that have the same name of the integer
 	 *         introduced
 	 */
-	private Node NodeOfTheList(LinkedList<Node> Lista, int name) {
-
-		Iterator<Node> it = Lista.listIterator();
-		Node aux;
-		while (it.hasNext()) {
-			aux = it.next();
-			if (name == aux.getName())
-				return aux;
-		}
+	private Node NodeOfTheList(ArrayList<Node> Lista, int name) {
+		// The node named n or -n is at the position |n|-1
+		int position = Math.abs(name) - 1;
+		if (position >= 0 && position < Lista.size()
+				&& Lista.get(position).getName() == name)
+			return Lista.get(position);
 		return new Node(0);
 
 	}
 
 	/**
 	 * 
-	 * @param var
+	 * @return The position in CheckString.Var.Variables of every variable of
+	 *         the SymbolTable, -1 if it is not there
+	 */
+	private static int[] VarPositions() {
+		int[] position = new int[SymbolTable.size()];
+		Arrays.fill(position, -1);
+		for (int i = CheckString.Var.getSize() - 1; i >= 0; i--)
+			position[CheckString.Var.Variables.get(i).getId()] = i;
+		return position;
+	}
+
+	/**
+	 * 
+	 * @param position
+	 *            See VarPositions
+	 * @param id
 	 * @return The position of that variable in CheckString.Var.Variables
 	 */
-	private NodoNameCount getVarPosition(String var) {
-		Iterator<VString> it = CheckString.Var.Variables.listIterator();
-		int i = 0;
-		VString aux;
-		while (it.hasNext()) {
-			aux = it.next();
-			if (aux.getVar().equalsIgnoreCase(var))
-				return new NodoNameCount(i, aux.getCount());
-			i++;
-		}
-		return new NodoNameCount(-1, -1);
+	private NodoNameCount getVarPosition(int[] position, int id) {
+		int i = position[id];
+		if (i == -1)
+			return new NodoNameCount(-1, -1);
+		return new NodoNameCount(i, CheckString.Var.getCount(i));
 
 	}
 
@@ -260,6 +420,8 @@ public class PrepareMatrix {
 		Node Naux, nodo;
 		Iterator<EqStorer> it2 = CheckString.Functions.iterator();
 		NodoNameCount NodoAux;
+		int[] position = VarPositions();
+		boolean[] stored = new boolean[VarNodes.size() + 1];
 		while (it2.hasNext()) {
 			Eqaux = it2.next();
 			Naux = NodeOfTheList(FuncNodes, col);
@@ -267,20 +429,15 @@ public class PrepareMatrix {
 				Iterator<DerivEquation> it3 = Eqaux.aux.listIterator();
 				fila = 0;
 				while (it3.hasNext()) {
-					NodoAux = getVarPosition(it3.next().GetVar());
+					NodoAux = getVarPosition(position, it3.next().GetId());
 					nodo = NodeOfTheList(VarNodes, NodoAux.getName() + 1);
 					if (nodo.name != 0) {
-						// Store the from node
-						// First i check if the node is already in the list
-						boolean found = false;
-						for (int k = 0; k < this._Nodes.size(); k++) {
-							if (this._Nodes.get(k).getNode().getName() == nodo
-									.getName())
-								found = true;
-						}
-						if (!found)// add node
+						// Store the from node, if it is not already in the list
+						if (!stored[nodo.getName()]) {
+							stored[nodo.getName()] = true;
 							this._Nodes.add(new NodoStorer(nodo, NodoAux
 									.getCount()));
+						}
 
 						_relations.addEdge(Naux, nodo, 1);
 						_relations.addEdge(nodo, Naux, 1);
@@ -332,7 +489,7 @@ public class PrepareMatrix {
 	 */
 	private void RelationMatrix2Newton(ListMatrix relations,
 			ArrayList<ArrayList<Node>> scc) {
-		ArrayList<Byte> aux;
+		long[] aux;
 		LinkedList<Integer> Variables = new LinkedList<Integer>();
 		int k = 0;
 		// At first i check the equations with one variable for solving them
@@ -357,17 +514,17 @@ public class PrepareMatrix {
 			k = 0;
 
 			aux = relations.getRow(0);
-			Variables = ListMatrix.AnalizeRow(Variables, aux);
+			Variables = relations.AnalizeRow(Variables, aux);
 
 			// At first i check if we have a equation with one variable
-			if (ListMatrix.numberVariables(aux) == 1) {
+			if (relations.numberVariables(aux) == 1) {
 				MakeJacobian(Variables, scc);
 				relations.refresh(Variables);
 			} else {
-				while (ListMatrix.numberVariables(aux) != k + 1) {
+				while (relations.numberVariables(aux) != k + 1) {
 					k++;
 					aux = relations.OperateRow(aux, relations.getRow(k));
-					Variables = ListMatrix.AnalizeRow(Variables, aux);
+					Variables = relations.AnalizeRow(Variables, aux);
 				}
 
 				MakeJacobian(Variables, scc);
@@ -425,16 +582,9 @@ public class PrepareMatrix {
 		// variables
 
 		/*-----------------------------------------SOLVER CALL-----------------------*/
-		solver.LaunchOperations LO = new solver.LaunchOperations(Functions,
-				Vars);
-		solver.OperationCounter OC = new solver.OperationCounter();
-		Thread N = new Thread(OC, "Clock");
-		Thread m = new Thread(LO, "Operations");
-		N.start();
-		m.start();
-		while (m.isAlive())
-			if (!N.isAlive())
-				m.interrupt();
+		// The systems are solved when all of them are found
+		BlockFunctions.add(Functions);
+		BlockVars.add(Vars);
 
 	}
 
@@ -446,54 +596,94 @@ public class PrepareMatrix {
 
 	public static void PreTarjan() {
 
-		Iterator<VString> it;
-		boolean found = false;
-		VString auxV;
+		// The time of the model starts here
+		Scheduler.startModel();
+		Statistics.startModel();
+		long start = System.nanoTime();
+		solver.vector.PrepareInitialValues();
+
+		/*--Index of the equations of every variable and of the variables--*/
+		int size = CheckString.Functions.size();
+		List<List<Integer>> equations = new ArrayList<List<Integer>>(
+				Collections.<List<Integer>> nCopies(SymbolTable.size(), null));
+		for (int i = 0; i < size; i++)
+			for (DerivEquation DE : CheckString.Functions.get(i).aux) {
+				if (equations.get(DE.GetId()) == null)
+					equations.set(DE.GetId(), new ArrayList<Integer>(2));
+				equations.get(DE.GetId()).add(i);
+			}
+		VString[] variables = new VString[SymbolTable.size()];
+		for (VString VS : CheckString.Var.Variables)
+			if (variables[VS.getId()] == null)
+				variables[VS.getId()] = VS;
 
 		/*--Search equations with one variable, for solving them--*/
-		int pos = 0;
-
-		while (pos != -1) {
-			found = false;
-
-			pos = searchOneVariableFunction();
-
-			if (pos != -1) {
+		// The first one in CheckString.Functions is always solved first
+		PriorityQueue<Integer> worklist = new PriorityQueue<Integer>();
+		for (int i = 0; i < size; i++)
+			if (CheckString.Functions.get(i).aux.size() == 1)
+				worklist.add(i);
+		boolean[] solved = new boolean[size];
+		HashSet<VString> moved = new HashSet<VString>();
+
+		try {
+			while (!worklist.isEmpty()) {
+				int pos = worklist.poll();
+				EqStorer Eq = CheckString.Functions.get(pos);
+				if (solved[pos] | Eq.aux.size() != 1)
+					continue;
 
 				/*--------------------------------ONE VARIABLE SOLVER CALL-----------------------*/
 
+				String var = Eq.aux.get(0).GetVar();
+				int id = Eq.aux.get(0).GetId();
 				solver.LaunchOperations LO = new solver.LaunchOperations(
-						CheckString.Functions.get(pos).getEquation(),
-						CheckString.Functions.get(pos).aux.get(0).GetVar());
-				solver.OperationCounter OC = new solver.OperationCounter();
-				Thread n = new Thread(OC, "Clock");
-				Thread m = new Thread(LO, "Operations");
-				n.start();
-				m.start();
-				while (m.isAlive())
-					if (!n.isAlive())
-						m.interrupt();
+						Eq.getEquation(), var);
+				if (!Scheduler.run(LO, Config.MaxOperationsTime * 1000L))
+					throw new Scheduler.TimeLimitException();
 
 				// Change the function from Var to OneEquationVar
-				it = CheckString.Var.Variables.listIterator();
-				while (it.hasNext() & !found) {
-					auxV = it.next();
-					if (auxV.getVar().equalsIgnoreCase(
-							CheckString.Functions.get(pos).aux.get(0).GetVar())) {
-						CheckString.OneEquationVar.add(auxV);
-DiffAndEvaluator.Evaluate(auxV.getVar());					
-						it.remove();
-						found = true;
-					}
+				VString auxV = variables[id];
+				variables[id] = null;
+				if (auxV != null) {
+					CheckString.OneEquationVar.add(auxV);
+					DiffAndEvaluator.Evaluate(auxV.getVar());
+					moved.add(auxV);
 				}
-				updateFunctions(CheckString.Functions.get(pos).aux.get(0)
-						.GetVar());
+				// Remove the variable from its equations, the ones left with
+				// one variable can be solved now
+				List<Integer> list = equations.get(id);
+				if (list != null)
+					for (int j : list) {
+						Iterator<DerivEquation> it = CheckString.Functions
+								.get(j).aux.iterator();
+						while (it.hasNext())
+							if (it.next().GetId() == id)
+								it.remove();
+						if (!solved[j] & j != pos
+								&& CheckString.Functions.get(j).aux.size() == 1)
+							worklist.add(j);
+					}
 				// Store the function
-				CheckString.FunctionsSolved.add(CheckString.Functions.get(pos));
-				// Remove the function from functions
-				CheckString.Functions.remove(pos);
-
+				CheckString.FunctionsSolved.add(Eq);
+				solved[pos] = true;
 			}
+		} finally {
+			// Remove the functions and the variables solved
+			ArrayList<EqStorer> functions = new ArrayList<EqStorer>(size);
+			for (int i = 0; i < size; i++)
+				if (!solved[i])
+					functions.add(CheckString.Functions.get(i));
+			CheckString.Functions.clear();
+			CheckString.Functions.addAll(functions);
+			ArrayList<VString> vars = new ArrayList<VString>(
+					CheckString.Var.getSize());
+			for (VString VS : CheckString.Var.Variables)
+				if (!moved.contains(VS))
+					vars.add(VS);
+			CheckString.Var.Variables.clear();
+			CheckString.Var.Variables.addAll(vars);
+			Statistics.addTime(Statistics.PRESOLVE, System.nanoTime() - start);
 		}
 
 	}
@@ -526,7 +716,7 @@ DiffAndEvaluator.Evaluate(auxV.getVar());
 			while (it2.hasNext()) {
 				Dev = it2.next();
 				for (VString S : CheckString.OneEquationVar)
-					if (Dev.GetVar().equalsIgnoreCase(S.getVar()))
+					if (Dev.GetId() == S.getId())
 						it2.remove();
 			}
 		}
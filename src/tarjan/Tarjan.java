@@ -1,39 +1,63 @@
 package tarjan;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 /**
+ * Iterative version, so big models do not overflow the stack of the thread.
+ * The nodes in the stack are marked, so asking if one is there costs O(1)
+ * 
  * @author algowiki.net.
  */
 public class Tarjan {
 
 	private int index = 0;
-	private ArrayList<Node> stack = new ArrayList<Node>();
+	private ArrayDeque<Node> stack = new ArrayDeque<Node>();
 	private ArrayList<ArrayList<Node>> SCC = new ArrayList<ArrayList<Node>>();
 
-	public ArrayList<ArrayList<Node>> tarjan(Node v, AdjacencyList list) {
-		v.index = index;
-		v.lowlink = index;
-		index++;
-		stack.add(0, v);
-		for (Edge e : list.getAdjacent(v)) {
-			Node n = e.to;
-			if (n.index == -1) {
-				tarjan(n, list);
-				v.lowlink = Math.min(v.lowlink, n.lowlink);
-			} else if (stack.contains(n)) {
-				v.lowlink = Math.min(v.lowlink, n.index);
+	public ArrayList<ArrayList<Node>> tarjan(Node root, AdjacencyList list) {
+		// The nodes being visited and the next edge of each one
+		ArrayDeque<Node> call = new ArrayDeque<Node>();
+		ArrayDeque<Iterator<Edge>> edges = new ArrayDeque<Iterator<Edge>>();
+		visit(root, list, call, edges);
+		while (!call.isEmpty()) {
+			Node v = call.peek();
+			Iterator<Edge> it = edges.peek();
+			if (it.hasNext()) {
+				Node n = it.next().to;
+				if (n.index == -1)
+					visit(n, list, call, edges);
+				else if (n.onStack)
+					v.lowlink = Math.min(v.lowlink, n.index);
+				continue;
+			}
+			call.pop();
+			edges.pop();
+			if (!call.isEmpty())
+				call.peek().lowlink = Math.min(call.peek().lowlink, v.lowlink);
+			if (v.lowlink == v.index) {
+				Node n;
+				ArrayList<Node> component = new ArrayList<Node>();
+				do {
+					n = stack.pop();
+					n.onStack = false;
+					component.add(n);
+				} while (n != v);
+				SCC.add(component);
 			}
-		}
-		if (v.lowlink == v.index) {
-			Node n;
-			ArrayList<Node> component = new ArrayList<Node>();
-			do {
-				n = stack.remove(0);
-				component.add(n);
-			} while (n != v);
-			SCC.add(component);
 		}
 		return SCC;
 	}
+
+	private void visit(Node v, AdjacencyList list, ArrayDeque<Node> call,
+			ArrayDeque<Iterator<Edge>> edges) {
+		v.index = index;
+		v.lowlink = index;
+		index++;
+		stack.push(v);
+		v.onStack = true;
+		call.push(v);
+		edges.push(list.getAdjacent(v).iterator());
+	}
 }